@@ -0,0 +1,200 @@
+package org.example.Bot;
+
+import org.example.Bot.Commands.AsyncCommand;
+import org.example.Bot.Commands.Command;
+import org.example.Tracing.TraceContext;
+import org.example.Tracing.TraceLog;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.example.Bot.Commands.Factories.CommandFactory.createMainKeyboard;
+
+/**
+ * Диспетчер команд бота.
+ * Выполняет команды асинхронно в отдельном пуле потоков, ограничивает время
+ * ответа таймаутом и превращает ошибки выполнения в сообщение пользователю.
+ * Сообщения одного чата обрабатываются по очереди, в порядке получения:
+ * следующая команда чата создается и запускается после отправки ответа на предыдущую,
+ * команды разных чатов выполняются параллельно.
+ */
+public class CommandDispatcher {
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
+    private final Executor executor;
+    private final Duration timeout;
+    // Последнее сообщение каждого чата, которое еще обрабатывается; запись удаляется после ответа
+    private final Map<String, CompletableFuture<Void>> chatTails = new ConcurrentHashMap<>();
+
+    /**
+     * Создает диспетчер с собственным пулом потоков и таймаутом по умолчанию
+     */
+    public CommandDispatcher() {
+        this(newExecutor("command", Runtime.getRuntime().availableProcessors() * 2), DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Конструктор диспетчера
+     * @param executor пул, в котором выполняются синхронные команды
+     * @param timeout максимальное время ожидания ответа команды
+     */
+    public CommandDispatcher(Executor executor, Duration timeout) {
+        // Команды выполняются в контексте трассировки обновления, которое их вызвало
+        this.executor = TraceContext.propagating(Objects.requireNonNull(executor, "Executor не может быть null"));
+        this.timeout = Objects.requireNonNull(timeout, "Таймаут не может быть null");
+    }
+
+    /**
+     * Запускает команду и возвращает будущий ответ.
+     * Стадия никогда не завершается исключением: при ошибке или таймауте
+     * возвращается сообщение об ошибке для пользователя.
+     * @param command команда для выполнения
+     * @param chatId ID чата пользователя
+     * @param input ввод пользователя
+     * @return будущее ответное сообщение
+     */
+    public CompletableFuture<SendMessage> dispatch(Command command, String chatId, String input) {
+        TraceContext trace = TraceContext.current();
+        TraceContext.Span span = TraceContext.span("command");
+        if (!command.getClass().isSynthetic()) {
+            span.detail(command.getClass().getSimpleName());
+        }
+        CompletableFuture<SendMessage> future;
+        try {
+            future = AsyncCommand.from(command, executor)
+                    .executeAsync(chatId, input)
+                    .toCompletableFuture();
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        return future
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((response, e) -> span.close())
+                .exceptionally(e -> {
+                    Throwable cause = unwrap(e);
+                    span.fail(cause);
+                    logError(trace, cause);
+                    return createErrorMessage(chatId, cause, trace);
+                });
+    }
+
+    /**
+     * Обрабатывает сообщение чата после всех ранее полученных сообщений этого чата.
+     * Команда создается только когда подходит ее очередь, поэтому видит состояние сессии,
+     * оставленное предыдущей командой; ошибка создания команды превращается в сообщение об ошибке.
+     * Если вместо команды создан null (например, устаревшая кнопка), ответ не отправляется.
+     * @param chatId ID чата пользователя
+     * @param command создание команды по сообщению
+     * @param input ввод пользователя
+     * @param reply отправка ответа; следующее сообщение чата ждет ее завершения
+     * @return стадия, завершающаяся после отправки ответа
+     */
+    public CompletableFuture<Void> dispatchInOrder(String chatId, Supplier<Command> command, String input,
+                                                   Consumer<SendMessage> reply) {
+        TraceContext trace = TraceContext.current();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous = chatTails.put(chatId, done);
+
+        Runnable run = () -> {
+            CompletableFuture<SendMessage> response;
+            try (TraceContext.Scope ignored = trace == null ? null : trace.attach()) {
+                Command created = create(command);
+                response = created != null
+                        ? dispatch(created, chatId, input)
+                        : CompletableFuture.completedFuture(null);
+            }
+            response.thenAccept(message -> {
+                        if (message != null) {
+                            reply.accept(message);
+                        }
+                    })
+                    .whenComplete((ignored, e) -> {
+                        if (e != null) {
+                            TraceLog.error("Ошибка при отправке ответа", unwrap(e));
+                        }
+                        chatTails.remove(chatId, done);
+                        done.complete(null);
+                    });
+        };
+        if (previous == null) {
+            run.run();
+        } else {
+            previous.whenComplete((ignored, e) -> run.run());
+        }
+        return done;
+    }
+
+    private static Command create(Supplier<Command> command) {
+        try {
+            return command.get();
+        } catch (RuntimeException e) {
+            return (chatId, input) -> {
+                throw e;
+            };
+        }
+    }
+
+    /**
+     * Записывает ошибку команды в журнал трассировки: пользователь видит только краткий текст
+     */
+    private static void logError(TraceContext trace, Throwable e) {
+        if (trace == null) {
+            TraceLog.error("Ошибка при выполнении команды", e);
+            return;
+        }
+        trace.recordError(e);
+        try (TraceContext.Scope ignored = trace.attach()) {
+            TraceLog.error("Ошибка при выполнении команды", e);
+        }
+    }
+
+    /**
+     * Создает пул потоков-демонов с понятными именами
+     * @param name префикс имени потоков
+     * @param threads количество потоков
+     * @return новый пул потоков
+     */
+    public static ExecutorService newExecutor(String name, int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(threads, factory);
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        while (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    /**
+     * Сообщение об ошибке для пользователя: подробности остаются в журнале, в ответе — только код трассировки
+     */
+    private static SendMessage createErrorMessage(String chatId, Throwable e, TraceContext trace) {
+        SendMessage message = new SendMessage(chatId, TraceLog.withTraceId(
+                e instanceof TimeoutException
+                        ? "Превышено время ожидания ответа. Попробуйте позже."
+                        : "Произошла ошибка. Попробуйте позже.", trace));
+        message.setReplyMarkup(createMainKeyboard());
+        return message;
+    }
+}
@@ -0,0 +1,41 @@
+package org.example.Bot.Commands;
+
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * Асинхронный вариант команды бота.
+ * Возвращает CompletionStage вместо готового сообщения, чтобы обращения к БД
+ * и запись в файлы не блокировали поток обработки обновлений.
+ */
+@FunctionalInterface
+public interface AsyncCommand {
+
+    /**
+     * Запускает выполнение команды
+     * @param chatId ID чата пользователя
+     * @param input ввод пользователя
+     * @return стадия, завершающаяся ответным сообщением
+     */
+    CompletionStage<SendMessage> executeAsync(String chatId, String input);
+
+    /**
+     * Адаптирует синхронную команду к асинхронному контракту.
+     * Если команда уже асинхронная, она возвращается без обертки.
+     * @param command синхронная команда (StartCommand, UnknownCommand и т.д.)
+     * @param executor пул, в котором будет выполняться команда
+     * @return асинхронная команда
+     */
+    static AsyncCommand from(Command command, Executor executor) {
+        Objects.requireNonNull(command, "Команда не может быть null");
+        Objects.requireNonNull(executor, "Executor не может быть null");
+        if (command instanceof AsyncCommand asyncCommand) {
+            return asyncCommand;
+        }
+        return (chatId, input) -> CompletableFuture.supplyAsync(() -> command.execute(chatId, input), executor);
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.Bot.Commands;
+
+/**
+ * Данные кнопки inline-клавиатуры.
+ * Telegram ограничивает callback_data 64 байтами, поэтому кнопка хранит только
+ * код действия, числовой аргумент (страницу, ID блюда, ответ да/нет) и при необходимости
+ * второе число — номер страницы или ID вина сочетания: "wl:2", "rt:15:4", "dc:1:3".
+ * Остальное (вино, выбранное блюдо) берется из сессии пользователя.
+ */
+public final class CallbackData {
+
+    /**
+     * Действие кнопки
+     */
+    public enum Action {
+        // Страница списка вин
+        WINES_PAGE("wl"),
+        // Страница списка блюд
+        DISHES_PAGE("dl"),
+        // Категории блюд с числом блюд
+        DISH_CATEGORIES("dg"),
+        // Страница блюд категории: аргумент — номер категории
+        DISH_CATEGORY("dc"),
+        // Выбор блюда из подобранных для оценки: аргумент — ID блюда, второе число — ID вина сочетания
+        RATE_DISH("rt"),
+        // Оценка сочетания: 1 — хорошо, 0 — плохо
+        RATE("rg"),
+        // Добавление в избранное: 1 — да, 0 — нет
+        FAVORITE("fv"),
+        // Возврат к подобранным сочетаниям
+        PAIRINGS("pb"),
+        // Кнопка без действия (номер страницы)
+        NONE("nn");
+
+        private final String code;
+
+        Action(String code) {
+            this.code = code;
+        }
+    }
+
+    private final Action action;
+    private final int argument;
+    private final int page;
+
+    private CallbackData(Action action, int argument, int page) {
+        this.action = action;
+        this.argument = argument;
+        this.page = page;
+    }
+
+    /**
+     * @param action действие кнопки
+     * @param argument числовой аргумент действия
+     * @return строка callback_data
+     */
+    public static String encode(Action action, int argument) {
+        return action.code + ":" + argument;
+    }
+
+    /**
+     * @param action действие кнопки
+     * @param argument числовой аргумент действия
+     * @param page номер страницы
+     * @return строка callback_data
+     */
+    public static String encode(Action action, int argument, int page) {
+        return action.code + ":" + argument + ":" + page;
+    }
+
+    /**
+     * Разбирает callback_data
+     * @param data строка из нажатой кнопки
+     * @return данные кнопки или null, если строка не создана этим ботом (например, устаревшая кнопка)
+     */
+    public static CallbackData parse(String data) {
+        if (data == null) {
+            return null;
+        }
+        int separator = data.indexOf(':');
+        if (separator < 0) {
+            return null;
+        }
+        String code = data.substring(0, separator);
+        for (Action action : Action.values()) {
+            if (action.code.equals(code)) {
+                String[] numbers = data.substring(separator + 1).split(":", -1);
+                if (numbers.length > 2) {
+                    return null;
+                }
+                try {
+                    return new CallbackData(action, Integer.parseInt(numbers[0]),
+                            numbers.length == 2 ? Integer.parseInt(numbers[1]) : 0);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public int getArgument() {
+        return argument;
+    }
+
+    /**
+     * @return второе число: номер страницы или ID вина сочетания (0, если не задано)
+     */
+    public int getPage() {
+        return page;
+    }
+}
@@ -1,53 +1,555 @@
 package org.example.Bot.Commands.Factories;
 
 import io.github.cdimascio.dotenv.Dotenv;
+import org.example.Bot.CommandDispatcher;
+import org.example.Bot.MessageSender;
 import org.example.Bot.Commands.*;
+import org.example.Cache.CatalogRenderer;
+import org.example.Cache.PairingCache;
+import org.example.Coordination.AdvisoryLockCoordinator;
+import org.example.Coordination.JobCoordinator;
+import org.example.Coordination.LocalJobCoordinator;
+import org.example.Cache.RenderCache;
+import org.example.Recommendations.PairingRecommender;
+import org.example.Search.BitmapIndex;
+import org.example.Search.CatalogFilter;
+import org.example.Search.CatalogStatistics;
+import org.example.Search.DishFacetIndex;
+import org.example.Search.DishSearchIndex;
+import org.example.Search.NameAutocomplete;
 import org.example.DAO.Dish;
 import org.example.DAO.DishDAO;
+import org.example.DAO.DishRepository;
+import org.example.DAO.InMemoryCatalog;
+import org.example.DAO.PairingTopKDAO;
+import org.example.DAO.QueryRunner;
+import org.example.DAO.Rating;
+import org.example.DAO.RatingDAO;
+import org.example.DAO.RatingRepository;
+import org.example.DAO.ReplicaRouter;
+import org.example.DAO.Session;
+import org.example.DAO.SessionDAO;
+import org.example.DAO.WarmStartCatalog;
 import org.example.DAO.Wine;
 import org.example.DAO.WineDAO;
+import org.example.DAO.WineRepository;
+import org.example.Sessions.CachedSessionStore;
+import org.example.Sessions.InMemorySessionStore;
+import org.example.Sessions.SessionField;
+import org.example.Sessions.SessionStore;
+import org.example.Utils.CatalogSnapshotWriter;
+import org.example.Utils.DatabaseInitializer;
 import org.example.Utils.ExcelFavoritesManager;
+import org.example.Utils.FavoritesExporter;
+import org.example.Utils.RatingCodec;
+import org.example.Utils.WriteBehindBuffer;
+import org.example.Tracing.TraceContext;
+import org.example.Tracing.TraceLog;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardRow;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
 
 /**
  * Фабрика команд для обработки сообщений Telegram бота
  */
 
 public class CommandFactory {
-    private static final WineDAO wineDAO;
-    private static final DishDAO dishDAO;
-    private static final Map<Long, String> userStates = new HashMap<>();
-    private static final Map<Long, PairingContext> pairingContexts = new HashMap<>();
-    private static final Map<Long, Boolean> waitingForWineInput = new HashMap<>();
+    // Хранилища создаются при первом обращении, чтобы клавиатуры и состояния
+    // были доступны без подключения к БД
+    private static volatile WineRepository wineRepository;
+    private static volatile DishRepository dishRepository;
+    private static volatile RatingRepository ratingRepository;
+    // Буфер отложенной записи оценок; без него оценки записываются сразу
+    private static volatile WriteBehindBuffer<Rating> ratingBuffer;
+    // Выбор ведущего экземпляра для фоновых задач с общей БД
+    private static volatile JobCoordinator jobCoordinator;
+    // Сессии пользователей: в памяти процесса или в общей БД для нескольких экземпляров бота
+    private static volatile SessionStore sessionStore;
+    // Поля сессий по ID чата; команды выполняются асинхронно, хранилище потокобезопасно
+    private static final SessionField<String> userStates =
+            new SessionField<>(CommandFactory::sessions, Session::getState, Session::withState);
+    private static final SessionField<PairingContext> pairingContexts =
+            new SessionField<>(CommandFactory::sessions, CommandFactory::pairingContextOf,
+                    (session, context) -> context == null
+                            ? session.withPairing(null, null, null)
+                            : session.withPairing(context.getWineId(), context.getWineName(), context.getDishId()));
+    private static final SessionField<Boolean> waitingForWineInput =
+            new SessionField<>(CommandFactory::sessions,
+                    session -> session.isWaitingForWine() ? Boolean.TRUE : null,
+                    (session, waiting) -> session.withWaitingForWine(Boolean.TRUE.equals(waiting)));
+    // Пул для параллельных запросов к БД внутри одной команды
+    private static final Executor lookupExecutor = TraceContext.propagating(CommandDispatcher.newExecutor("lookup",
+            Runtime.getRuntime().availableProcessors() * 2));
+    // Готовые текстовые фрагменты вин и блюд; сбрасываются при изменении записей
+    private static final RenderCache renderCache = new RenderCache();
+    // Результаты /pair по названию вина; пустые результаты (опечатки) хранятся 30 секунд
+    private static final PairingCache pairingCache =
+            new PairingCache(1000, Duration.ofMinutes(5), Duration.ofSeconds(30));
+    // Полнотекстовый индекс блюд; строится при первом поиске
+    private static volatile DishSearchIndex searchIndex;
+    // Блюда по категориям для /dishes; строится при первом просмотре категорий
+    private static volatile DishFacetIndex dishFacets;
+    // Битовые индексы характеристик вин и блюд для /find; строятся при первом поиске
+    private static volatile CatalogFilter catalogFilter;
+    private static final int FIND_RESULTS_LIMIT = 10;
+    // Сводная статистика каталога для /stats; строится при первом запросе
+    private static volatile CatalogStatistics catalogStatistics;
+    private static final int STATS_REGIONS_LIMIT = 5;
+    private static final int SEARCH_RESULTS_LIMIT = 5;
+    // Записей на странице списков вин и блюд
+    private static final int PAGE_SIZE = 10;
+    // Кнопок выбора блюда для оценки под подобранными сочетаниями
+    private static final int RATE_BUTTONS_LIMIT = 5;
+    // Подсказки названий для inline-режима; строятся при первом inline-запросе
+    private static volatile NameAutocomplete autocomplete;
+    // Рекомендации по оценкам пользователей; пересчитываются в фоне
+    private static final PairingRecommender recommender = new PairingRecommender();
+    // Пул для выгрузки избранного: выгрузка может быть долгой и не должна занимать пул команд
+    private static final Executor exportExecutor = TraceContext.propagating(CommandDispatcher.newExecutor("export", 2));
+    // Отправка результатов фоновых команд; задается ботом при запуске
+    private static volatile MessageSender sender;
 
-    static {
+    /**
+     * Задает хранилища вин и блюд явно (встроенный каталог, тесты).
+     * Если хранилище вин также хранит оценки, оценки сохраняются в него.
+     * @param wines хранилище вин и сочетаний
+     * @param dishes хранилище блюд
+     */
+    public static void initialize(WineRepository wines, DishRepository dishes) {
+        initialize(wines, dishes, wines instanceof RatingRepository ? (RatingRepository) wines : null);
+    }
+
+    /**
+     * Задает хранилища вин, блюд и оценок явно
+     * @param wines хранилище вин и сочетаний
+     * @param dishes хранилище блюд
+     * @param ratings хранилище оценок (null — оценки не сохраняются)
+     */
+    public static synchronized void initialize(WineRepository wines, DishRepository dishes, RatingRepository ratings) {
+        ratingRepository = ratings;
+        ratingBuffer = null;
+        dishRepository = Objects.requireNonNull(dishes, "Хранилище блюд не может быть null");
+        wineRepository = Objects.requireNonNull(wines, "Хранилище вин не может быть null");
+        renderCache.clear();
+        wines.addListener(renderCache);
+        dishes.addListener(renderCache);
+        pairingCache.clear();
+        wines.addListener(pairingCache);
+        dishes.addListener(pairingCache);
+        if (ratings != null && ratings != wines) {
+            // Оценки меняют порядок блюд в ответе /pair
+            ratings.addListener(pairingCache);
+        }
+        searchIndex = null;
+        dishFacets = null;
+        catalogFilter = null;
+        catalogStatistics = null;
+        autocomplete = null;
+        if (sessionStore == null) {
+            sessionStore = new InMemorySessionStore();
+        }
+        if (jobCoordinator == null) {
+            jobCoordinator = new LocalJobCoordinator(defaultNodeId());
+        }
+    }
+
+    /**
+     * @return выбор ведущего экземпляра для фоновых задач
+     */
+    public static JobCoordinator jobs() {
+        if (jobCoordinator == null) {
+            initializeFromConfiguration();
+        }
+        return jobCoordinator;
+    }
+
+    /**
+     * Задает хранилище сессий пользователей явно (тесты, несколько экземпляров бота)
+     * @param store хранилище сессий
+     */
+    public static void useSessionStore(SessionStore store) {
+        sessionStore = Objects.requireNonNull(store, "Хранилище сессий не может быть null");
+    }
+
+    /**
+     * @return хранилище сессий; при первом обращении создается по настройкам из .env
+     */
+    public static SessionStore sessions() {
+        if (sessionStore == null) {
+            initializeFromConfiguration();
+        }
+        return sessionStore;
+    }
+
+    /**
+     * Задает способ отправки сообщений для команд, отвечающих из фона
+     * @param messageSender отправитель сообщений
+     */
+    public static void registerSender(MessageSender messageSender) {
+        sender = messageSender;
+    }
+
+    /**
+     * @return кэш текстовых фрагментов вин и блюд
+     */
+    public static RenderCache renderCache() {
+        return renderCache;
+    }
+
+    /**
+     * @return кэш результатов подбора блюд к вину
+     */
+    public static PairingCache pairingCache() {
+        return pairingCache;
+    }
+
+    /**
+     * @return хранилище вин; при первом обращении создается по настройкам из .env
+     */
+    private static WineRepository wines() {
+        if (wineRepository == null) {
+            initializeFromConfiguration();
+        }
+        return wineRepository;
+    }
+
+    /**
+     * Восстанавливает контекст сочетания из сессии; блюдо читается из каталога,
+     * только когда оно понадобится
+     */
+    private static PairingContext pairingContextOf(Session session) {
+        return session.hasPairing()
+                ? new PairingContext(session.getPairingWineId(), session.getPairingWine(), session.getPairingDishId())
+                : null;
+    }
+
+    private static DishRepository dishes() {
+        if (dishRepository == null) {
+            initializeFromConfiguration();
+        }
+        return dishRepository;
+    }
+
+    /**
+     * @return рекомендации сочетаний по оценкам пользователей
+     */
+    public static PairingRecommender recommender() {
+        return recommender;
+    }
+
+    /**
+     * @return полнотекстовый индекс блюд; при первом обращении строится по всем блюдам
+     * и затем обновляется по уведомлениям хранилища
+     */
+    private static DishSearchIndex searchIndex() throws SQLException {
+        DishSearchIndex index = searchIndex;
+        if (index != null) {
+            return index;
+        }
+        synchronized (CommandFactory.class) {
+            if (searchIndex == null) {
+                DishRepository repository = dishes();
+                DishSearchIndex built = new DishSearchIndex();
+                repository.addListener(built);
+                built.indexAll(repository.getAllDishes());
+                searchIndex = built;
+            }
+            return searchIndex;
+        }
+    }
+
+    /**
+     * @return индекс блюд по категориям; при первом обращении строится по всем блюдам
+     * и затем обновляется по уведомлениям хранилища
+     */
+    private static DishFacetIndex dishFacets() throws SQLException {
+        DishFacetIndex index = dishFacets;
+        if (index != null) {
+            return index;
+        }
+        synchronized (CommandFactory.class) {
+            if (dishFacets == null) {
+                DishRepository repository = dishes();
+                DishFacetIndex built = new DishFacetIndex();
+                repository.addListener(built);
+                built.indexAll(repository.getAllDishes());
+                dishFacets = built;
+            }
+            return dishFacets;
+        }
+    }
+
+    /**
+     * @return фильтр вин и блюд по характеристикам; при первом обращении строится
+     * по всему каталогу и затем обновляется по уведомлениям хранилищ
+     */
+    private static CatalogFilter catalogFilter() throws SQLException {
+        CatalogFilter filter = catalogFilter;
+        if (filter != null) {
+            return filter;
+        }
+        synchronized (CommandFactory.class) {
+            if (catalogFilter == null) {
+                WineRepository wineRepo = wines();
+                DishRepository dishRepo = dishes();
+                CatalogFilter built = new CatalogFilter();
+                wineRepo.addListener(built);
+                dishRepo.addListener(built);
+                built.indexAll(wineRepo.getAllWines(), dishRepo.getAllDishes());
+                catalogFilter = built;
+            }
+            return catalogFilter;
+        }
+    }
+
+    /**
+     * @return статистика каталога; при первом обращении строится по всему каталогу
+     * и затем обновляется по уведомлениям хранилищ
+     */
+    private static CatalogStatistics catalogStatistics() throws SQLException {
+        CatalogStatistics statistics = catalogStatistics;
+        if (statistics != null) {
+            return statistics;
+        }
+        synchronized (CommandFactory.class) {
+            if (catalogStatistics == null) {
+                WineRepository wineRepo = wines();
+                DishRepository dishRepo = dishes();
+                CatalogStatistics built = new CatalogStatistics();
+                wineRepo.addListener(built);
+                dishRepo.addListener(built);
+                built.indexAll(wineRepo.getAllWines(), dishRepo.getAllDishes());
+                catalogStatistics = built;
+            }
+            return catalogStatistics;
+        }
+    }
+
+    /**
+     * @return подсказки названий вин и блюд; при первом обращении строятся по всему каталогу
+     * и затем обновляются по уведомлениям хранилищ, без запросов к БД при поиске
+     */
+    public static NameAutocomplete autocomplete() {
+        NameAutocomplete index = autocomplete;
+        if (index != null) {
+            return index;
+        }
+        synchronized (CommandFactory.class) {
+            if (autocomplete == null) {
+                WineRepository wineRepo = wines();
+                DishRepository dishRepo = dishes();
+                NameAutocomplete built = new NameAutocomplete();
+                wineRepo.addListener(built);
+                dishRepo.addListener(built);
+                if (ratingRepository != null && ratingRepository != wineRepo) {
+                    ratingRepository.addListener(built);
+                }
+                try {
+                    built.indexAll(wineRepo.getAllWines(), dishRepo.getAllDishes(), wineRepo.getAllPairings());
+                } catch (SQLException e) {
+                    throw new WineDAO.DataAccessException("Ошибка при построении подсказок", e);
+                }
+                autocomplete = built;
+            }
+            return autocomplete;
+        }
+    }
+
+    /**
+     * Перестраивает уже построенные индексы и сбрасывает кэши ответов по текущему каталогу:
+     * во время прогрева они заполнялись из снимка, который мог отстать от БД
+     */
+    private static void reindexCatalog() {
+        renderCache.clear();
+        pairingCache.clear();
+        synchronized (CommandFactory.class) {
+            if (searchIndex == null && dishFacets == null && catalogFilter == null
+                    && catalogStatistics == null && autocomplete == null) {
+                return;
+            }
+            try {
+                List<Wine> allWines = wines().getAllWines();
+                List<Dish> allDishes = dishes().getAllDishes();
+                if (searchIndex != null) {
+                    searchIndex.indexAll(allDishes);
+                }
+                if (dishFacets != null) {
+                    dishFacets.indexAll(allDishes);
+                }
+                if (catalogFilter != null) {
+                    catalogFilter.indexAll(allWines, allDishes);
+                }
+                if (catalogStatistics != null) {
+                    catalogStatistics.indexAll(allWines, allDishes);
+                }
+                if (autocomplete != null) {
+                    autocomplete.indexAll(allWines, allDishes, wines().getAllPairings());
+                }
+                TraceLog.info("Индексы каталога перестроены после прогрева");
+            } catch (SQLException e) {
+                throw new WineDAO.DataAccessException("Ошибка при перестроении индексов каталога", e);
+            }
+        }
+    }
+
+    /**
+     * Создает хранилища по настройкам: встроенный каталог при CATALOG_BACKEND=memory,
+     * иначе DAO для PostgreSQL
+     */
+    private static synchronized void initializeFromConfiguration() {
+        if (wineRepository != null) {
+            return;
+        }
         try {
             Dotenv dotenv = loadConfiguration();
-            Connection connection = createDatabaseConnection(dotenv);
-            wineDAO = new WineDAO(connection);
-            dishDAO = new DishDAO(connection);
+
+            jobCoordinator = createJobCoordinator(dotenv);
+
+            // Избранное и оценки подтверждаются сразу, а записываются пачками
+            Path journal = Path.of(dotenv.get("WRITE_BEHIND_DIR", "journal"));
+            int batchSize = Integer.parseInt(dotenv.get("WRITE_BEHIND_BATCH_SIZE", "100"));
+            Duration flushInterval = Duration.ofMillis(Long.parseLong(dotenv.get("WRITE_BEHIND_FLUSH_MILLIS", "500")));
+            ExcelFavoritesManager.enableWriteBehind(journal, batchSize, flushInterval);
+
+            if (DatabaseInitializer.usesInMemoryCatalog(dotenv)) {
+                Path snapshot = Path.of(dotenv.get("CATALOG_SNAPSHOT", "catalog.snapshot"));
+                InMemoryCatalog catalog = InMemoryCatalog.load(snapshot);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> saveSnapshot(catalog, snapshot)));
+                initialize(catalog, catalog, catalog);
+            } else {
+                // Оба DAO работают через общий маршрутизатор: чтения идут на реплику, записи — в основную БД
+                ReplicaRouter router = createReplicaRouter(dotenv);
+                WineDAO wineDAO = new WineDAO(router);
+                DishDAO dishDAO = new DishDAO(router);
+
+                // Сразу после старта чтения обслуживаются из бинарного снимка, который периодически обновляется
+                Path mappedSnapshot = Path.of(dotenv.get("CATALOG_MAPPED_SNAPSHOT", "catalog.bin"));
+                Duration warmup = Duration.ofSeconds(Long.parseLong(dotenv.get("CATALOG_WARMUP_SECONDS", "60")));
+                Duration interval = Duration.ofMinutes(Long.parseLong(dotenv.get("CATALOG_SNAPSHOT_INTERVAL_MINUTES", "10")));
+                WarmStartCatalog catalog = new WarmStartCatalog(mappedSnapshot, wineDAO, dishDAO, warmup);
+                catalog.whenWarmupEnds(CommandFactory::reindexCatalog);
+                CatalogSnapshotWriter snapshotWriter = new CatalogSnapshotWriter(mappedSnapshot, wineDAO, dishDAO);
+                if (Boolean.parseBoolean(dotenv.get("CATALOG_SNAPSHOT_SHARED", "false"))) {
+                    // Снимок на общем диске пишет один экземпляр, остальные только читают его при старте
+                    snapshotWriter.start(interval, jobCoordinator);
+                } else {
+                    snapshotWriter.start(interval);
+                }
+                RatingDAO ratingDAO = new RatingDAO(router);
+                // Лучшие сочетания пересчитываются до сброса кэшей, которые подписываются в initialize
+                PairingTopKDAO topK = new PairingTopKDAO(router);
+                wineDAO.addListener(topK);
+                dishDAO.addListener(topK);
+                ratingDAO.addListener(topK);
+                topK.startChecks(jobCoordinator,
+                        Duration.ofMinutes(Long.parseLong(dotenv.get("PAIRING_TOPK_CHECK_MINUTES", "60"))));
+                initialize(catalog, catalog, ratingDAO);
+
+                // Оценка удаленного вина или блюда не должна блокировать запись остальных
+                WriteBehindBuffer<Rating> buffer = new WriteBehindBuffer<>("ratings", journal, new RatingCodec(),
+                        ratingDAO::recordRatings, RatingDAO::isRejected, batchSize, flushInterval);
+                Runtime.getRuntime().addShutdownHook(new Thread(buffer::close));
+                ratingBuffer = buffer;
+            }
+
+            configureSessions(dotenv);
+
+            // Таблица рекомендаций пересчитывается по оценкам, избранному и сессиям раз в RECOMMENDATIONS_REFRESH_MINUTES
+            Duration refresh = Duration.ofMinutes(Long.parseLong(dotenv.get("RECOMMENDATIONS_REFRESH_MINUTES", "15")));
+            recommender.start(ratingRepository, CommandFactory::sessions, ExcelFavoritesManager::forEachFavorite,
+                    wineRepository, dishRepository, refresh);
         } catch (Exception e) {
             throw new RuntimeException("Ошибка инициализации CommandFactory", e);
         }
     }
 
+    /**
+     * Выбирает хранилище сессий. При SESSION_BACKEND=postgres (по умолчанию, если каталог
+     * в PostgreSQL) сессии хранятся в таблице sessions и доступны всем экземплярам бота:
+     * чтения обслуживаются из локального кэша не дольше SESSION_CACHE_MILLIS,
+     * изменения записываются пачкой раз в SESSION_FLUSH_MILLIS
+     */
+    private static void configureSessions(Dotenv dotenv) throws SQLException {
+        String defaultBackend = DatabaseInitializer.usesInMemoryCatalog(dotenv) ? "memory" : "postgres";
+        if (!"postgres".equalsIgnoreCase(dotenv.get("SESSION_BACKEND", defaultBackend))) {
+            sessionStore = new InMemorySessionStore();
+            return;
+        }
+        // Отдельное соединение: запись сессий не ждет запросов каталога; после разрыва открывается заново
+        SessionDAO sessionDAO = new SessionDAO(new QueryRunner(() -> createDatabaseConnection(dotenv), 1));
+        Duration cacheTtl = Duration.ofMillis(Long.parseLong(dotenv.get("SESSION_CACHE_MILLIS", "1000")));
+        Duration flushInterval = Duration.ofMillis(Long.parseLong(dotenv.get("SESSION_FLUSH_MILLIS", "50")));
+        CachedSessionStore store = new CachedSessionStore(sessionDAO, cacheTtl, flushInterval);
+        Duration idle = Duration.ofDays(Long.parseLong(dotenv.get("SESSION_RETENTION_DAYS", "30")));
+        store.startEviction(jobCoordinator, idle, Duration.ofHours(1));
+        Runtime.getRuntime().addShutdownHook(new Thread(store::close));
+        sessionStore = store;
+    }
+
+    /**
+     * Создает выбор ведущего: через рекомендательные блокировки PostgreSQL, если каталог
+     * в PostgreSQL (JOB_COORDINATION=postgres), иначе этот экземпляр ведет все задачи.
+     * ID экземпляра задается переменной NODE_ID
+     */
+    private static JobCoordinator createJobCoordinator(Dotenv dotenv) {
+        String nodeId = dotenv.get("NODE_ID", defaultNodeId());
+        String defaultMode = DatabaseInitializer.usesInMemoryCatalog(dotenv) ? "local" : "postgres";
+        if (!"postgres".equalsIgnoreCase(dotenv.get("JOB_COORDINATION", defaultMode))) {
+            return new LocalJobCoordinator(nodeId);
+        }
+        AdvisoryLockCoordinator coordinator = new AdvisoryLockCoordinator(() -> createDatabaseConnection(dotenv), nodeId);
+        Runtime.getRuntime().addShutdownHook(new Thread(coordinator::close));
+        return coordinator;
+    }
+
+    /**
+     * @return ID экземпляра по умолчанию: имя хоста и PID процесса
+     */
+    private static String defaultNodeId() {
+        String host = System.getenv("HOSTNAME");
+        return (host != null && !host.isEmpty() ? host : "node") + "-" + ProcessHandle.current().pid();
+    }
+
+    /**
+     * Сохраняет встроенный каталог в файл снимка при завершении работы
+     */
+    private static void saveSnapshot(InMemoryCatalog catalog, Path snapshot) {
+        try {
+            catalog.save(snapshot);
+        } catch (IOException e) {
+            TraceLog.error("Не удалось сохранить снимок каталога", e);
+        }
+    }
+
     /**
      * Загружает конфигурацию из .env файла
      */
     private static Dotenv loadConfiguration() {
         Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
-        validateEnvVariable(dotenv, "POSTGRES_URL");
-        validateEnvVariable(dotenv, "POSTGRES_USER");
-        validateEnvVariable(dotenv, "POSTGRES_PASSWORD");
+        if (!DatabaseInitializer.usesInMemoryCatalog(dotenv)) {
+            validateEnvVariable(dotenv, "POSTGRES_URL");
+            validateEnvVariable(dotenv, "POSTGRES_USER");
+            validateEnvVariable(dotenv, "POSTGRES_PASSWORD");
+        }
         validateEnvVariable(dotenv, "BOT_TOKEN");
         validateEnvVariable(dotenv, "BOT_USERNAME");
         return dotenv;
@@ -73,6 +575,30 @@ public class CommandFactory {
         );
     }
 
+    /**
+     * Создает маршрутизатор запросов. Если задана переменная POSTGRES_REPLICA_URL,
+     * чтения направляются на реплику с допустимым отставанием
+     * POSTGRES_REPLICA_MAX_LAG_SECONDS (по умолчанию 5 секунд)
+     */
+    private static ReplicaRouter createReplicaRouter(Dotenv dotenv) throws SQLException {
+        // Запросы разных чатов выполняются параллельно на соединениях пула
+        int poolSize = Integer.parseInt(dotenv.get("POSTGRES_POOL_SIZE", "4"));
+        QueryRunner primary = new QueryRunner(() -> createDatabaseConnection(dotenv), poolSize);
+
+        String replicaUrl = dotenv.get("POSTGRES_REPLICA_URL");
+        if (replicaUrl == null || replicaUrl.isEmpty()) {
+            return new ReplicaRouter(primary);
+        }
+
+        String replicaUser = dotenv.get("POSTGRES_REPLICA_USER", dotenv.get("POSTGRES_USER"));
+        String replicaPassword = dotenv.get("POSTGRES_REPLICA_PASSWORD", dotenv.get("POSTGRES_PASSWORD"));
+        Duration maxLag = Duration.ofSeconds(Long.parseLong(dotenv.get("POSTGRES_REPLICA_MAX_LAG_SECONDS", "5")));
+
+        return new ReplicaRouter(primary,
+                () -> DriverManager.getConnection(replicaUrl, replicaUser, replicaPassword),
+                poolSize, maxLag);
+    }
+
     /**
      * Возвращает соответствующую команду на основе текста сообщения
      * @param messageText текст сообщения от пользователя
@@ -86,7 +612,7 @@ public class CommandFactory {
 
         // Обработка команды отмены
         if ("отмена".equalsIgnoreCase(messageText.trim())) {
-            waitingForWineInput.remove(chatId);
+            waitingForWineInput.clear(chatId);
             return (cId, input) -> {
                 SendMessage message = new SendMessage(String.valueOf(cId),
                         "Поиск сочетаний отменен.");
@@ -96,9 +622,10 @@ public class CommandFactory {
         }
 
         // Если пользователь в состоянии ожидания ввода вина
-        if (waitingForWineInput.getOrDefault(chatId, false)) {
-            waitingForWineInput.remove(chatId);
-            return new PairCommand(wineDAO, dishDAO, messageText.trim(), chatId, pairingContexts);
+        if (waitingForWineInput.isSet(chatId)) {
+            waitingForWineInput.clear(chatId);
+            return new PairCommand(wines(), pairingCache, messageText.trim(), chatId,
+                    pairingContexts::set, lookupExecutor);
         }
 
         String state = userStates.get(chatId);
@@ -120,8 +647,13 @@ public class CommandFactory {
         else if (lowerCaseText.startsWith("/dessert")) {
             return createWineTypeFilterCommand("Десертное");
         }
+        else if (lowerCaseText.startsWith("/pair ")) {
+            // Название вина сразу в команде (так его вставляет inline-подсказка)
+            return new PairCommand(wines(), pairingCache,
+                    messageText.trim().substring("/pair".length()).trim(), chatId, pairingContexts::set, lookupExecutor);
+        }
         else if (lowerCaseText.startsWith("/pair")) {
-            waitingForWineInput.put(chatId, true);
+            waitingForWineInput.set(chatId, true);
             return (cId, input) -> {
                 SendMessage message = new SendMessage(String.valueOf(cId),
                         "Введите название вина для поиска сочетаний:");
@@ -130,10 +662,28 @@ public class CommandFactory {
             };
         }
         else if (lowerCaseText.startsWith("/wines")) {
-            return createListCommand("Список вин:\n", wineDAO::getAllWines, Wine::toString);
+            return createPagedListCommand("Список вин", wines()::getAllWines, renderCache::wine,
+                    CallbackData.Action.WINES_PAGE, 0);
         }
         else if (lowerCaseText.startsWith("/dishes")) {
-            return createListCommand("Список блюд:\n", dishDAO::getAllDishes, Dish::toString);
+            String category = messageText.trim().substring("/dishes".length()).trim();
+            if (category.isEmpty()) {
+                return createDishCategoriesCommand();
+            }
+            try {
+                return createDishCategoryCommand(Dish.DishCategory.fromString(category), 0);
+            } catch (IllegalArgumentException e) {
+                return (cId, input) -> new SendMessage(String.valueOf(cId),
+                        "Неизвестная категория: " + category + ". Доступны: " +
+                                Arrays.stream(Dish.DishCategory.values()).map(Enum::name)
+                                        .collect(Collectors.joining(", ")));
+            }
+        }
+        else if (lowerCaseText.startsWith("/dish")) {
+            return createDishPairingCommand(messageText.trim().substring("/dish".length()).trim());
+        }
+        else if (lowerCaseText.startsWith("/search")) {
+            return createSearchCommand(messageText.trim().substring("/search".length()).trim());
         }
         else if (lowerCaseText.startsWith("/rate")) {
             return handleRateCommand(chatId);
@@ -141,37 +691,51 @@ public class CommandFactory {
         else if (lowerCaseText.equals("хорошо") || lowerCaseText.equals("плохо")) {
             return handleRatingResponse(chatId, lowerCaseText);
         }
+        else if (lowerCaseText.startsWith("/find")) {
+            return createFindCommand(messageText.trim().substring("/find".length()).trim());
+        }
+        else if (lowerCaseText.startsWith("/stats")) {
+            return createStatsCommand(messageText.trim().substring("/stats".length()).trim());
+        }
         else if (lowerCaseText.startsWith("/favorites")) {
             return (cId, input) -> {
                 try {
-                    List<String> favorites = ExcelFavoritesManager.getFavorites();
+                    List<String> favorites = ExcelFavoritesManager.getFavorites(chatId);
                     SendMessage message = new SendMessage(String.valueOf(cId),
                             favorites.isEmpty()
                                     ? "У вас пока нет избранных сочетаний"
-                                    : "🍷 *Ваши избранные сочетания* 🍽\n\n" +
-                                    String.join("\n\n", favorites));
+                                    : joinFavorites(favorites));
                     message.setParseMode("Markdown");
                     message.setReplyMarkup(createMainKeyboard());
                     return message;
                 } catch (Exception e) {
                     return new SendMessage(String.valueOf(cId),
-                            "Ошибка при загрузке избранного: " + e.getMessage());
+                            TraceLog.userError("Ошибка при загрузке избранного", e));
                 }
             };
         }
+        else if (lowerCaseText.startsWith("/export")) {
+            return createExportCommand(chatId);
+        }
         else if (lowerCaseText.startsWith("/help")) {
             SendMessage helpMessage = new SendMessage(String.valueOf(chatId),
                     "Доступные команды:\n" +
-                            "/pair - подобрать сочетания для вина\n" +
+                            "/pair [вино] - подобрать сочетания для вина\n" +
                             "/red - красные вина\n" +
                             "/white - белые вина\n" +
                             "/rose - розовые вина\n" +
                             "/dessert - десертные вина\n" +
                             "/wines - список всех вин\n" +
-                            "/dishes - список всех блюд\n" +
+                            "/dishes [категория] - блюда по категориям\n" +
+                            "/dish <блюдо> - подобрать вина к блюду\n" +
+                            "/search - поиск блюд по ингредиентам\n" +
+                            "/find <условия> - вина или блюда по характеристикам\n" +
+                            "/stats [тип регион год] - статистика каталога\n" +
                             "/rate - оценить текущее сочетание\n" +
                             "/favorites - избранные сочетания\n" +
-                            "/help - справка");
+                            "/export - выгрузить избранное в Excel\n" +
+                            "/help - справка\n\n" +
+                            "В любом чате наберите @имя_бота и начало названия — бот подскажет вино или блюдо");
             helpMessage.setReplyMarkup(createMainKeyboard());
             return (cId, input) -> helpMessage;
         }
@@ -179,6 +743,122 @@ public class CommandFactory {
         return new UnknownCommand();
     }
 
+    /**
+     * Определяет команду для нажатой кнопки inline-клавиатуры.
+     * Ответ команды бот отправляет редактированием сообщения с кнопкой.
+     * @param callbackData данные кнопки
+     * @param chatId ID чата пользователя
+     * @return команда или null, если кнопка ничего не делает или устарела
+     */
+    public static Command getCallbackCommand(String callbackData, long chatId) {
+        CallbackData data = CallbackData.parse(callbackData);
+        if (data == null) {
+            return null;
+        }
+        int argument = data.getArgument();
+        switch (data.getAction()) {
+            case WINES_PAGE:
+                return createPagedListCommand("Список вин", wines()::getAllWines, renderCache::wine,
+                        CallbackData.Action.WINES_PAGE, argument);
+            case DISHES_PAGE:
+                return createPagedListCommand("Список блюд", dishes()::getAllDishes, renderCache::dish,
+                        CallbackData.Action.DISHES_PAGE, argument);
+            case DISH_CATEGORIES:
+                return createDishCategoriesCommand();
+            case DISH_CATEGORY:
+                Dish.DishCategory[] categories = Dish.DishCategory.values();
+                return argument >= 0 && argument < categories.length
+                        ? createDishCategoryCommand(categories[argument], data.getPage())
+                        : null;
+            case RATE_DISH:
+                // Второе число кнопки — ID вина сочетания (0 у кнопок, созданных до его появления)
+                return selectDishToRate(chatId, argument, data.getPage());
+            case RATE:
+                return rateFromKeyboard(chatId, argument == 1);
+            case FAVORITE:
+                return confirmFavorite(chatId, argument == 1);
+            case PAIRINGS:
+                // Бот создает команду кнопки в очереди сообщений чата, поэтому контекст здесь
+                // уже учитывает предыдущие нажатия; PairCommand остается асинхронной
+                PairingContext context = pairingContexts.get(chatId);
+                return context != null
+                        ? new PairCommand(wines(), pairingCache, context.getWineName(), chatId,
+                                pairingContexts::set, lookupExecutor)
+                        : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Собирает текст избранного; если он не помещается в одно сообщение,
+     * лишние сочетания отбрасываются с подсказкой о выгрузке
+     */
+    private static String joinFavorites(List<String> favorites) {
+        String header = "🍷 *Ваши избранные сочетания* 🍽\n\n";
+        String more = "\n\n…полный список: /export";
+        StringBuilder text = new StringBuilder(header);
+        for (int i = 0; i < favorites.size(); i++) {
+            String separator = i == 0 ? "" : "\n\n";
+            if (text.length() + separator.length() + favorites.get(i).length()
+                    > RenderCache.MESSAGE_LIMIT - more.length()) {
+                return text.append(more).toString();
+            }
+            text.append(separator).append(favorites.get(i));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Создает команду выгрузки избранного: файл формируется в фоне
+     * и отправляется документом, а пользователь сразу получает подтверждение
+     * @param chatId ID чата пользователя
+     */
+    private static Command createExportCommand(long chatId) {
+        return (cId, input) -> {
+            MessageSender current = sender;
+            if (current == null) {
+                return new SendMessage(String.valueOf(cId), "Выгрузка избранного сейчас недоступна");
+            }
+            exportExecutor.execute(() -> sendExport(current, chatId));
+            SendMessage message = new SendMessage(String.valueOf(cId),
+                    "⏳ Готовлю файл с избранными сочетаниями...");
+            message.setReplyMarkup(createMainKeyboard());
+            return message;
+        };
+    }
+
+    private static void sendExport(MessageSender current, long chatId) {
+        String chat = String.valueOf(chatId);
+        FavoritesExporter.Export export = null;
+        try {
+            export = FavoritesExporter.export(chatId);
+            if (export.getRows() == 0) {
+                current.sendMessage(new SendMessage(chat, "У вас пока нет избранных сочетаний"));
+                return;
+            }
+            SendDocument document = new SendDocument(chat,
+                    new InputFile(export.getFile().toFile(), "favorites.xlsx"));
+            document.setCaption("🍷 Избранные сочетания: " + export.getRows());
+            current.sendDocument(document);
+        } catch (Exception e) {
+            try {
+                current.sendMessage(new SendMessage(chat,
+                        TraceLog.userError("Ошибка при выгрузке избранного", e)));
+            } catch (TelegramApiException ignored) {
+                // Сообщить об ошибке некуда
+            }
+        } finally {
+            if (export != null) {
+                try {
+                    Files.deleteIfExists(export.getFile());
+                } catch (IOException e) {
+                    TraceLog.error("Не удалось удалить файл выгрузки " + export.getFile(), e);
+                }
+            }
+        }
+    }
+
     private static ReplyKeyboardMarkup createCancelKeyboard() {
         ReplyKeyboardMarkup keyboardMarkup = new ReplyKeyboardMarkup();
         keyboardMarkup.setResizeKeyboard(true);
@@ -200,13 +880,17 @@ public class CommandFactory {
                 return new SendMessage(String.valueOf(cId),
                         "Сначала подберите сочетание с помощью команды /pair [вино]");
             }
+            Dish dish = context.getDish();
+            if (dish == null) {
+                return staleRating(chatId, cId);
+            }
 
             SendMessage message = new SendMessage(String.valueOf(cId),
                     "Текущее сочетание для оценки:\n" +
                             "🍷 Вино: " + context.getWineName() + "\n" +
-                            "🍽 Блюдо: " + context.getDish().getName() + "\n\n" +
-                            "Напишите 'хорошо' или 'плохо' для оценки этого сочетания");
-            message.setReplyMarkup(createRatingKeyboard());
+                            "🍽 Блюдо: " + dish.getName() + "\n\n" +
+                            "Оцените сочетание кнопкой или напишите 'хорошо' или 'плохо'");
+            message.setReplyMarkup(createInlineRatingKeyboard());
             return message;
         };
     }
@@ -219,17 +903,23 @@ public class CommandFactory {
                         "Нет активного сочетания для оценки. Сначала подберите сочетание.");
             }
 
+            recordRating(chatId, context, "хорошо".equals(rating) ? Rating.GOOD : Rating.BAD);
+
             if ("хорошо".equals(rating)) {
-                userStates.put(chatId, "CONFIRM_FAVORITE");
+                Dish dish = context.getDish();
+                if (dish == null) {
+                    return staleRating(chatId, cId);
+                }
+                userStates.set(chatId, "CONFIRM_FAVORITE");
                 SendMessage message = new SendMessage(String.valueOf(cId),
                         "Вы оценили сочетание как хорошее:\n" +
                                 "🍷 Вино: " + context.getWineName() + "\n" +
-                                "🍽 Блюдо: " + context.getDish().getName() + "\n\n" +
+                                "🍽 Блюдо: " + dish.getName() + "\n\n" +
                                 "Добавить это сочетание в избранное?");
                 message.setReplyMarkup(createYesNoKeyboard());
                 return message;
             } else {
-                pairingContexts.remove(chatId);
+                pairingContexts.clear(chatId);
                 SendMessage response = new SendMessage(String.valueOf(cId),
                         "Спасибо за вашу оценку! Сочетание помечено как неподходящее.");
                 response.setReplyMarkup(createMainKeyboard());
@@ -238,10 +928,318 @@ public class CommandFactory {
         };
     }
 
+    /**
+     * Выбирает блюдо из подобранных к вину и предлагает оценить сочетание
+     * @param dishId ID выбранного блюда
+     * @param wineId ID вина, с которым сочетается блюдо (0 — вино из контекста)
+     */
+    private static Command selectDishToRate(long chatId, int dishId, int wineId) {
+        return (cId, input) -> {
+            PairingContext context = pairingContexts.get(chatId);
+            Dish dish;
+            try {
+                dish = context != null ? dishes().getDishById(dishId) : null;
+            } catch (SQLException e) {
+                throw new WineDAO.DataAccessException("Ошибка при получении блюда: " + dishId, e);
+            }
+            if (dish == null) {
+                return new SendMessage(String.valueOf(cId),
+                        "Сочетание устарело. Подберите его заново с помощью команды /pair [вино]");
+            }
+            pairingContexts.set(chatId, new PairingContext(wineId != 0 ? wineId : context.getWineId(),
+                    context.getWineName(), dish));
+
+            SendMessage message = new SendMessage(String.valueOf(cId),
+                    "Текущее сочетание для оценки:\n" +
+                            "🍷 Вино: " + context.getWineName() + "\n" +
+                            "🍽 Блюдо: " + dish.getName());
+            InlineKeyboardMarkup keyboard = createInlineRatingKeyboard();
+            keyboard.getKeyboard().add(List.of(
+                    inlineButton("◀ К сочетаниям", CallbackData.encode(CallbackData.Action.PAIRINGS, 0))));
+            message.setReplyMarkup(keyboard);
+            return message;
+        };
+    }
+
+    /**
+     * Оценка кнопкой: подтверждение избранного тоже запрашивается кнопками,
+     * поэтому состояние ожидания текстового ответа не устанавливается
+     */
+    private static Command rateFromKeyboard(long chatId, boolean good) {
+        return (cId, input) -> {
+            PairingContext context = pairingContexts.get(chatId);
+            if (context == null) {
+                return new SendMessage(String.valueOf(cId),
+                        "Нет активного сочетания для оценки. Сначала подберите сочетание.");
+            }
+
+            recordRating(chatId, context, good ? Rating.GOOD : Rating.BAD);
+
+            if (good) {
+                Dish dish = context.getDish();
+                if (dish == null) {
+                    return staleRating(chatId, cId);
+                }
+                SendMessage message = new SendMessage(String.valueOf(cId),
+                        "Вы оценили сочетание как хорошее:\n" +
+                                "🍷 Вино: " + context.getWineName() + "\n" +
+                                "🍽 Блюдо: " + dish.getName() + "\n\n" +
+                                "Добавить это сочетание в избранное?");
+                message.setReplyMarkup(new InlineKeyboardMarkup(new ArrayList<>(List.of(List.of(
+                        inlineButton("Да", CallbackData.encode(CallbackData.Action.FAVORITE, 1)),
+                        inlineButton("Нет", CallbackData.encode(CallbackData.Action.FAVORITE, 0)))))));
+                return message;
+            }
+            pairingContexts.clear(chatId);
+            return new SendMessage(String.valueOf(cId),
+                    "Спасибо за вашу оценку! Сочетание помечено как неподходящее.");
+        };
+    }
+
+    /**
+     * Ответ, когда блюдо сочетания удалено из каталога после подбора; контекст сбрасывается
+     */
+    private static SendMessage staleRating(long chatId, String cId) {
+        pairingContexts.clear(chatId);
+        return new SendMessage(cId, "Сочетание устарело. Подберите его заново с помощью команды /pair [вино]");
+    }
+
+    /**
+     * Сохраняет оценку сочетания из контекста: вино определено при подборе сочетаний,
+     * поэтому оценка относится к тому вину, блюда которого видел пользователь.
+     * Повторная оценка того же сочетания заменяет прежнюю. Ошибка сохранения не мешает продолжить диалог.
+     */
+    private static void recordRating(long chatId, PairingContext context, int value) {
+        RatingRepository ratings = ratingRepository;
+        if (ratings == null) {
+            return;
+        }
+        try {
+            Rating record = new Rating(chatId, context.getWineId(), context.getDishId(), value);
+            WriteBehindBuffer<Rating> buffer = ratingBuffer;
+            if (buffer != null) {
+                buffer.submit(record);
+            } else {
+                ratings.recordRating(record);
+            }
+        } catch (Exception e) {
+            TraceLog.error("Не удалось сохранить оценку сочетания", e);
+        }
+    }
+
+    /**
+     * Создает команду полнотекстового поиска блюд по названию, ингредиентам и рецепту
+     * @param query поисковый запрос
+     */
+    private static Command createSearchCommand(String query) {
+        return (cId, input) -> {
+            if (query.isEmpty()) {
+                return new SendMessage(String.valueOf(cId),
+                        "Введите запрос после команды, например: /search грибы сливки");
+            }
+            try {
+                List<RenderCache.Fragment> fragments = new ArrayList<>();
+                for (DishSearchIndex.Hit hit : searchIndex().search(query, SEARCH_RESULTS_LIMIT)) {
+                    Dish dish = dishes().getDishById(hit.getDishId());
+                    if (dish != null) {
+                        fragments.add(renderCache.dish(dish));
+                    }
+                }
+
+                if (fragments.isEmpty()) {
+                    return new SendMessage(String.valueOf(cId), "Не найдено блюд по запросу: " + query);
+                }
+                return markdownMessage(String.valueOf(cId), RenderCache.join(
+                        "🔎 *Найденные блюда:*\n\n", fragments, RenderCache.MESSAGE_LIMIT));
+            } catch (Exception e) {
+                return new SendMessage(String.valueOf(cId),
+                        TraceLog.userError("Ошибка при поиске блюд", e));
+            }
+        };
+    }
+
+    /**
+     * Создает команду поиска по характеристикам: «/find красное танины>=4 регион=Тоскана»
+     * @param query условия через пробел
+     */
+    private static Command createFindCommand(String query) {
+        return (cId, input) -> {
+            if (query.isEmpty()) {
+                return new SendMessage(String.valueOf(cId),
+                        "Введите условия после команды, например:\n" +
+                                "/find красное танины>=4 кислотность<=2 регион=Тоскана\n" +
+                                "/find рыба жирность<=2 время<=30\n\n" +
+                                "Вина: тип, танины, кислотность, регион, год. " +
+                                "Блюда: категория, жирность, белок, время (мин). " +
+                                "Операции: = != > >= < <=");
+            }
+            CatalogFilter.Query parsed;
+            try {
+                parsed = CatalogFilter.parse(query);
+            } catch (IllegalArgumentException e) {
+                return new SendMessage(String.valueOf(cId), e.getMessage());
+            }
+            try {
+                BitmapIndex.Result result = catalogFilter().find(parsed, FIND_RESULTS_LIMIT);
+                List<Integer> ids = result.ids();
+                List<RenderCache.Fragment> fragments = new ArrayList<>(ids.size());
+                if (parsed.getTarget() == CatalogFilter.Target.WINES) {
+                    for (Wine wine : wines().getWinesByIds(ids)) {
+                        fragments.add(renderCache.wine(wine));
+                    }
+                } else {
+                    for (Dish dish : dishes().getDishesByIds(ids)) {
+                        fragments.add(renderCache.dish(dish));
+                    }
+                }
+                if (fragments.isEmpty()) {
+                    return new SendMessage(String.valueOf(cId), "Ничего не найдено по условиям: " + query);
+                }
+                String header = (parsed.getTarget() == CatalogFilter.Target.WINES ? "🍷" : "🍽")
+                        + " *Найдено: " + result.count() + "*"
+                        + (result.count() > fragments.size() ? ", первые " + fragments.size() : "") + "\n\n";
+                return markdownMessage(String.valueOf(cId),
+                        RenderCache.join(header, fragments, RenderCache.MESSAGE_LIMIT));
+            } catch (Exception e) {
+                return new SendMessage(String.valueOf(cId),
+                        TraceLog.userError("Ошибка при поиске", "Ошибка при поиске по характеристикам", e));
+            }
+        };
+    }
+
+    /**
+     * Создает команду статистики каталога: без условий — сводка, с условиями
+     * («/stats красное регион=Тоскана год>=2015 год<=2019») — число подходящих вин
+     * @param query условия по типу, региону и году урожая
+     */
+    private static Command createStatsCommand(String query) {
+        return (cId, input) -> {
+            try {
+                CatalogStatistics statistics = catalogStatistics();
+                if (query.isEmpty()) {
+                    return markdownMessage(String.valueOf(cId), formatStatistics(statistics));
+                }
+                CatalogFilter.Query parsed = CatalogFilter.parse(query);
+                Wine.WineType type = null;
+                String region = null;
+                int from = 0;
+                int to = 0;
+                for (BitmapIndex.Condition condition : parsed.getConditions()) {
+                    String attribute = condition.getAttribute();
+                    BitmapIndex.Operator operator = condition.getOperator();
+                    if (attribute.equals("тип") && operator == BitmapIndex.Operator.EQ) {
+                        type = Arrays.stream(Wine.WineType.values())
+                                .filter(t -> t.name().toLowerCase().equals(condition.getValue()))
+                                .findFirst().orElseThrow();
+                    } else if (attribute.equals("регион") && operator == BitmapIndex.Operator.EQ) {
+                        region = (String) condition.getValue();
+                    } else if (attribute.equals("год") && operator != BitmapIndex.Operator.NE) {
+                        int year = (Integer) condition.getValue();
+                        if (operator == BitmapIndex.Operator.GE || operator == BitmapIndex.Operator.GT
+                                || operator == BitmapIndex.Operator.EQ) {
+                            from = Math.max(from, operator == BitmapIndex.Operator.GT ? year + 1 : year);
+                        }
+                        if (operator == BitmapIndex.Operator.LE || operator == BitmapIndex.Operator.LT
+                                || operator == BitmapIndex.Operator.EQ) {
+                            int bound = operator == BitmapIndex.Operator.LT ? year - 1 : year;
+                            to = to == 0 ? bound : Math.min(to, bound);
+                        }
+                    } else {
+                        return new SendMessage(String.valueOf(cId),
+                                "/stats считает вина по типу, региону и году урожая (=, >=, <=). " +
+                                        "Для других условий используйте /find " + query);
+                    }
+                }
+                int count = from > 0 && to > 0 && from > to ? 0 : statistics.countWines(type, region, from, to);
+                return markdownMessage(String.valueOf(cId),
+                        "📊 *Вин по условиям «" + CatalogRenderer.escape(query) + "»:* " + count);
+            } catch (IllegalArgumentException e) {
+                return new SendMessage(String.valueOf(cId), e.getMessage());
+            } catch (Exception e) {
+                return new SendMessage(String.valueOf(cId),
+                        TraceLog.userError("Ошибка при подсчете статистики", e));
+            }
+        };
+    }
+
+    /**
+     * Формирует сводку каталога: вина по типам, регионам и десятилетиям, уровни танинов
+     * и кислотности, блюда по категориям
+     */
+    private static String formatStatistics(CatalogStatistics statistics) {
+        StringBuilder text = new StringBuilder("📊 *Статистика каталога*\n\n");
+        text.append("🍷 *Вин: ").append(statistics.wineCount()).append("*\n");
+        text.append(statistics.winesByType().entrySet().stream()
+                .map(e -> e.getKey().name().toLowerCase() + " " + e.getValue())
+                .collect(Collectors.joining(", "))).append("\n");
+        List<Map.Entry<String, Integer>> regions = statistics.topRegions(STATS_REGIONS_LIMIT);
+        if (!regions.isEmpty()) {
+            text.append("Регионы: ").append(regions.stream()
+                    .map(e -> CatalogRenderer.escape(e.getKey()) + " " + e.getValue())
+                    .collect(Collectors.joining(", "))).append("\n");
+        }
+        Map<Integer, Integer> decades = statistics.winesByDecade();
+        if (!decades.isEmpty()) {
+            text.append("Урожай: ").append(decades.entrySet().stream()
+                    .map(e -> e.getKey() + "-е " + e.getValue())
+                    .collect(Collectors.joining(", "))).append("\n");
+        }
+        text.append("Танины 1–5: ").append(levels(statistics.tanninDistribution())).append("\n");
+        text.append("Кислотность 1–5: ").append(levels(statistics.acidityDistribution())).append("\n\n");
+
+        text.append("🍽 *Блюд: ").append(statistics.dishCount()).append("*\n");
+        text.append(statistics.dishesByCategory().entrySet().stream()
+                .map(e -> e.getKey().name().toLowerCase() + " " + e.getValue())
+                .collect(Collectors.joining(", "))).append("\n");
+        text.append("Жирность 1–5: ").append(levels(statistics.fatDistribution())).append("\n");
+        text.append("Белок 1–5: ").append(levels(statistics.proteinDistribution())).append("\n");
+        int minutes = statistics.averageCookingMinutes();
+        if (minutes > 0) {
+            text.append("Среднее время приготовления: ").append(minutes).append(" мин\n");
+        }
+        return text.toString();
+    }
+
+    private static String levels(int[] distribution) {
+        return Arrays.stream(distribution, 1, distribution.length)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(" / "));
+    }
+
+    /**
+     * Создает команду обратного подбора: вина, сочетающиеся с блюдом
+     * @param dishName название блюда или его часть
+     */
+    private static Command createDishPairingCommand(String dishName) {
+        return (cId, input) -> {
+            if (dishName.isEmpty()) {
+                return new SendMessage(String.valueOf(cId),
+                        "Введите название блюда после команды, например: /dish Стейк");
+            }
+            try {
+                List<String> wineNames = wines().findWinesForDish(dishName);
+                if (wineNames.isEmpty()) {
+                    return new SendMessage(String.valueOf(cId), "Не найдено подходящих вин для блюда: " + dishName);
+                }
+
+                StringBuilder response = new StringBuilder("🍽 *Вина к блюду " + CatalogRenderer.escape(dishName) + ":*\n\n");
+                for (String wineName : wineNames) {
+                    response.append("🍷 ").append(CatalogRenderer.escape(wineName)).append("\n");
+                }
+                SendMessage message = markdownMessage(String.valueOf(cId), response.toString());
+                message.setReplyMarkup(createMainKeyboard());
+                return message;
+            } catch (Exception e) {
+                return new SendMessage(String.valueOf(cId),
+                        TraceLog.userError("Ошибка при поиске вин", e));
+            }
+        };
+    }
+
     private static Command createWineTypeFilterCommand(String russianType) {
         return (cId, input) -> {
             try {
-                List<Wine> wines = wineDAO.getAllWines().stream()
+                List<Wine> wines = wines().getAllWines().stream()
                         .filter(w -> w.getType().toString().equalsIgnoreCase(russianType))
                         .toList();
 
@@ -249,65 +1247,76 @@ public class CommandFactory {
                     return new SendMessage(String.valueOf(cId), "Не найдено вин типа: " + russianType);
                 }
 
-                StringBuilder response = new StringBuilder("Вина типа " + russianType + ":\n\n");
-                for (Wine wine : wines) {
-                    response.append(wine.toString()).append("\n\n");
-                }
-                return new SendMessage(String.valueOf(cId), response.toString());
+                List<RenderCache.Fragment> fragments = wines.stream().map(renderCache::wine).toList();
+                String text = RenderCache.join("Вина типа " + russianType + ":\n\n", fragments, RenderCache.MESSAGE_LIMIT);
+                return markdownMessage(String.valueOf(cId), text);
             } catch (Exception e) {
                 return new SendMessage(String.valueOf(cId),
-                        "Ошибка при получении списка вин: " + e.getMessage());
+                        TraceLog.userError("Ошибка при получении списка вин", e));
             }
         };
     }
 
     private static Command handleUserState(String state, long chatId, String input) {
         if ("CONFIRM_FAVORITE".equals(state)) {
-            userStates.remove(chatId);
+            return confirmFavorite(chatId, "да".equalsIgnoreCase(input));
+        }
+        return new UnknownCommand();
+    }
+
+    /**
+     * Ответ на предложение добавить оцененное сочетание в избранное.
+     * Ожидание ответа и контекст сочетания читаются при выполнении команды, в очереди сообщений чата.
+     * @param yes добавить ли сочетание
+     */
+    private static Command confirmFavorite(long chatId, boolean yes) {
+        return (cId, ignored) -> {
+            userStates.clear(chatId);
             PairingContext context = pairingContexts.get(chatId);
             if (context == null) {
-                return (cId, ignored) -> {
-                    SendMessage msg = new SendMessage(String.valueOf(cId),
-                            "Ошибка: контекст сочетания утерян");
-                    msg.setReplyMarkup(createMainKeyboard());
-                    return msg;
-                };
+                SendMessage msg = new SendMessage(String.valueOf(cId),
+                        "Ошибка: контекст сочетания утерян");
+                msg.setReplyMarkup(createMainKeyboard());
+                return msg;
+            }
+            if (!yes) {
+                pairingContexts.clear(chatId);
+                SendMessage message = new SendMessage(String.valueOf(cId),
+                        "Хорошо, сочетание не было сохранено.");
+                message.setReplyMarkup(createMainKeyboard());
+                return message;
             }
 
-            if ("да".equalsIgnoreCase(input)) {
-                try {
-                    String dishDescription = context.getDish().getName() + " - " + context.getDish().toString();
-                    ExcelFavoritesManager.PairingAddResult result = ExcelFavoritesManager.addFavorite(
-                            context.getWineName(),
-                            dishDescription);
-
-                    SendMessage message = new SendMessage(String.valueOf(chatId), result.getMessage());
-                    message.setParseMode("Markdown");
-                    message.setReplyMarkup(createMainKeyboard());
+            // Запись в избранное выполняется в пуле команд: поток получения
+            // обновлений не должен ждать блокировки файла избранного
+            try {
+                Dish dish = context.getDish();
+                if (dish == null) {
+                    return staleRating(chatId, cId);
+                }
+                String dishDescription = dish.getName() + " - " + dish;
+                ExcelFavoritesManager.PairingAddResult result = ExcelFavoritesManager.addFavorite(
+                        chatId,
+                        context.getWineName(),
+                        dishDescription);
 
-                    // Удаляем контекст только если добавление успешно
-                    if (result.isSuccess()) {
-                        pairingContexts.remove(chatId);
-                    }
+                SendMessage message = new SendMessage(String.valueOf(cId), result.getMessage());
+                message.setParseMode("Markdown");
+                message.setReplyMarkup(createMainKeyboard());
 
-                    return (cId, ignored2) -> message;
-                } catch (Exception e) {
-                    return (cId, ignored2) -> {
-                        SendMessage msg = new SendMessage(String.valueOf(cId),
-                                "❌ Ошибка при добавлении в избранное: " + e.getMessage());
-                        msg.setReplyMarkup(createMainKeyboard());
-                        return msg;
-                    };
+                // Удаляем контекст только если добавление успешно
+                if (result.isSuccess()) {
+                    pairingContexts.clear(chatId);
                 }
-            } else {
-                pairingContexts.remove(chatId);
-                SendMessage message = new SendMessage(String.valueOf(chatId),
-                        "Хорошо, сочетание не было сохранено.");
-                message.setReplyMarkup(createMainKeyboard());
-                return (cId, ignored2) -> message;
+                return message;
+            } catch (Exception e) {
+                SendMessage msg = new SendMessage(String.valueOf(cId),
+                        TraceLog.userError("❌ Ошибка при добавлении в избранное",
+                                "Ошибка при добавлении в избранное", e));
+                msg.setReplyMarkup(createMainKeyboard());
+                return msg;
             }
-        }
-        return new UnknownCommand();
+        };
     }
 
 
@@ -342,58 +1351,195 @@ public class CommandFactory {
         return keyboardMarkup;
     }
 
-    private static ReplyKeyboardMarkup createRatingKeyboard() {
+    private static ReplyKeyboardMarkup createYesNoKeyboard() {
         ReplyKeyboardMarkup keyboardMarkup = new ReplyKeyboardMarkup();
         keyboardMarkup.setResizeKeyboard(true);
         keyboardMarkup.setOneTimeKeyboard(true);
 
         List<KeyboardRow> keyboard = new ArrayList<>();
         KeyboardRow row = new KeyboardRow();
-        row.add("хорошо");
-        row.add("плохо");
+        row.add("Да");
+        row.add("Нет");
         keyboard.add(row);
 
         keyboardMarkup.setKeyboard(keyboard);
         return keyboardMarkup;
     }
 
-    private static ReplyKeyboardMarkup createYesNoKeyboard() {
-        ReplyKeyboardMarkup keyboardMarkup = new ReplyKeyboardMarkup();
-        keyboardMarkup.setResizeKeyboard(true);
-        keyboardMarkup.setOneTimeKeyboard(true);
+    private static InlineKeyboardMarkup createInlineRatingKeyboard() {
+        List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
+        keyboard.add(List.of(
+                inlineButton("👍 Хорошо", CallbackData.encode(CallbackData.Action.RATE, 1)),
+                inlineButton("👎 Плохо", CallbackData.encode(CallbackData.Action.RATE, 0))));
+        return new InlineKeyboardMarkup(keyboard);
+    }
 
-        List<KeyboardRow> keyboard = new ArrayList<>();
-        KeyboardRow row = new KeyboardRow();
-        row.add("Да");
-        row.add("Нет");
+    /**
+     * Кнопки выбора блюда для оценки под подобранными к вину сочетаниями.
+     * Кнопка хранит и блюдо, и вино сочетания: под название могут подойти несколько вин
+     * @param dishes подобранные блюда в порядке убывания оценки
+     * @param dishWineIds ID вина сочетания для каждого блюда, в том же порядке
+     * @return клавиатура с первыми блюдами списка
+     */
+    public static InlineKeyboardMarkup createRateDishKeyboard(List<Dish> dishes, List<Integer> dishWineIds) {
+        List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
+        for (int i = 0; i < Math.min(RATE_BUTTONS_LIMIT, dishes.size()); i++) {
+            Dish dish = dishes.get(i);
+            keyboard.add(List.of(inlineButton("⭐ Оценить: " + dish.getName(),
+                    CallbackData.encode(CallbackData.Action.RATE_DISH, dish.getId(), dishWineIds.get(i)))));
+        }
+        return new InlineKeyboardMarkup(keyboard);
+    }
+
+    /**
+     * Кнопки перелистывания: назад, номер страницы, вперед
+     */
+    private static InlineKeyboardMarkup createPageKeyboard(IntFunction<String> pageData, int page, int pages) {
+        List<InlineKeyboardButton> row = new ArrayList<>();
+        if (page > 0) {
+            row.add(inlineButton("◀", pageData.apply(page - 1)));
+        }
+        row.add(inlineButton((page + 1) + "/" + pages, CallbackData.encode(CallbackData.Action.NONE, 0)));
+        if (page < pages - 1) {
+            row.add(inlineButton("▶", pageData.apply(page + 1)));
+        }
+        List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
         keyboard.add(row);
+        return new InlineKeyboardMarkup(keyboard);
+    }
 
-        keyboardMarkup.setKeyboard(keyboard);
-        return keyboardMarkup;
+    /**
+     * Создает команду выбора категории блюд: кнопки категорий с числом блюд из индекса,
+     * без обращения к БД
+     */
+    private static Command createDishCategoriesCommand() {
+        return (cId, input) -> {
+            DishFacetIndex facets;
+            try {
+                facets = dishFacets();
+            } catch (SQLException e) {
+                return new SendMessage(String.valueOf(cId), TraceLog.userError("Ошибка при получении данных",
+                        "Ошибка при построении индекса категорий", e));
+            }
+            List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
+            List<InlineKeyboardButton> row = new ArrayList<>();
+            for (Map.Entry<Dish.DishCategory, Integer> facet : facets.counts().entrySet()) {
+                if (facet.getValue() == 0) {
+                    continue;
+                }
+                row.add(inlineButton(facet.getKey().name() + " (" + facet.getValue() + ")",
+                        CallbackData.encode(CallbackData.Action.DISH_CATEGORY, facet.getKey().ordinal(), 0)));
+                if (row.size() == 2) {
+                    keyboard.add(row);
+                    row = new ArrayList<>();
+                }
+            }
+            if (!row.isEmpty()) {
+                keyboard.add(row);
+            }
+            if (keyboard.isEmpty()) {
+                return new SendMessage(String.valueOf(cId), "Список пуст");
+            }
+            keyboard.add(List.of(inlineButton("Все блюда (" + facets.size() + ")",
+                    CallbackData.encode(CallbackData.Action.DISHES_PAGE, 0))));
+
+            SendMessage message = new SendMessage(String.valueOf(cId), "Выберите категорию блюд:");
+            message.setReplyMarkup(new InlineKeyboardMarkup(keyboard));
+            return message;
+        };
     }
 
-    private static <T> Command createListCommand(
-            String header,
+    /**
+     * Создает команду вывода страницы блюд категории: ID блюд страницы берутся из индекса,
+     * из хранилища загружаются только они
+     * @param category категория блюд
+     * @param page номер страницы с нуля (за пределами списка — последняя страница)
+     */
+    private static Command createDishCategoryCommand(Dish.DishCategory category, int page) {
+        return (cId, input) -> {
+            try {
+                DishFacetIndex facets = dishFacets();
+                int total = facets.counts().get(category);
+                if (total == 0) {
+                    return new SendMessage(String.valueOf(cId), "В категории " + category.name() + " нет блюд");
+                }
+                int pages = (total + PAGE_SIZE - 1) / PAGE_SIZE;
+                int current = Math.max(0, Math.min(page, pages - 1));
+                List<Dish> dishes = dishes().getDishesByIds(facets.page(category, current * PAGE_SIZE, PAGE_SIZE));
+                List<RenderCache.Fragment> fragments = dishes.stream().map(renderCache::dish).toList();
+                String header = category.name() + " (" + total + ")" +
+                        (pages > 1 ? ", стр. " + (current + 1) + " из " + pages : "") + ":\n";
+                SendMessage message = markdownMessage(String.valueOf(cId),
+                        RenderCache.join(header, fragments, RenderCache.MESSAGE_LIMIT));
+                InlineKeyboardMarkup keyboard = pages > 1
+                        ? createPageKeyboard(p -> CallbackData.encode(
+                                CallbackData.Action.DISH_CATEGORY, category.ordinal(), p), current, pages)
+                        : new InlineKeyboardMarkup(new ArrayList<>());
+                keyboard.getKeyboard().add(List.of(inlineButton("◀ Категории",
+                        CallbackData.encode(CallbackData.Action.DISH_CATEGORIES, 0))));
+                message.setReplyMarkup(keyboard);
+                return message;
+            } catch (Exception e) {
+                return new SendMessage(String.valueOf(cId),
+                        TraceLog.userError("Ошибка при получении данных",
+                                "Ошибка при получении блюд категории " + category.name(), e));
+            }
+        };
+    }
+
+    private static InlineKeyboardButton inlineButton(String text, String callbackData) {
+        InlineKeyboardButton button = new InlineKeyboardButton(text);
+        button.setCallbackData(callbackData);
+        return button;
+    }
+
+    /**
+     * Создает команду вывода одной страницы списка с кнопками перелистывания
+     * @param title заголовок списка
+     * @param supplier источник всех записей
+     * @param formatter текстовый фрагмент записи
+     * @param action действие кнопок перелистывания
+     * @param page номер страницы с нуля (за пределами списка — последняя страница)
+     */
+    private static <T> Command createPagedListCommand(
+            String title,
             ThrowingSupplier<List<T>> supplier,
-            Function<T, String> formatter) {
+            Function<T, RenderCache.Fragment> formatter,
+            CallbackData.Action action,
+            int page) {
         return (cId, input) -> {
             try {
                 List<T> items = supplier.get();
                 if (items.isEmpty()) {
                     return new SendMessage(String.valueOf(cId), "Список пуст");
                 }
-                StringBuilder response = new StringBuilder(header);
-                for (T item : items) {
-                    response.append(formatter.apply(item)).append("\n\n");
+                int pages = (items.size() + PAGE_SIZE - 1) / PAGE_SIZE;
+                int current = Math.max(0, Math.min(page, pages - 1));
+                List<RenderCache.Fragment> fragments = items
+                        .subList(current * PAGE_SIZE, Math.min(items.size(), (current + 1) * PAGE_SIZE))
+                        .stream().map(formatter).toList();
+                String header = pages > 1
+                        ? title + " (стр. " + (current + 1) + " из " + pages + "):\n"
+                        : title + ":\n";
+                SendMessage message = markdownMessage(String.valueOf(cId),
+                        RenderCache.join(header, fragments, RenderCache.MESSAGE_LIMIT));
+                if (pages > 1) {
+                    message.setReplyMarkup(createPageKeyboard(p -> CallbackData.encode(action, p), current, pages));
                 }
-                return new SendMessage(String.valueOf(cId), response.toString());
+                return message;
             } catch (Exception e) {
                 return new SendMessage(String.valueOf(cId),
-                        "Ошибка при получении данных: " + e.getMessage());
+                        TraceLog.userError("Ошибка при получении данных", e));
             }
         };
     }
 
+    private static SendMessage markdownMessage(String chatId, String text) {
+        SendMessage message = new SendMessage(chatId, text);
+        message.setParseMode("Markdown");
+        return message;
+    }
+
     @FunctionalInterface
     private interface ThrowingSupplier<T> {
         T get() throws Exception;
@@ -403,26 +1549,60 @@ public class CommandFactory {
      * Внутренний класс для хранения контекста текущего сочетания вина и блюда
      */
     public static class PairingContext {
+        private final int wineId;
         private final String wineName;
-        private final Dish dish;
+        private final int dishId;
+        // Блюдо читается из каталога при первом обращении, если контекст восстановлен из сессии
+        private volatile Dish dish;
         private final Date timestamp;
 
-        public PairingContext(String wineName, Dish dish) {
-            this.wineName = wineName;
+        /**
+         * @param wineId ID вина, к которому относится оценка сочетания
+         * @param wineName название вина, как его ввел пользователь
+         * @param dish блюдо сочетания
+         */
+        public PairingContext(int wineId, String wineName, Dish dish) {
+            this(wineId, wineName, dish.getId());
             this.dish = dish;
+        }
+
+        private PairingContext(int wineId, String wineName, int dishId) {
+            this.wineId = wineId;
+            this.wineName = wineName;
+            this.dishId = dishId;
             this.timestamp = new Date();
         }
 
+        public int getWineId() {
+            return wineId;
+        }
+
         public String getWineName() {
             return wineName;
         }
 
+        public int getDishId() {
+            return dishId;
+        }
+
+        /**
+         * @return блюдо сочетания или null, если оно удалено из каталога
+         */
         public Dish getDish() {
-            return dish;
+            Dish current = dish;
+            if (current == null) {
+                try {
+                    current = dishes().getDishById(dishId);
+                } catch (SQLException e) {
+                    throw new WineDAO.DataAccessException("Ошибка при получении блюда: " + dishId, e);
+                }
+                dish = current;
+            }
+            return current;
         }
 
         public Date getTimestamp() {
             return timestamp;
         }
     }
-}
\ No newline at end of file
+}
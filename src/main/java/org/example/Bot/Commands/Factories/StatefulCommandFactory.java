@@ -2,9 +2,10 @@ package org.example.Bot.Commands.Factories;
 
 import org.example.Bot.Commands.Command;
 import org.example.DAO.Dish;
-import org.example.DAO.DishDAO;
+import org.example.DAO.DishRepository;
 import org.example.DAO.Wine;
-import org.example.DAO.WineDAO;
+import org.example.DAO.WineRepository;
+import org.example.Tracing.TraceLog;
 import org.example.Utils.ExcelFavoritesManager;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 
@@ -21,15 +22,15 @@ public class StatefulCommandFactory {
      * Хранит состояния пользователей в формате chatId -> состояние
      */
     private static final Map<Long, String> userStates = new HashMap<>();
-    private static WineDAO wineDAO;
-    private static DishDAO dishDAO;
+    private static WineRepository wineDAO;
+    private static DishRepository dishDAO;
 
     /**
      * Инициализирует DAO объекты для работы с винами и блюдами
      * @param wineDAO DAO для работы с винами
      * @param dishDAO DAO для работы с блюдами
      */
-    public static void initialize(WineDAO wineDAO, DishDAO dishDAO) {
+    public static void initialize(WineRepository wineDAO, DishRepository dishDAO) {
         StatefulCommandFactory.wineDAO = wineDAO;
         StatefulCommandFactory.dishDAO = dishDAO;
     }
@@ -55,12 +56,12 @@ public class StatefulCommandFactory {
                                 try {
                                     List<Wine> wines = wineDAO.findWinesByName(wineName);
                                     if (!wines.isEmpty()) {
-                                        ExcelFavoritesManager.addFavorite(wines.get(0).getName(), "Wine");
+                                        ExcelFavoritesManager.addFavorite(chatId, wines.get(0).getName(), "Wine");
                                         return "Вино добавлено в избранное: " + wines.get(0).getName();
                                     }
                                     return "Вино не найдено";
                                 } catch (Exception e) {
-                                    return "Ошибка: " + e.getMessage();
+                                    return TraceLog.userError("Ошибка при добавлении в избранное", e);
                                 }
                             }
                     );
@@ -73,12 +74,12 @@ public class StatefulCommandFactory {
                                             .filter(d -> d.getName().equalsIgnoreCase(dishName))
                                             .toList();
                                     if (!dishes.isEmpty()) {
-                                        ExcelFavoritesManager.addFavorite(dishes.get(0).getName(), "Dish");
+                                        ExcelFavoritesManager.addFavorite(chatId, dishes.get(0).getName(), "Dish");
                                         return "Блюдо добавлено в избранное: " + dishes.get(0).getName();
                                     }
                                     return "Блюдо не найдено";
                                 } catch (Exception e) {
-                                    return "Ошибка: " + e.getMessage();
+                                    return TraceLog.userError("Ошибка при добавлении в избранное", e);
                                 }
                             }
                     );
@@ -1,49 +1,83 @@
 package org.example.Bot.Commands;
 
 import org.example.Bot.Commands.Factories.CommandFactory;
+import org.example.Cache.CatalogRenderer;
+import org.example.Cache.PairingCache;
+import org.example.Cache.RenderCache;
 import org.example.DAO.Dish;
-import org.example.DAO.DishDAO;
-import org.example.DAO.WineDAO;
+import org.example.DAO.TopPairings;
+import org.example.DAO.Wine;
+import org.example.DAO.WineRepository;
+import org.example.Recommendations.PairingRecommender;
+import org.example.Tracing.TraceLog;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
-import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
 
-import static org.example.Bot.Commands.Factories.CommandFactory.createMainKeyboard;
+import static org.example.Bot.Commands.Factories.CommandFactory.createRateDishKeyboard;
 
 /**
  * Команда для подбора сочетаний блюд к указанному вину.
- * Реализует интерфейс Command для обработки запросов на подбор сочетаний.
+ * Реализует интерфейсы Command и AsyncCommand для обработки запросов на подбор сочетаний.
  */
-public class PairCommand implements Command {
-    // DAO для работы с винами
-    private final WineDAO wineDAO;
-    // DAO для работы с блюдами
-    private final DishDAO dishDAO;
+public class PairCommand implements Command, AsyncCommand {
+    // Сколько рекомендаций по оценкам других пользователей показывать
+    private static final int SUGGESTIONS_LIMIT = 3;
+    // Хранилище вин
+    private final WineRepository wineDAO;
     // Название вина, для которого подбираются сочетания
     private final String wineName;
     // ID чата пользователя
     private final long chatId;
-    // Коллекция для хранения контекстов текущих сочетаний
-    private final Map<Long, CommandFactory.PairingContext> pairingContexts;
+    // Сохранение контекста текущего сочетания по ID чата
+    private final BiConsumer<Long, CommandFactory.PairingContext> pairingContexts;
+    // Пул для запросов к DAO
+    private final Executor executor;
+    // Кэш результатов подбора по названию вина
+    private final PairingCache cache;
+    private final String cacheKey;
 
     /**
      * Конструктор команды подбора сочетаний
-     * @param wineDAO DAO для работы с винами
-     * @param dishDAO DAO для работы с блюдами
+     * @param wineDAO хранилище вин (DAO или встроенный каталог)
+     * @param cache кэш результатов подбора по названию вина
      * @param wineName название вина для подбора сочетаний
      * @param chatId ID чата пользователя
-     * @param pairingContexts коллекция для хранения контекстов сочетаний
+     * @param pairingContexts сохранение контекста сочетания по ID чата
      */
-    public PairCommand(WineDAO wineDAO, DishDAO dishDAO, String wineName,
-                       long chatId, Map<Long, CommandFactory.PairingContext> pairingContexts) {
+    public PairCommand(WineRepository wineDAO, PairingCache cache, String wineName,
+                       long chatId, BiConsumer<Long, CommandFactory.PairingContext> pairingContexts) {
+        this(wineDAO, cache, wineName, chatId, pairingContexts, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Конструктор команды подбора сочетаний с пулом для асинхронного выполнения
+     * @param wineDAO хранилище вин (DAO или встроенный каталог)
+     * @param cache кэш результатов подбора по названию вина
+     * @param wineName название вина для подбора сочетаний
+     * @param chatId ID чата пользователя
+     * @param pairingContexts сохранение контекста сочетания по ID чата
+     * @param executor пул, в котором выполняются запросы к хранилищу
+     */
+    public PairCommand(WineRepository wineDAO, PairingCache cache, String wineName,
+                       long chatId, BiConsumer<Long, CommandFactory.PairingContext> pairingContexts,
+                       Executor executor) {
         this.wineDAO = wineDAO;
-        this.dishDAO = dishDAO;
-        this.wineName = wineName;
+        this.wineName = PairingCache.key(wineName);
+        this.cacheKey = this.wineName;
+        this.cache = Objects.requireNonNull(cache, "Кэш сочетаний не может быть null");
         this.chatId = chatId;
         this.pairingContexts = pairingContexts;
+        this.executor = executor;
     }
 
     /**
@@ -55,53 +89,109 @@ public class PairCommand implements Command {
     @Override
     public SendMessage execute(String chatId, String input) {
         try {
-            // Получаем список названий блюд, сочетающихся с вином
-            List<String> pairingNames = wineDAO.findPairings(wineName);
-
-            // Преобразуем названия блюд в объекты Dish
-            List<Dish> pairings = pairingNames.stream()
-                    .map(dishName -> {
-                        try {
-                            // Ищем блюдо по названию
-                            return dishDAO.getAllDishes().stream()
-                                    .filter(d -> d.getName().equalsIgnoreCase(dishName))
-                                    .findFirst()
-                                    .orElse(null);
-                        } catch (Exception e) {
-                            return null;
-                        }
-                    })
-                    .filter(Objects::nonNull) // Фильтруем null-значения
-                    .toList();
-
-            // Если сочетаний не найдено
-            if (pairings.isEmpty()) {
-                return new SendMessage(chatId, "Не найдено подходящих блюд для вина: " + wineName);
+            PairingCache.Entry cached = cache.get(cacheKey);
+            if (cached != null) {
+                return createResponse(chatId, cached.getDishes(), cached.getDishWineIds());
             }
+            long generation = cache.generation();
+            return cacheAndRespond(chatId, wineDAO.findTopPairings(wineName), generation);
+        } catch (Exception e) {
+            // В случае ошибки возвращаем сообщение об ошибке
+            return createErrorResponse(chatId, e);
+        }
+    }
 
-            // Формируем ответ с найденными сочетаниями
-            StringBuilder response = new StringBuilder("🍷 *Подобранные сочетания для " + wineName + ":*\n\n");
-            for (Dish dish : pairings) {
-                response.append("🍽 *").append(dish.getName()).append("*\n")
-                        .append(dish.toString()).append("\n\n");
-            }
+    /**
+     * Выполняет подбор сочетаний асинхронно: запрос вин по названию вместе с их
+     * лучшими сочетаниями выполняется в пуле, не занимая поток диспетчера
+     * @param chatId ID чата для отправки ответа
+     * @param input ввод пользователя (не используется)
+     * @return стадия, завершающаяся сообщением с результатами подбора
+     */
+    @Override
+    public CompletionStage<SendMessage> executeAsync(String chatId, String input) {
+        PairingCache.Entry cached = cache.get(cacheKey);
+        if (cached != null) {
+            // Ответ из кэша собирается без обращений к хранилищу, поток пула не нужен
+            return CompletableFuture.completedFuture(
+                    createResponse(chatId, cached.getDishes(), cached.getDishWineIds()));
+        }
+        long generation = cache.generation();
+        return CompletableFuture.supplyAsync(() -> wineDAO.findTopPairings(wineName), executor)
+                .thenApplyAsync(found -> cacheAndRespond(chatId, found, generation), executor)
+                .exceptionally(e -> createErrorResponse(chatId, e.getCause() != null ? e.getCause() : e));
+    }
+
+    /**
+     * Сохраняет результат в кэш вместе с винами, подходящими под название:
+     * по их ID кэш сбрасывается при изменении сочетаний любого из них
+     * @param found вина, подходящие под название, и объединение их лучших блюд
+     */
+    private SendMessage cacheAndRespond(String chatId, TopPairings found, long generation) {
+        Set<Integer> ids = new HashSet<>();
+        for (Wine wine : found.getWines()) {
+            ids.add(wine.getId());
+        }
+        cache.put(cacheKey, found.getDishes(), ids, found.getDishWineIds(), generation);
+        return createResponse(chatId, found.getDishes(), found.getDishWineIds());
+    }
 
-            // Сохраняем контекст текущего сочетания
-            pairingContexts.put(this.chatId,
-                    new CommandFactory.PairingContext(wineName, pairings.get(0)));
+    /**
+     * Формирует ответ по подобранным блюдам
+     * @param chatId ID чата для отправки ответа
+     * @param pairings подобранные блюда в порядке убывания оценки
+     * @param dishWineIds ID вина сочетания для каждого блюда: оценка блюда относится к этому вину
+     * @return SendMessage с результатами подбора сочетаний
+     */
+    private SendMessage createResponse(String chatId, List<Dish> pairings, List<Integer> dishWineIds) {
+        // Если сочетаний не найдено
+        if (pairings.isEmpty()) {
+            return new SendMessage(chatId, "Не найдено подходящих блюд для вина: " + wineName);
+        }
 
-            // Добавляем подсказку для оценки сочетания
-            response.append("Для оценки этого сочетания используйте команду /rate");
+        // Формируем ответ с найденными сочетаниями
+        RenderCache renderCache = CommandFactory.renderCache();
+        List<RenderCache.Fragment> fragments = new ArrayList<>(pairings.size());
+        for (Dish dish : pairings) {
+            fragments.add(renderCache.dish(dish));
+        }
 
-            // Создаем и настраиваем сообщение для отправки
-            SendMessage message = new SendMessage(chatId, response.toString());
-            message.setParseMode("Markdown"); // Включаем Markdown-разметку
-            message.setReplyMarkup(createMainKeyboard()); // Добавляем основную клавиатуру
-            return message;
+        // Подпись: рекомендации по оценкам других пользователей и подсказка для оценки
+        StringBuilder footer = new StringBuilder();
+        List<PairingRecommender.Suggestion> suggestions = CommandFactory.recommender()
+                .alsoLiked(wineName, pairings.get(0).getId(), SUGGESTIONS_LIMIT);
+        if (!suggestions.isEmpty()) {
+            footer.append("👥 *Тем, кому понравилось это сочетание, также понравились:*\n");
+            for (PairingRecommender.Suggestion suggestion : suggestions) {
+                footer.append("🍷 ").append(CatalogRenderer.escape(suggestion.getWineName()))
+                        .append(" + ").append(CatalogRenderer.escape(suggestion.getDishName())).append("\n");
+            }
+            footer.append("\n");
+        }
+        footer.append("Чтобы оценить сочетание, выберите блюдо кнопкой ниже или используйте команду /rate");
 
-        } catch (Exception e) {
-            // В случае ошибки возвращаем сообщение об ошибке
-            return new SendMessage(chatId, "Ошибка при поиске сочетаний: " + e.getMessage());
+        String header = "🍷 *Подобранные сочетания для " + CatalogRenderer.escape(wineName) + ":*\n\n";
+        StringBuilder response = new StringBuilder(
+                RenderCache.join(header, fragments, RenderCache.MESSAGE_LIMIT - footer.length() - 2));
+
+        // Сохраняем контекст текущего сочетания
+        pairingContexts.accept(this.chatId,
+                new CommandFactory.PairingContext(dishWineIds.get(0), wineName, pairings.get(0)));
+
+        if (response.charAt(response.length() - 1) != '\n') {
+            response.append("\n\n");
         }
+        response.append(footer);
+
+        // Создаем и настраиваем сообщение для отправки
+        SendMessage message = new SendMessage(chatId, response.toString());
+        message.setParseMode("Markdown"); // Включаем Markdown-разметку
+        message.setReplyMarkup(createRateDishKeyboard(pairings, dishWineIds)); // Кнопки выбора блюда для оценки
+        return message;
+    }
+
+    private SendMessage createErrorResponse(String chatId, Throwable e) {
+        return new SendMessage(chatId,
+                TraceLog.userError("Ошибка при поиске сочетаний", "Ошибка при поиске сочетаний для вина " + wineName, e));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,23 @@
+package org.example.Bot;
+
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+/**
+ * Отправка сообщений вне цикла "запрос — ответ":
+ * нужна командам, результат которых готовится в фоне.
+ */
+public interface MessageSender {
+    /**
+     * Отправляет текстовое сообщение
+     * @param message сообщение
+     */
+    void sendMessage(SendMessage message) throws TelegramApiException;
+
+    /**
+     * Отправляет документ
+     * @param document документ
+     */
+    void sendDocument(SendDocument document) throws TelegramApiException;
+}
@@ -3,12 +3,30 @@ package org.example.Bot;
 import org.example.Bot.Commands.Command;
 import org.example.Bot.Commands.Factories.CommandFactory;
 import org.example.Bot.Commands.StartCommand;
+import org.example.Cluster.ClusterRouter;
+import org.example.Search.NameAutocomplete;
+import org.example.Tracing.TraceContext;
+import org.example.Tracing.TraceLog;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.AnswerInlineQuery;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.InlineQuery;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.inputmessagecontent.InputTextMessageContent;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.result.InlineQueryResult;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.result.InlineQueryResultArticle;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardRow;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
@@ -20,9 +38,15 @@ import java.util.*;
  * Основной класс Telegram бота для подбора сочетаний вина и блюд.
  */
 public class WinePairingBot extends TelegramLongPollingBot {
+    // Подсказок в ответе на inline-запрос и время их кэширования на стороне Telegram
+    private static final int INLINE_RESULTS_LIMIT = 10;
+    private static final int INLINE_CACHE_SECONDS = 30;
+
     private final String botToken;
     private final String botUsername;
-    private final Map<Long, Boolean> ageVerifiedUsers = new HashMap<>();
+    private final CommandDispatcher dispatcher = new CommandDispatcher();
+    // Распределение чатов между узлами; null — бот работает один
+    private volatile ClusterRouter cluster;
 
     /**
      * Конструктор бота
@@ -30,8 +54,38 @@ public class WinePairingBot extends TelegramLongPollingBot {
      * @param botUsername имя бота
      */
     public WinePairingBot(String botToken, String botUsername) {
+        this(botToken, botUsername, new DefaultBotOptions());
+    }
+
+    /**
+     * Конструктор бота с настройками подключения к Bot API
+     * @param botToken токен бота
+     * @param botUsername имя бота
+     * @param options настройки (адрес Bot API, таймауты long polling)
+     */
+    public WinePairingBot(String botToken, String botUsername, DefaultBotOptions options) {
+        super(options);
         this.botToken = Objects.requireNonNull(botToken, "Токен бота не может быть null");
         this.botUsername = Objects.requireNonNull(botUsername, "Имя бота не может быть null");
+        CommandFactory.registerSender(new MessageSender() {
+            @Override
+            public void sendMessage(SendMessage message) throws TelegramApiException {
+                execute(message);
+            }
+
+            @Override
+            public void sendDocument(SendDocument document) throws TelegramApiException {
+                // Отправка документа в DefaultAbsSender финальна, поэтому спан открывается здесь
+                try (TraceContext.Span span = TraceContext.span("telegram.sendDocument")) {
+                    try {
+                        execute(document);
+                    } catch (TelegramApiException | RuntimeException e) {
+                        span.fail(e);
+                        throw e;
+                    }
+                }
+            }
+        });
     }
 
     @Override
@@ -44,13 +98,49 @@ public class WinePairingBot extends TelegramLongPollingBot {
         return botToken;
     }
 
+    /**
+     * Включает распределение чатов между узлами: обновления чужих чатов пересылаются владельцам
+     * @param router маршрутизатор кластера
+     */
+    public void useCluster(ClusterRouter router) {
+        this.cluster = router;
+    }
+
     @Override
     public void onUpdateReceived(Update update) {
+        ClusterRouter router = cluster;
+        if (router != null && router.forwardIfRemote(update)) {
+            return;
+        }
+        handleUpdate(update);
+    }
+
+    /**
+     * Обрабатывает обновление на этом узле (в том числе пересланное другим узлом кластера)
+     * @param update обновление Telegram
+     */
+    public void handleUpdate(Update update) {
+        if (update.hasInlineQuery()) {
+            answerInlineQuery(update.getInlineQuery());
+            return;
+        }
+        if (update.hasChosenInlineQuery()) {
+            CommandFactory.autocomplete().recordChoice(update.getChosenInlineQuery().getResultId());
+            return;
+        }
+        if (update.hasCallbackQuery() && update.getCallbackQuery().getMessage() != null) {
+            handleCallbackQuery(update.getUpdateId(), update.getCallbackQuery());
+            return;
+        }
         if (update.hasMessage() && update.getMessage().hasText()) {
             long chatId = update.getMessage().getChatId();
             String messageText = update.getMessage().getText();
+            // Контекст трассировки живет до отправки ответа; для асинхронных команд
+            // он завершается в потоке, отправившем ответ
+            TraceContext trace = TraceContext.start(update.getUpdateId(), chatId, messageText);
+            boolean dispatched = false;
 
-            try {
+            try (TraceContext.Scope ignored = trace.attach()) {
                 // Обработка команды /start (всегда запрашиваем возраст)
                 if ("/start".equalsIgnoreCase(messageText)) {
                     SendMessage message = new SendMessage();
@@ -80,7 +170,7 @@ public class WinePairingBot extends TelegramLongPollingBot {
                 }
 
                 // Если это не /start и не дата рождения - проверяем возраст
-                if (!ageVerifiedUsers.getOrDefault(chatId, false)) {
+                if (!CommandFactory.sessions().get(chatId).isAgeVerified()) {
                     SendMessage message = new SendMessage();
                     message.setChatId(String.valueOf(chatId));
                     message.setText("⚠️ Пожалуйста, сначала подтвердите ваш возраст, используя команду /start");
@@ -88,26 +178,147 @@ public class WinePairingBot extends TelegramLongPollingBot {
                     return;
                 }
 
-                // Основная логика обработки команд
-                Command command = CommandFactory.getCommand(messageText, chatId);
-                SendMessage response = command.execute(String.valueOf(chatId), messageText);
-                execute(response);
+                // Основная логика обработки команд: команда выполняется асинхронно,
+                // поток получения обновлений не ждет обращений к БД, а сообщения чата
+                // обрабатываются по очереди
+                dispatcher.dispatchInOrder(String.valueOf(chatId),
+                        () -> CommandFactory.getCommand(messageText, chatId), messageText,
+                        response -> {
+                            try (TraceContext.Scope scope = trace.attach()) {
+                                sendResponse(chatId, response);
+                            } finally {
+                                trace.finish();
+                            }
+                        });
+                dispatched = true;
 
             } catch (TelegramApiException e) {
+                trace.recordError(e);
+                TraceLog.error("Ошибка при отправке сообщения", e);
                 sendErrorMessage(chatId, "Ошибка при отправке сообщения");
-                e.printStackTrace();
             } catch (Exception e) {
-                sendErrorMessage(chatId, "Произошла ошибка: " + e.getMessage());
-                e.printStackTrace();
+                trace.recordError(e);
+                TraceLog.error("Ошибка при обработке обновления", e);
+                sendErrorMessage(chatId, TraceLog.withTraceId("Произошла ошибка. Попробуйте позже.", trace));
+            } finally {
+                if (!dispatched) {
+                    trace.finish();
+                }
             }
         }
     }
 
+    /**
+     * Обрабатывает нажатие кнопки inline-клавиатуры: ответ команды заменяет
+     * текст и кнопки сообщения, в котором нажата кнопка, вместо отправки нового сообщения
+     */
+    private void handleCallbackQuery(int updateId, CallbackQuery query) {
+        long chatId = query.getMessage().getChatId();
+        int messageId = query.getMessage().getMessageId();
+        TraceContext trace = TraceContext.start(updateId, chatId, query.getData());
+        boolean dispatched = false;
+
+        try (TraceContext.Scope ignored = trace.attach()) {
+            // Telegram показывает индикатор загрузки на кнопке, пока не получит ответ
+            AnswerCallbackQuery answer = new AnswerCallbackQuery(query.getId());
+            boolean verified = CommandFactory.sessions().get(chatId).isAgeVerified();
+            if (!verified) {
+                answer.setText("Сначала подтвердите ваш возраст командой /start");
+                answer.setShowAlert(true);
+            }
+            execute(answer);
+
+            if (!verified) {
+                return;
+            }
+            // Команда создается в очереди сообщений чата: она видит состояние,
+            // оставленное предыдущими сообщениями и нажатиями
+            dispatcher.dispatchInOrder(String.valueOf(chatId),
+                    () -> CommandFactory.getCallbackCommand(query.getData(), chatId), query.getData(),
+                    response -> {
+                        try (TraceContext.Scope scope = trace.attach()) {
+                            execute(toEdit(response, messageId));
+                        } catch (TelegramApiException e) {
+                            // Например, сообщение уже удалено или не изменилось
+                            TraceLog.error("Ошибка при изменении сообщения", e);
+                        } finally {
+                            trace.finish();
+                        }
+                    });
+            dispatched = true;
+        } catch (TelegramApiException | RuntimeException e) {
+            trace.recordError(e);
+            TraceLog.error("Ошибка при обработке нажатия кнопки", e);
+        } finally {
+            if (!dispatched) {
+                trace.finish();
+            }
+        }
+    }
+
+    /**
+     * Превращает ответ команды в редактирование сообщения. Редактируемому сообщению
+     * можно задать только inline-кнопки, обычная клавиатура отбрасывается.
+     */
+    static EditMessageText toEdit(SendMessage response, int messageId) {
+        EditMessageText edit = new EditMessageText(response.getText());
+        edit.setChatId(response.getChatId());
+        edit.setMessageId(messageId);
+        edit.setParseMode(response.getParseMode());
+        if (response.getReplyMarkup() instanceof InlineKeyboardMarkup keyboard) {
+            edit.setReplyMarkup(keyboard);
+        }
+        return edit;
+    }
+
+    /**
+     * Отвечает на inline-запрос подсказками из индекса в памяти: ответ должен уложиться
+     * в бюджет Telegram, поэтому к БД здесь не обращаемся. Выбранная подсказка
+     * отправляется в чат командой /pair или /dish.
+     */
+    private void answerInlineQuery(InlineQuery query) {
+        try {
+            List<InlineQueryResult> results = new ArrayList<>();
+            for (NameAutocomplete.Suggestion suggestion
+                    : CommandFactory.autocomplete().suggest(query.getQuery(), INLINE_RESULTS_LIMIT)) {
+                String command = suggestion.getKind() == NameAutocomplete.Kind.WINE ? "/pair " : "/dish ";
+                InlineQueryResultArticle article = new InlineQueryResultArticle();
+                article.setId(suggestion.key());
+                article.setTitle(suggestion.getName());
+                article.setDescription(suggestion.getDetails());
+                article.setInputMessageContent(new InputTextMessageContent(command + suggestion.getName()));
+                results.add(article);
+            }
+            AnswerInlineQuery answer = new AnswerInlineQuery(query.getId(), results);
+            answer.setCacheTime(INLINE_CACHE_SECONDS);
+            execute(answer);
+        } catch (TelegramApiException | RuntimeException e) {
+            TraceLog.error("Ошибка при ответе на inline-запрос", e);
+        }
+    }
+
+    /**
+     * Отправляет запрос к Bot API, записывая его длительность в текущий контекст трассировки
+     */
+    @Override
+    public <T extends Serializable, Method extends BotApiMethod<T>> T execute(Method method)
+            throws TelegramApiException {
+        try (TraceContext.Span span = TraceContext.span("telegram." + method.getMethod())) {
+            try {
+                return super.execute(method);
+            } catch (TelegramApiException | RuntimeException e) {
+                span.fail(e);
+                throw e;
+            }
+        }
+    }
+
+
     public boolean isUserAdult(String input, Update update) {  // Добавляем параметр Update
-        // Если input - это chatId (число), проверяем в карте ageVerifiedUsers
+        // Если input - это chatId (число), проверяем подтверждение возраста в сессии
         try {
             long chatId = Long.parseLong(input);
-            return ageVerifiedUsers.getOrDefault(chatId, false);
+            return CommandFactory.sessions().get(chatId).isAgeVerified();
         } catch (NumberFormatException e) {
             // Если input не число, значит это дата рождения в формате ДД.ММ.ГГГГ
             try {
@@ -124,9 +335,10 @@ public class WinePairingBot extends TelegramLongPollingBot {
                     age--;
                 }
 
-                // Если возраст подтвержден, сохраняем в карту
+                // Если возраст подтвержден, сохраняем в сессии
                 if (age >= 18) {
-                    ageVerifiedUsers.put(update.getMessage().getChatId(), true);
+                    CommandFactory.sessions().update(update.getMessage().getChatId(),
+                            session -> session.withAgeVerified(true));
                 }
 
                 return age >= 18;
@@ -147,15 +359,18 @@ public class WinePairingBot extends TelegramLongPollingBot {
             String welcomeText = "🍷 *Добро пожаловать!* 🍽\n\n" +
                     "Я помогу вам подобрать идеальные сочетания вин и блюд.\n\n" +
                     "*Основные команды:*\n" +
-                    "/pair - подобрать сочетания для вина\n" +
+                    "/pair [вино] - подобрать сочетания для вина\n" +
                     "/red - красные вина\n" +
                     "/white - белые вина\n" +
                     "/rose - розовые вина\n" +
                     "/dessert - десертные вина\n" +
                     "/wines - список всех вин\n" +
-                    "/dishes - список всех блюд\n" +
+                    "/dishes [категория] - блюда по категориям\n" +
+                    "/dish <блюдо> - подобрать вина к блюду\n" +
+                    "/search - поиск блюд по ингредиентам\n" +
                     "/rate - оценить текущее сочетание\n" +
                     "/favorites - избранные сочетания\n" +
+                    "/export - выгрузить избранное в Excel\n" +
                     "/help - справка\n\n" +
                     "Выберите действие:";
 
@@ -202,6 +417,18 @@ public class WinePairingBot extends TelegramLongPollingBot {
         return keyboardMarkup;
     }
 
+    /**
+     * Отправляет ответ команды, сообщая пользователю об ошибке отправки
+     */
+    private void sendResponse(long chatId, SendMessage response) {
+        try {
+            execute(response);
+        } catch (TelegramApiException e) {
+            TraceLog.error("Ошибка при отправке ответа", e);
+            sendErrorMessage(chatId, "Ошибка при отправке сообщения");
+        }
+    }
+
     /**
      * Отправляет сообщение об ошибке
      */
@@ -213,7 +440,7 @@ public class WinePairingBot extends TelegramLongPollingBot {
         try {
             execute(errorResponse);
         } catch (TelegramApiException e) {
-            e.printStackTrace();
+            TraceLog.error("Ошибка при отправке сообщения об ошибке", e);
         }
     }
 }
\ No newline at end of file
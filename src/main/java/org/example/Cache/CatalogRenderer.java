@@ -0,0 +1,64 @@
+package org.example.Cache;
+
+import org.example.DAO.Dish;
+import org.example.DAO.Wine;
+
+/**
+ * Формирует текстовое представление вин и блюд для сообщений с Markdown-разметкой.
+ * Повторяет формат Wine.toString() и Dish.toString(), но экранирует служебные
+ * символы Markdown в пользовательских данных, чтобы они не ломали разметку.
+ */
+public final class CatalogRenderer {
+
+    private CatalogRenderer() {
+    }
+
+    /**
+     * @return представление вина для сообщения с разметкой Markdown
+     */
+    public static String renderWine(Wine wine) {
+        return "*" + escape(wine.getName()) + "* (" + wine.getType() + ", " + wine.getVintage() + ")\n\n" +
+                "🔹 *Регион:* " + (wine.getRegion() != null ? escape(wine.getRegion()) : "не указан") + "\n" +
+                "🔹 *Танины:* " + wine.getTannins() + "/5\n" +
+                "🔹 *Кислотность:* " + wine.getAcidity() + "/5\n\n" +
+                (wine.getDescription() != null ? escape(wine.getDescription()) : "Описание отсутствует") + "\n" +
+                "------------";
+    }
+
+    /**
+     * @return представление блюда для сообщения с разметкой Markdown
+     */
+    public static String renderDish(Dish dish) {
+        return "*" + escape(dish.getName()) + "* (" + dish.getCategory() + ")\n\n" +
+                "⏱ *Время приготовления:* " + dish.getCookingTimeFormatted() + "\n" +
+                "🔹 *Жирность:* " + dish.getFatContent() + "/5\n" +
+                "🔹 *Белок:* " + dish.getProteinContent() + "/5\n\n" +
+                "🍽 *Ингредиенты:*\n" +
+                (dish.getIngredients() != null ? escape(dish.getIngredients()) : "не указаны") + "\n\n" +
+                "📝 *Рецепт:*\n" +
+                (dish.getRecipe() != null ? escape(dish.getRecipe()) : "Рецепт отсутствует") + "\n\n" +
+                "------------";
+    }
+
+    /**
+     * Экранирует служебные символы разметки Markdown (_ * ` [)
+     * @param text исходный текст
+     * @return текст, безопасный для вставки в сообщение с разметкой
+     */
+    public static String escape(String text) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '_' || c == '*' || c == '`' || c == '[') {
+                if (escaped == null) {
+                    escaped = new StringBuilder(text.length() + 8).append(text, 0, i);
+                }
+                escaped.append('\\');
+            }
+            if (escaped != null) {
+                escaped.append(c);
+            }
+        }
+        return escaped != null ? escaped.toString() : text;
+    }
+}
@@ -0,0 +1,220 @@
+package org.example.Cache;
+
+import org.example.DAO.CatalogListener;
+import org.example.DAO.Dish;
+import org.example.DAO.Pairing;
+import org.example.DAO.Wine;
+import org.example.Utils.Metrics;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Кэш результатов подбора блюд к вину для /pair.
+ *
+ * Ключ — введенное название вина без лишних пробелов; регистр сохраняется,
+ * потому что поиск вина в БД (LIKE) чувствителен к регистру. Хранятся подобранные
+ * блюда в порядке оценки, ID вин, подошедших под название, и для каждого блюда ID вина,
+ * с которым оно сочетается (к этому сочетанию относится оценка блюда). Пустой результат
+ * («не найдено», опечатки) хранится недолго, чтобы новое вино быстро стало доступно.
+ *
+ * Размер ограничен: при переполнении вытесняется запись, к которой дольше всего
+ * не обращались. Записи сбрасываются по уведомлениям каталога: изменение вина —
+ * весь кэш (вино может подойти под любое название), изменение блюда или сочетания —
+ * только записи, где они встречаются. Срок жизни обычных записей защищает
+ * от изменений, сделанных другими экземплярами бота.
+ */
+public class PairingCache implements CatalogListener {
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final LongSupplier clock;
+    // Доступ под монитором this; порядок обхода — от давно использованных к недавним
+    private final LinkedHashMap<String, Entry> entries;
+    // Увеличивается при каждом сбросе: результат, вычисленный до сброса, не сохраняется
+    private long generation;
+
+    /**
+     * Результат подбора для одного названия вина
+     */
+    public static final class Entry {
+        private final List<Dish> dishes;
+        private final Set<Integer> wineIds;
+        private final List<Integer> dishWineIds;
+        private final long expiresAt;
+
+        private Entry(List<Dish> dishes, Set<Integer> wineIds, List<Integer> dishWineIds, long expiresAt) {
+            this.dishes = dishes;
+            this.wineIds = wineIds;
+            this.dishWineIds = dishWineIds;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return подобранные блюда в порядке убывания оценки (пустой список — ничего не найдено)
+         */
+        public List<Dish> getDishes() {
+            return dishes;
+        }
+
+        /**
+         * @return ID вина сочетания для каждого блюда из {@link #getDishes()}, в том же порядке
+         */
+        public List<Integer> getDishWineIds() {
+            return dishWineIds;
+        }
+
+        private boolean contains(int dishId) {
+            for (Dish dish : dishes) {
+                if (dish.getId() == dishId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @param maxEntries максимальное число названий в кэше
+     * @param ttl срок жизни найденного результата
+     * @param negativeTtl срок жизни пустого результата
+     */
+    public PairingCache(int maxEntries, Duration ttl, Duration negativeTtl) {
+        this(maxEntries, ttl, negativeTtl, System::nanoTime);
+    }
+
+    /**
+     * @param maxEntries максимальное число названий в кэше
+     * @param ttl срок жизни найденного результата
+     * @param negativeTtl срок жизни пустого результата
+     * @param clock источник времени в наносекундах (в тестах — управляемый)
+     */
+    public PairingCache(int maxEntries, Duration ttl, Duration negativeTtl, LongSupplier clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Размер кэша должен быть положительным");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > PairingCache.this.maxEntries) {
+                    Metrics.counter("pair.cache.evicted").increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        Metrics.gauge("pair.cache.hit_ratio", PairingCache::hitRatio);
+    }
+
+    /**
+     * Приводит введенное название к ключу кэша: без пробелов по краям и повторных пробелов
+     */
+    public static String key(String wineName) {
+        return wineName.trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * @param key ключ ({@link #key(String)})
+     * @return сохраненный результат или null, если его нет или срок жизни истек
+     */
+    public synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt - clock.getAsLong() <= 0) {
+            entries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            Metrics.counter("pair.cache.miss").increment();
+        } else {
+            Metrics.counter(entry.dishes.isEmpty() ? "pair.cache.negative_hit" : "pair.cache.hit").increment();
+        }
+        return entry;
+    }
+
+    /**
+     * @return номер поколения кэша; передается в {@link #put}, чтобы не сохранить
+     * результат, устаревший из-за изменения каталога во время запроса
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Сохраняет результат подбора, если с начала запроса каталог не менялся
+     * @param key ключ ({@link #key(String)})
+     * @param dishes подобранные блюда в порядке убывания оценки
+     * @param wineIds ID вин, подошедших под название
+     * @param dishWineIds ID вина сочетания для каждого блюда, в том же порядке
+     * @param generation поколение кэша до запроса к хранилищу
+     */
+    public synchronized void put(String key, List<Dish> dishes, Set<Integer> wineIds, List<Integer> dishWineIds,
+                                 long generation) {
+        if (generation != this.generation) {
+            return;
+        }
+        long ttl = dishes.isEmpty() ? negativeTtlNanos : ttlNanos;
+        entries.put(key, new Entry(List.copyOf(dishes), Set.copyOf(wineIds), List.copyOf(dishWineIds),
+                clock.getAsLong() + ttl));
+    }
+
+    /**
+     * @return число названий в кэше
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Очищает кэш целиком
+     */
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    @Override
+    public void wineChanged(Wine wine) {
+        clear();
+    }
+
+    @Override
+    public void wineDeleted(int wineId) {
+        clear();
+    }
+
+    @Override
+    public synchronized void dishChanged(Dish dish) {
+        generation++;
+        entries.values().removeIf(entry -> entry.contains(dish.getId()));
+    }
+
+    @Override
+    public synchronized void dishDeleted(int dishId) {
+        generation++;
+        entries.values().removeIf(entry -> entry.contains(dishId));
+    }
+
+    /**
+     * Новое сочетание или изменение оценки меняет состав и порядок блюд
+     * для всех названий, под которые подходит вино
+     */
+    @Override
+    public synchronized void pairingChanged(Pairing pairing) {
+        generation++;
+        entries.values().removeIf(entry -> entry.wineIds.contains(pairing.getWineId()));
+    }
+
+    private static double hitRatio() {
+        long hits = Metrics.counter("pair.cache.hit").sum() + Metrics.counter("pair.cache.negative_hit").sum();
+        long total = hits + Metrics.counter("pair.cache.miss").sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
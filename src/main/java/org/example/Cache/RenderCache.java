@@ -0,0 +1,140 @@
+package org.example.Cache;
+
+import org.example.DAO.CatalogListener;
+import org.example.DAO.Dish;
+import org.example.DAO.Wine;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Кэш готовых текстовых фрагментов для вин и блюд.
+ * Фрагмент хранится по ID записи вместе с версией записи, по которой он отрисован:
+ * хранилище увеличивает версию при каждом изменении, поэтому фрагмент годится, пока
+ * версия переданной записи совпадает с его версией. Проверка не зависит от уведомлений,
+ * так что запись, измененная другим экземпляром бота, тоже отрисовывается заново;
+ * уведомления только освобождают память устаревших фрагментов.
+ */
+public class RenderCache implements CatalogListener {
+    /**
+     * Максимальная длина текста сообщения Telegram в UTF-16 символах
+     */
+    public static final int MESSAGE_LIMIT = 4096;
+
+    private final Map<Integer, Fragment> wines = new ConcurrentHashMap<>();
+    private final Map<Integer, Fragment> dishes = new ConcurrentHashMap<>();
+
+    /**
+     * Готовый фрагмент текста и его длина в UTF-16 символах
+     */
+    public static final class Fragment {
+        private final String text;
+        private final int version;
+
+        private Fragment(String text, int version) {
+            this.text = text;
+            this.version = version;
+        }
+
+        /**
+         * @return текст фрагмента с экранированной разметкой
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return длина текста в UTF-16 символах (так Telegram считает лимит сообщения)
+         */
+        public int getLength() {
+            return text.length();
+        }
+    }
+
+    /**
+     * @return фрагмент текста для вина
+     */
+    public Fragment wine(Wine wine) {
+        return lookup(wines, wine.getId(), wine.getVersion(), wine, CatalogRenderer::renderWine);
+    }
+
+    /**
+     * @return фрагмент текста для блюда
+     */
+    public Fragment dish(Dish dish) {
+        return lookup(dishes, dish.getId(), dish.getVersion(), dish, CatalogRenderer::renderDish);
+    }
+
+    /**
+     * Собирает сообщение из заголовка и фрагментов, не превышая лимит длины.
+     * Не поместившиеся фрагменты заменяются строкой с их количеством.
+     * @param header заголовок сообщения
+     * @param fragments фрагменты в порядке вывода
+     * @param limit максимальная длина сообщения в UTF-16 символах
+     * @return текст сообщения
+     */
+    public static String join(String header, List<Fragment> fragments, int limit) {
+        final String separator = "\n\n";
+        final int footerReserve = 40;
+
+        StringBuilder text = new StringBuilder(Math.min(limit, 1024)).append(header);
+        int shown = 0;
+        for (Fragment fragment : fragments) {
+            int length = text.length() + fragment.getLength() + separator.length();
+            boolean last = shown == fragments.size() - 1;
+            if (length > limit || (!last && length > limit - footerReserve)) {
+                break;
+            }
+            text.append(fragment.getText()).append(separator);
+            shown++;
+        }
+
+        if (shown < fragments.size()) {
+            text.append("…и еще ").append(fragments.size() - shown);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Удаляет все фрагменты (например, при замене хранилища: ID и версии другого каталога не совпадают)
+     */
+    public void clear() {
+        wines.clear();
+        dishes.clear();
+    }
+
+    @Override
+    public void wineChanged(Wine wine) {
+        wines.remove(wine.getId());
+    }
+
+    @Override
+    public void wineDeleted(int wineId) {
+        wines.remove(wineId);
+    }
+
+    @Override
+    public void dishChanged(Dish dish) {
+        dishes.remove(dish.getId());
+    }
+
+    @Override
+    public void dishDeleted(int dishId) {
+        dishes.remove(dishId);
+    }
+
+    private static <T> Fragment lookup(Map<Integer, Fragment> cache, int id, int version,
+                                       T entity, Function<T, String> renderer) {
+        Fragment cached = cache.get(id);
+        if (cached != null && cached.version == version) {
+            return cached;
+        }
+
+        Fragment rendered = new Fragment(renderer.apply(entity), version);
+        // Фрагмент, отрисованный по старой версии записи, не должен вытеснить более новый
+        cache.merge(id, rendered, (existing, fresh) -> existing.version > fresh.version ? existing : fresh);
+        return rendered;
+    }
+}
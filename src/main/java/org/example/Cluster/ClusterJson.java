@@ -0,0 +1,77 @@
+package org.example.Cluster;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.example.DAO.Session;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Формат сообщений между узлами: обновления Telegram в формате Bot API
+ * и сессии, передаваемые при перераспределении чатов
+ */
+final class ClusterJson {
+    static final String CONTENT_TYPE = "application/json; charset=utf-8";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private ClusterJson() {
+    }
+
+    static byte[] writeUpdate(Update update) throws IOException {
+        return MAPPER.writeValueAsBytes(update);
+    }
+
+    static Update readUpdate(byte[] json) throws IOException {
+        return MAPPER.readValue(json, Update.class);
+    }
+
+    static byte[] writeSessions(Collection<Session> sessions) throws IOException {
+        ArrayNode array = MAPPER.createArrayNode();
+        for (Session session : sessions) {
+            ObjectNode node = array.addObject();
+            node.put("chat_id", session.getChatId());
+            node.put("version", session.getVersion());
+            node.put("age_verified", session.isAgeVerified());
+            node.put("state", session.getState());
+            node.put("waiting_for_wine", session.isWaitingForWine());
+            node.put("pairing_wine", session.getPairingWine());
+            node.put("pairing_dish_id", session.getPairingDishId());
+            node.put("pairing_wine_id", session.getPairingWineId());
+        }
+        return MAPPER.writeValueAsBytes(array);
+    }
+
+    static List<Session> readSessions(byte[] json) throws IOException {
+        List<Session> sessions = new ArrayList<>();
+        for (JsonNode node : MAPPER.readTree(json)) {
+            JsonNode dishId = node.get("pairing_dish_id");
+            JsonNode wineId = node.get("pairing_wine_id");
+            sessions.add(new Session(
+                    node.get("chat_id").asLong(),
+                    node.get("version").asLong(),
+                    node.get("age_verified").asBoolean(),
+                    text(node, "state"),
+                    node.get("waiting_for_wine").asBoolean(),
+                    text(node, "pairing_wine"),
+                    dishId == null || dishId.isNull() ? null : dishId.asInt(),
+                    wineId == null || wineId.isNull() ? null : wineId.asInt()));
+        }
+        return sessions;
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+}
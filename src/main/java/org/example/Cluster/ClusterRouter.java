@@ -0,0 +1,271 @@
+package org.example.Cluster;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.example.DAO.Session;
+import org.example.Sessions.SessionStore;
+import org.example.Tracing.TraceLog;
+import org.example.Utils.Metrics;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Распределение чатов между узлами кластера.
+ *
+ * Каждый чат принадлежит одному узлу по кольцу согласованного хеширования, поэтому
+ * сессии и порядок сообщений чата обслуживает один узел. Обновление чужого чата
+ * пересылается узлу-владельцу по HTTP; пересылка к каждому узлу идет в одном потоке,
+ * так что сообщения одного чата приходят владельцу в исходном порядке.
+ * Если к владельцу не удалось подключиться, обновление обрабатывается на месте;
+ * при других ошибках владелец мог уже получить обновление, поэтому оно не
+ * обрабатывается повторно.
+ *
+ * Состав узлов периодически перечитывается; при его изменении сессии чатов,
+ * перешедших к другим узлам, передаются новым владельцам, чтобы их кэши оставались прогретыми.
+ */
+public class ClusterRouter implements AutoCloseable {
+    private static final int VIRTUAL_NODES = 128;
+    private static final MediaType JSON = MediaType.get(ClusterJson.CONTENT_TYPE);
+
+    private final String nodeId;
+    private final String url;
+    private final Membership membership;
+    private final SessionStore sessions;
+    private final Consumer<Update> localHandler;
+    private final String secret;
+    private final OkHttpClient client = new OkHttpClient.Builder()
+            .connectTimeout(Duration.ofSeconds(2))
+            .readTimeout(Duration.ofSeconds(10))
+            .build();
+    private final ScheduledExecutorService scheduler;
+    // Поток пересылки для каждого узла; доступ под монитором this
+    private final Map<String, ExecutorService> forwarders = new HashMap<>();
+
+    private volatile HashRing ring;
+    private volatile Map<String, String> urls;
+
+    /**
+     * @param nodeId ID этого узла
+     * @param url адрес HTTP-сервера этого узла
+     * @param membership состав узлов
+     * @param sessions хранилище сессий этого узла
+     * @param localHandler обработка обновления на этом узле
+     * @param secret общий секрет узлов (null — не передается)
+     */
+    public ClusterRouter(String nodeId, String url, Membership membership, SessionStore sessions,
+                         Consumer<Update> localHandler, String secret) {
+        this.nodeId = Objects.requireNonNull(nodeId, "ID узла не может быть null");
+        this.url = url;
+        this.membership = Objects.requireNonNull(membership, "Состав узлов не может быть null");
+        this.sessions = Objects.requireNonNull(sessions, "Хранилище сессий не может быть null");
+        this.localHandler = Objects.requireNonNull(localHandler, "Обработчик обновлений не может быть null");
+        this.secret = secret;
+        this.urls = Map.of(nodeId, url);
+        this.ring = new HashRing(List.of(nodeId), VIRTUAL_NODES);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-membership");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Читает состав узлов и запускает его периодическое обновление
+     * @param interval интервал между обновлениями состава
+     */
+    public void start(Duration interval) {
+        refreshQuietly();
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly,
+                interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param chatId ID чата
+     * @return ID узла-владельца чата
+     */
+    public String ownerOf(long chatId) {
+        return ring.ownerOf(chatId);
+    }
+
+    /**
+     * @return принадлежит ли чат этому узлу
+     */
+    public boolean isLocal(long chatId) {
+        return nodeId.equals(ring.ownerOf(chatId));
+    }
+
+    /**
+     * Пересылает обновление узлу-владельцу, если чат принадлежит другому узлу
+     * @param update обновление Telegram
+     * @return true, если обновление передано на пересылку и здесь не обрабатывается
+     */
+    public boolean forwardIfRemote(Update update) {
+        Long chatId = chatIdOf(update);
+        if (chatId == null) {
+            return false;
+        }
+        String owner = ring.ownerOf(chatId);
+        String ownerUrl = urls.get(owner);
+        if (nodeId.equals(owner) || ownerUrl == null) {
+            return false;
+        }
+        try {
+            forwarder(owner).execute(() -> forward(update, owner, ownerUrl));
+            return true;
+        } catch (RejectedExecutionException e) {
+            // Узел только что выбыл из кластера
+            return false;
+        }
+    }
+
+    private void forward(Update update, String owner, String ownerUrl) {
+        try {
+            post(ownerUrl + "/updates", ClusterJson.writeUpdate(update));
+            Metrics.counter("cluster.forwarded").increment();
+        } catch (IOException | RuntimeException e) {
+            Metrics.counter("cluster.forward.failed").increment();
+            TraceLog.error("Не удалось переслать обновление " + update.getUpdateId() + " узлу " + owner, e);
+            // Запрос не дошел до владельца: ответ пользователю важнее, чем привязка чата к узлу.
+            // После тайм-аута ответа или ошибки владельца обновление могло быть обработано там
+            if (isNotDelivered(e)) {
+                localHandler.accept(update);
+            }
+        }
+    }
+
+    /**
+     * @return true, если соединение с узлом не установлено и запрос ему не отправлен
+     */
+    static boolean isNotDelivered(Exception e) {
+        return e instanceof ConnectException || e instanceof NoRouteToHostException
+                || e instanceof UnknownHostException;
+    }
+
+    /**
+     * Перечитывает состав узлов и при его изменении перестраивает кольцо и передает сессии
+     */
+    public synchronized void refresh() {
+        Map<String, String> nodes = new LinkedHashMap<>(membership.nodes());
+        // Этот узел обслуживает свои чаты, даже если состав еще не обновился
+        nodes.putIfAbsent(nodeId, url);
+        if (nodes.equals(urls)) {
+            return;
+        }
+        HashRing next = new HashRing(nodes.keySet(), VIRTUAL_NODES);
+        ring = next;
+        urls = Map.copyOf(nodes);
+        forwarders.keySet().removeIf(node -> {
+            if (nodes.containsKey(node)) {
+                return false;
+            }
+            forwarders.get(node).shutdown();
+            return true;
+        });
+        TraceLog.info("Узел " + nodeId + ": состав кластера " + next.nodes());
+        handOff(next);
+    }
+
+    /**
+     * Передает сессии чатов, перешедших к другим узлам
+     */
+    private void handOff(HashRing next) {
+        List<Session> moved = sessions.release(chatId -> !nodeId.equals(next.ownerOf(chatId)));
+        Map<String, List<Session>> byOwner = new HashMap<>();
+        for (Session session : moved) {
+            byOwner.computeIfAbsent(next.ownerOf(session.getChatId()), owner -> new ArrayList<>()).add(session);
+        }
+        byOwner.forEach((owner, owned) -> {
+            try {
+                post(urls.get(owner) + "/sessions", ClusterJson.writeSessions(owned));
+                Metrics.counter("cluster.sessions.handed_off").add(owned.size());
+            } catch (IOException | RuntimeException e) {
+                // Сессии остаются здесь: новый владелец прочитает их из общего хранилища или получит позже
+                TraceLog.error("Не удалось передать сессии узлу " + owner, e);
+                sessions.adopt(owned);
+            }
+        });
+    }
+
+    private void post(String target, byte[] body) throws IOException {
+        Request.Builder request = new Request.Builder().url(target).post(RequestBody.create(body, JSON));
+        if (secret != null) {
+            request.header(ClusterServer.SECRET_HEADER, secret);
+        }
+        try (Response response = client.newCall(request.build()).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Узел " + target + " ответил " + response.code());
+            }
+        }
+    }
+
+    private synchronized ExecutorService forwarder(String owner) {
+        return forwarders.computeIfAbsent(owner, node -> Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-forward-" + node);
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            TraceLog.error("Ошибка при обновлении состава кластера", e);
+        }
+    }
+
+    /**
+     * @return ID чата, к которому относится обновление, или null
+     */
+    static Long chatIdOf(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage().getChatId();
+        }
+        if (update.hasCallbackQuery() && update.getCallbackQuery().getMessage() != null) {
+            return update.getCallbackQuery().getMessage().getChatId();
+        }
+        if (update.hasInlineQuery()) {
+            return update.getInlineQuery().getFrom().getId();
+        }
+        if (update.hasChosenInlineQuery()) {
+            return update.getChosenInlineQuery().getFrom().getId();
+        }
+        return null;
+    }
+
+    /**
+     * Останавливает обновление состава и сообщает о выходе из кластера
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        synchronized (this) {
+            forwarders.values().forEach(ExecutorService::shutdown);
+        }
+        try {
+            membership.leave();
+        } catch (RuntimeException e) {
+            TraceLog.error("Ошибка при выходе из кластера", e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.Cluster;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.example.Sessions.SessionStore;
+import org.example.Tracing.TraceLog;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * HTTP-сервер узла для соседних узлов кластера:
+ * POST /updates — обновление чата, принадлежащего этому узлу (обрабатывается здесь, без повторной пересылки);
+ * POST /sessions — сессии чатов, перешедших к этому узлу;
+ * GET /health — проверка доступности.
+ * Запросы без общего секрета узлов в заголовке X-Cluster-Secret отклоняются;
+ * секрет сравнивается за постоянное время.
+ */
+public class ClusterServer implements AutoCloseable {
+    static final String SECRET_HEADER = "X-Cluster-Secret";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] secret;
+
+    /**
+     * Запускает сервер
+     * @param address адрес и порт для входящих запросов
+     * @param localHandler обработка обновления на этом узле
+     * @param sessions хранилище сессий этого узла
+     * @param secret общий секрет узлов (обязателен)
+     */
+    public ClusterServer(InetSocketAddress address, Consumer<Update> localHandler,
+                         SessionStore sessions, String secret) throws IOException {
+        Objects.requireNonNull(localHandler, "Обработчик обновлений не может быть null");
+        Objects.requireNonNull(sessions, "Хранилище сессий не может быть null");
+        Objects.requireNonNull(secret, "Секрет узлов кластера не может быть null");
+        if (secret.isBlank()) {
+            throw new IllegalArgumentException("Секрет узлов кластера не может быть пустым");
+        }
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newFixedThreadPool(4, runnable -> {
+            Thread thread = new Thread(runnable, "cluster-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/updates", exchange -> handle(exchange, "POST", body -> {
+            // Ответ отправляется после передачи обновления диспетчеру, поэтому
+            // пересылающий узел сохраняет порядок сообщений одного чата
+            localHandler.accept(ClusterJson.readUpdate(body));
+        }));
+        server.createContext("/sessions", exchange -> handle(exchange, "POST",
+                body -> sessions.adopt(ClusterJson.readSessions(body))));
+        server.createContext("/health", exchange -> handle(exchange, "GET", body -> { }));
+        server.start();
+    }
+
+    /**
+     * @return порт, на котором принимаются запросы
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    @FunctionalInterface
+    private interface BodyHandler {
+        void handle(byte[] body) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, String method, BodyHandler handler) throws IOException {
+        try (exchange) {
+            if (!method.equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            String presented = exchange.getRequestHeaders().getFirst(SECRET_HEADER);
+            if (presented == null || !MessageDigest.isEqual(secret, presented.getBytes(StandardCharsets.UTF_8))) {
+                exchange.sendResponseHeaders(403, -1);
+                return;
+            }
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+            try {
+                handler.handle(body);
+            } catch (IOException | RuntimeException e) {
+                TraceLog.error("Ошибка при обработке запроса узла кластера " + exchange.getRequestURI(), e);
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(204, -1);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.Cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Кольцо согласованного хеширования: каждый чат принадлежит одному узлу.
+ * Каждый узел занимает на кольце несколько виртуальных точек, поэтому чаты
+ * распределяются равномерно, а при добавлении или удалении узла переходят
+ * только чаты, соседние с его точками (около 1/N всех чатов).
+ * Кольцо неизменяемо: при изменении состава узлов строится новое.
+ */
+public final class HashRing {
+    private final long[] points;
+    private final String[] owners;
+    private final Set<String> nodes;
+
+    /**
+     * @param nodes ID узлов
+     * @param virtualNodes число точек каждого узла на кольце
+     */
+    public HashRing(Collection<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("Кольцо должно содержать хотя бы один узел");
+        }
+        this.nodes = Collections.unmodifiableSet(new TreeSet<>(nodes));
+
+        List<long[]> entries = new ArrayList<>();
+        List<String> names = new ArrayList<>(this.nodes);
+        for (int node = 0; node < names.size(); node++) {
+            for (int i = 0; i < virtualNodes; i++) {
+                entries.add(new long[]{mix(fnv(names.get(node) + "#" + i)), node});
+            }
+        }
+        // При совпадении точек порядок определяется именем узла, чтобы кольцо было одинаковым на всех узлах
+        entries.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        this.points = new long[entries.size()];
+        this.owners = new String[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            points[i] = entries.get(i)[0];
+            owners[i] = names.get((int) entries.get(i)[1]);
+        }
+    }
+
+    /**
+     * @param chatId ID чата
+     * @return ID узла, которому принадлежит чат
+     */
+    public String ownerOf(long chatId) {
+        int index = Arrays.binarySearch(points, mix(chatId));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        // Точки после последней принадлежат первой точке кольца
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * @return ID узлов кольца
+     */
+    public Set<String> nodes() {
+        return nodes;
+    }
+
+    private static long fnv(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Перемешивание SplitMix64: близкие ID чатов оказываются в разных местах кольца
+     */
+    private static long mix(long value) {
+        long z = value + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
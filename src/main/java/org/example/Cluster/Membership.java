@@ -0,0 +1,20 @@
+package org.example.Cluster;
+
+import java.util.Map;
+
+/**
+ * Состав узлов кластера
+ */
+public interface Membership {
+
+    /**
+     * @return живые узлы: ID узла → адрес его HTTP-сервера (например, http://10.0.0.2:8081)
+     */
+    Map<String, String> nodes();
+
+    /**
+     * Сообщает, что этот узел покидает кластер
+     */
+    default void leave() {
+    }
+}
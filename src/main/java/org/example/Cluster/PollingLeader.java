@@ -0,0 +1,109 @@
+package org.example.Cluster;
+
+import org.example.Coordination.JobCoordinator;
+import org.example.Tracing.TraceLog;
+import org.example.Utils.Metrics;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.generics.BotSession;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long polling только на ведущем экземпляре.
+ *
+ * Telegram отдает обновления бота одному опрашивающему getUpdates: второй экземпляр
+ * получает 409 Conflict и обновления распределяются между ними случайно. Поэтому
+ * опрос ведет экземпляр, ведущий задачу telegram.polling, а остальные получают
+ * обновления своих чатов пересылкой через ClusterRouter. Ведущий проверяется
+ * периодически: экземпляр, потерявший задачу, останавливает опрос, а подхвативший
+ * ее — запускает.
+ */
+public class PollingLeader implements AutoCloseable {
+    public static final String JOB = "telegram.polling";
+
+    /**
+     * Регистрирует бота в Telegram и запускает опрос
+     */
+    @FunctionalInterface
+    public interface Registration {
+        BotSession register() throws TelegramApiException;
+    }
+
+    private final JobCoordinator coordinator;
+    private final Registration registration;
+    private final ScheduledExecutorService scheduler;
+    // Доступ под монитором this; null — бот еще не регистрировался
+    private BotSession session;
+
+    /**
+     * @param coordinator выбор ведущего экземпляра
+     * @param registration регистрация бота; вызывается, когда экземпляр впервые становится ведущим
+     */
+    public PollingLeader(JobCoordinator coordinator, Registration registration) {
+        this.coordinator = Objects.requireNonNull(coordinator, "Координатор задач не может быть null");
+        this.registration = Objects.requireNonNull(registration, "Регистрация бота не может быть null");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "polling-leader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Проверяет ведущего сразу (ошибка регистрации бота передается вызывающему)
+     * и затем периодически
+     * @param interval интервал между проверками
+     */
+    public void start(Duration interval) throws TelegramApiException {
+        check();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                check();
+            } catch (TelegramApiException | RuntimeException e) {
+                TraceLog.error("Ошибка при запуске получения обновлений", e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Запускает опрос, если этот экземпляр ведет задачу, и останавливает, если перестал
+     */
+    public synchronized void check() throws TelegramApiException {
+        boolean leader = coordinator.isLeader(JOB);
+        if (leader && (session == null || !session.isRunning())) {
+            if (session == null) {
+                session = registration.register();
+            } else {
+                session.start();
+            }
+            Metrics.counter("polling.started").increment();
+            TraceLog.info("Экземпляр " + coordinator.nodeId() + " получает обновления Telegram");
+        } else if (!leader && session != null && session.isRunning()) {
+            session.stop();
+            Metrics.counter("polling.stopped").increment();
+            TraceLog.info("Экземпляр " + coordinator.nodeId() + " больше не получает обновления Telegram");
+        }
+    }
+
+    /**
+     * @return идет ли опрос на этом экземпляре
+     */
+    public synchronized boolean isPolling() {
+        return session != null && session.isRunning();
+    }
+
+    /**
+     * Останавливает проверки и опрос
+     */
+    @Override
+    public synchronized void close() {
+        scheduler.shutdownNow();
+        if (session != null && session.isRunning()) {
+            session.stop();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.Cluster;
+
+import org.example.DAO.QueryRunner;
+import org.example.DAO.WineDAO;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Состав узлов в таблице cluster_nodes: каждый узел при опросе обновляет
+ * свою отметку времени, а живыми считаются узлы, отметившиеся не позже nodeTimeout назад.
+ * Упавший узел выпадает из кольца сам, без участия остальных.
+ */
+public class PostgresMembership implements Membership {
+    private static final String HEARTBEAT_SQL =
+            "INSERT INTO cluster_nodes (node_id, url, heartbeat_at) VALUES (?, ?, now()) " +
+            "ON CONFLICT (node_id) DO UPDATE SET url = EXCLUDED.url, heartbeat_at = now()";
+    private static final String SELECT_ALIVE_SQL =
+            "SELECT node_id, url FROM cluster_nodes " +
+            "WHERE heartbeat_at > now() - (? * interval '1 second') ORDER BY node_id";
+    private static final String DELETE_SQL = "DELETE FROM cluster_nodes WHERE node_id = ?";
+
+    private final QueryRunner queryRunner;
+    private final String nodeId;
+    private final String url;
+    private final Duration nodeTimeout;
+
+    /**
+     * @param queryRunner запросы к основной БД
+     * @param nodeId ID этого узла
+     * @param url адрес HTTP-сервера этого узла, доступный другим узлам
+     * @param nodeTimeout через сколько без отметки узел считается выбывшим
+     */
+    public PostgresMembership(QueryRunner queryRunner, String nodeId, String url, Duration nodeTimeout) {
+        this.queryRunner = Objects.requireNonNull(queryRunner, "QueryRunner не может быть null");
+        this.nodeId = nodeId;
+        this.url = url;
+        this.nodeTimeout = nodeTimeout;
+    }
+
+    @Override
+    public Map<String, String> nodes() {
+        try {
+            queryRunner.update(HEARTBEAT_SQL, stmt -> {
+                stmt.setString(1, nodeId);
+                stmt.setString(2, url);
+            });
+            Map<String, String> nodes = new LinkedHashMap<>();
+            for (String[] row : queryRunner.query(SELECT_ALIVE_SQL, stmt -> stmt.setLong(1, nodeTimeout.getSeconds()),
+                    rs -> new String[]{rs.getString(1), rs.getString(2)})) {
+                nodes.put(row[0], row[1]);
+            }
+            return nodes;
+        } catch (SQLException e) {
+            throw new WineDAO.DataAccessException("Ошибка при получении состава кластера", e);
+        }
+    }
+
+    @Override
+    public void leave() {
+        try {
+            queryRunner.update(DELETE_SQL, stmt -> stmt.setString(1, nodeId));
+        } catch (SQLException e) {
+            throw new WineDAO.DataAccessException("Ошибка при выходе из кластера: " + nodeId, e);
+        }
+    }
+}
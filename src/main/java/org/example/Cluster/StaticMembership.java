@@ -0,0 +1,46 @@
+package org.example.Cluster;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Состав узлов, заданный явно (CLUSTER_NODES или тесты); может заменяться целиком
+ */
+public class StaticMembership implements Membership {
+    private volatile Map<String, String> nodes;
+
+    /**
+     * @param nodes ID узла → адрес его HTTP-сервера
+     */
+    public StaticMembership(Map<String, String> nodes) {
+        this.nodes = Map.copyOf(nodes);
+    }
+
+    /**
+     * Разбирает список вида {@code node-a=http://10.0.0.1:8081,node-b=http://10.0.0.2:8081}
+     */
+    public static StaticMembership parse(String value) {
+        Map<String, String> nodes = new LinkedHashMap<>();
+        for (String item : value.split(",")) {
+            String trimmed = item.trim();
+            int separator = trimmed.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Узел кластера должен быть задан как id=url: " + trimmed);
+            }
+            nodes.put(trimmed.substring(0, separator).trim(), trimmed.substring(separator + 1).trim());
+        }
+        return new StaticMembership(nodes);
+    }
+
+    /**
+     * Заменяет состав узлов
+     */
+    public void setNodes(Map<String, String> nodes) {
+        this.nodes = Map.copyOf(nodes);
+    }
+
+    @Override
+    public Map<String, String> nodes() {
+        return nodes;
+    }
+}
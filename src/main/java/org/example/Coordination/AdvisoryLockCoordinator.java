@@ -0,0 +1,202 @@
+package org.example.Coordination;
+
+import org.example.Tracing.TraceLog;
+import org.example.Utils.Metrics;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Выбор ведущего через сессионные рекомендательные блокировки PostgreSQL.
+ *
+ * Каждой задаче соответствует 64-битный ключ блокировки; ведущий — экземпляр,
+ * получивший pg_try_advisory_lock по этому ключу. Блокировки держатся отдельным
+ * соединением: если оно обрывается (процесс упал, сеть пропала), PostgreSQL
+ * снимает блокировки вместе с сессией, и задачу подхватывает экземпляр,
+ * который первым попробует ее выполнить. Сам бывший ведущий обнаруживает обрыв
+ * при следующей проверке, переподключается и снова участвует в выборе.
+ *
+ * Имя экземпляра записывается в application_name соединения, поэтому ведущих
+ * видно по pg_locks и pg_stat_activity, в том числе с других экземпляров.
+ */
+public class AdvisoryLockCoordinator implements JobCoordinator, AutoCloseable {
+    // Пространство имен ключей, чтобы не пересечься с блокировками других приложений в той же БД
+    private static final String KEY_NAMESPACE = "vinobot:";
+    private static final String APPLICATION_PREFIX = "vinobot:";
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final String OWNERS_SQL =
+            "SELECT l.classid::bigint, l.objid::bigint, a.application_name " +
+            "FROM pg_locks l JOIN pg_stat_activity a ON a.pid = l.pid " +
+            "WHERE l.locktype = 'advisory' AND l.granted AND l.objsubid = 1";
+
+    private final ConnectionFactory connectionFactory;
+    private final String nodeId;
+    // Поля ниже защищены монитором this
+    private final Map<String, Long> keys = new HashMap<>();
+    private final Set<String> held = new HashSet<>();
+    private Connection connection;
+
+    /**
+     * Открывает соединение, в котором держатся блокировки
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    /**
+     * @param connectionFactory фабрика соединений с основной БД
+     * @param nodeId ID экземпляра
+     */
+    public AdvisoryLockCoordinator(ConnectionFactory connectionFactory, String nodeId) {
+        this.connectionFactory = Objects.requireNonNull(connectionFactory, "Фабрика соединений не может быть null");
+        this.nodeId = Objects.requireNonNull(nodeId, "ID экземпляра не может быть null");
+    }
+
+    @Override
+    public synchronized boolean isLeader(String job) {
+        long key = keys.computeIfAbsent(job, AdvisoryLockCoordinator::lockKey);
+        try {
+            Connection current = connection();
+            if (held.contains(job)) {
+                return true;
+            }
+            try (PreparedStatement stmt = current.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+                stmt.setLong(1, key);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next() && rs.getBoolean(1)) {
+                        held.add(job);
+                        Metrics.counter("jobs.leadership.acquired").increment();
+                        TraceLog.info("Экземпляр " + nodeId + " ведет задачу " + job);
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } catch (SQLException e) {
+            // Без соединения нельзя быть уверенным в блокировке: задачу выполнит другой экземпляр
+            TraceLog.error("Не удалось проверить ведущего задачи " + job, e);
+            dropConnection();
+            return false;
+        }
+    }
+
+    /**
+     * Отказывается от ведения задачи, чтобы ее подхватил другой экземпляр
+     * @param job имя задачи
+     */
+    public synchronized void release(String job) {
+        if (!held.remove(job) || connection == null) {
+            return;
+        }
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            stmt.setLong(1, keys.get(job));
+            stmt.executeQuery().close();
+        } catch (SQLException e) {
+            TraceLog.error("Не удалось освободить задачу " + job, e);
+            dropConnection();
+        }
+    }
+
+    /**
+     * Читает ведущих известных задач из pg_locks; задачи без ведущего не включаются
+     */
+    @Override
+    public synchronized Map<String, String> owners() {
+        Map<Long, String> jobsByKey = new HashMap<>();
+        keys.forEach((job, key) -> jobsByKey.put(key, job));
+        Map<String, String> owners = new TreeMap<>();
+        try (PreparedStatement stmt = connection().prepareStatement(OWNERS_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                String job = jobsByKey.get(keyOf(rs.getLong(1), rs.getLong(2)));
+                String application = rs.getString(3);
+                if (job != null) {
+                    owners.put(job, application != null && application.startsWith(APPLICATION_PREFIX)
+                            ? application.substring(APPLICATION_PREFIX.length())
+                            : application);
+                }
+            }
+        } catch (SQLException e) {
+            TraceLog.error("Не удалось получить ведущих задач", e);
+            dropConnection();
+        }
+        return owners;
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Возвращает рабочее соединение; при обрыве все блокировки считаются потерянными
+     */
+    private Connection connection() throws SQLException {
+        if (connection != null && !connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+            dropConnection();
+        }
+        if (connection == null) {
+            Connection opened = connectionFactory.open();
+            try (PreparedStatement stmt = opened.prepareStatement("SELECT set_config('application_name', ?, false)")) {
+                stmt.setString(1, APPLICATION_PREFIX + nodeId);
+                stmt.executeQuery().close();
+            }
+            connection = opened;
+        }
+        return connection;
+    }
+
+    private void dropConnection() {
+        if (!held.isEmpty()) {
+            Metrics.counter("jobs.leadership.lost").add(held.size());
+            TraceLog.warn("Экземпляр " + nodeId + " потерял соединение и больше не ведет задачи " + held);
+            held.clear();
+        }
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // Соединение уже недоступно
+            }
+            connection = null;
+        }
+    }
+
+    /**
+     * Стабильный 64-битный ключ блокировки по имени задачи (FNV-1a)
+     */
+    static long lockKey(String job) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : (KEY_NAMESPACE + job).getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Собирает ключ из столбцов classid (старшие 32 бита) и objid (младшие) таблицы pg_locks
+     */
+    static long keyOf(long classId, long objId) {
+        return (classId << 32) | (objId & 0xffffffffL);
+    }
+
+    /**
+     * Освобождает все задачи и закрывает соединение
+     */
+    @Override
+    public synchronized void close() {
+        held.clear();
+        dropConnection();
+    }
+}
@@ -0,0 +1,41 @@
+package org.example.Coordination;
+
+import java.util.Map;
+
+/**
+ * Выбор ведущего экземпляра бота для фоновых задач.
+ * Для каждой задачи (по имени) ведущим является не больше одного экземпляра,
+ * поэтому периодическая работа с общей БД не выполняется каждым экземпляром заново.
+ */
+public interface JobCoordinator {
+
+    /**
+     * Проверяет, ведет ли этот экземпляр задачу; если у задачи нет ведущего, пытается им стать
+     * @param job имя задачи, например sessions.evict
+     * @return true, если задачу должен выполнять этот экземпляр
+     */
+    boolean isLeader(String job);
+
+    /**
+     * @return ведущие экземпляры задач, о которых знает этот экземпляр (имя задачи → ID экземпляра)
+     */
+    Map<String, String> owners();
+
+    /**
+     * @return ID этого экземпляра
+     */
+    String nodeId();
+
+    /**
+     * Оборачивает задачу так, чтобы она выполнялась только на ведущем экземпляре
+     * @param job имя задачи
+     * @param task периодическая задача
+     */
+    default Runnable leaderOnly(String job, Runnable task) {
+        return () -> {
+            if (isLeader(job)) {
+                task.run();
+            }
+        };
+    }
+}
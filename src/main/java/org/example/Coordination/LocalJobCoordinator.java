@@ -0,0 +1,38 @@
+package org.example.Coordination;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Координатор для единственного экземпляра бота: он ведет все задачи
+ */
+public class LocalJobCoordinator implements JobCoordinator {
+    private final String nodeId;
+    private final Map<String, Boolean> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * @param nodeId ID экземпляра
+     */
+    public LocalJobCoordinator(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public boolean isLeader(String job) {
+        jobs.put(job, Boolean.TRUE);
+        return true;
+    }
+
+    @Override
+    public Map<String, String> owners() {
+        Map<String, String> owners = new TreeMap<>();
+        jobs.keySet().forEach(job -> owners.put(job, nodeId));
+        return owners;
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+}
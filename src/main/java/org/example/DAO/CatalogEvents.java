@@ -0,0 +1,61 @@
+package org.example.DAO;
+
+import org.example.Tracing.TraceLog;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Рассылает уведомления об изменениях каталога подписчикам.
+ * Ошибка одного подписчика не мешает остальным и не отменяет запись.
+ */
+public class CatalogEvents {
+    private final List<CatalogListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Регистрирует подписчика
+     */
+    public void addListener(CatalogListener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    public void wineChanged(Wine wine) {
+        for (CatalogListener listener : listeners) {
+            notify(() -> listener.wineChanged(wine));
+        }
+    }
+
+    public void wineDeleted(int wineId) {
+        for (CatalogListener listener : listeners) {
+            notify(() -> listener.wineDeleted(wineId));
+        }
+    }
+
+    public void dishChanged(Dish dish) {
+        for (CatalogListener listener : listeners) {
+            notify(() -> listener.dishChanged(dish));
+        }
+    }
+
+    public void dishDeleted(int dishId) {
+        for (CatalogListener listener : listeners) {
+            notify(() -> listener.dishDeleted(dishId));
+        }
+    }
+
+    public void pairingChanged(Pairing pairing) {
+        for (CatalogListener listener : listeners) {
+            notify(() -> listener.pairingChanged(pairing));
+        }
+    }
+
+    private static void notify(Runnable notification) {
+        try {
+            notification.run();
+        } catch (RuntimeException e) {
+            TraceLog.error("Ошибка обработчика изменений каталога", e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.DAO;
+
+/**
+ * Получает уведомления об изменениях каталога.
+ * Используется кэшами и индексами, которые должны оставаться согласованными с данными.
+ */
+public interface CatalogListener {
+
+    /**
+     * Вино добавлено или изменено
+     */
+    default void wineChanged(Wine wine) {
+    }
+
+    /**
+     * Вино удалено
+     */
+    default void wineDeleted(int wineId) {
+    }
+
+    /**
+     * Блюдо добавлено или изменено
+     */
+    default void dishChanged(Dish dish) {
+    }
+
+    /**
+     * Блюдо удалено
+     */
+    default void dishDeleted(int dishId) {
+    }
+
+    /**
+     * Сочетание добавлено или его оценка изменена
+     */
+    default void pairingChanged(Pairing pairing) {
+    }
+}
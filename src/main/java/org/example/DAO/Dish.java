@@ -17,12 +17,28 @@ public class Dish {
     private int cookingTime;
     private String ingredients;
     private String recipe;
+    private int version;
 
     /**
      * Перечисление возможных категорий блюд
      */
     public enum DishCategory {
-        Мясо, Рыба, Овощи, Сыр, Десерт
+        Мясо, Рыба, Овощи, Сыр, Десерт;
+
+        /**
+         * Находит категорию по названию без учета регистра
+         * @param value название категории
+         * @return категория блюда
+         * @throws IllegalArgumentException если категория неизвестна
+         */
+        public static DishCategory fromString(String value) {
+            for (DishCategory category : values()) {
+                if (category.name().equalsIgnoreCase(value)) {
+                    return category;
+                }
+            }
+            throw new IllegalArgumentException("Неизвестная категория блюда: " + value);
+        }
     }
 
     /**
@@ -31,6 +47,22 @@ public class Dish {
     public Dish() {
     }
 
+    /**
+     * Копирующий конструктор
+     * @param other блюдо, значения которого копируются
+     */
+    public Dish(Dish other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.category = other.category;
+        this.fatContent = other.fatContent;
+        this.proteinContent = other.proteinContent;
+        this.cookingTime = other.cookingTime;
+        this.ingredients = other.ingredients;
+        this.recipe = other.recipe;
+        this.version = other.version;
+    }
+
     /**
      * Основной конструктор с минимально необходимыми параметрами
      * @param name название блюда
@@ -185,6 +217,17 @@ public class Dish {
         this.recipe = recipe;
     }
 
+    /**
+     * @return версия записи: увеличивается хранилищем при каждом изменении блюда
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     // Методы для определения характеристик
 
     /**
@@ -1,159 +1,168 @@
 package org.example.DAO;
 
-import java.sql.*;
-import java.util.ArrayList;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Objects;
 
-public class DishDAO {
-    private final Connection connection;
+public class DishDAO implements DishRepository {
+    private static final String FIND_BY_CATEGORY_SQL = "SELECT name FROM dishes WHERE category = ?";
+    private static final String FIND_PAIRINGS_SQL = "SELECT d.name FROM dishes d " +
+            "JOIN pairings p ON d.id = p.dish_id " +
+            "JOIN wines w ON p.wine_id = w.id " +
+            "WHERE w.name LIKE ? ORDER BY p.score DESC";
+    private static final String INSERT_SQL =
+            "INSERT INTO dishes (name, category, fat_content, protein_content) VALUES (?, ?, ?, ?)";
+    private static final String SELECT_BY_ID_SQL =
+            "SELECT " + RowMappers.DISH_COLUMNS + " FROM dishes WHERE id = ?";
+    private static final String UPDATE_SQL = "UPDATE dishes SET name = ?, category = ?, fat_content = ?, " +
+            "protein_content = ?, cooking_time = ?, ingredients = ?, recipe = ?, version = version + 1 " +
+            "WHERE id = ? RETURNING version";
+    private static final String DELETE_SQL = "DELETE FROM dishes WHERE id = ?";
+    private static final String SELECT_ALL_SQL = "SELECT " + RowMappers.DISH_COLUMNS + " FROM dishes";
+    private static final String SELECT_BY_IDS_SQL =
+            "SELECT " + RowMappers.DISH_COLUMNS + " FROM dishes WHERE id = ANY(?::int[])";
+
+    private final ReplicaRouter router;
+    private final CatalogEvents events = new CatalogEvents();
 
     public DishDAO(Connection connection) {
-        this.connection = Objects.requireNonNull(connection, "Connection cannot be null");
+        this(new QueryRunner(Objects.requireNonNull(connection, "Connection cannot be null")));
+    }
+
+    public DishDAO(QueryRunner queries) {
+        this(new ReplicaRouter(Objects.requireNonNull(queries, "QueryRunner cannot be null")));
     }
 
     /**
-     * Находит блюда по категории
+     * Создает DAO, читающий с реплики и пишущий в основную БД
+     * @param router маршрутизатор запросов между основной БД и репликой
      */
-    public List<String> findDishesByCategory(String category) throws SQLException {
-        List<String> dishes = new ArrayList<>();
-        String sql = "SELECT name FROM dishes WHERE category = ?";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, category.toUpperCase());
-            ResultSet rs = stmt.executeQuery();
+    public DishDAO(ReplicaRouter router) {
+        this.router = Objects.requireNonNull(router, "ReplicaRouter cannot be null");
+    }
 
-            while (rs.next()) {
-                dishes.add(rs.getString("name"));
-            }
+    /**
+     * Находит блюда по категории. Категория хранится названием значения
+     * {@link Dish.DishCategory} («Мясо»), поэтому введенное название приводится к нему.
+     */
+    @Override
+    public List<String> findDishesByCategory(String category) throws SQLException {
+        Dish.DishCategory parsed;
+        try {
+            parsed = Dish.DishCategory.fromString(category);
+        } catch (IllegalArgumentException e) {
+            return List.of();
         }
-
-        return dishes;
+        return router.read(q -> q.query(FIND_BY_CATEGORY_SQL,
+                stmt -> stmt.setString(1, parsed.name()),
+                RowMappers.FIRST_STRING));
     }
 
     /**
      * Находит все блюда, которые хорошо сочетаются с указанным вином
      */
+    @Override
     public List<String> findPairingsForWine(String wineName) throws SQLException {
-        List<String> pairings = new ArrayList<>();
-        String sql = "SELECT d.name FROM dishes d " +
-                "JOIN pairings p ON d.id = p.dish_id " +
-                "JOIN wines w ON p.wine_id = w.id " +
-                "WHERE w.name LIKE ? ORDER BY p.score DESC";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, "%" + wineName + "%");
-            ResultSet rs = stmt.executeQuery();
-
-            while (rs.next()) {
-                pairings.add(rs.getString("name"));
-            }
-        }
-
-        return pairings;
+        return router.read(q -> q.query(FIND_PAIRINGS_SQL,
+                stmt -> stmt.setString(1, "%" + wineName + "%"),
+                RowMappers.FIRST_STRING));
     }
 
     /**
      * Добавляет новое блюдо в базу данных
      */
+    @Override
     public boolean addDish(String name, String category, int fatContent, int proteinContent) throws SQLException {
-        String sql = "INSERT INTO dishes (name, category, fat_content, protein_content) VALUES (?, ?, ?, ?)";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        Dish.DishCategory parsed;
+        try {
+            parsed = Dish.DishCategory.fromString(category);
+        } catch (IllegalArgumentException e) {
+            throw new SQLException(e.getMessage(), e);
+        }
+        int id = router.primary().insert(INSERT_SQL, stmt -> {
             stmt.setString(1, name);
-            stmt.setString(2, category.toUpperCase());
+            stmt.setString(2, parsed.name());
             stmt.setInt(3, fatContent);
             stmt.setInt(4, proteinContent);
-
-            return stmt.executeUpdate() > 0;
+        });
+        if (id < 0) {
+            return false;
         }
+
+        Dish dish = new Dish(name, parsed, fatContent, proteinContent);
+        dish.setId(id);
+        events.dishChanged(dish);
+        return true;
     }
 
     /**
      * Получает блюдо по ID
      */
+    @Override
     public Dish getDishById(int id) throws SQLException {
-        String sql = "SELECT * FROM dishes WHERE id = ?";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, id);
-            ResultSet rs = stmt.executeQuery();
-
-            if (rs.next()) {
-                Dish dish = new Dish();
-                dish.setId(rs.getInt("id"));
-                dish.setName(rs.getString("name"));
-                dish.setCategory(Dish.DishCategory.valueOf(rs.getString("category")));
-                dish.setFatContent(rs.getInt("fat_content"));
-                dish.setProteinContent(rs.getInt("protein_content"));
-                dish.setCookingTime(rs.getInt("cooking_time"));
-                dish.setIngredients(rs.getString("ingredients"));
-                dish.setRecipe(rs.getString("recipe"));
-                return dish;
-            }
-        }
-
-        return null;
+        return router.read(q -> q.queryOne(SELECT_BY_ID_SQL, stmt -> stmt.setInt(1, id), RowMappers.DISH));
     }
 
     /**
      * Обновляет информацию о блюде
      */
+    @Override
     public boolean updateDish(Dish dish) throws SQLException {
-        String sql = "UPDATE dishes SET name = ?, category = ?, fat_content = ?, " +
-                "protein_content = ?, cooking_time = ?, ingredients = ?, recipe = ? " +
-                "WHERE id = ?";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        Integer version = router.primary().queryOne(UPDATE_SQL, stmt -> {
             stmt.setString(1, dish.getName());
-            stmt.setString(2, dish.getCategory().toString());
+            stmt.setString(2, dish.getCategory().name());
             stmt.setInt(3, dish.getFatContent());
             stmt.setInt(4, dish.getProteinContent());
             stmt.setInt(5, dish.getCookingTime());
             stmt.setString(6, dish.getIngredients());
             stmt.setString(7, dish.getRecipe());
             stmt.setInt(8, dish.getId());
-
-            return stmt.executeUpdate() > 0;
+        }, RowMappers.FIRST_INT);
+        if (version == null) {
+            return false;
         }
+        dish.setVersion(version);
+        events.dishChanged(dish);
+        return true;
     }
 
     /**
      * Удаляет блюдо из базы данных
      */
+    @Override
     public boolean deleteDish(int id) throws SQLException {
-        String sql = "DELETE FROM dishes WHERE id = ?";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, id);
-            return stmt.executeUpdate() > 0;
+        boolean deleted = router.primary().update(DELETE_SQL, stmt -> stmt.setInt(1, id)) > 0;
+        if (deleted) {
+            events.dishDeleted(id);
         }
+        return deleted;
     }
 
     /**
      * Находит все блюда в базе данных
      */
+    @Override
     public List<Dish> getAllDishes() throws SQLException {
-        List<Dish> dishes = new ArrayList<>();
-        String sql = "SELECT * FROM dishes";
-
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                Dish dish = new Dish();
-                dish.setId(rs.getInt("id"));
-                dish.setName(rs.getString("name"));
-                dish.setCategory(Dish.DishCategory.valueOf(rs.getString("category")));
-                dish.setFatContent(rs.getInt("fat_content"));
-                dish.setProteinContent(rs.getInt("protein_content"));
-                dish.setCookingTime(rs.getInt("cooking_time"));
-                dish.setIngredients(rs.getString("ingredients"));
-                dish.setRecipe(rs.getString("recipe"));
-                dishes.add(dish);
-            }
+        return router.read(q -> q.query(SELECT_ALL_SQL, QueryRunner.Binder.NONE, RowMappers.DISH));
+    }
+
+    /**
+     * Находит блюда по списку ID одним запросом
+     */
+    @Override
+    public List<Dish> getDishesByIds(List<Integer> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return List.of();
         }
+        List<Dish> found = router.read(q -> q.query(SELECT_BY_IDS_SQL,
+                stmt -> stmt.setArray(1, stmt.getConnection().createArrayOf("int4", ids.toArray())),
+                RowMappers.DISH));
+        return DishRepository.inOrder(ids, found);
+    }
 
-        return dishes;
+    @Override
+    public void addListener(CatalogListener listener) {
+        events.addListener(listener);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+package org.example.DAO;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Чтение блюд.
+ * Реализуется хранилищами блюд и неизменяемым бинарным снимком каталога.
+ */
+public interface DishReadRepository {
+
+    /**
+     * Находит названия блюд указанной категории
+     */
+    List<String> findDishesByCategory(String category) throws SQLException;
+
+    /**
+     * Находит названия блюд, сочетающихся с вином, в порядке убывания оценки
+     */
+    List<String> findPairingsForWine(String wineName) throws SQLException;
+
+    /**
+     * @return блюдо с указанным ID или null
+     */
+    Dish getDishById(int id) throws SQLException;
+
+    /**
+     * @return все блюда каталога
+     */
+    List<Dish> getAllDishes() throws SQLException;
+
+    /**
+     * @param ids ID блюд
+     * @return найденные блюда в порядке списка ID; отсутствующие пропускаются
+     */
+    List<Dish> getDishesByIds(List<Integer> ids) throws SQLException;
+}
@@ -0,0 +1,53 @@
+package org.example.DAO;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Хранилище блюд: чтение и изменение.
+ * Реализуется DAO для PostgreSQL и встроенным каталогом в памяти.
+ */
+public interface DishRepository extends DishReadRepository {
+
+    /**
+     * Добавляет новое блюдо
+     * @return true, если блюдо добавлено
+     */
+    boolean addDish(String name, String category, int fatContent, int proteinContent) throws SQLException;
+
+    /**
+     * @return true, если блюдо было обновлено
+     */
+    boolean updateDish(Dish dish) throws SQLException;
+
+    /**
+     * @return true, если блюдо было удалено
+     */
+    boolean deleteDish(int id) throws SQLException;
+
+    /**
+     * Упорядочивает найденные блюда по списку ID
+     */
+    static List<Dish> inOrder(List<Integer> ids, List<Dish> found) {
+        Map<Integer, Dish> byId = new HashMap<>();
+        for (Dish dish : found) {
+            byId.put(dish.getId(), dish);
+        }
+        List<Dish> ordered = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            Dish dish = byId.get(id);
+            if (dish != null) {
+                ordered.add(dish);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Подписывает обработчик на изменения блюд
+     */
+    void addListener(CatalogListener listener);
+}
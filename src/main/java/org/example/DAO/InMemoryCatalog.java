@@ -0,0 +1,665 @@
+package org.example.DAO;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Встроенный каталог вин и блюд, полностью хранящийся в памяти процесса.
+ * Позволяет запускать бота и тесты без PostgreSQL. Вина и блюда
+ * индексируются по ID и названию, сочетания хранятся списками смежности
+ * в обе стороны (вино -> блюда и блюдо -> вина, по убыванию оценки).
+ * Содержимое каталога загружается из файла снимка и сохраняется в него.
+ * Каталог хранит собственные копии записей и возвращает копии, поэтому изменение
+ * полученного вина или блюда не меняет каталог в обход updateWine/updateDish.
+ * Оценки, как и в PostgreSQL, хранятся дважды: журнал, в который они только добавляются
+ * (таблица ratings), и текущая оценка каждого чата для сочетания (таблица rating_votes).
+ */
+public class InMemoryCatalog implements WineRepository, DishRepository, RatingRepository {
+    private static final int SNAPSHOT_MAGIC = 0x56434154;
+    private static final int SNAPSHOT_VERSION = 2;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final CatalogEvents events = new CatalogEvents();
+    private final Map<Integer, Wine> winesById = new LinkedHashMap<>();
+    private final NameIndex wineNames = new NameIndex();
+    private final Map<Integer, Dish> dishesById = new LinkedHashMap<>();
+    private final NameIndex dishNames = new NameIndex();
+    private final PairingGraph pairings = new PairingGraph();
+    // Исходная оценка и голоса пользователей для каждого сочетания
+    private final Map<Long, PairingVotes> votes = new HashMap<>();
+    // Оценки по сочетанию и чату: чат оценивает сочетание один раз
+    private final Map<Long, Map<Long, Rating>> ratings = new LinkedHashMap<>();
+    private final List<Rating> ratingLog = new ArrayList<>();
+    private int nextWineId = 1;
+    private int nextDishId = 1;
+
+    /**
+     * Создает копию каталога из другого хранилища (например, из PostgreSQL)
+     * @param wines хранилище вин и сочетаний
+     * @param dishes хранилище блюд
+     * @return заполненный каталог в памяти
+     */
+    public static InMemoryCatalog copyOf(WineRepository wines, DishRepository dishes) throws SQLException {
+        InMemoryCatalog catalog = new InMemoryCatalog();
+        for (Wine wine : wines.getAllWines()) {
+            catalog.putWine(new Wine(wine));
+        }
+        for (Dish dish : dishes.getAllDishes()) {
+            catalog.putDish(new Dish(dish));
+        }
+        for (Pairing pairing : wines.getAllPairings()) {
+            catalog.savePairing(pairing);
+        }
+        return catalog;
+    }
+
+    // Вина
+
+    @Override
+    public List<String> findPairings(String wineName) {
+        lock.readLock().lock();
+        try {
+            List<Pairing> found = new ArrayList<>();
+            for (int wineId : wineNames.matching(wineName)) {
+                found.addAll(pairings.forWine(wineId));
+            }
+            PairingGraph.sortByScore(found);
+
+            List<String> names = new ArrayList<>(found.size());
+            for (Pairing pairing : found) {
+                Dish dish = dishesById.get(pairing.getDishId());
+                if (dish != null) {
+                    names.add(dish.getName());
+                }
+            }
+            return names;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public TopPairings findTopPairings(String wineName) {
+        lock.readLock().lock();
+        try {
+            List<Wine> wines = new ArrayList<>();
+            List<Pairing> found = new ArrayList<>();
+            for (int id : wineNames.matching(wineName)) {
+                wines.add(new Wine(winesById.get(id)));
+                found.addAll(pairings.forWine(id));
+            }
+            return TopPairings.of(wines, found, dishId -> {
+                Dish dish = dishesById.get(dishId);
+                return dish == null ? null : new Dish(dish);
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Wine addWine(Wine wine) {
+        lock.writeLock().lock();
+        try {
+            wine.setId(nextWineId);
+            putWine(new Wine(wine));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        events.wineChanged(wine);
+        return wine;
+    }
+
+    @Override
+    public Wine getWineById(int id) {
+        lock.readLock().lock();
+        try {
+            Wine wine = winesById.get(id);
+            return wine == null ? null : new Wine(wine);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Wine updateWine(Wine wine) {
+        lock.writeLock().lock();
+        try {
+            Wine existing = winesById.get(wine.getId());
+            if (existing == null) {
+                throw new WineDAO.DataAccessException("Обновление вина не удалось, ни одна запись не изменена");
+            }
+            wineNames.remove(existing.getName(), existing.getId());
+            wine.setVersion(existing.getVersion() + 1);
+            putWine(new Wine(wine));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        events.wineChanged(wine);
+        return wine;
+    }
+
+    /**
+     * Удаляет вино вместе с его сочетаниями
+     */
+    @Override
+    public boolean deleteWine(int id) {
+        lock.writeLock().lock();
+        try {
+            Wine removed = winesById.remove(id);
+            if (removed == null) {
+                return false;
+            }
+            wineNames.remove(removed.getName(), id);
+            forgetVotes(pairings.removeWine(id));
+            ratings.keySet().removeIf(k -> (int) (k >>> 32) == id);
+            ratingLog.removeIf(rating -> rating.getWineId() == id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        events.wineDeleted(id);
+        return true;
+    }
+
+    @Override
+    public List<Wine> getAllWines() {
+        lock.readLock().lock();
+        try {
+            List<Wine> wines = new ArrayList<>(winesById.size());
+            for (Wine wine : winesById.values()) {
+                wines.add(new Wine(wine));
+            }
+            return wines;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Wine> findWinesByName(String name) {
+        lock.readLock().lock();
+        try {
+            List<Wine> wines = new ArrayList<>();
+            for (int id : wineNames.matching(name)) {
+                wines.add(new Wine(winesById.get(id)));
+            }
+            return wines;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Pairing> getAllPairings() {
+        lock.readLock().lock();
+        try {
+            return pairings.all();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Задает исходную оценку сочетания; накопленные голоса пользователей сохраняются
+     */
+    @Override
+    public void savePairing(Pairing pairing) {
+        Pairing saved;
+        lock.writeLock().lock();
+        try {
+            if (!winesById.containsKey(pairing.getWineId()) || !dishesById.containsKey(pairing.getDishId())) {
+                throw new WineDAO.DataAccessException("Ошибка при сохранении сочетания: " + pairing +
+                        " ссылается на несуществующее вино или блюдо");
+            }
+            PairingVotes pairingVotes = votes.computeIfAbsent(
+                    key(pairing.getWineId(), pairing.getDishId()), k -> new PairingVotes());
+            pairingVotes.baseScore = pairing.getScore();
+            saved = pairingVotes.toPairing(pairing.getWineId(), pairing.getDishId());
+            pairings.put(saved);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        events.pairingChanged(saved);
+    }
+
+    /**
+     * Находит вина к блюду по обратным спискам смежности
+     */
+    @Override
+    public List<String> findWinesForDish(String dishName) {
+        lock.readLock().lock();
+        try {
+            List<Pairing> found = new ArrayList<>();
+            for (int dishId : dishNames.matching(dishName)) {
+                found.addAll(pairings.forDish(dishId));
+            }
+            PairingGraph.sortByScore(found);
+
+            List<String> names = new ArrayList<>(found.size());
+            for (Pairing pairing : found) {
+                Wine wine = winesById.get(pairing.getWineId());
+                if (wine != null) {
+                    names.add(wine.getName());
+                }
+            }
+            return names;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void addListener(CatalogListener listener) {
+        events.addListener(listener);
+    }
+
+    // Оценки
+
+    @Override
+    public Pairing recordRating(Rating rating) {
+        Pairing updated;
+        lock.writeLock().lock();
+        try {
+            if (!winesById.containsKey(rating.getWineId()) || !dishesById.containsKey(rating.getDishId())) {
+                throw new WineDAO.DataAccessException("Ошибка при сохранении оценки: " + rating +
+                        " ссылается на несуществующее вино или блюдо");
+            }
+            ratingLog.add(rating);
+            long pairingKey = key(rating.getWineId(), rating.getDishId());
+            Rating previous = ratings.computeIfAbsent(pairingKey, k -> new LinkedHashMap<>())
+                    .put(rating.getChatId(), rating);
+            PairingVotes pairingVotes = votes.get(pairingKey);
+            if (pairingVotes == null || previous != null && previous.isGood() == rating.isGood()) {
+                return null;
+            }
+            // Повторная оценка чата переносит его голос, а не добавляет новый
+            if (previous != null) {
+                pairingVotes.count(previous, -1);
+            }
+            pairingVotes.count(rating, 1);
+            updated = pairingVotes.toPairing(rating.getWineId(), rating.getDishId());
+            pairings.put(updated);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        events.pairingChanged(updated);
+        return updated;
+    }
+
+    @Override
+    public List<Pairing> recordRatings(List<Rating> batch) {
+        Map<Long, Pairing> updated = new LinkedHashMap<>();
+        for (Rating rating : batch) {
+            Pairing pairing = recordRating(rating);
+            if (pairing != null) {
+                updated.put(key(pairing.getWineId(), pairing.getDishId()), pairing);
+            }
+        }
+        return new ArrayList<>(updated.values());
+    }
+
+    @Override
+    public List<Rating> getAllRatings() {
+        lock.readLock().lock();
+        try {
+            List<Rating> all = new ArrayList<>();
+            for (Map<Long, Rating> byChat : ratings.values()) {
+                all.addAll(byChat.values());
+            }
+            return all;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return журнал оценок в порядке поступления, включая замененные повторной оценкой
+     */
+    public List<Rating> getRatingLog() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(ratingLog);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Блюда
+
+    @Override
+    public List<String> findDishesByCategory(String category) {
+        lock.readLock().lock();
+        try {
+            List<String> names = new ArrayList<>();
+            for (Dish dish : dishesById.values()) {
+                if (dish.getCategory().name().equalsIgnoreCase(category)) {
+                    names.add(dish.getName());
+                }
+            }
+            return names;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> findPairingsForWine(String wineName) {
+        return findPairings(wineName);
+    }
+
+    @Override
+    public boolean addDish(String name, String category, int fatContent, int proteinContent) throws SQLException {
+        Dish dish = new Dish(name, parseCategory(category), fatContent, proteinContent);
+        lock.writeLock().lock();
+        try {
+            dish.setId(nextDishId);
+            putDish(new Dish(dish));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        events.dishChanged(dish);
+        return true;
+    }
+
+    @Override
+    public Dish getDishById(int id) {
+        lock.readLock().lock();
+        try {
+            Dish dish = dishesById.get(id);
+            return dish == null ? null : new Dish(dish);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Dish> getDishesByIds(List<Integer> ids) {
+        lock.readLock().lock();
+        try {
+            List<Dish> dishes = new ArrayList<>(ids.size());
+            for (int id : ids) {
+                Dish dish = dishesById.get(id);
+                if (dish != null) {
+                    dishes.add(new Dish(dish));
+                }
+            }
+            return dishes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean updateDish(Dish dish) {
+        lock.writeLock().lock();
+        try {
+            Dish existing = dishesById.get(dish.getId());
+            if (existing == null) {
+                return false;
+            }
+            dishNames.remove(existing.getName(), existing.getId());
+            dish.setVersion(existing.getVersion() + 1);
+            putDish(new Dish(dish));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        events.dishChanged(dish);
+        return true;
+    }
+
+    /**
+     * Удаляет блюдо вместе с его сочетаниями
+     */
+    @Override
+    public boolean deleteDish(int id) {
+        lock.writeLock().lock();
+        try {
+            Dish removed = dishesById.remove(id);
+            if (removed == null) {
+                return false;
+            }
+            dishNames.remove(removed.getName(), id);
+            forgetVotes(pairings.removeDish(id));
+            ratings.keySet().removeIf(k -> (int) k.longValue() == id);
+            ratingLog.removeIf(rating -> rating.getDishId() == id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        events.dishDeleted(id);
+        return true;
+    }
+
+    @Override
+    public List<Dish> getAllDishes() {
+        lock.readLock().lock();
+        try {
+            List<Dish> dishes = new ArrayList<>(dishesById.size());
+            for (Dish dish : dishesById.values()) {
+                dishes.add(new Dish(dish));
+            }
+            return dishes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Снимок каталога
+
+    /**
+     * Загружает каталог из файла снимка
+     * @param path путь к файлу снимка
+     * @return каталог; пустой, если файла нет
+     * @throws IOException если файл поврежден или не читается
+     */
+    public static InMemoryCatalog load(Path path) throws IOException {
+        InMemoryCatalog catalog = new InMemoryCatalog();
+        if (!Files.exists(path)) {
+            return catalog;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            int version = in.readInt() == SNAPSHOT_MAGIC ? in.readInt() : -1;
+            if (version < 1 || version > SNAPSHOT_VERSION) {
+                throw new IOException("Неизвестный формат файла снимка: " + path);
+            }
+
+            int wineCount = in.readInt();
+            for (int i = 0; i < wineCount; i++) {
+                Wine wine = new Wine();
+                wine.setId(in.readInt());
+                wine.setName(readString(in));
+                wine.setType(Wine.WineType.valueOf(readString(in)));
+                int tannins = in.readInt();
+                int acidity = in.readInt();
+                wine.setRegion(readString(in));
+                int vintage = in.readInt();
+                wine.setDescription(readString(in));
+                if (tannins != 0) wine.setTannins(tannins);
+                if (acidity != 0) wine.setAcidity(acidity);
+                if (vintage != 0) wine.setVintage(vintage);
+                catalog.putWine(wine);
+            }
+
+            int dishCount = in.readInt();
+            for (int i = 0; i < dishCount; i++) {
+                Dish dish = new Dish();
+                dish.setId(in.readInt());
+                dish.setName(readString(in));
+                dish.setCategory(Dish.DishCategory.valueOf(readString(in)));
+                int fatContent = in.readInt();
+                int proteinContent = in.readInt();
+                dish.setCookingTime(in.readInt());
+                dish.setIngredients(readString(in));
+                dish.setRecipe(readString(in));
+                if (fatContent != 0) dish.setFatContent(fatContent);
+                if (proteinContent != 0) dish.setProteinContent(proteinContent);
+                catalog.putDish(dish);
+            }
+
+            int pairingCount = in.readInt();
+            for (int i = 0; i < pairingCount; i++) {
+                catalog.savePairing(new Pairing(in.readInt(), in.readInt(), in.readInt()));
+            }
+
+            // Начиная с версии 2 снимок содержит оценки; журнал и голоса восстанавливаются их повтором
+            if (version >= 2) {
+                int ratingCount = in.readInt();
+                for (int i = 0; i < ratingCount; i++) {
+                    catalog.recordRating(new Rating(in.readLong(), in.readInt(), in.readInt(), in.readInt()));
+                }
+            }
+        }
+        return catalog;
+    }
+
+    /**
+     * Сохраняет каталог в файл снимка. Файл записывается целиком во временный
+     * файл рядом и затем атомарно подменяется, поэтому при сбое старый снимок сохраняется.
+     * @param path путь к файлу снимка
+     */
+    public void save(Path path) throws IOException {
+        Path absolute = path.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+
+            out.writeInt(winesById.size());
+            for (Wine wine : winesById.values()) {
+                out.writeInt(wine.getId());
+                writeString(out, wine.getName());
+                writeString(out, wine.getType().name());
+                out.writeInt(wine.getTannins());
+                out.writeInt(wine.getAcidity());
+                writeString(out, wine.getRegion());
+                out.writeInt(wine.getVintage());
+                writeString(out, wine.getDescription());
+            }
+
+            out.writeInt(dishesById.size());
+            for (Dish dish : dishesById.values()) {
+                out.writeInt(dish.getId());
+                writeString(out, dish.getName());
+                writeString(out, dish.getCategory().name());
+                out.writeInt(dish.getFatContent());
+                out.writeInt(dish.getProteinContent());
+                out.writeInt(dish.getCookingTime());
+                writeString(out, dish.getIngredients());
+                writeString(out, dish.getRecipe());
+            }
+
+            // Сочетания сохраняются с исходной оценкой, итоговая пересчитывается по оценкам
+            List<Pairing> allPairings = pairings.all();
+            out.writeInt(allPairings.size());
+            for (Pairing pairing : allPairings) {
+                out.writeInt(pairing.getWineId());
+                out.writeInt(pairing.getDishId());
+                out.writeInt(votes.get(key(pairing.getWineId(), pairing.getDishId())).baseScore);
+            }
+
+            // Пишется журнал: повтор по порядку восстанавливает и текущие оценки
+            out.writeInt(ratingLog.size());
+            for (Rating rating : ratingLog) {
+                out.writeLong(rating.getChatId());
+                out.writeInt(rating.getWineId());
+                out.writeInt(rating.getDishId());
+                out.writeInt(rating.getValue());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Вспомогательные методы
+
+    /**
+     * Исходная оценка сочетания и голоса пользователей
+     */
+    private static final class PairingVotes {
+        private int baseScore;
+        private int votesUp;
+        private int votesDown;
+
+        // Добавляет (delta = 1) или снимает (delta = -1) голос оценки
+        private void count(Rating rating, int delta) {
+            if (rating.isGood()) {
+                votesUp += delta;
+            } else {
+                votesDown += delta;
+            }
+        }
+
+        private Pairing toPairing(int wineId, int dishId) {
+            return new Pairing(wineId, dishId, Pairing.bayesianScore(baseScore, votesUp, votesDown));
+        }
+    }
+
+    private static long key(int wineId, int dishId) {
+        return ((long) wineId << 32) | (dishId & 0xFFFFFFFFL);
+    }
+
+    private void forgetVotes(List<Pairing> removed) {
+        for (Pairing pairing : removed) {
+            votes.remove(key(pairing.getWineId(), pairing.getDishId()));
+        }
+    }
+
+    private void putWine(Wine wine) {
+        winesById.put(wine.getId(), wine);
+        wineNames.add(wine.getName(), wine.getId());
+        nextWineId = Math.max(nextWineId, wine.getId() + 1);
+    }
+
+    private void putDish(Dish dish) {
+        dishesById.put(dish.getId(), dish);
+        dishNames.add(dish.getName(), dish.getId());
+        nextDishId = Math.max(nextDishId, dish.getId() + 1);
+    }
+
+    private static Dish.DishCategory parseCategory(String category) throws SQLException {
+        try {
+            return Dish.DishCategory.fromString(category);
+        } catch (IllegalArgumentException e) {
+            throw new SQLException(e.getMessage(), e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
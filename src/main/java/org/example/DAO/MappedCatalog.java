@@ -0,0 +1,426 @@
+package org.example.DAO;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Каталог, читаемый напрямую из отображенного в память бинарного снимка.
+ * Файл отображается через FileChannel.map и подгружается операционной системой
+ * по мере обращения, поэтому каталог доступен сразу после старта.
+ *
+ * Формат файла: заголовок, записи вин и блюд фиксированной длины
+ * (отсортированы по ID), записи сочетаний (отсортированы по ID вина и убыванию оценки)
+ * и таблица строк, на которую ссылаются записи.
+ * Снимок не изменяется, поэтому каталог реализует только интерфейсы чтения.
+ */
+public class MappedCatalog implements WineReadRepository, DishReadRepository {
+    private static final int MAGIC = 0x564D4150;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 36;
+    private static final int WINE_RECORD_SIZE = 24;
+    private static final int DISH_RECORD_SIZE = 24;
+    private static final int PAIRING_RECORD_SIZE = 12;
+    private static final int NO_STRING = -1;
+
+    private final ByteBuffer buffer;
+    private final int wineCount;
+    private final int dishCount;
+    private final int pairingCount;
+    private final int wineOffset;
+    private final int dishOffset;
+    private final int pairingOffset;
+    private final int stringsOffset;
+
+    private MappedCatalog(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Неизвестный формат бинарного снимка каталога");
+        }
+        this.wineCount = buffer.getInt(8);
+        this.dishCount = buffer.getInt(12);
+        this.pairingCount = buffer.getInt(16);
+        this.wineOffset = buffer.getInt(20);
+        this.dishOffset = buffer.getInt(24);
+        this.pairingOffset = buffer.getInt(28);
+        this.stringsOffset = buffer.getInt(32);
+    }
+
+    /**
+     * Отображает файл снимка в память
+     * @param path путь к файлу снимка
+     * @return каталог, читающий данные из файла
+     */
+    public static MappedCatalog open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedCatalog(buffer);
+        }
+    }
+
+    /**
+     * Записывает бинарный снимок каталога. Файл пишется во временный файл рядом
+     * и затем атомарно подменяется, поэтому уже отображенный снимок остается целым.
+     * @param path путь к файлу снимка
+     * @param wines хранилище вин и сочетаний
+     * @param dishes хранилище блюд
+     */
+    public static void write(Path path, WineReadRepository wines, DishReadRepository dishes) throws IOException, SQLException {
+        List<Wine> wineList = new ArrayList<>(wines.getAllWines());
+        List<Dish> dishList = new ArrayList<>(dishes.getAllDishes());
+        List<Pairing> pairings = new ArrayList<>(wines.getAllPairings());
+        wineList.sort(Comparator.comparingInt(Wine::getId));
+        dishList.sort(Comparator.comparingInt(Dish::getId));
+        pairings.sort(Comparator.comparingInt(Pairing::getWineId)
+                .thenComparing(Comparator.comparingInt(Pairing::getScore).reversed()));
+
+        StringTable strings = new StringTable();
+        ByteBuffer records = ByteBuffer.allocate(wineList.size() * WINE_RECORD_SIZE
+                + dishList.size() * DISH_RECORD_SIZE + pairings.size() * PAIRING_RECORD_SIZE);
+
+        for (Wine wine : wineList) {
+            records.putInt(wine.getId());
+            records.putInt(strings.add(wine.getName()));
+            records.putInt(strings.add(wine.getRegion()));
+            records.putInt(strings.add(wine.getDescription()));
+            records.putShort((short) wine.getVintage());
+            records.put((byte) wine.getType().ordinal());
+            records.put((byte) wine.getTannins());
+            records.put((byte) wine.getAcidity());
+            records.put(new byte[3]);
+        }
+        for (Dish dish : dishList) {
+            records.putInt(dish.getId());
+            records.putInt(strings.add(dish.getName()));
+            records.putInt(strings.add(dish.getIngredients()));
+            records.putInt(strings.add(dish.getRecipe()));
+            records.putInt(dish.getCookingTime());
+            records.put((byte) dish.getCategory().ordinal());
+            records.put((byte) dish.getFatContent());
+            records.put((byte) dish.getProteinContent());
+            records.put((byte) 0);
+        }
+        for (Pairing pairing : pairings) {
+            records.putInt(pairing.getWineId());
+            records.putInt(pairing.getDishId());
+            records.putInt(pairing.getScore());
+        }
+
+        int wineOffset = HEADER_SIZE;
+        int dishOffset = wineOffset + wineList.size() * WINE_RECORD_SIZE;
+        int pairingOffset = dishOffset + dishList.size() * DISH_RECORD_SIZE;
+        int stringsOffset = pairingOffset + pairings.size() * PAIRING_RECORD_SIZE;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION)
+                .putInt(wineList.size()).putInt(dishList.size()).putInt(pairings.size())
+                .putInt(wineOffset).putInt(dishOffset).putInt(pairingOffset).putInt(stringsOffset);
+
+        Path absolute = path.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (ByteBuffer part : new ByteBuffer[]{header.flip(), records.flip(), strings.toBuffer()}) {
+                while (part.hasRemaining()) {
+                    channel.write(part);
+                }
+            }
+            channel.force(true);
+        }
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Вина
+
+    @Override
+    public List<String> findPairings(String wineName) {
+        List<int[]> found = new ArrayList<>();
+        for (int i = 0; i < wineCount; i++) {
+            int record = wineOffset + i * WINE_RECORD_SIZE;
+            if (readString(buffer.getInt(record + 4)).contains(wineName)) {
+                int wineId = buffer.getInt(record);
+                for (int p = firstPairing(wineId); p < pairingCount && pairingWineId(p) == wineId; p++) {
+                    int pairingRecord = pairingOffset + p * PAIRING_RECORD_SIZE;
+                    found.add(new int[]{buffer.getInt(pairingRecord + 4), buffer.getInt(pairingRecord + 8)});
+                }
+            }
+        }
+        found.sort(Comparator.comparingInt((int[] pairing) -> pairing[1]).reversed());
+
+        List<String> names = new ArrayList<>(found.size());
+        for (int[] pairing : found) {
+            int index = findIndex(dishOffset, DISH_RECORD_SIZE, dishCount, pairing[0]);
+            if (index >= 0) {
+                names.add(readString(buffer.getInt(dishOffset + index * DISH_RECORD_SIZE + 4)));
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public TopPairings findTopPairings(String wineName) {
+        List<Wine> wines = findWinesByName(wineName);
+        List<Pairing> found = new ArrayList<>();
+        for (Wine wine : wines) {
+            int wineId = wine.getId();
+            for (int p = firstPairing(wineId); p < pairingCount && pairingWineId(p) == wineId; p++) {
+                int pairingRecord = pairingOffset + p * PAIRING_RECORD_SIZE;
+                found.add(new Pairing(wineId, buffer.getInt(pairingRecord + 4), buffer.getInt(pairingRecord + 8)));
+            }
+        }
+        return TopPairings.of(wines, found, dishId -> {
+            int index = findIndex(dishOffset, DISH_RECORD_SIZE, dishCount, dishId);
+            return index < 0 ? null : readDish(index);
+        });
+    }
+
+    /**
+     * Сочетания в снимке упорядочены по винам, поэтому обратный поиск просматривает
+     * их целиком; снимок используется только в период прогрева
+     */
+    @Override
+    public List<String> findWinesForDish(String dishName) {
+        Set<Integer> dishIds = new HashSet<>();
+        for (int i = 0; i < dishCount; i++) {
+            int record = dishOffset + i * DISH_RECORD_SIZE;
+            if (readString(buffer.getInt(record + 4)).contains(dishName)) {
+                dishIds.add(buffer.getInt(record));
+            }
+        }
+        if (dishIds.isEmpty()) {
+            return List.of();
+        }
+
+        List<int[]> found = new ArrayList<>();
+        for (int p = 0; p < pairingCount; p++) {
+            int pairingRecord = pairingOffset + p * PAIRING_RECORD_SIZE;
+            if (dishIds.contains(buffer.getInt(pairingRecord + 4))) {
+                found.add(new int[]{buffer.getInt(pairingRecord), buffer.getInt(pairingRecord + 8)});
+            }
+        }
+        found.sort(Comparator.comparingInt((int[] pairing) -> pairing[1]).reversed());
+
+        List<String> names = new ArrayList<>(found.size());
+        for (int[] pairing : found) {
+            int index = findIndex(wineOffset, WINE_RECORD_SIZE, wineCount, pairing[0]);
+            if (index >= 0) {
+                names.add(readString(buffer.getInt(wineOffset + index * WINE_RECORD_SIZE + 4)));
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public Wine getWineById(int id) {
+        int index = findIndex(wineOffset, WINE_RECORD_SIZE, wineCount, id);
+        return index < 0 ? null : readWine(index);
+    }
+
+    @Override
+    public List<Wine> getAllWines() {
+        List<Wine> wines = new ArrayList<>(wineCount);
+        for (int i = 0; i < wineCount; i++) {
+            wines.add(readWine(i));
+        }
+        return wines;
+    }
+
+    @Override
+    public List<Wine> findWinesByName(String name) {
+        List<Wine> wines = new ArrayList<>();
+        for (int i = 0; i < wineCount; i++) {
+            if (readString(buffer.getInt(wineOffset + i * WINE_RECORD_SIZE + 4)).contains(name)) {
+                wines.add(readWine(i));
+            }
+        }
+        return wines;
+    }
+
+    @Override
+    public List<Pairing> getAllPairings() {
+        List<Pairing> pairings = new ArrayList<>(pairingCount);
+        for (int i = 0; i < pairingCount; i++) {
+            int record = pairingOffset + i * PAIRING_RECORD_SIZE;
+            pairings.add(new Pairing(buffer.getInt(record), buffer.getInt(record + 4), buffer.getInt(record + 8)));
+        }
+        return pairings;
+    }
+
+    // Блюда
+
+    @Override
+    public List<String> findDishesByCategory(String category) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < dishCount; i++) {
+            int record = dishOffset + i * DISH_RECORD_SIZE;
+            if (Dish.DishCategory.values()[buffer.get(record + 20)].name().equalsIgnoreCase(category)) {
+                names.add(readString(buffer.getInt(record + 4)));
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public List<String> findPairingsForWine(String wineName) {
+        return findPairings(wineName);
+    }
+
+    @Override
+    public Dish getDishById(int id) {
+        int index = findIndex(dishOffset, DISH_RECORD_SIZE, dishCount, id);
+        return index < 0 ? null : readDish(index);
+    }
+
+    @Override
+    public List<Dish> getDishesByIds(List<Integer> ids) {
+        List<Dish> dishes = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            Dish dish = getDishById(id);
+            if (dish != null) {
+                dishes.add(dish);
+            }
+        }
+        return dishes;
+    }
+
+    @Override
+    public List<Dish> getAllDishes() {
+        List<Dish> dishes = new ArrayList<>(dishCount);
+        for (int i = 0; i < dishCount; i++) {
+            dishes.add(readDish(i));
+        }
+        return dishes;
+    }
+
+    // Чтение записей
+
+    private Wine readWine(int index) {
+        int record = wineOffset + index * WINE_RECORD_SIZE;
+        Wine wine = new Wine();
+        wine.setId(buffer.getInt(record));
+        wine.setName(readString(buffer.getInt(record + 4)));
+        wine.setRegion(readString(buffer.getInt(record + 8)));
+        wine.setDescription(readString(buffer.getInt(record + 12)));
+        wine.setType(Wine.WineType.values()[buffer.get(record + 18)]);
+        int vintage = buffer.getShort(record + 16);
+        int tannins = buffer.get(record + 19);
+        int acidity = buffer.get(record + 20);
+        if (vintage != 0) wine.setVintage(vintage);
+        if (tannins != 0) wine.setTannins(tannins);
+        if (acidity != 0) wine.setAcidity(acidity);
+        return wine;
+    }
+
+    private Dish readDish(int index) {
+        int record = dishOffset + index * DISH_RECORD_SIZE;
+        Dish dish = new Dish();
+        dish.setId(buffer.getInt(record));
+        dish.setName(readString(buffer.getInt(record + 4)));
+        dish.setIngredients(readString(buffer.getInt(record + 8)));
+        dish.setRecipe(readString(buffer.getInt(record + 12)));
+        dish.setCookingTime(buffer.getInt(record + 16));
+        dish.setCategory(Dish.DishCategory.values()[buffer.get(record + 20)]);
+        int fatContent = buffer.get(record + 21);
+        int proteinContent = buffer.get(record + 22);
+        if (fatContent != 0) dish.setFatContent(fatContent);
+        if (proteinContent != 0) dish.setProteinContent(proteinContent);
+        return dish;
+    }
+
+    private String readString(int ref) {
+        if (ref == NO_STRING) {
+            return null;
+        }
+        int position = stringsOffset + ref;
+        byte[] bytes = new byte[buffer.getInt(position)];
+        buffer.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Двоичный поиск записи по ID (ID хранится в первых 4 байтах записи)
+     */
+    private int findIndex(int offset, int recordSize, int count, int id) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = buffer.getInt(offset + mid * recordSize);
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int pairingWineId(int index) {
+        return buffer.getInt(pairingOffset + index * PAIRING_RECORD_SIZE);
+    }
+
+    /**
+     * @return индекс первого сочетания вина (или позиция, где оно было бы)
+     */
+    private int firstPairing(int wineId) {
+        int low = 0;
+        int high = pairingCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (pairingWineId(mid) < wineId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Таблица строк снимка: одинаковые строки хранятся один раз
+     */
+    private static class StringTable {
+        private final Map<String, Integer> offsets = new HashMap<>();
+        private final List<byte[]> entries = new ArrayList<>();
+        private int size;
+
+        int add(String value) {
+            if (value == null) {
+                return NO_STRING;
+            }
+            Integer existing = offsets.get(value);
+            if (existing != null) {
+                return existing;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            int offset = size;
+            offsets.put(value, offset);
+            entries.add(bytes);
+            size += 4 + bytes.length;
+            return offset;
+        }
+
+        ByteBuffer toBuffer() {
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            for (byte[] bytes : entries) {
+                buffer.putInt(bytes.length).put(bytes);
+            }
+            return buffer.flip();
+        }
+    }
+}
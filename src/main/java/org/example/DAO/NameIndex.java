@@ -0,0 +1,91 @@
+package org.example.DAO;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Индекс названий встроенного каталога для поиска по подстроке (аналог LIKE '%образец%').
+ *
+ * Для каждого названия хранятся ID записей, а для каждой триграммы (трех подряд
+ * идущих символов) — названия, в которых она встречается. Кандидаты берутся из самого
+ * короткого списка среди триграмм образца и проверяются contains, поэтому просматриваются
+ * только названия с редкой триграммой образца, а не все. Образцы короче трех символов
+ * проверяются по всем названиям. Не потокобезопасен: доступ под блокировкой каталога.
+ */
+final class NameIndex {
+    private static final int GRAM = 3;
+
+    private final Map<String, List<Integer>> idsByName = new HashMap<>();
+    private final Map<String, Set<String>> namesByGram = new HashMap<>();
+
+    void add(String name, int id) {
+        idsByName.computeIfAbsent(name, n -> {
+            for (String gram : grams(n)) {
+                namesByGram.computeIfAbsent(gram, g -> new HashSet<>()).add(n);
+            }
+            return new ArrayList<>(1);
+        }).add(id);
+    }
+
+    void remove(String name, int id) {
+        List<Integer> ids = idsByName.get(name);
+        if (ids == null) {
+            return;
+        }
+        ids.remove(Integer.valueOf(id));
+        if (!ids.isEmpty()) {
+            return;
+        }
+        idsByName.remove(name);
+        for (String gram : grams(name)) {
+            Set<String> names = namesByGram.get(gram);
+            names.remove(name);
+            if (names.isEmpty()) {
+                namesByGram.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * @param pattern образец (с учетом регистра, как LIKE)
+     * @return ID записей, название которых содержит образец
+     */
+    List<Integer> matching(String pattern) {
+        List<Integer> ids = new ArrayList<>();
+        for (String name : candidates(pattern)) {
+            if (name.contains(pattern)) {
+                ids.addAll(idsByName.get(name));
+            }
+        }
+        return ids;
+    }
+
+    private Set<String> candidates(String pattern) {
+        if (pattern.length() < GRAM) {
+            return idsByName.keySet();
+        }
+        Set<String> smallest = null;
+        for (String gram : grams(pattern)) {
+            Set<String> names = namesByGram.get(gram);
+            if (names == null) {
+                return Set.of();
+            }
+            if (smallest == null || names.size() < smallest.size()) {
+                smallest = names;
+            }
+        }
+        return smallest;
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+}
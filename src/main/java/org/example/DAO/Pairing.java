@@ -0,0 +1,86 @@
+package org.example.DAO;
+
+import java.util.Objects;
+
+/**
+ * Сочетание вина и блюда с оценкой.
+ * Соответствует строке таблицы pairings.
+ */
+public class Pairing {
+    /**
+     * Максимальная оценка сочетания; оценка «хорошо» считается голосом за нее, «плохо» — за 0
+     */
+    public static final int MAX_SCORE = 10;
+    /**
+     * Вес исходной оценки сочетания в числе голосов (априорное среднее)
+     */
+    public static final int PRIOR_WEIGHT = 5;
+
+    private final int wineId;
+    private final int dishId;
+    private final int score;
+
+    /**
+     * Конструктор сочетания
+     * @param wineId ID вина
+     * @param dishId ID блюда
+     * @param score оценка сочетания (чем больше, тем лучше)
+     */
+    public Pairing(int wineId, int dishId, int score) {
+        this.wineId = wineId;
+        this.dishId = dishId;
+        this.score = score;
+    }
+
+    /**
+     * @return ID вина
+     */
+    public int getWineId() {
+        return wineId;
+    }
+
+    /**
+     * @return ID блюда
+     */
+    public int getDishId() {
+        return dishId;
+    }
+
+    /**
+     * @return оценка сочетания
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Байесовская оценка сочетания: исходная оценка считается PRIOR_WEIGHT голосами,
+     * поэтому несколько отзывов не меняют порядок резко, а многие — определяют его
+     * @param baseScore исходная оценка сочетания
+     * @param votesUp число оценок «хорошо»
+     * @param votesDown число оценок «плохо»
+     * @return оценка с учетом отзывов, округленная до целого
+     */
+    public static int bayesianScore(int baseScore, int votesUp, int votesDown) {
+        double total = (double) PRIOR_WEIGHT * baseScore + (double) MAX_SCORE * votesUp;
+        return (int) Math.round(total / (PRIOR_WEIGHT + votesUp + votesDown));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Pairing pairing = (Pairing) o;
+        return wineId == pairing.wineId && dishId == pairing.dishId && score == pairing.score;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(wineId, dishId, score);
+    }
+
+    @Override
+    public String toString() {
+        return "Pairing{wineId=" + wineId + ", dishId=" + dishId + ", score=" + score + "}";
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.DAO;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Граф сочетаний со списками смежности в обе стороны: от вина к блюдам
+ * и от блюда к винам. Оба списка отсортированы по убыванию оценки и
+ * изменяются вместе, поэтому поиск в любую сторону стоит одинаково.
+ * Класс не потокобезопасен, синхронизация выполняется каталогом.
+ */
+final class PairingGraph {
+    static final Comparator<Pairing> BY_SCORE_DESC =
+            Comparator.comparingInt(Pairing::getScore).reversed();
+
+    private final Map<Integer, List<Pairing>> byWine = new HashMap<>();
+    private final Map<Integer, List<Pairing>> byDish = new HashMap<>();
+
+    /**
+     * Добавляет сочетание или заменяет оценку существующего
+     */
+    void put(Pairing pairing) {
+        insert(byWine.computeIfAbsent(pairing.getWineId(), id -> new ArrayList<>()), pairing);
+        insert(byDish.computeIfAbsent(pairing.getDishId(), id -> new ArrayList<>()), pairing);
+    }
+
+    /**
+     * @return сочетания вина в порядке убывания оценки
+     */
+    List<Pairing> forWine(int wineId) {
+        return byWine.getOrDefault(wineId, List.of());
+    }
+
+    /**
+     * @return сочетания блюда в порядке убывания оценки
+     */
+    List<Pairing> forDish(int dishId) {
+        return byDish.getOrDefault(dishId, List.of());
+    }
+
+    /**
+     * Удаляет все сочетания вина
+     * @return удаленные сочетания
+     */
+    List<Pairing> removeWine(int wineId) {
+        List<Pairing> removed = byWine.remove(wineId);
+        if (removed == null) {
+            return List.of();
+        }
+        for (Pairing pairing : removed) {
+            unlink(byDish, pairing.getDishId(), p -> p.getWineId() == wineId);
+        }
+        return removed;
+    }
+
+    /**
+     * Удаляет все сочетания блюда
+     * @return удаленные сочетания
+     */
+    List<Pairing> removeDish(int dishId) {
+        List<Pairing> removed = byDish.remove(dishId);
+        if (removed == null) {
+            return List.of();
+        }
+        for (Pairing pairing : removed) {
+            unlink(byWine, pairing.getWineId(), p -> p.getDishId() == dishId);
+        }
+        return removed;
+    }
+
+    /**
+     * @return все сочетания, сгруппированные по винам
+     */
+    List<Pairing> all() {
+        List<Pairing> pairings = new ArrayList<>();
+        for (List<Pairing> adjacency : byWine.values()) {
+            pairings.addAll(adjacency);
+        }
+        return pairings;
+    }
+
+    private static void insert(List<Pairing> adjacency, Pairing pairing) {
+        adjacency.removeIf(p -> p.getWineId() == pairing.getWineId() && p.getDishId() == pairing.getDishId());
+        int position = 0;
+        while (position < adjacency.size() && adjacency.get(position).getScore() >= pairing.getScore()) {
+            position++;
+        }
+        adjacency.add(position, pairing);
+    }
+
+    private static void unlink(Map<Integer, List<Pairing>> index, int key, Predicate<Pairing> filter) {
+        List<Pairing> adjacency = index.get(key);
+        if (adjacency != null) {
+            adjacency.removeIf(filter);
+            if (adjacency.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Сортирует найденные сочетания по убыванию оценки
+     */
+    static void sortByScore(List<Pairing> pairings) {
+        pairings.sort(BY_SCORE_DESC);
+    }
+}
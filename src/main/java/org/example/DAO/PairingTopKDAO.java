@@ -0,0 +1,143 @@
+package org.example.DAO;
+
+import org.example.Coordination.JobCoordinator;
+import org.example.Tracing.TraceLog;
+import org.example.Utils.Metrics;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лучшие сочетания каждого вина, заранее отобранные в таблицу pairing_topk.
+ *
+ * Для каждого вина хранятся K блюд с наибольшей оценкой и их места (rank),
+ * поэтому /pair читает готовые строки по первичному ключу (wine_id, rank) вместо
+ * сортировки всех сочетаний вина. Таблица обновляется по уведомлениям об изменении
+ * сочетаний и оценок: пересчитываются только строки затронутого вина, одним запросом
+ * на основной БД. Периодическая проверка сравнивает таблицу с pairings и исправляет
+ * расхождения, например после изменений, сделанных в обход бота. Строки удаленного
+ * блюда удаляет внешний ключ pairing_topk.dish_id (ON DELETE CASCADE).
+ */
+public class PairingTopKDAO implements CatalogListener {
+    // Сколько лучших блюд хранится для вина
+    public static final int K = 10;
+
+    // Места блюд вина по оценке; при равной оценке — по ID блюда, чтобы порядок был однозначным
+    private static final String RANKED_SQL = "SELECT wine_id, rank, dish_id, score FROM (" +
+            "SELECT wine_id, dish_id, score, " +
+            "row_number() OVER (PARTITION BY wine_id ORDER BY score DESC NULLS LAST, dish_id) AS rank " +
+            "FROM pairings%s) ranked WHERE rank <= " + K;
+    // Места, которые изменились, перезаписываются; лишние места (сочетаний стало меньше K) удаляются
+    private static final String UPSERT_SQL = "WITH upserted AS (" +
+            "INSERT INTO pairing_topk (wine_id, rank, dish_id, score) %s " +
+            "ON CONFLICT (wine_id, rank) DO UPDATE SET dish_id = EXCLUDED.dish_id, score = EXCLUDED.score " +
+            "WHERE (pairing_topk.dish_id, pairing_topk.score) IS DISTINCT FROM (EXCLUDED.dish_id, EXCLUDED.score) " +
+            "RETURNING 1) " +
+            "DELETE FROM pairing_topk t WHERE %s" +
+            "t.rank > (SELECT LEAST(" + K + ", COUNT(*)) FROM pairings p WHERE p.wine_id = t.wine_id)";
+    private static final String REFRESH_SQL = String.format(UPSERT_SQL,
+            String.format(RANKED_SQL, " WHERE wine_id = ANY(?::int[])"), "t.wine_id = ANY(?::int[]) AND ");
+    /**
+     * Полное построение таблицы по pairings; выполняется при инициализации БД
+     */
+    public static final String REBUILD_SQL = String.format(UPSERT_SQL, String.format(RANKED_SQL, ""), "");
+    // Вина, у которых строки таблицы не совпадают с местами, вычисленными по pairings
+    private static final String CHECK_SQL = "SELECT DISTINCT COALESCE(e.wine_id, t.wine_id) FROM (" +
+            String.format(RANKED_SQL, "") + ") e " +
+            "FULL OUTER JOIN pairing_topk t ON t.wine_id = e.wine_id AND t.rank = e.rank " +
+            "WHERE e.wine_id IS NULL OR t.wine_id IS NULL " +
+            "OR t.dish_id <> e.dish_id OR t.score IS DISTINCT FROM e.score ORDER BY 1";
+
+    private final ReplicaRouter router;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param router маршрутизатор запросов; таблица пересчитывается и проверяется на основной БД
+     */
+    public PairingTopKDAO(ReplicaRouter router) {
+        this.router = Objects.requireNonNull(router, "ReplicaRouter не может быть null");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pairing-topk-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Пересчитывает лучшие сочетания указанных вин
+     * @param wineIds ID вин
+     */
+    public void refresh(Collection<Integer> wineIds) {
+        if (wineIds.isEmpty()) {
+            return;
+        }
+        Integer[] ids = wineIds.toArray(new Integer[0]);
+        try {
+            router.primary().update(REFRESH_SQL, stmt -> {
+                stmt.setArray(1, stmt.getConnection().createArrayOf("int4", ids));
+                stmt.setArray(2, stmt.getConnection().createArrayOf("int4", ids));
+            });
+        } catch (SQLException e) {
+            throw new WineDAO.DataAccessException("Ошибка при обновлении лучших сочетаний вин: " + wineIds, e);
+        }
+        Metrics.counter("pairing_topk.refreshed").add(ids.length);
+    }
+
+    /**
+     * Сравнивает таблицу с pairings
+     * @return ID вин, строки которых в таблице устарели (пустой список — расхождений нет)
+     */
+    public List<Integer> check() {
+        long start = System.nanoTime();
+        try {
+            return router.primary().query(CHECK_SQL, QueryRunner.Binder.NONE, RowMappers.FIRST_INT);
+        } catch (SQLException e) {
+            throw new WineDAO.DataAccessException("Ошибка при проверке лучших сочетаний", e);
+        } finally {
+            Metrics.timer("pairing_topk.check").recordSince(start);
+        }
+    }
+
+    /**
+     * Проверяет таблицу и пересчитывает вина с расхождениями
+     * @return число исправленных вин
+     */
+    public int checkAndRepair() {
+        List<Integer> stale = check();
+        if (!stale.isEmpty()) {
+            TraceLog.warn("Лучшие сочетания расходятся с pairings для вин: " + stale);
+            refresh(stale);
+            Metrics.counter("pairing_topk.repaired").add(stale.size());
+        }
+        return stale.size();
+    }
+
+    /**
+     * Запускает периодическую проверку на ведущем экземпляре задачи pairing_topk.check
+     * @param coordinator выбор ведущего экземпляра
+     * @param interval интервал между проверками
+     */
+    public void startChecks(JobCoordinator coordinator, Duration interval) {
+        scheduler.scheduleWithFixedDelay(coordinator.leaderOnly("pairing_topk.check", () -> {
+            try {
+                checkAndRepair();
+            } catch (RuntimeException e) {
+                TraceLog.error("Ошибка при проверке лучших сочетаний", e);
+            }
+        }), interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Новое сочетание или изменение оценки меняет места блюд только у этого вина
+     */
+    @Override
+    public void pairingChanged(Pairing pairing) {
+        refresh(List.of(pairing.getWineId()));
+    }
+}
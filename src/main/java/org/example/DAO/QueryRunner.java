@@ -0,0 +1,312 @@
+package org.example.DAO;
+
+import org.example.Tracing.TraceContext;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Выполняет SQL-запросы через пул соединений с БД.
+ * Каждый запрос подготавливается один раз на соединение и затем переиспользуется
+ * из кэша этого соединения. Соединение и его подготовленные запросы не потокобезопасны,
+ * поэтому запрос забирает свободное соединение из пула на время выполнения: запросы
+ * из разных потоков выполняются параллельно, пока хватает соединений, и ждут
+ * освобождения соединения, когда все заняты. Соединение пула, на котором запрос
+ * завершился ошибкой соединения, закрывается и при следующем запросе открывается заново.
+ */
+public class QueryRunner {
+    // Сколько символов SQL попадает в спан трассировки
+    private static final int SQL_SUMMARY_LENGTH = 80;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * Открывает новое соединение с БД
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    /**
+     * Соединение пула и запросы, подготовленные на нем
+     */
+    private static final class Lane {
+        private Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        private final Map<String, PreparedStatement> keyStatements = new HashMap<>();
+
+        private Lane(Connection connection) {
+            this.connection = connection;
+        }
+    }
+
+    private final ConnectionFactory factory;
+    private final List<Lane> lanes = new ArrayList<>();
+    private final BlockingQueue<Lane> idle;
+
+    /**
+     * Заполняет параметры подготовленного запроса
+     */
+    @FunctionalInterface
+    public interface Binder {
+        Binder NONE = stmt -> { };
+
+        void bind(PreparedStatement stmt) throws SQLException;
+    }
+
+    /**
+     * Создает исполнителя запросов с единственным соединением
+     * @param connection соединение с БД
+     */
+    public QueryRunner(Connection connection) {
+        Objects.requireNonNull(connection, "Соединение с БД не может быть null");
+        this.factory = null;
+        this.idle = new ArrayBlockingQueue<>(1);
+        addLane(new Lane(connection));
+    }
+
+    /**
+     * Создает исполнителя запросов с пулом соединений; соединения открываются
+     * при первом запросе, которому не хватило уже открытых
+     * @param factory фабрика соединений с БД
+     * @param connections размер пула
+     */
+    public QueryRunner(ConnectionFactory factory, int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("Размер пула соединений должен быть положительным");
+        }
+        this.factory = Objects.requireNonNull(factory, "Фабрика соединений не может быть null");
+        this.idle = new ArrayBlockingQueue<>(connections);
+        for (int i = 0; i < connections; i++) {
+            addLane(new Lane(null));
+        }
+    }
+
+    private void addLane(Lane lane) {
+        lanes.add(lane);
+        idle.add(lane);
+    }
+
+    /**
+     * @return true, если запрос не выполнен из-за потери или отказа соединения
+     * (класс SQLSTATE 08), а не из-за ошибки в самом запросе
+     */
+    public static boolean isConnectionFailure(SQLException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLRecoverableException
+                    || cause instanceof SQLNonTransientConnectionException
+                    || cause instanceof SQLTransientConnectionException) {
+                return true;
+            }
+            if (cause instanceof SQLException sql && sql.getSQLState() != null && sql.getSQLState().startsWith("08")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Выполняет запрос и преобразует все строки результата
+     * @param sql текст запроса
+     * @param binder заполнение параметров
+     * @param mapper преобразователь строк
+     * @return список объектов в порядке строк результата
+     */
+    public <T> List<T> query(String sql, Binder binder, RowMapper<T> mapper) throws SQLException {
+        return traced(sql, lane -> {
+            PreparedStatement stmt = prepare(lane, lane.statements, sql, false);
+            binder.bind(stmt);
+            try (ResultSet rs = stmt.executeQuery()) {
+                List<T> rows = new ArrayList<>();
+                while (rs.next()) {
+                    rows.add(mapper.mapRow(rs));
+                }
+                return rows;
+            }
+        });
+    }
+
+    /**
+     * Выполняет запрос и возвращает первую строку результата
+     * @return объект или null, если строк нет
+     */
+    public <T> T queryOne(String sql, Binder binder, RowMapper<T> mapper) throws SQLException {
+        return traced(sql, lane -> {
+            PreparedStatement stmt = prepare(lane, lane.statements, sql, false);
+            binder.bind(stmt);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? mapper.mapRow(rs) : null;
+            }
+        });
+    }
+
+    /**
+     * Выполняет изменяющий запрос
+     * @return количество измененных строк
+     */
+    public int update(String sql, Binder binder) throws SQLException {
+        return traced(sql, lane -> {
+            PreparedStatement stmt = prepare(lane, lane.statements, sql, false);
+            binder.bind(stmt);
+            return stmt.executeUpdate();
+        });
+    }
+
+    /**
+     * Выполняет вставку и возвращает сгенерированный ключ
+     * @return сгенерированный ID или -1, если вставка не выполнена или ключ не получен
+     */
+    public int insert(String sql, Binder binder) throws SQLException {
+        return traced(sql, lane -> {
+            PreparedStatement stmt = prepare(lane, lane.keyStatements, sql, true);
+            binder.bind(stmt);
+            if (stmt.executeUpdate() == 0) {
+                return -1;
+            }
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                return keys.next() ? keys.getInt(1) : -1;
+            }
+        });
+    }
+
+    /**
+     * Выполняет работу на свободном соединении пула и записывает ее в спан db.query
+     * текущего контекста трассировки (время ожидания соединения входит в спан)
+     */
+    private <T> T traced(String sql, SqlWork<T> work) throws SQLException {
+        try (TraceContext.Span span = TraceContext.span("db.query").detail(summarize(sql))) {
+            try {
+                Lane lane = acquire();
+                try {
+                    if (lane.connection == null) {
+                        if (factory == null) {
+                            throw new SQLNonTransientConnectionException("Соединение с БД закрыто", "08003");
+                        }
+                        lane.connection = factory.open();
+                    }
+                    return work.run(lane);
+                } catch (SQLException e) {
+                    // Разорванное соединение закрывается: пул откроет новое при следующем запросе
+                    if (factory != null && isConnectionFailure(e)) {
+                        closeConnection(lane);
+                    }
+                    throw e;
+                } finally {
+                    idle.add(lane);
+                }
+            } catch (SQLException | RuntimeException e) {
+                span.fail(e);
+                throw e;
+            }
+        }
+    }
+
+    private Lane acquire() throws SQLException {
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Прервано ожидание свободного соединения с БД", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlWork<T> {
+        T run(Lane lane) throws SQLException;
+    }
+
+    /**
+     * Сокращает текст запроса до первой строки ограниченной длины
+     */
+    private static String summarize(String sql) {
+        String compact = WHITESPACE.matcher(sql.strip()).replaceAll(" ");
+        return compact.length() <= SQL_SUMMARY_LENGTH ? compact : compact.substring(0, SQL_SUMMARY_LENGTH) + "…";
+    }
+
+    /**
+     * Закрывает все закэшированные запросы (соединения остаются открытыми).
+     * Ждет, пока выполняющиеся запросы освободят свои соединения.
+     */
+    public void clearStatements() {
+        forEachLane(lane -> {
+            closeAll(lane.statements);
+            closeAll(lane.keyStatements);
+        });
+    }
+
+    /**
+     * Закрывает запросы и соединения. Пул соединений откроет новые при следующем запросе,
+     * исполнитель с единственным соединением больше не выполняет запросы.
+     */
+    public void close() {
+        forEachLane(QueryRunner::closeConnection);
+    }
+
+    // Забирает все соединения пула, дождавшись выполняющихся запросов, и обрабатывает их
+    private void forEachLane(Consumer<Lane> action) {
+        List<Lane> taken = new ArrayList<>(lanes.size());
+        try {
+            for (int i = 0; i < lanes.size(); i++) {
+                taken.add(acquire());
+            }
+            taken.forEach(action);
+        } catch (SQLException e) {
+            // Ожидание прервано: флаг прерывания восстановлен в acquire
+        } finally {
+            idle.addAll(taken);
+        }
+    }
+
+    private static void closeConnection(Lane lane) {
+        closeAll(lane.statements);
+        closeAll(lane.keyStatements);
+        if (lane.connection != null) {
+            try {
+                lane.connection.close();
+            } catch (SQLException ignored) {
+                // Соединение уже разорвано
+            }
+            lane.connection = null;
+        }
+    }
+
+    private static PreparedStatement prepare(Lane lane, Map<String, PreparedStatement> cache, String sql,
+                                             boolean returnKeys) throws SQLException {
+        PreparedStatement stmt = cache.get(sql);
+        if (stmt == null || stmt.isClosed()) {
+            stmt = returnKeys
+                    ? lane.connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                    : lane.connection.prepareStatement(sql);
+            cache.put(sql, stmt);
+        } else {
+            stmt.clearParameters();
+        }
+        return stmt;
+    }
+
+    private static void closeAll(Map<String, PreparedStatement> cache) {
+        for (PreparedStatement stmt : cache.values()) {
+            try {
+                stmt.close();
+            } catch (SQLException ignored) {
+                // Запрос уже недействителен, закрывать нечего
+            }
+        }
+        cache.clear();
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.DAO;
+
+/**
+ * Оценка сочетания пользователем.
+ * Соответствует строке таблицы ratings, куда оценки только добавляются;
+ * последняя оценка чата для сочетания хранится в rating_votes.
+ */
+public class Rating {
+    /**
+     * Сочетание понравилось («хорошо»)
+     */
+    public static final int GOOD = 1;
+    /**
+     * Сочетание не понравилось («плохо»)
+     */
+    public static final int BAD = -1;
+
+    private final long chatId;
+    private final int wineId;
+    private final int dishId;
+    private final int value;
+
+    /**
+     * Конструктор оценки
+     * @param chatId ID чата пользователя
+     * @param wineId ID вина
+     * @param dishId ID блюда
+     * @param value {@link #GOOD} или {@link #BAD}
+     */
+    public Rating(long chatId, int wineId, int dishId, int value) {
+        if (value != GOOD && value != BAD) {
+            throw new IllegalArgumentException("Недопустимое значение оценки: " + value);
+        }
+        this.chatId = chatId;
+        this.wineId = wineId;
+        this.dishId = dishId;
+        this.value = value;
+    }
+
+    /**
+     * @return ID чата пользователя
+     */
+    public long getChatId() {
+        return chatId;
+    }
+
+    /**
+     * @return ID вина
+     */
+    public int getWineId() {
+        return wineId;
+    }
+
+    /**
+     * @return ID блюда
+     */
+    public int getDishId() {
+        return dishId;
+    }
+
+    /**
+     * @return {@link #GOOD} или {@link #BAD}
+     */
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * @return true, если сочетание понравилось
+     */
+    public boolean isGood() {
+        return value == GOOD;
+    }
+
+    @Override
+    public String toString() {
+        return "Rating{chatId=" + chatId + ", wineId=" + wineId + ", dishId=" + dishId + ", value=" + value + "}";
+    }
+}
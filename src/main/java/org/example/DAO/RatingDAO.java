@@ -0,0 +1,155 @@
+package org.example.DAO;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * DAO класс для работы с оценками сочетаний.
+ * Все оценки добавляются в журнал ratings и не изменяются. Каждый чат оценивает
+ * сочетание один раз: текущая оценка чата хранится в rating_votes, повторная оценка
+ * заменяет ее там, а счетчики голосов и оценка сочетания изменяются на разницу
+ * между новой и прежней оценкой тем же запросом, без пересчета по всей таблице оценок.
+ * Пачка оценок записывается одним запросом, что позволяет буферизовать запись.
+ */
+public class RatingDAO implements RatingRepository {
+    // Журнал, текущие оценки и счетчики изменяются одним запросом (одной транзакцией):
+    // оценки пачки передаются массивами и все добавляются в ratings, а в rating_votes
+    // из повторных оценок одного чата в пачке попадает последняя.
+    // Все части запроса видят таблицы до изменения, поэтому previous содержит прежние оценки;
+    // неизменившаяся оценка не обновляется и не попадает в voted.
+    // Блокировка строк сочетаний упорядочивает одновременные обновления
+    private static final String RECORD_RATINGS_SQL =
+            "WITH batch AS (" +
+            "SELECT chat_id, wine_id, dish_id, rating, ord " +
+            "FROM unnest(?::bigint[], ?::int[], ?::int[], ?::smallint[]) WITH ORDINALITY " +
+            "AS t(chat_id, wine_id, dish_id, rating, ord)), " +
+            "logged AS (" +
+            "INSERT INTO ratings (chat_id, wine_id, dish_id, rating) " +
+            "SELECT chat_id, wine_id, dish_id, rating FROM batch ORDER BY ord), " +
+            "input AS (" +
+            "SELECT DISTINCT ON (chat_id, wine_id, dish_id) chat_id, wine_id, dish_id, rating FROM batch " +
+            "ORDER BY chat_id, wine_id, dish_id, ord DESC), " +
+            "previous AS (" +
+            "SELECT v.chat_id, v.wine_id, v.dish_id, v.rating FROM rating_votes v " +
+            "JOIN input i ON i.chat_id = v.chat_id AND i.wine_id = v.wine_id AND i.dish_id = v.dish_id), " +
+            "voted AS (" +
+            "INSERT INTO rating_votes (chat_id, wine_id, dish_id, rating) SELECT * FROM input " +
+            "ON CONFLICT (chat_id, wine_id, dish_id) DO UPDATE " +
+            "SET rating = EXCLUDED.rating, updated_at = now() WHERE rating_votes.rating <> EXCLUDED.rating " +
+            "RETURNING chat_id, wine_id, dish_id, rating), " +
+            "delta AS (" +
+            "SELECT v.wine_id, v.dish_id, " +
+            "COUNT(*) FILTER (WHERE v.rating > 0) - COUNT(p.rating) FILTER (WHERE p.rating > 0) AS up, " +
+            "COUNT(*) FILTER (WHERE v.rating < 0) - COUNT(p.rating) FILTER (WHERE p.rating < 0) AS down " +
+            "FROM voted v LEFT JOIN previous p " +
+            "ON p.chat_id = v.chat_id AND p.wine_id = v.wine_id AND p.dish_id = v.dish_id " +
+            "GROUP BY v.wine_id, v.dish_id) " +
+            "UPDATE pairings p SET " +
+            "votes_up = p.votes_up + d.up, " +
+            "votes_down = p.votes_down + d.down, " +
+            "score = ROUND((" + Pairing.PRIOR_WEIGHT + " * COALESCE(p.base_score, p.score) + " +
+            Pairing.MAX_SCORE + " * (p.votes_up + d.up))::numeric / " +
+            "(" + Pairing.PRIOR_WEIGHT + " + p.votes_up + p.votes_down + d.up + d.down)) " +
+            "FROM delta d WHERE p.wine_id = d.wine_id AND p.dish_id = d.dish_id " +
+            "RETURNING p.wine_id, p.dish_id, p.score";
+    // Текущие оценки чатов в порядке первой оценки
+    private static final String SELECT_ALL_SQL =
+            "SELECT " + RowMappers.RATING_COLUMNS + " FROM rating_votes " +
+            "ORDER BY created_at, chat_id, wine_id, dish_id";
+
+    private final ReplicaRouter router;
+    private final CatalogEvents events = new CatalogEvents();
+
+    /**
+     * Создает DAO, читающий с реплики и пишущий в основную БД
+     * @param router маршрутизатор запросов между основной БД и репликой
+     */
+    public RatingDAO(ReplicaRouter router) {
+        this.router = Objects.requireNonNull(router, "ReplicaRouter не может быть null");
+    }
+
+    /**
+     * Добавляет оценку в журнал, заменяет прежнюю оценку чата и обновляет счетчики голосов и оценку сочетания
+     */
+    @Override
+    public Pairing recordRating(Rating rating) {
+        List<Pairing> updated = recordRatings(List.of(rating));
+        return updated.isEmpty() ? null : updated.get(0);
+    }
+
+    /**
+     * Сохраняет пачку оценок одним запросом
+     */
+    @Override
+    public List<Pairing> recordRatings(List<Rating> ratings) {
+        if (ratings.isEmpty()) {
+            return List.of();
+        }
+
+        Long[] chatIds = new Long[ratings.size()];
+        Integer[] wineIds = new Integer[ratings.size()];
+        Integer[] dishIds = new Integer[ratings.size()];
+        Short[] values = new Short[ratings.size()];
+        for (int i = 0; i < ratings.size(); i++) {
+            Rating rating = ratings.get(i);
+            chatIds[i] = rating.getChatId();
+            wineIds[i] = rating.getWineId();
+            dishIds[i] = rating.getDishId();
+            values[i] = (short) rating.getValue();
+        }
+
+        List<Pairing> updated;
+        try {
+            updated = router.primary().query(RECORD_RATINGS_SQL, stmt -> {
+                Connection connection = stmt.getConnection();
+                stmt.setArray(1, connection.createArrayOf("bigint", chatIds));
+                stmt.setArray(2, connection.createArrayOf("int4", wineIds));
+                stmt.setArray(3, connection.createArrayOf("int4", dishIds));
+                stmt.setArray(4, connection.createArrayOf("int2", values));
+            }, RowMappers.PAIRING);
+        } catch (SQLException e) {
+            throw new WineDAO.DataAccessException("Ошибка при сохранении оценок: " + ratings.size(), e);
+        }
+
+        for (Pairing pairing : updated) {
+            events.pairingChanged(pairing);
+        }
+        return updated;
+    }
+
+    /**
+     * Отличает оценки, которые БД не примет и при повторе (вино или блюдо удалено,
+     * нарушено ограничение), от недоступности БД
+     * @param e ошибка записи оценок
+     * @return true, если ошибка вызвана содержимым оценок
+     */
+    public static boolean isRejected(Exception e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException && !QueryRunner.isConnectionFailure((SQLException) cause)) {
+                String state = ((SQLException) cause).getSQLState();
+                // Класс 23 — нарушение ограничений целостности, класс 22 — недопустимые данные
+                return state != null && (state.startsWith("23") || state.startsWith("22"));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Получает все оценки
+     */
+    @Override
+    public List<Rating> getAllRatings() {
+        try {
+            return router.read(q -> q.query(SELECT_ALL_SQL, QueryRunner.Binder.NONE, RowMappers.RATING));
+        } catch (SQLException e) {
+            throw new WineDAO.DataAccessException("Ошибка при получении списка оценок", e);
+        }
+    }
+
+    @Override
+    public void addListener(CatalogListener listener) {
+        events.addListener(listener);
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.DAO;
+
+import java.util.List;
+
+/**
+ * Хранилище пользовательских оценок сочетаний.
+ * Каждая оценка сразу учитывается в оценке сочетания, поэтому порядок
+ * в {@link WineRepository#findPairings(String)} отражает отзывы без пересчета.
+ * Чат оценивает сочетание один раз: повторная оценка заменяет прежнюю, а не добавляет голос.
+ * Ошибки доступа к данным сообщаются через {@link WineDAO.DataAccessException}.
+ */
+public interface RatingRepository {
+
+    /**
+     * Сохраняет оценку и обновляет оценку сочетания
+     * @param rating оценка пользователя
+     * @return сочетание с новой оценкой или null, если такого сочетания нет или оценка чата не изменилась
+     */
+    Pairing recordRating(Rating rating);
+
+    /**
+     * Сохраняет пачку оценок одной операцией и обновляет оценки затронутых сочетаний
+     * @param ratings оценки пользователей
+     * @return сочетания с новыми оценками (по одному на каждое затронутое сочетание)
+     */
+    List<Pairing> recordRatings(List<Rating> ratings);
+
+    /**
+     * @return все оценки (по одной на чат и сочетание) в порядке первой оценки
+     */
+    List<Rating> getAllRatings();
+
+    /**
+     * Подписывает обработчик на изменения оценок сочетаний
+     */
+    void addListener(CatalogListener listener);
+}
@@ -0,0 +1,166 @@
+package org.example.DAO;
+
+import org.example.Tracing.TraceLog;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Распределяет запросы между основной БД и репликой.
+ * Читающие запросы уходят на реплику, если она доступна и ее отставание
+ * не превышает допустимого; записи и чтения при недоступной реплике
+ * выполняются на основной БД.
+ *
+ * Доступность и отставание реплики проверяются в фоновом потоке, а чтение
+ * только берет текущую реплику из volatile-поля, без блокировок и обращений к БД.
+ * Реплика отключается, только если запрос к ней не выполнился из-за потери
+ * соединения; ошибки самого запроса возвращаются вызывающему.
+ */
+public class ReplicaRouter {
+    // Как часто перепроверять доступность и отставание реплики
+    private static final long CHECK_INTERVAL_MS = 5_000;
+    // Сколько не обращаться к реплике после потери соединения
+    private static final long FAILURE_COOLDOWN_MS = 30_000;
+
+    private static final String LAG_SQL =
+            "SELECT CASE WHEN NOT pg_is_in_recovery() " +
+            "OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    /**
+     * Операция чтения, выполняемая через выбранный QueryRunner
+     */
+    @FunctionalInterface
+    public interface ReadOperation<T> {
+        T apply(QueryRunner queries) throws SQLException;
+    }
+
+    private final QueryRunner primary;
+    private final QueryRunner.ConnectionFactory replicaFactory;
+    private final int replicaConnections;
+    private final long maxLagMillis;
+
+    // Реплика, на которую сейчас направляются чтения (null — чтения идут на основную БД)
+    private volatile QueryRunner active;
+    // Открытые соединения с репликой; меняются только под монитором this, запросы к ним выполняются без него
+    private QueryRunner replica;
+    private long unavailableUntil;
+
+    /**
+     * Создает маршрутизатор без реплики: все запросы идут на основную БД
+     * @param primary запросы к основной БД
+     */
+    public ReplicaRouter(QueryRunner primary) {
+        this(primary, null, 1, Duration.ZERO);
+    }
+
+    /**
+     * Конструктор маршрутизатора. Если задана реплика, ее проверка запускается
+     * в фоновом потоке; до первой успешной проверки чтения идут на основную БД
+     * @param primary запросы к основной БД
+     * @param replicaFactory фабрика соединений с репликой (null, если реплики нет)
+     * @param replicaConnections размер пула соединений с репликой
+     * @param maxLag допустимое отставание реплики
+     */
+    public ReplicaRouter(QueryRunner primary, QueryRunner.ConnectionFactory replicaFactory,
+                         int replicaConnections, Duration maxLag) {
+        this.primary = Objects.requireNonNull(primary, "QueryRunner основной БД не может быть null");
+        this.replicaFactory = replicaFactory;
+        this.replicaConnections = replicaConnections;
+        this.maxLagMillis = Objects.requireNonNull(maxLag, "Допустимое отставание не может быть null").toMillis();
+        if (replicaFactory != null) {
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "replica-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::checkReplica, 0, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return запросы к основной БД, через которые выполняются все записи
+     */
+    public QueryRunner primary() {
+        return primary;
+    }
+
+    /**
+     * Выполняет чтение на реплике, а при ее недоступности, потере соединения
+     * или слишком большом отставании — на основной БД
+     * @param operation операция чтения
+     * @return результат операции
+     */
+    public <T> T read(ReadOperation<T> operation) throws SQLException {
+        QueryRunner replicaQueries = active;
+        if (replicaQueries != null) {
+            try {
+                return operation.apply(replicaQueries);
+            } catch (SQLException e) {
+                if (!QueryRunner.isConnectionFailure(e)) {
+                    throw e;
+                }
+                markUnavailable(replicaQueries, e);
+            }
+        }
+        return operation.apply(primary);
+    }
+
+    /**
+     * @return true, если сейчас чтения направляются на реплику
+     */
+    public boolean isReplicaInUse() {
+        return active != null;
+    }
+
+    /**
+     * Проверяет доступность и отставание реплики и решает, направлять ли на нее чтения.
+     * Вызывается по расписанию в фоновом потоке. Запрос к реплике выполняется без монитора,
+     * поэтому зависшая реплика не задерживает чтения, которые переключаются на основную БД
+     */
+    public void checkReplica() {
+        QueryRunner current;
+        synchronized (this) {
+            if (replicaFactory == null || System.currentTimeMillis() < unavailableUntil) {
+                return;
+            }
+            if (replica == null) {
+                replica = new QueryRunner(replicaFactory, replicaConnections);
+            }
+            current = replica;
+        }
+        try {
+            Double lagSeconds = current.queryOne(LAG_SQL, QueryRunner.Binder.NONE, rs -> rs.getDouble(1));
+            boolean fresh = lagSeconds != null && lagSeconds * 1000 <= maxLagMillis;
+            synchronized (this) {
+                // Пока шла проверка, реплику могло отключить чтение, потерявшее соединение
+                if (current == replica) {
+                    active = fresh ? current : null;
+                }
+            }
+        } catch (SQLException e) {
+            markUnavailable(current, e);
+        }
+    }
+
+    private void markUnavailable(QueryRunner failed, SQLException e) {
+        synchronized (this) {
+            if (failed != replica) {
+                // Реплика уже отключена другим потоком
+                return;
+            }
+            active = null;
+            unavailableUntil = System.currentTimeMillis() + FAILURE_COOLDOWN_MS;
+            replica = null;
+        }
+        TraceLog.error("Реплика недоступна, чтения переключены на основную БД", e);
+        // close ждет выполняющихся на реплике запросов, поэтому соединения закрываются в отдельном потоке
+        Thread closer = new Thread(failed::close, "replica-close");
+        closer.setDaemon(true);
+        closer.start();
+    }
+}
@@ -0,0 +1,13 @@
+package org.example.DAO;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Преобразует текущую строку ResultSet в объект.
+ * @param <T> тип получаемого объекта
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    T mapRow(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,136 @@
+package org.example.DAO;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Общие преобразователи строк для вин и блюд.
+ * Списки колонок зафиксированы, поэтому значения читаются по индексу,
+ * без поиска колонки по имени для каждой строки.
+ */
+public final class RowMappers {
+
+    /**
+     * Колонки таблицы wines в порядке, который ожидает {@link #WINE}
+     */
+    public static final String WINE_COLUMNS =
+            "id, name, type, tannins, acidity, region, vintage, description, version";
+
+    /**
+     * Колонки таблицы dishes в порядке, который ожидает {@link #DISH}
+     */
+    public static final String DISH_COLUMNS =
+            "id, name, category, fat_content, protein_content, cooking_time, ingredients, recipe, version";
+
+    /**
+     * Преобразует строку с колонками {@link #WINE_COLUMNS} в объект Wine
+     */
+    public static final RowMapper<Wine> WINE = rs -> wine(rs, 0);
+
+    /**
+     * Преобразует строку с колонками {@link #DISH_COLUMNS} в объект Dish
+     */
+    public static final RowMapper<Dish> DISH = rs -> dish(rs, 0);
+
+    /**
+     * Число колонок в {@link #WINE_COLUMNS} и {@link #DISH_COLUMNS}
+     */
+    static final int ENTITY_COLUMN_COUNT = 9;
+
+    /**
+     * Добавляет к каждой колонке списка псевдоним таблицы (для запросов с JOIN)
+     * @param alias псевдоним таблицы
+     * @param columns список колонок через ", "
+     */
+    static String qualified(String alias, String columns) {
+        return alias + "." + columns.replace(", ", ", " + alias + ".");
+    }
+
+    /**
+     * Читает вино из колонок {@link #WINE_COLUMNS}, идущих после skip других колонок
+     */
+    static Wine wine(ResultSet rs, int skip) throws SQLException {
+        Wine wine = new Wine();
+        wine.setId(rs.getInt(skip + 1));
+        wine.setName(rs.getString(skip + 2));
+        wine.setType(Wine.WineType.valueOf(rs.getString(skip + 3)));
+        wine.setTannins(rs.getInt(skip + 4));
+        wine.setAcidity(rs.getInt(skip + 5));
+        wine.setRegion(rs.getString(skip + 6));
+        wine.setVintage(rs.getInt(skip + 7));
+        wine.setDescription(rs.getString(skip + 8));
+        wine.setVersion(rs.getInt(skip + 9));
+        return wine;
+    }
+
+    /**
+     * Читает блюдо из колонок {@link #DISH_COLUMNS}, идущих после skip других колонок
+     */
+    static Dish dish(ResultSet rs, int skip) throws SQLException {
+        Dish dish = new Dish();
+        dish.setId(rs.getInt(skip + 1));
+        dish.setName(rs.getString(skip + 2));
+        // Старые версии бота записывали категорию в верхнем регистре
+        dish.setCategory(Dish.DishCategory.fromString(rs.getString(skip + 3)));
+        dish.setFatContent(rs.getInt(skip + 4));
+        dish.setProteinContent(rs.getInt(skip + 5));
+        dish.setCookingTime(rs.getInt(skip + 6));
+        dish.setIngredients(rs.getString(skip + 7));
+        dish.setRecipe(rs.getString(skip + 8));
+        dish.setVersion(rs.getInt(skip + 9));
+        return dish;
+    }
+
+    /**
+     * Колонки таблицы pairings в порядке, который ожидает {@link #PAIRING}
+     */
+    public static final String PAIRING_COLUMNS = "wine_id, dish_id, score";
+
+    /**
+     * Преобразует строку с колонками {@link #PAIRING_COLUMNS} в объект Pairing
+     */
+    public static final RowMapper<Pairing> PAIRING = rs ->
+            new Pairing(rs.getInt(1), rs.getInt(2), rs.getInt(3));
+
+    /**
+     * Колонки таблиц ratings и rating_votes в порядке, который ожидает {@link #RATING}
+     */
+    public static final String RATING_COLUMNS = "chat_id, wine_id, dish_id, rating";
+
+    /**
+     * Преобразует строку с колонками {@link #RATING_COLUMNS} в объект Rating
+     */
+    public static final RowMapper<Rating> RATING = rs ->
+            new Rating(rs.getLong(1), rs.getInt(2), rs.getInt(3), rs.getInt(4));
+
+    /**
+     * Колонки таблицы sessions в порядке, который ожидает {@link #SESSION}
+     */
+    public static final String SESSION_COLUMNS =
+            "chat_id, version, age_verified, state, waiting_for_wine, pairing_wine, pairing_dish_id, pairing_wine_id";
+
+    /**
+     * Преобразует строку с колонками {@link #SESSION_COLUMNS} в объект Session
+     */
+    public static final RowMapper<Session> SESSION = rs -> {
+        int dishId = rs.getInt(7);
+        Integer pairingDishId = rs.wasNull() ? null : dishId;
+        int wineId = rs.getInt(8);
+        Integer pairingWineId = rs.wasNull() ? null : wineId;
+        return new Session(rs.getLong(1), rs.getLong(2), rs.getBoolean(3), rs.getString(4),
+                rs.getBoolean(5), rs.getString(6), pairingDishId, pairingWineId);
+    };
+
+    /**
+     * Читает первую колонку как строку
+     */
+    public static final RowMapper<String> FIRST_STRING = rs -> rs.getString(1);
+
+    /**
+     * Читает первую колонку как число
+     */
+    public static final RowMapper<Integer> FIRST_INT = rs -> rs.getInt(1);
+
+    private RowMappers() {
+    }
+}
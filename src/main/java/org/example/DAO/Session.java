@@ -0,0 +1,140 @@
+package org.example.DAO;
+
+import java.util.Objects;
+
+/**
+ * Состояние диалога одного пользователя: подтверждение возраста, шаг диалога,
+ * ожидание названия вина и последнее подобранное сочетание.
+ * Объект неизменяемый: изменения создают новую копию, поэтому сессию можно
+ * безопасно отдавать из кэша в разные потоки.
+ * Версия соответствует столбцу version таблицы sessions и используется для
+ * оптимистической блокировки; 0 — сессия еще не сохранялась.
+ */
+public final class Session {
+    private final long chatId;
+    private final long version;
+    private final boolean ageVerified;
+    private final String state;
+    private final boolean waitingForWine;
+    private final String pairingWine;
+    private final Integer pairingDishId;
+    private final Integer pairingWineId;
+
+    /**
+     * Конструктор сессии
+     * @param chatId ID чата пользователя
+     * @param version версия сохраненной сессии (0 — не сохранялась)
+     * @param ageVerified подтвержден ли возраст
+     * @param state шаг диалога (null — нет)
+     * @param waitingForWine ожидается ли название вина для /pair
+     * @param pairingWine название вина последнего сочетания (null — нет)
+     * @param pairingDishId ID блюда последнего сочетания (null — нет)
+     * @param pairingWineId ID вина последнего сочетания, к которому относится оценка (null — нет)
+     */
+    public Session(long chatId, long version, boolean ageVerified, String state,
+                   boolean waitingForWine, String pairingWine, Integer pairingDishId, Integer pairingWineId) {
+        this.chatId = chatId;
+        this.version = version;
+        this.ageVerified = ageVerified;
+        this.state = state;
+        this.waitingForWine = waitingForWine;
+        this.pairingWine = pairingWine;
+        this.pairingDishId = pairingDishId;
+        this.pairingWineId = pairingWineId;
+    }
+
+    /**
+     * Создает пустую несохраненную сессию
+     * @param chatId ID чата пользователя
+     */
+    public static Session empty(long chatId) {
+        return new Session(chatId, 0, false, null, false, null, null, null);
+    }
+
+    public long getChatId() {
+        return chatId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isAgeVerified() {
+        return ageVerified;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public boolean isWaitingForWine() {
+        return waitingForWine;
+    }
+
+    public String getPairingWine() {
+        return pairingWine;
+    }
+
+    public Integer getPairingDishId() {
+        return pairingDishId;
+    }
+
+    public Integer getPairingWineId() {
+        return pairingWineId;
+    }
+
+    /**
+     * @return есть ли подобранное сочетание
+     */
+    public boolean hasPairing() {
+        return pairingWine != null && pairingDishId != null && pairingWineId != null;
+    }
+
+    public Session withVersion(long version) {
+        return new Session(chatId, version, ageVerified, state, waitingForWine, pairingWine, pairingDishId, pairingWineId);
+    }
+
+    public Session withAgeVerified(boolean ageVerified) {
+        return new Session(chatId, version, ageVerified, state, waitingForWine, pairingWine, pairingDishId, pairingWineId);
+    }
+
+    public Session withState(String state) {
+        return new Session(chatId, version, ageVerified, state, waitingForWine, pairingWine, pairingDishId, pairingWineId);
+    }
+
+    public Session withWaitingForWine(boolean waitingForWine) {
+        return new Session(chatId, version, ageVerified, state, waitingForWine, pairingWine, pairingDishId, pairingWineId);
+    }
+
+    /**
+     * @param wineId ID вина
+     * @param wineName название вина (null — сбросить сочетание)
+     * @param dishId ID блюда
+     */
+    public Session withPairing(Integer wineId, String wineName, Integer dishId) {
+        return new Session(chatId, version, ageVerified, state, waitingForWine,
+                wineName, wineName == null ? null : dishId, wineName == null ? null : wineId);
+    }
+
+    /**
+     * Сравнивает содержимое сессий без учета версии
+     */
+    public boolean sameContent(Session other) {
+        return other != null
+                && chatId == other.chatId
+                && ageVerified == other.ageVerified
+                && waitingForWine == other.waitingForWine
+                && Objects.equals(state, other.state)
+                && Objects.equals(pairingWine, other.pairingWine)
+                && Objects.equals(pairingDishId, other.pairingDishId)
+                && Objects.equals(pairingWineId, other.pairingWineId);
+    }
+
+    @Override
+    public String toString() {
+        return "Session{chatId=" + chatId + ", version=" + version + ", ageVerified=" + ageVerified
+                + ", state=" + state + ", waitingForWine=" + waitingForWine
+                + ", pairingWine=" + pairingWine + ", pairingDishId=" + pairingDishId
+                + ", pairingWineId=" + pairingWineId + "}";
+    }
+}
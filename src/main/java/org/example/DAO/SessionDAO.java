@@ -0,0 +1,123 @@
+package org.example.DAO;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * DAO класс для работы с сессиями пользователей в таблице sessions.
+ * Сессии читаются и пишутся только в основной БД: реплика может отставать,
+ * а сессия нужна сразу после записи, в том числе другому экземпляру бота.
+ */
+public class SessionDAO implements SessionRepository {
+    private static final String SELECT_SQL =
+            "SELECT " + RowMappers.SESSION_COLUMNS + " FROM sessions WHERE chat_id = ?";
+    private static final String SELECT_PAIRINGS_SQL =
+            "SELECT " + RowMappers.SESSION_COLUMNS + " FROM sessions " +
+            "WHERE pairing_wine IS NOT NULL AND pairing_dish_id IS NOT NULL AND pairing_wine_id IS NOT NULL";
+    // Новые сессии вставляются, существующие обновляются, только если их версия не изменилась;
+    // RETURNING возвращает чаты, сессии которых записаны
+    private static final String SAVE_SQL =
+            "INSERT INTO sessions AS s (" + RowMappers.SESSION_COLUMNS + ", updated_at) " +
+            "SELECT t.*, now() FROM unnest(?::bigint[], ?::bigint[], ?::boolean[], ?::text[], " +
+            "?::boolean[], ?::text[], ?::int[], ?::int[]) AS t " +
+            "ON CONFLICT (chat_id) DO UPDATE SET " +
+            "version = EXCLUDED.version, " +
+            "age_verified = EXCLUDED.age_verified, " +
+            "state = EXCLUDED.state, " +
+            "waiting_for_wine = EXCLUDED.waiting_for_wine, " +
+            "pairing_wine = EXCLUDED.pairing_wine, " +
+            "pairing_dish_id = EXCLUDED.pairing_dish_id, " +
+            "pairing_wine_id = EXCLUDED.pairing_wine_id, " +
+            "updated_at = now() " +
+            "WHERE s.version = EXCLUDED.version - 1 " +
+            "RETURNING s.chat_id";
+
+    private static final String DELETE_IDLE_SQL =
+            "DELETE FROM sessions WHERE updated_at < now() - (? * interval '1 second')";
+
+    private final QueryRunner queryRunner;
+
+    /**
+     * @param queryRunner запросы к основной БД
+     */
+    public SessionDAO(QueryRunner queryRunner) {
+        this.queryRunner = Objects.requireNonNull(queryRunner, "QueryRunner не может быть null");
+    }
+
+    @Override
+    public Session findSession(long chatId) {
+        try {
+            return queryRunner.queryOne(SELECT_SQL, stmt -> stmt.setLong(1, chatId), RowMappers.SESSION);
+        } catch (SQLException e) {
+            throw new WineDAO.DataAccessException("Ошибка при получении сессии: " + chatId, e);
+        }
+    }
+
+    @Override
+    public List<Session> findPairingSessions() {
+        try {
+            return queryRunner.query(SELECT_PAIRINGS_SQL, QueryRunner.Binder.NONE, RowMappers.SESSION);
+        } catch (SQLException e) {
+            throw new WineDAO.DataAccessException("Ошибка при получении сессий с сочетаниями", e);
+        }
+    }
+
+    @Override
+    public Set<Long> saveSessions(List<Session> sessions) {
+        if (sessions.isEmpty()) {
+            return Set.of();
+        }
+
+        int size = sessions.size();
+        Long[] chatIds = new Long[size];
+        Long[] versions = new Long[size];
+        Boolean[] ageVerified = new Boolean[size];
+        String[] states = new String[size];
+        Boolean[] waitingForWine = new Boolean[size];
+        String[] pairingWines = new String[size];
+        Integer[] pairingDishIds = new Integer[size];
+        Integer[] pairingWineIds = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            Session session = sessions.get(i);
+            chatIds[i] = session.getChatId();
+            versions[i] = session.getVersion() + 1;
+            ageVerified[i] = session.isAgeVerified();
+            states[i] = session.getState();
+            waitingForWine[i] = session.isWaitingForWine();
+            pairingWines[i] = session.getPairingWine();
+            pairingDishIds[i] = session.getPairingDishId();
+            pairingWineIds[i] = session.getPairingWineId();
+        }
+
+        try {
+            List<Long> saved = queryRunner.query(SAVE_SQL, stmt -> {
+                Connection connection = stmt.getConnection();
+                stmt.setArray(1, connection.createArrayOf("bigint", chatIds));
+                stmt.setArray(2, connection.createArrayOf("bigint", versions));
+                stmt.setArray(3, connection.createArrayOf("bool", ageVerified));
+                stmt.setArray(4, connection.createArrayOf("text", states));
+                stmt.setArray(5, connection.createArrayOf("bool", waitingForWine));
+                stmt.setArray(6, connection.createArrayOf("text", pairingWines));
+                stmt.setArray(7, connection.createArrayOf("int4", pairingDishIds));
+                stmt.setArray(8, connection.createArrayOf("int4", pairingWineIds));
+            }, rs -> rs.getLong(1));
+            return new HashSet<>(saved);
+        } catch (SQLException e) {
+            throw new WineDAO.DataAccessException("Ошибка при сохранении сессий: " + size, e);
+        }
+    }
+
+    @Override
+    public int deleteIdleSessions(Duration idle) {
+        try {
+            return queryRunner.update(DELETE_IDLE_SQL, stmt -> stmt.setLong(1, idle.getSeconds()));
+        } catch (SQLException e) {
+            throw new WineDAO.DataAccessException("Ошибка при удалении старых сессий", e);
+        }
+    }
+}
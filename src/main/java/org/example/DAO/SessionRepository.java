@@ -0,0 +1,41 @@
+package org.example.DAO;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Общее хранилище сессий пользователей для нескольких экземпляров бота.
+ * Запись выполняется с оптимистической блокировкой: сессия сохраняется,
+ * только если сохраненная версия на единицу меньше записываемой.
+ * Ошибки доступа к данным сообщаются через {@link WineDAO.DataAccessException}.
+ */
+public interface SessionRepository {
+
+    /**
+     * @param chatId ID чата пользователя
+     * @return сохраненная сессия или null, если ее нет
+     */
+    Session findSession(long chatId);
+
+    /**
+     * @return сессии, в которых сохранено подобранное сочетание
+     */
+    List<Session> findPairingSessions();
+
+    /**
+     * Сохраняет пачку сессий одной операцией. Каждая сессия записывается с версией
+     * {@code version + 1}, если сохраненная версия равна {@code version}
+     * (для новой сессии — если ее еще нет).
+     * @param sessions сессии разных пользователей с версиями, на которых основаны изменения
+     * @return ID чатов, сессии которых записаны; остальные не записаны из-за конфликта версий
+     */
+    Set<Long> saveSessions(List<Session> sessions);
+
+    /**
+     * Удаляет сессии, которые не изменялись дольше указанного времени
+     * @param idle допустимое время без изменений
+     * @return число удаленных сессий
+     */
+    int deleteIdleSessions(Duration idle);
+}
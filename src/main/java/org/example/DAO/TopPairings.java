@@ -0,0 +1,83 @@
+package org.example.DAO;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Лучшие сочетания для названия вина: вина, подходящие под название,
+ * и объединение их лучших блюд из pairing_topk. Для каждого блюда хранится вино,
+ * из сочетаний которого оно взято: оценка блюда относится к этому сочетанию.
+ */
+public final class TopPairings {
+    private final List<Wine> wines;
+    private final List<Dish> dishes;
+    private final List<Integer> dishWineIds;
+
+    /**
+     * @param wines вина, подходящие под название
+     * @param dishes блюда в порядке убывания оценки
+     * @param dishWineIds ID вина сочетания для каждого блюда, в том же порядке
+     */
+    public TopPairings(List<Wine> wines, List<Dish> dishes, List<Integer> dishWineIds) {
+        if (dishes.size() != dishWineIds.size()) {
+            throw new IllegalArgumentException("Для каждого блюда должно быть указано вино сочетания");
+        }
+        this.wines = List.copyOf(wines);
+        this.dishes = List.copyOf(dishes);
+        this.dishWineIds = List.copyOf(dishWineIds);
+    }
+
+    /**
+     * @return вина, подходящие под название (в том числе без сочетаний)
+     */
+    public List<Wine> getWines() {
+        return wines;
+    }
+
+    /**
+     * @return не больше {@link PairingTopKDAO#K} блюд в порядке убывания лучшей оценки
+     * среди найденных вин (при равной оценке — по возрастанию ID блюда), каждое блюдо один раз
+     */
+    public List<Dish> getDishes() {
+        return dishes;
+    }
+
+    /**
+     * @return ID вина, с которым сочетается каждое блюдо из {@link #getDishes()}, в том же порядке
+     */
+    public List<Integer> getDishWineIds() {
+        return dishWineIds;
+    }
+
+    /**
+     * Собирает результат из сочетаний найденных вин для хранилищ в памяти
+     * @param wines вина, подходящие под название
+     * @param pairings сочетания этих вин
+     * @param dishById блюдо по ID (null — блюдо удалено)
+     */
+    static TopPairings of(List<Wine> wines, List<Pairing> pairings, IntFunction<Dish> dishById) {
+        List<Pairing> sorted = new ArrayList<>(pairings);
+        sorted.sort(PairingGraph.BY_SCORE_DESC.thenComparingInt(Pairing::getDishId));
+
+        List<Dish> dishes = new ArrayList<>(Math.min(sorted.size(), PairingTopKDAO.K));
+        List<Integer> dishWineIds = new ArrayList<>(Math.min(sorted.size(), PairingTopKDAO.K));
+        Set<Integer> seen = new HashSet<>();
+        for (Pairing pairing : sorted) {
+            if (dishes.size() == PairingTopKDAO.K) {
+                break;
+            }
+            if (!seen.add(pairing.getDishId())) {
+                continue;
+            }
+            Dish dish = dishById.apply(pairing.getDishId());
+            if (dish != null) {
+                dishes.add(dish);
+                dishWineIds.add(pairing.getWineId());
+            }
+        }
+        return new TopPairings(wines, dishes, dishWineIds);
+    }
+}
@@ -0,0 +1,234 @@
+package org.example.DAO;
+
+import org.example.Tracing.TraceLog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Каталог для быстрого старта: в течение периода прогрева чтения обслуживаются
+ * из отображенного в память бинарного снимка, а не из БД, чтобы первые запросы
+ * после перезапуска не обрушивались на PostgreSQL одновременно.
+ * После прогрева или первой записи все запросы идут в основное хранилище,
+ * а построенные по снимку индексы перестраиваются задачами {@link #whenWarmupEnds(Runnable)}.
+ */
+public class WarmStartCatalog implements WineRepository, DishRepository {
+    private final WineRepository wines;
+    private final DishRepository dishes;
+    private final long warmupDeadline;
+    private volatile MappedCatalog snapshot;
+    private final AtomicBoolean warmupEnded = new AtomicBoolean();
+    private final List<Runnable> warmupEndActions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Конструктор каталога
+     * @param snapshotPath путь к бинарному снимку (если файла нет, снимок не используется)
+     * @param wines основное хранилище вин
+     * @param dishes основное хранилище блюд
+     * @param warmup длительность периода прогрева
+     */
+    public WarmStartCatalog(Path snapshotPath, WineRepository wines, DishRepository dishes, Duration warmup) {
+        this.wines = Objects.requireNonNull(wines, "Хранилище вин не может быть null");
+        this.dishes = Objects.requireNonNull(dishes, "Хранилище блюд не может быть null");
+        this.warmupDeadline = System.currentTimeMillis() + warmup.toMillis();
+        this.snapshot = openSnapshot(snapshotPath);
+        if (snapshot == null) {
+            warmupEnded.set(true);
+        } else {
+            // Прогрев завершается к сроку, даже если до него не было ни одного чтения
+            CompletableFuture.delayedExecutor(warmup.toMillis(), TimeUnit.MILLISECONDS).execute(this::endWarmup);
+        }
+    }
+
+    /**
+     * Регистрирует задачу, выполняемую в фоне один раз, когда чтения переключаются
+     * со снимка на основное хранилище (по сроку прогрева или при первой записи).
+     * Если снимок не используется, задача не выполняется.
+     * @param action задача, например перестроение индексов по основному хранилищу
+     */
+    public void whenWarmupEnds(Runnable action) {
+        warmupEndActions.add(Objects.requireNonNull(action, "Задача не может быть null"));
+    }
+
+    /**
+     * @return true, если чтения сейчас обслуживаются из снимка
+     */
+    public boolean isServingFromSnapshot() {
+        return readSnapshot() != null;
+    }
+
+    private static MappedCatalog openSnapshot(Path path) {
+        if (path == null || !Files.exists(path)) {
+            return null;
+        }
+        try {
+            return MappedCatalog.open(path);
+        } catch (IOException e) {
+            TraceLog.error("Не удалось открыть снимок каталога " + path, e);
+            return null;
+        }
+    }
+
+    private MappedCatalog readSnapshot() {
+        MappedCatalog current = snapshot;
+        if (current != null && System.currentTimeMillis() >= warmupDeadline) {
+            endWarmup();
+            current = null;
+        }
+        return current;
+    }
+
+    private WineReadRepository wineSource() {
+        MappedCatalog current = readSnapshot();
+        return current != null ? current : wines;
+    }
+
+    private DishReadRepository dishSource() {
+        MappedCatalog current = readSnapshot();
+        return current != null ? current : dishes;
+    }
+
+    /**
+     * Запись делает снимок устаревшим, поэтому чтения сразу переключаются на основное хранилище.
+     * Задачи завершения прогрева выполняются в фоне, не задерживая чтение или запись.
+     */
+    private void endWarmup() {
+        snapshot = null;
+        if (!warmupEnded.compareAndSet(false, true)) {
+            return;
+        }
+        CompletableFuture.runAsync(() -> {
+            for (Runnable action : warmupEndActions) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    TraceLog.error("Ошибка при завершении прогрева каталога", e);
+                }
+            }
+        });
+    }
+
+    // Вина
+
+    @Override
+    public List<String> findPairings(String wineName) {
+        return wineSource().findPairings(wineName);
+    }
+
+    @Override
+    public TopPairings findTopPairings(String wineName) {
+        return wineSource().findTopPairings(wineName);
+    }
+
+    @Override
+    public List<String> findWinesForDish(String dishName) {
+        return wineSource().findWinesForDish(dishName);
+    }
+
+    @Override
+    public Wine addWine(Wine wine) {
+        endWarmup();
+        return wines.addWine(wine);
+    }
+
+    @Override
+    public Wine getWineById(int id) {
+        return wineSource().getWineById(id);
+    }
+
+    @Override
+    public Wine updateWine(Wine wine) {
+        endWarmup();
+        return wines.updateWine(wine);
+    }
+
+    @Override
+    public boolean deleteWine(int id) {
+        endWarmup();
+        return wines.deleteWine(id);
+    }
+
+    @Override
+    public List<Wine> getAllWines() {
+        return wineSource().getAllWines();
+    }
+
+    @Override
+    public List<Wine> findWinesByName(String name) {
+        return wineSource().findWinesByName(name);
+    }
+
+    @Override
+    public List<Pairing> getAllPairings() {
+        return wineSource().getAllPairings();
+    }
+
+    @Override
+    public void savePairing(Pairing pairing) {
+        endWarmup();
+        wines.savePairing(pairing);
+    }
+
+    // Блюда
+
+    @Override
+    public List<String> findDishesByCategory(String category) throws SQLException {
+        return dishSource().findDishesByCategory(category);
+    }
+
+    @Override
+    public List<String> findPairingsForWine(String wineName) throws SQLException {
+        return dishSource().findPairingsForWine(wineName);
+    }
+
+    @Override
+    public boolean addDish(String name, String category, int fatContent, int proteinContent) throws SQLException {
+        endWarmup();
+        return dishes.addDish(name, category, fatContent, proteinContent);
+    }
+
+    @Override
+    public Dish getDishById(int id) throws SQLException {
+        return dishSource().getDishById(id);
+    }
+
+    @Override
+    public List<Dish> getDishesByIds(List<Integer> ids) throws SQLException {
+        return dishSource().getDishesByIds(ids);
+    }
+
+    @Override
+    public boolean updateDish(Dish dish) throws SQLException {
+        endWarmup();
+        return dishes.updateDish(dish);
+    }
+
+    @Override
+    public boolean deleteDish(int id) throws SQLException {
+        endWarmup();
+        return dishes.deleteDish(id);
+    }
+
+    @Override
+    public List<Dish> getAllDishes() throws SQLException {
+        return dishSource().getAllDishes();
+    }
+
+    /**
+     * Изменения происходят только в основном хранилище, поэтому подписка передается ему
+     */
+    @Override
+    public void addListener(CatalogListener listener) {
+        wines.addListener(listener);
+        dishes.addListener(listener);
+    }
+}
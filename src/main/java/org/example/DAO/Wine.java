@@ -17,11 +17,28 @@ public class Wine {
     private String region;
     private int vintage;
     private String description;
+    private int version;
 
     public Wine() {
 
     }
 
+    /**
+     * Копирующий конструктор
+     * @param other вино, значения которого копируются
+     */
+    public Wine(Wine other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.type = other.type;
+        this.tannins = other.tannins;
+        this.acidity = other.acidity;
+        this.region = other.region;
+        this.vintage = other.vintage;
+        this.description = other.description;
+        this.version = other.version;
+    }
+
     /**
      * Перечисление возможных типов вин
      */
@@ -183,6 +200,17 @@ public class Wine {
         this.description = description;
     }
 
+    /**
+     * @return версия записи: увеличивается хранилищем при каждом изменении вина
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     // Методы для определения характеристик
 
     /**
@@ -1,135 +1,236 @@
 package org.example.DAO;
 
-import java.sql.*;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
  * DAO класс для работы с винами и их сочетаниями с блюдами
  */
-public class WineDAO {
-    private final Connection connection;
+public class WineDAO implements WineRepository {
+    private static final String FIND_PAIRINGS_SQL = "SELECT d.name FROM pairings p " +
+            "JOIN dishes d ON p.dish_id = d.id " +
+            "JOIN wines w ON p.wine_id = w.id " +
+            "WHERE w.name LIKE ? ORDER BY p.score DESC";
+    // Вина по названию вместе с их заранее отобранными лучшими сочетаниями из pairing_topk
+    // (по первичному ключу wine_id, rank); вина без сочетаний возвращаются одной строкой с NULL.
+    // Места соединяются с блюдами до внешнего соединения, поэтому место без блюда не дает строки
+    private static final String FIND_TOP_PAIRINGS_SQL = "SELECT " + RowMappers.qualified("w", RowMappers.WINE_COLUMNS) +
+            ", " + RowMappers.qualified("d", RowMappers.DISH_COLUMNS) + " FROM wines w " +
+            "LEFT JOIN (pairing_topk t JOIN dishes d ON t.dish_id = d.id) ON t.wine_id = w.id " +
+            "WHERE w.name LIKE ? ORDER BY t.score DESC NULLS LAST, t.dish_id, w.id";
+    // Использует индекс pairings (dish_id, score DESC)
+    private static final String FIND_WINES_FOR_DISH_SQL = "SELECT w.name FROM pairings p " +
+            "JOIN wines w ON p.wine_id = w.id " +
+            "JOIN dishes d ON p.dish_id = d.id " +
+            "WHERE d.name LIKE ? ORDER BY p.score DESC";
+    private static final String INSERT_SQL =
+            "INSERT INTO wines (name, type, tannins, acidity, region, vintage, description) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_BY_ID_SQL =
+            "SELECT " + RowMappers.WINE_COLUMNS + " FROM wines WHERE id = ?";
+    private static final String SELECT_BY_IDS_SQL =
+            "SELECT " + RowMappers.WINE_COLUMNS + " FROM wines WHERE id = ANY(?::int[])";
+    private static final String UPDATE_SQL =
+            "UPDATE wines SET name = ?, type = ?, tannins = ?, acidity = ?, " +
+            "region = ?, vintage = ?, description = ?, version = version + 1 WHERE id = ? RETURNING version";
+    private static final String DELETE_SQL = "DELETE FROM wines WHERE id = ?";
+    private static final String SELECT_ALL_SQL = "SELECT " + RowMappers.WINE_COLUMNS + " FROM wines";
+    private static final String SELECT_BY_NAME_SQL =
+            "SELECT " + RowMappers.WINE_COLUMNS + " FROM wines WHERE name LIKE ?";
+    private static final String SELECT_PAIRINGS_SQL = "SELECT " + RowMappers.PAIRING_COLUMNS + " FROM pairings";
+    // Задает исходную оценку сочетания; накопленные отзывы пользователей сохраняются
+    private static final String UPSERT_PAIRING_SQL =
+            "INSERT INTO pairings (wine_id, dish_id, score, base_score) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (wine_id, dish_id) DO UPDATE SET base_score = EXCLUDED.base_score, " +
+            "score = ROUND((" + Pairing.PRIOR_WEIGHT + " * EXCLUDED.base_score + " +
+            Pairing.MAX_SCORE + " * pairings.votes_up)::numeric / " +
+            "(" + Pairing.PRIOR_WEIGHT + " + pairings.votes_up + pairings.votes_down)) " +
+            "RETURNING " + RowMappers.PAIRING_COLUMNS;
+
+    private final ReplicaRouter router;
+    private final CatalogEvents events = new CatalogEvents();
 
     public WineDAO(Connection connection) {
-        this.connection = Objects.requireNonNull(connection, "Соединение с БД не может быть null");
+        this(new QueryRunner(Objects.requireNonNull(connection, "Соединение с БД не может быть null")));
+    }
+
+    public WineDAO(QueryRunner queries) {
+        this(new ReplicaRouter(Objects.requireNonNull(queries, "QueryRunner не может быть null")));
+    }
+
+    /**
+     * Создает DAO, читающий с реплики и пишущий в основную БД
+     * @param router маршрутизатор запросов между основной БД и репликой
+     */
+    public WineDAO(ReplicaRouter router) {
+        this.router = Objects.requireNonNull(router, "ReplicaRouter не может быть null");
     }
 
     /**
      * Находит сочетания блюд для указанного вина
      */
+    @Override
     public List<String> findPairings(String wineName) {
         try {
-            List<String> pairings = new ArrayList<>();
-            String sql = "SELECT d.name FROM pairings p " +
-                    "JOIN dishes d ON p.dish_id = d.id " +
-                    "JOIN wines w ON p.wine_id = w.id " +
-                    "WHERE w.name LIKE ? ORDER BY p.score DESC";
-
-            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-                stmt.setString(1, "%" + wineName + "%");
-                ResultSet rs = stmt.executeQuery();
-
-                while (rs.next()) {
-                    pairings.add(rs.getString(1));
-                }
-            }
-            return pairings;
+            return router.read(q -> q.query(FIND_PAIRINGS_SQL,
+                    stmt -> stmt.setString(1, "%" + wineName + "%"),
+                    RowMappers.FIRST_STRING));
         } catch (SQLException e) {
             throw new DataAccessException("Ошибка при поиске сочетаний для вина: " + wineName, e);
         }
     }
 
     /**
-     * Добавляет новое вино в базу данных
+     * Находит вина по названию и их лучшие блюда в таблице pairing_topk, которую
+     * поддерживает {@link PairingTopKDAO}, одним запросом. Строки приходят по убыванию
+     * оценки, поэтому блюдо, подходящее нескольким винам, берется с лучшей оценкой
      */
-    public Wine addWine(Wine wine) {
-        String sql = "INSERT INTO wines (name, type, tannins, acidity, region, vintage, description) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?)";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setString(1, wine.getName());
-            stmt.setString(2, wine.getType().toString());
-            stmt.setInt(3, wine.getTannins());
-            stmt.setInt(4, wine.getAcidity());
-            stmt.setString(5, wine.getRegion());
-            stmt.setInt(6, wine.getVintage());
-            stmt.setString(7, wine.getDescription());
-
-            int affectedRows = stmt.executeUpdate();
-            if (affectedRows == 0) {
-                throw new DataAccessException("Создание вина не удалось, ни одна запись не добавлена");
-            }
+    @Override
+    public TopPairings findTopPairings(String wineName) {
+        List<TopPairingRow> rows;
+        try {
+            rows = router.read(q -> q.query(FIND_TOP_PAIRINGS_SQL,
+                    stmt -> stmt.setString(1, "%" + wineName + "%"),
+                    rs -> {
+                        Wine wine = RowMappers.wine(rs, 0);
+                        rs.getInt(RowMappers.ENTITY_COLUMN_COUNT + 1);
+                        Dish dish = rs.wasNull() ? null : RowMappers.dish(rs, RowMappers.ENTITY_COLUMN_COUNT);
+                        return new TopPairingRow(wine, dish);
+                    }));
+        } catch (SQLException e) {
+            throw new DataAccessException("Ошибка при поиске лучших сочетаний для вина: " + wineName, e);
+        }
 
-            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    wine.setId(generatedKeys.getInt(1));
-                    return wine;
-                } else {
-                    throw new DataAccessException("Создание вина не удалось, ID не получен");
-                }
+        Map<Integer, Wine> wines = new LinkedHashMap<>();
+        Map<Integer, Dish> dishes = new LinkedHashMap<>();
+        List<Integer> dishWineIds = new ArrayList<>();
+        for (TopPairingRow row : rows) {
+            wines.putIfAbsent(row.wine.getId(), row.wine);
+            if (row.dish != null && dishes.size() < PairingTopKDAO.K
+                    && dishes.putIfAbsent(row.dish.getId(), row.dish) == null) {
+                dishWineIds.add(row.wine.getId());
             }
+        }
+        return new TopPairings(new ArrayList<>(wines.values()), new ArrayList<>(dishes.values()), dishWineIds);
+    }
+
+    /**
+     * Находит вина, сочетающиеся с указанным блюдом
+     */
+    @Override
+    public List<String> findWinesForDish(String dishName) {
+        try {
+            return router.read(q -> q.query(FIND_WINES_FOR_DISH_SQL,
+                    stmt -> stmt.setString(1, "%" + dishName + "%"),
+                    RowMappers.FIRST_STRING));
+        } catch (SQLException e) {
+            throw new DataAccessException("Ошибка при поиске вин для блюда: " + dishName, e);
+        }
+    }
+
+    /**
+     * Добавляет новое вино в базу данных
+     */
+    @Override
+    public Wine addWine(Wine wine) {
+        int id;
+        try {
+            id = router.primary().insert(INSERT_SQL, stmt -> {
+                stmt.setString(1, wine.getName());
+                stmt.setString(2, wine.getType().toString());
+                stmt.setInt(3, wine.getTannins());
+                stmt.setInt(4, wine.getAcidity());
+                stmt.setString(5, wine.getRegion());
+                stmt.setInt(6, wine.getVintage());
+                stmt.setString(7, wine.getDescription());
+            });
         } catch (SQLException e) {
             throw new DataAccessException("Ошибка при добавлении вина", e);
         }
+
+        if (id < 0) {
+            throw new DataAccessException("Создание вина не удалось, ID не получен");
+        }
+        wine.setId(id);
+        events.wineChanged(wine);
+        return wine;
     }
 
     /**
      * Получает вино по ID
      */
+    @Override
     public Wine getWineById(int id) {
-        String sql = "SELECT * FROM wines WHERE id = ?";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, id);
-            ResultSet rs = stmt.executeQuery();
-
-            if (rs.next()) {
-                return mapRowToWine(rs);
-            }
-            return null;
+        try {
+            return router.read(q -> q.queryOne(SELECT_BY_ID_SQL, stmt -> stmt.setInt(1, id), RowMappers.WINE));
         } catch (SQLException e) {
             throw new DataAccessException("Ошибка при получении вина по ID: " + id, e);
         }
     }
 
+    /**
+     * Находит вина по списку ID одним запросом
+     */
+    @Override
+    public List<Wine> getWinesByIds(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        try {
+            List<Wine> found = router.read(q -> q.query(SELECT_BY_IDS_SQL,
+                    stmt -> stmt.setArray(1, stmt.getConnection().createArrayOf("int4", ids.toArray())),
+                    RowMappers.WINE));
+            return WineRepository.inOrder(ids, found);
+        } catch (SQLException e) {
+            throw new DataAccessException("Ошибка при получении вин по ID", e);
+        }
+    }
+
     /**
      * Обновляет информацию о вине
      */
+    @Override
     public Wine updateWine(Wine wine) {
-        String sql = "UPDATE wines SET name = ?, type = ?, tannins = ?, acidity = ?, " +
-                "region = ?, vintage = ?, description = ? WHERE id = ?";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, wine.getName());
-            stmt.setString(2, wine.getType().toString());
-            stmt.setInt(3, wine.getTannins());
-            stmt.setInt(4, wine.getAcidity());
-            stmt.setString(5, wine.getRegion());
-            stmt.setInt(6, wine.getVintage());
-            stmt.setString(7, wine.getDescription());
-            stmt.setInt(8, wine.getId());
-
-            int affectedRows = stmt.executeUpdate();
-            if (affectedRows == 0) {
-                throw new DataAccessException("Обновление вина не удалось, ни одна запись не изменена");
-            }
-            return wine;
+        Integer version;
+        try {
+            version = router.primary().queryOne(UPDATE_SQL, stmt -> {
+                stmt.setString(1, wine.getName());
+                stmt.setString(2, wine.getType().toString());
+                stmt.setInt(3, wine.getTannins());
+                stmt.setInt(4, wine.getAcidity());
+                stmt.setString(5, wine.getRegion());
+                stmt.setInt(6, wine.getVintage());
+                stmt.setString(7, wine.getDescription());
+                stmt.setInt(8, wine.getId());
+            }, RowMappers.FIRST_INT);
         } catch (SQLException e) {
             throw new DataAccessException("Ошибка при обновлении вина с ID: " + wine.getId(), e);
         }
+
+        if (version == null) {
+            throw new DataAccessException("Обновление вина не удалось, ни одна запись не изменена");
+        }
+        wine.setVersion(version);
+        events.wineChanged(wine);
+        return wine;
     }
 
     /**
      * Удаляет вино из базы данных
      */
+    @Override
     public boolean deleteWine(int id) {
-        String sql = "DELETE FROM wines WHERE id = ?";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, id);
-            int affectedRows = stmt.executeUpdate();
-            return affectedRows > 0;
+        try {
+            boolean deleted = router.primary().update(DELETE_SQL, stmt -> stmt.setInt(1, id)) > 0;
+            if (deleted) {
+                events.wineDeleted(id);
+            }
+            return deleted;
         } catch (SQLException e) {
             throw new DataAccessException("Ошибка при удалении вина с ID: " + id, e);
         }
@@ -138,15 +239,10 @@ public class WineDAO {
     /**
      * Получает все вина из базы данных
      */
+    @Override
     public List<Wine> getAllWines() {
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT * FROM wines")) {
-
-            List<Wine> wines = new ArrayList<>();
-            while (rs.next()) {
-                wines.add(mapRowToWine(rs));
-            }
-            return wines;
+        try {
+            return router.read(q -> q.query(SELECT_ALL_SQL, QueryRunner.Binder.NONE, RowMappers.WINE));
         } catch (SQLException e) {
             throw new DataAccessException("Ошибка при получении списка вин", e);
         }
@@ -155,37 +251,51 @@ public class WineDAO {
     /**
      * Находит вина по названию (поиск с LIKE)
      */
+    @Override
     public List<Wine> findWinesByName(String name) {
-        String sql = "SELECT * FROM wines WHERE name LIKE ?";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, "%" + name + "%");
-            ResultSet rs = stmt.executeQuery();
-
-            List<Wine> wines = new ArrayList<>();
-            while (rs.next()) {
-                wines.add(mapRowToWine(rs));
-            }
-            return wines;
+        try {
+            return router.read(q -> q.query(SELECT_BY_NAME_SQL,
+                    stmt -> stmt.setString(1, "%" + name + "%"),
+                    RowMappers.WINE));
         } catch (SQLException e) {
             throw new DataAccessException("Ошибка при поиске вин по названию: " + name, e);
         }
     }
 
     /**
-     * Преобразует строку ResultSet в объект Wine
+     * Получает все сочетания вин и блюд
      */
-    private Wine mapRowToWine(ResultSet rs) throws SQLException {
-        Wine wine = new Wine ();
-        wine.setId(rs.getInt("id"));
-        wine.setName(rs.getString("name"));
-        wine.setType(Wine.WineType.valueOf(rs.getString("type")));
-        wine.setTannins(rs.getInt("tannins"));
-        wine.setAcidity(rs.getInt("acidity"));
-        wine.setRegion(rs.getString("region"));
-        wine.setVintage(rs.getInt("vintage"));
-        wine.setDescription(rs.getString("description"));
-        return wine;
+    @Override
+    public List<Pairing> getAllPairings() {
+        try {
+            return router.read(q -> q.query(SELECT_PAIRINGS_SQL, QueryRunner.Binder.NONE, RowMappers.PAIRING));
+        } catch (SQLException e) {
+            throw new DataAccessException("Ошибка при получении списка сочетаний", e);
+        }
+    }
+
+    /**
+     * Добавляет сочетание или обновляет оценку существующего
+     */
+    @Override
+    public void savePairing(Pairing pairing) {
+        Pairing saved;
+        try {
+            saved = router.primary().queryOne(UPSERT_PAIRING_SQL, stmt -> {
+                stmt.setInt(1, pairing.getWineId());
+                stmt.setInt(2, pairing.getDishId());
+                stmt.setInt(3, pairing.getScore());
+                stmt.setInt(4, pairing.getScore());
+            }, RowMappers.PAIRING);
+        } catch (SQLException e) {
+            throw new DataAccessException("Ошибка при сохранении сочетания: " + pairing, e);
+        }
+        events.pairingChanged(saved != null ? saved : pairing);
+    }
+
+    @Override
+    public void addListener(CatalogListener listener) {
+        events.addListener(listener);
     }
 
     /**
@@ -200,4 +310,17 @@ public class WineDAO {
             super(message, cause);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Строка запроса лучших сочетаний: вино и его блюдо (null, если сочетаний нет)
+     */
+    private static final class TopPairingRow {
+        private final Wine wine;
+        private final Dish dish;
+
+        TopPairingRow(Wine wine, Dish dish) {
+            this.wine = wine;
+            this.dish = dish;
+        }
+    }
+}
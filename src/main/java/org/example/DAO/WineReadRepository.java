@@ -0,0 +1,67 @@
+package org.example.DAO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Чтение вин и их сочетаний с блюдами.
+ * Реализуется хранилищами вин и неизменяемым бинарным снимком каталога.
+ * Ошибки доступа к данным сообщаются через {@link WineDAO.DataAccessException}.
+ */
+public interface WineReadRepository {
+
+    /**
+     * Находит названия блюд, сочетающихся с вином, в порядке убывания оценки
+     * @param wineName название вина или его часть
+     */
+    List<String> findPairings(String wineName);
+
+    /**
+     * Находит вина, название которых содержит указанную строку, и блюда, лучше всего
+     * сочетающиеся с любым из них, одним обращением к хранилищу
+     * @param wineName название вина или его часть
+     * @return найденные вина и не больше {@link PairingTopKDAO#K} блюд в порядке убывания оценки
+     */
+    TopPairings findTopPairings(String wineName);
+
+    /**
+     * Находит названия вин, сочетающихся с блюдом, в порядке убывания оценки
+     * @param dishName название блюда или его часть
+     */
+    List<String> findWinesForDish(String dishName);
+
+    /**
+     * @return вино с указанным ID или null
+     */
+    Wine getWineById(int id);
+
+    /**
+     * Находит вина по списку ID
+     * @return найденные вина в порядке списка; отсутствующие ID пропускаются
+     */
+    default List<Wine> getWinesByIds(List<Integer> ids) {
+        List<Wine> wines = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            Wine wine = getWineById(id);
+            if (wine != null) {
+                wines.add(wine);
+            }
+        }
+        return wines;
+    }
+
+    /**
+     * @return все вина каталога
+     */
+    List<Wine> getAllWines();
+
+    /**
+     * Находит вина, название которых содержит указанную строку
+     */
+    List<Wine> findWinesByName(String name);
+
+    /**
+     * @return все сочетания вин и блюд
+     */
+    List<Pairing> getAllPairings();
+}
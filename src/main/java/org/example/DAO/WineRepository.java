@@ -0,0 +1,57 @@
+package org.example.DAO;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Хранилище вин и их сочетаний с блюдами: чтение и изменение.
+ * Реализуется DAO для PostgreSQL и встроенным каталогом в памяти.
+ * Ошибки доступа к данным сообщаются через {@link WineDAO.DataAccessException}.
+ */
+public interface WineRepository extends WineReadRepository {
+
+    /**
+     * Добавляет новое вино и присваивает ему ID
+     */
+    Wine addWine(Wine wine);
+
+    /**
+     * Обновляет информацию о вине
+     */
+    Wine updateWine(Wine wine);
+
+    /**
+     * @return true, если вино было удалено
+     */
+    boolean deleteWine(int id);
+
+    /**
+     * Добавляет сочетание или обновляет оценку существующего
+     */
+    void savePairing(Pairing pairing);
+
+    /**
+     * Подписывает обработчик на изменения вин и сочетаний
+     */
+    void addListener(CatalogListener listener);
+
+    /**
+     * Упорядочивает найденные вина по списку ID
+     */
+    static List<Wine> inOrder(List<Integer> ids, List<Wine> found) {
+        Map<Integer, Wine> byId = new HashMap<>();
+        for (Wine wine : found) {
+            byId.put(wine.getId(), wine);
+        }
+        List<Wine> ordered = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            Wine wine = byId.get(id);
+            if (wine != null) {
+                ordered.add(wine);
+            }
+        }
+        return ordered;
+    }
+}
@@ -1,12 +1,29 @@
 package org.example;
 
 import io.github.cdimascio.dotenv.Dotenv;
+import org.example.Bot.Commands.Factories.CommandFactory;
 import org.example.Bot.WinePairingBot;
+import org.example.Cluster.ClusterRouter;
+import org.example.Cluster.ClusterServer;
+import org.example.Cluster.Membership;
+import org.example.Cluster.PollingLeader;
+import org.example.Cluster.PostgresMembership;
+import org.example.Cluster.StaticMembership;
+import org.example.DAO.QueryRunner;
+import org.example.Sessions.SessionStore;
+import org.example.Tracing.TraceLog;
 import org.example.Utils.DatabaseInitializer;
+import org.example.Utils.Metrics;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.sql.DriverManager;
+import java.time.Duration;
+
 /**
  * Главный класс приложения для запуска винного бота.
  * Выполняет инициализацию базы данных и запуск Telegram бота.
@@ -37,19 +54,94 @@ public class Main {
             // 3. Создание API для работы с Telegram ботами
             TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
 
-            // 4. Регистрация и запуск бота
-            botsApi.registerBot(new WinePairingBot(botToken, botUsername));
+            // Адрес Bot API можно переопределить (локальный Bot API сервер, тестовый стенд)
+            DefaultBotOptions options = new DefaultBotOptions();
+            String apiUrl = dotenv.get("TELEGRAM_API_URL");
+            if (apiUrl != null && !apiUrl.isBlank()) {
+                options.setBaseUrl(apiUrl);
+            }
+
+            // 4. Узлы кластера: обновления чужих чатов пересылаются узлам-владельцам
+            WinePairingBot bot = new WinePairingBot(botToken, botUsername, options);
+            startCluster(dotenv, bot);
+
+            // 5. Регистрация бота: обновления получает только ведущий экземпляр, остальным
+            // обновления их чатов пересылаются через кластер
+            PollingLeader polling = new PollingLeader(CommandFactory.jobs(), () -> botsApi.registerBot(bot));
+            polling.start(Duration.ofSeconds(5));
+            Runtime.getRuntime().addShutdownHook(new Thread(polling::close));
+
+            // Метрики (задержки записи пачек, доля попаданий в кэш /pair и др.) пишутся в журнал
+            Metrics.startReporting(
+                    Duration.ofSeconds(Long.parseLong(dotenv.get("METRICS_REPORT_SECONDS", "60"))),
+                    report -> TraceLog.info("Метрики:\n" + report));
 
             // Уведомление об успешном запуске
+            TraceLog.info("Бот успешно запущен");
             System.out.println("Бот успешно запущен!");
 
         } catch (TelegramApiException e) {
             // Обработка ошибок Telegram API
-            System.err.println("Ошибка Telegram API: " + e.getMessage());
+            failStartup("Ошибка Telegram API", e);
         } catch (Exception e) {
             // Обработка прочих исключений
-            System.err.println("Критическая ошибка: " + e.getMessage());
-            e.printStackTrace();
+            failStartup("Критическая ошибка", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Записывает ошибку запуска и дожидается записи журнала: поток журнала — демон
+     * и может не успеть записать ее, если процесс завершится. Ошибка также выводится
+     * в консоль, чтобы причину было видно без чтения журнала
+     */
+    private static void failStartup(String message, Exception e) {
+        System.err.println(message + ": " + e.getMessage());
+        TraceLog.error(message, e);
+        try {
+            TraceLog.get().drain(5000);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Запускает узел кластера, если задан CLUSTER_PORT; в этом случае обязателен CLUSTER_SECRET.
+     * Состав узлов берется из CLUSTER_NODES (id=url через запятую) или из таблицы cluster_nodes
+     * @param dotenv объект Dotenv с загруженными переменными окружения
+     * @param bot бот, обрабатывающий обновления своих чатов
+     */
+    private static void startCluster(Dotenv dotenv, WinePairingBot bot) throws Exception {
+        String port = dotenv.get("CLUSTER_PORT");
+        if (port == null || port.isBlank()) {
+            return;
+        }
+        String nodeId = CommandFactory.jobs().nodeId();
+        String url = dotenv.get("CLUSTER_URL", "http://" + InetAddress.getLocalHost().getHostName() + ":" + port);
+        String secret = dotenv.get("CLUSTER_SECRET");
+        if (secret == null || secret.isBlank()) {
+            // Без секрета любой, кто достучится до порта, мог бы подменять обновления и сессии
+            throw new IllegalStateException("При заданном CLUSTER_PORT нужен CLUSTER_SECRET");
+        }
+        String bind = dotenv.get("CLUSTER_BIND");
+        InetSocketAddress address = bind != null && !bind.isBlank()
+                ? new InetSocketAddress(bind, Integer.parseInt(port))
+                : new InetSocketAddress(Integer.parseInt(port));
+        SessionStore sessions = CommandFactory.sessions();
+
+        String staticNodes = dotenv.get("CLUSTER_NODES");
+        Membership membership = staticNodes != null && !staticNodes.isBlank()
+                ? StaticMembership.parse(staticNodes)
+                : new PostgresMembership(new QueryRunner(() -> DriverManager.getConnection(
+                        dotenv.get("POSTGRES_URL"), dotenv.get("POSTGRES_USER"), dotenv.get("POSTGRES_PASSWORD")), 1),
+                        nodeId, url, Duration.ofSeconds(15));
+
+        ClusterServer server = new ClusterServer(address, bot::handleUpdate, sessions, secret);
+        ClusterRouter router = new ClusterRouter(nodeId, url, membership, sessions, bot::handleUpdate, secret);
+        router.start(Duration.ofSeconds(5));
+        bot.useCluster(router);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            router.close();
+            server.close();
+        }));
+    }
+}
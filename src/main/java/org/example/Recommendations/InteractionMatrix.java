@@ -0,0 +1,214 @@
+package org.example.Recommendations;
+
+import org.example.DAO.Rating;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Разреженная матрица «пользователь × сочетание» в формате CSR.
+ * Хранится дважды — по строкам сочетаний и по строкам пользователей —
+ * в примитивных массивах int/float, без объектов на каждую ячейку.
+ */
+public final class InteractionMatrix {
+    /**
+     * Вес оценки «хорошо» и сочетания в избранном
+     */
+    public static final float LIKED = 1f;
+    /**
+     * Вес сочетания, подобранного чату в /pair или выбранного им для оценки
+     */
+    public static final float VIEWED = 0.5f;
+
+    private final long[] itemKeys;
+    private final int userCount;
+    private final int[] itemStart;
+    private final int[] itemUsers;
+    private final float[] itemValues;
+    private final int[] userStart;
+    private final int[] userItems;
+    private final float[] userValues;
+    private final float[] itemNorms;
+
+    private InteractionMatrix(long[] itemKeys, int userCount, int[] cellUsers, int[] cellItems, float[] cellValues,
+                              int cellCount) {
+        this.itemKeys = itemKeys;
+        this.userCount = userCount;
+        int itemCount = itemKeys.length;
+
+        this.itemStart = new int[itemCount + 1];
+        this.itemUsers = new int[cellCount];
+        this.itemValues = new float[cellCount];
+        this.userStart = new int[userCount + 1];
+        this.userItems = new int[cellCount];
+        this.userValues = new float[cellCount];
+        this.itemNorms = new float[itemCount];
+
+        // Сортировка подсчетом: сначала размеры строк, затем раскладка ячеек
+        for (int c = 0; c < cellCount; c++) {
+            itemStart[cellItems[c] + 1]++;
+            userStart[cellUsers[c] + 1]++;
+        }
+        for (int i = 0; i < itemCount; i++) {
+            itemStart[i + 1] += itemStart[i];
+        }
+        for (int u = 0; u < userCount; u++) {
+            userStart[u + 1] += userStart[u];
+        }
+
+        int[] itemFill = Arrays.copyOf(itemStart, itemCount);
+        int[] userFill = Arrays.copyOf(userStart, userCount);
+        double[] squares = new double[itemCount];
+        for (int c = 0; c < cellCount; c++) {
+            int item = cellItems[c];
+            int user = cellUsers[c];
+            float value = cellValues[c];
+            itemUsers[itemFill[item]] = user;
+            itemValues[itemFill[item]++] = value;
+            userItems[userFill[user]] = item;
+            userValues[userFill[user]++] = value;
+            squares[item] += (double) value * value;
+        }
+        for (int i = 0; i < itemCount; i++) {
+            itemNorms[i] = (float) Math.sqrt(squares[i]);
+        }
+    }
+
+    /**
+     * Строит матрицу по оценкам: «хорошо» считается взаимодействием с весом {@link #LIKED},
+     * «плохо» не учитывается. Повторная оценка того же сочетания заменяет предыдущую.
+     * @param ratings оценки в порядке добавления
+     */
+    public static InteractionMatrix fromRatings(List<Rating> ratings) {
+        Builder builder = new Builder();
+        for (Rating rating : ratings) {
+            builder.set(rating.getChatId(), rating.getWineId(), rating.getDishId(), rating.isGood() ? LIKED : 0f);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return ключ сочетания (ID вина в старших 32 битах, ID блюда в младших)
+     */
+    public static long itemKey(int wineId, int dishId) {
+        return ((long) wineId << 32) | (dishId & 0xFFFFFFFFL);
+    }
+
+    public int itemCount() {
+        return itemKeys.length;
+    }
+
+    public int userCount() {
+        return userCount;
+    }
+
+    long itemKey(int item) {
+        return itemKeys[item];
+    }
+
+    int itemStart(int item) {
+        return itemStart[item];
+    }
+
+    int itemEnd(int item) {
+        return itemStart[item + 1];
+    }
+
+    int itemUser(int position) {
+        return itemUsers[position];
+    }
+
+    float itemValue(int position) {
+        return itemValues[position];
+    }
+
+    int userStart(int user) {
+        return userStart[user];
+    }
+
+    int userEnd(int user) {
+        return userStart[user + 1];
+    }
+
+    int userItem(int position) {
+        return userItems[position];
+    }
+
+    float userValue(int position) {
+        return userValues[position];
+    }
+
+    float itemNorm(int item) {
+        return itemNorms[item];
+    }
+
+    /**
+     * Накапливает ячейки матрицы в параллельных массивах
+     */
+    public static final class Builder {
+        private final Map<Long, Integer> users = new HashMap<>();
+        private final Map<Long, Integer> items = new HashMap<>();
+        private final Map<Long, Integer> cells = new HashMap<>();
+        private int[] cellUsers = new int[64];
+        private int[] cellItems = new int[64];
+        private float[] cellValues = new float[64];
+        private int cellCount;
+
+        /**
+         * Задает вес взаимодействия пользователя с сочетанием (0 — взаимодействия нет)
+         */
+        public Builder set(long chatId, int wineId, int dishId, float value) {
+            int user = users.computeIfAbsent(chatId, id -> users.size());
+            int item = items.computeIfAbsent(itemKey(wineId, dishId), key -> items.size());
+            long cellKey = ((long) user << 32) | item;
+
+            Integer cell = cells.get(cellKey);
+            if (cell == null) {
+                if (cellCount == cellUsers.length) {
+                    cellUsers = Arrays.copyOf(cellUsers, cellCount * 2);
+                    cellItems = Arrays.copyOf(cellItems, cellCount * 2);
+                    cellValues = Arrays.copyOf(cellValues, cellCount * 2);
+                }
+                cell = cellCount++;
+                cells.put(cellKey, cell);
+                cellUsers[cell] = user;
+                cellItems[cell] = item;
+            }
+            cellValues[cell] = value;
+            return this;
+        }
+
+        /**
+         * Повышает вес взаимодействия до указанного, если он меньше
+         */
+        public Builder atLeast(long chatId, int wineId, int dishId, float value) {
+            Integer user = users.get(chatId);
+            Integer item = items.get(itemKey(wineId, dishId));
+            if (user != null && item != null) {
+                Integer cell = cells.get(((long) user << 32) | item);
+                if (cell != null && cellValues[cell] >= value) {
+                    return this;
+                }
+            }
+            return set(chatId, wineId, dishId, value);
+        }
+
+        public InteractionMatrix build() {
+            long[] itemKeys = new long[items.size()];
+            items.forEach((key, index) -> itemKeys[index] = key);
+
+            // Нулевые ячейки (отмененные взаимодействия) в матрицу не попадают
+            int kept = 0;
+            for (int c = 0; c < cellCount; c++) {
+                if (cellValues[c] != 0f) {
+                    cellUsers[kept] = cellUsers[c];
+                    cellItems[kept] = cellItems[c];
+                    cellValues[kept++] = cellValues[c];
+                }
+            }
+            return new InteractionMatrix(itemKeys, users.size(), cellUsers, cellItems, cellValues, kept);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package org.example.Recommendations;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Таблица ближайших соседей сочетаний по косинусной мере сходства.
+ * Для каждого сочетания хранится не более N соседей в порядке убывания сходства.
+ */
+public final class ItemSimilarity {
+    // Диапазон сочетаний, который обрабатывается одной задачей без дальнейшего деления
+    private static final int TASK_SIZE = 64;
+
+    private final int neighbourCount;
+    private final int[] neighbours;
+    private final float[] scores;
+
+    private ItemSimilarity(int itemCount, int neighbourCount) {
+        this.neighbourCount = neighbourCount;
+        this.neighbours = new int[itemCount * neighbourCount];
+        this.scores = new float[itemCount * neighbourCount];
+        Arrays.fill(neighbours, -1);
+    }
+
+    /**
+     * Вычисляет таблицу соседей, распределяя сочетания по задачам fork/join
+     * @param matrix матрица взаимодействий
+     * @param neighbourCount сколько соседей хранить для каждого сочетания
+     * @param pool пул, в котором выполняется расчет
+     */
+    public static ItemSimilarity compute(InteractionMatrix matrix, int neighbourCount, ForkJoinPool pool) {
+        ItemSimilarity table = new ItemSimilarity(matrix.itemCount(), neighbourCount);
+        if (matrix.itemCount() > 0) {
+            pool.invoke(new Task(matrix, table, 0, matrix.itemCount()));
+        }
+        return table;
+    }
+
+    /**
+     * @return индекс соседа с номером rank или -1, если соседей меньше
+     */
+    public int neighbour(int item, int rank) {
+        return neighbours[item * neighbourCount + rank];
+    }
+
+    /**
+     * @return сходство с соседом с номером rank
+     */
+    public float score(int item, int rank) {
+        return scores[item * neighbourCount + rank];
+    }
+
+    public int neighbourCount() {
+        return neighbourCount;
+    }
+
+    /**
+     * Считает соседей для диапазона сочетаний. Каждая задача пишет только
+     * в свои строки таблицы, поэтому синхронизация не нужна.
+     */
+    private static final class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final InteractionMatrix matrix;
+        private final ItemSimilarity table;
+        private final int from;
+        private final int to;
+
+        private Task(InteractionMatrix matrix, ItemSimilarity table, int from, int to) {
+            this.matrix = matrix;
+            this.table = table;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TASK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Task(matrix, table, from, middle), new Task(matrix, table, middle, to));
+                return;
+            }
+
+            float[] dots = new float[matrix.itemCount()];
+            int[] touched = new int[matrix.itemCount()];
+            for (int item = from; item < to; item++) {
+                int touchedCount = 0;
+                // Скалярные произведения со всеми сочетаниями, у которых есть общие пользователи
+                for (int p = matrix.itemStart(item); p < matrix.itemEnd(item); p++) {
+                    int user = matrix.itemUser(p);
+                    float value = matrix.itemValue(p);
+                    for (int q = matrix.userStart(user); q < matrix.userEnd(user); q++) {
+                        int other = matrix.userItem(q);
+                        if (other == item) {
+                            continue;
+                        }
+                        if (dots[other] == 0f) {
+                            touched[touchedCount++] = other;
+                        }
+                        dots[other] += value * matrix.userValue(q);
+                    }
+                }
+
+                for (int t = 0; t < touchedCount; t++) {
+                    int other = touched[t];
+                    float similarity = dots[other] / (matrix.itemNorm(item) * matrix.itemNorm(other));
+                    offer(item, other, similarity);
+                    dots[other] = 0f;
+                }
+            }
+        }
+
+        /**
+         * Вставляет соседа в отсортированную строку таблицы, если он входит в первые N
+         */
+        private void offer(int item, int other, float similarity) {
+            int base = item * table.neighbourCount;
+            int last = base + table.neighbourCount - 1;
+            if (table.neighbours[last] >= 0 && table.scores[last] >= similarity) {
+                return;
+            }
+            int position = last;
+            while (position > base && (table.neighbours[position - 1] < 0 || table.scores[position - 1] < similarity)) {
+                table.neighbours[position] = table.neighbours[position - 1];
+                table.scores[position] = table.scores[position - 1];
+                position--;
+            }
+            table.neighbours[position] = other;
+            table.scores[position] = similarity;
+        }
+    }
+}
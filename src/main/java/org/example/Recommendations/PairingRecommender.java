@@ -0,0 +1,308 @@
+package org.example.Recommendations;
+
+import org.example.DAO.Dish;
+import org.example.DAO.DishRepository;
+import org.example.DAO.Rating;
+import org.example.DAO.RatingRepository;
+import org.example.DAO.Session;
+import org.example.DAO.Wine;
+import org.example.DAO.WineRepository;
+import org.example.Sessions.SessionStore;
+import org.example.Tracing.TraceLog;
+import org.example.Utils.ExcelFavoritesManager;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Рекомендации «тем, кому понравилось это сочетание, также понравились».
+ * Таблица соседей пересчитывается в фоне по сигналам чатов — оценкам, избранному
+ * и подобранным сочетаниям из сессий, — а запросы только читают готовую таблицу,
+ * поэтому не увеличивают время ответа на /pair.
+ */
+public class PairingRecommender {
+    private static final int NEIGHBOURS = 10;
+
+    private final ForkJoinPool pool;
+    private final ScheduledExecutorService scheduler;
+    private volatile Table table = Table.EMPTY;
+
+    /**
+     * Рекомендованное сочетание
+     */
+    public static final class Suggestion {
+        private final String wineName;
+        private final String dishName;
+        private final float similarity;
+
+        private Suggestion(String wineName, String dishName, float similarity) {
+            this.wineName = wineName;
+            this.dishName = dishName;
+            this.similarity = similarity;
+        }
+
+        public String getWineName() {
+            return wineName;
+        }
+
+        public String getDishName() {
+            return dishName;
+        }
+
+        public float getSimilarity() {
+            return similarity;
+        }
+    }
+
+    /**
+     * Источник всех избранных сочетаний
+     */
+    @FunctionalInterface
+    public interface FavoriteSource {
+        void forEach(Consumer<ExcelFavoritesManager.Favorite> consumer) throws IOException;
+    }
+
+    /**
+     * Готовая таблица рекомендаций с названиями, разрешенными при пересчете
+     */
+    private static final class Table {
+        private static final Table EMPTY = new Table(Map.of(), new String[0], new String[0], new int[0], null);
+
+        // Индексы сочетаний по ID блюда
+        private final Map<Integer, int[]> itemsByDish;
+        private final String[] wineNames;
+        private final String[] dishNames;
+        private final int[] dishIds;
+        private final ItemSimilarity similarity;
+
+        private Table(Map<Integer, int[]> itemsByDish, String[] wineNames, String[] dishNames, int[] dishIds,
+                      ItemSimilarity similarity) {
+            this.itemsByDish = itemsByDish;
+            this.wineNames = wineNames;
+            this.dishNames = dishNames;
+            this.dishIds = dishIds;
+            this.similarity = similarity;
+        }
+    }
+
+    /**
+     * Конструктор рекомендателя, использующего все ядра общего пула fork/join
+     */
+    public PairingRecommender() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Конструктор рекомендателя
+     * @param pool пул для расчета сходства
+     */
+    public PairingRecommender(ForkJoinPool pool) {
+        this.pool = pool;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "recommendations");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Запускает периодический пересчет рекомендаций
+     * @param ratings хранилище оценок (null — оценки не сохраняются)
+     * @param sessions хранилище сессий с подобранными сочетаниями
+     * @param favorites избранное всех чатов
+     * @param wines хранилище вин
+     * @param dishes хранилище блюд
+     * @param interval интервал между пересчетами
+     */
+    public void start(RatingRepository ratings, Supplier<SessionStore> sessions, FavoriteSource favorites,
+                      WineRepository wines, DishRepository dishes, Duration interval) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                List<Wine> allWines = wines.getAllWines();
+                List<Dish> allDishes = dishes.getAllDishes();
+                List<ExcelFavoritesManager.Favorite> allFavorites = new ArrayList<>();
+                favorites.forEach(allFavorites::add);
+                rebuild(interactions(ratings == null ? List.of() : ratings.getAllRatings(), sessions.get().pairingSessions(), allFavorites,
+                        allWines, allDishes), allWines, allDishes);
+            } catch (Exception e) {
+                TraceLog.error("Не удалось пересчитать рекомендации", e);
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Строит матрицу по всем сигналам чатов. Подобранное в /pair или выбранное для оценки
+     * сочетание имеет вес {@link InteractionMatrix#VIEWED}, сочетание в избранном и оценка
+     * «хорошо» — {@link InteractionMatrix#LIKED}; оценка «плохо» отменяет остальные сигналы.
+     * Избранное хранит названия, поэтому вино находится по точному названию без учета регистра,
+     * а блюдо — по названию в начале описания; неразрешенные записи пропускаются.
+     * @param ratings текущие оценки чатов
+     * @param sessions сессии с подобранными сочетаниями
+     * @param favorites избранное всех чатов
+     * @param wines все вина
+     * @param dishes все блюда
+     */
+    public static InteractionMatrix interactions(List<Rating> ratings, List<Session> sessions,
+                                                 List<ExcelFavoritesManager.Favorite> favorites,
+                                                 Collection<Wine> wines, Collection<Dish> dishes) {
+        InteractionMatrix.Builder builder = new InteractionMatrix.Builder();
+        for (Session session : sessions) {
+            if (session.hasPairing()) {
+                builder.atLeast(session.getChatId(), session.getPairingWineId(), session.getPairingDishId(),
+                        InteractionMatrix.VIEWED);
+            }
+        }
+
+        if (!favorites.isEmpty()) {
+            Map<String, Integer> wineIds = new HashMap<>();
+            for (Wine wine : wines) {
+                wineIds.putIfAbsent(wine.getName().toLowerCase(), wine.getId());
+            }
+            Map<String, Integer> dishIds = new HashMap<>();
+            for (Dish dish : dishes) {
+                dishIds.putIfAbsent(dish.getName().toLowerCase(), dish.getId());
+            }
+            for (ExcelFavoritesManager.Favorite favorite : favorites) {
+                Integer wineId = favorite.getWine() == null ? null : wineIds.get(favorite.getWine().trim().toLowerCase());
+                Integer dishId = dishId(favorite.getDish(), dishIds);
+                if (wineId != null && dishId != null) {
+                    builder.atLeast(favorite.getChatId(), wineId, dishId, InteractionMatrix.LIKED);
+                }
+            }
+        }
+
+        for (Rating rating : ratings) {
+            if (rating.isGood()) {
+                builder.atLeast(rating.getChatId(), rating.getWineId(), rating.getDishId(), InteractionMatrix.LIKED);
+            } else {
+                builder.set(rating.getChatId(), rating.getWineId(), rating.getDishId(), 0f);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Находит блюдо по описанию из избранного («название - подробности»)
+     */
+    private static Integer dishId(String description, Map<String, Integer> dishIds) {
+        if (description == null) {
+            return null;
+        }
+        String text = description.toLowerCase();
+        Integer exact = dishIds.get(text.trim());
+        if (exact != null) {
+            return exact;
+        }
+        // Название блюда само может содержать « - », поэтому проверяется каждый разделитель
+        for (int separator = text.indexOf(" - "); separator >= 0; separator = text.indexOf(" - ", separator + 1)) {
+            Integer id = dishIds.get(text.substring(0, separator).trim());
+            if (id != null) {
+                return id;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Останавливает периодический пересчет
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Пересчитывает таблицу рекомендаций и подменяет ее целиком
+     * @param matrix матрица взаимодействий
+     * @param wines все вина (для названий)
+     * @param dishes все блюда (для названий)
+     */
+    public void rebuild(InteractionMatrix matrix, Collection<Wine> wines, Collection<Dish> dishes) {
+        Map<Integer, String> wineNamesById = new HashMap<>();
+        for (Wine wine : wines) {
+            wineNamesById.put(wine.getId(), wine.getName());
+        }
+        Map<Integer, String> dishNamesById = new HashMap<>();
+        for (Dish dish : dishes) {
+            dishNamesById.put(dish.getId(), dish.getName());
+        }
+
+        int itemCount = matrix.itemCount();
+        String[] wineNames = new String[itemCount];
+        String[] dishNames = new String[itemCount];
+        int[] dishIds = new int[itemCount];
+        Map<Integer, List<Integer>> byDish = new HashMap<>();
+        for (int item = 0; item < itemCount; item++) {
+            long key = matrix.itemKey(item);
+            int wineId = (int) (key >>> 32);
+            int dishId = (int) key;
+            wineNames[item] = wineNamesById.get(wineId);
+            dishNames[item] = dishNamesById.get(dishId);
+            dishIds[item] = dishId;
+            byDish.computeIfAbsent(dishId, id -> new ArrayList<>()).add(item);
+        }
+
+        Map<Integer, int[]> itemsByDish = new HashMap<>();
+        byDish.forEach((dishId, items) -> itemsByDish.put(dishId, items.stream().mapToInt(Integer::intValue).toArray()));
+
+        ItemSimilarity similarity = ItemSimilarity.compute(matrix, NEIGHBOURS, pool);
+        table = new Table(itemsByDish, wineNames, dishNames, dishIds, similarity);
+    }
+
+    /**
+     * Находит сочетания, которые понравились пользователям, оценившим данное сочетание
+     * @param wineName название вина или его часть (как в запросе /pair)
+     * @param dishId ID блюда
+     * @param limit максимальное количество рекомендаций
+     * @return рекомендации в порядке убывания сходства, без сочетаний с тем же блюдом
+     */
+    public List<Suggestion> alsoLiked(String wineName, int dishId, int limit) {
+        Table current = table;
+        int[] items = current.itemsByDish.get(dishId);
+        if (items == null || current.similarity == null) {
+            return List.of();
+        }
+
+        Map<Integer, Float> best = new LinkedHashMap<>();
+        for (int item : items) {
+            String name = current.wineNames[item];
+            if (name == null || !name.contains(wineName)) {
+                continue;
+            }
+            for (int rank = 0; rank < current.similarity.neighbourCount(); rank++) {
+                int other = current.similarity.neighbour(item, rank);
+                if (other < 0) {
+                    break;
+                }
+                if (current.dishIds[other] != dishId && current.wineNames[other] != null
+                        && current.dishNames[other] != null) {
+                    best.merge(other, current.similarity.score(item, rank), Math::max);
+                }
+            }
+        }
+
+        List<Map.Entry<Integer, Float>> ranked = new ArrayList<>(best.entrySet());
+        ranked.sort(Map.Entry.<Integer, Float>comparingByValue().reversed());
+
+        List<Suggestion> suggestions = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (Map.Entry<Integer, Float> entry : ranked) {
+            if (suggestions.size() == limit) {
+                break;
+            }
+            int other = entry.getKey();
+            suggestions.add(new Suggestion(current.wineNames[other], current.dishNames[other], entry.getValue()));
+        }
+        return suggestions;
+    }
+}
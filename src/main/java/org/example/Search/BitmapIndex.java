@@ -0,0 +1,430 @@
+package org.example.Search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Битовый индекс записей по атрибутам с небольшим числом значений
+ * (тип вина, танины 1–5, регион, год урожая).
+ *
+ * Каждой записи выделяется номер строки; для каждого значения атрибута хранится
+ * битовая карта строк с этим значением. Для числовых атрибутов дополнительно хранятся
+ * накопленные карты: строки со значением не больше данного. Условие «атрибут = значение» —
+ * готовая карта, диапазон — одна накопленная карта (≤, <) или разность двух (≥, >),
+ * а сочетание условий — пересечение карт, то есть несколько проходов по машинным словам
+ * без просмотра записей.
+ * Строки удаленных записей переиспользуются, поэтому карты остаются плотными.
+ *
+ * @param <T> тип записи
+ */
+public class BitmapIndex<T> {
+
+    /**
+     * Операция сравнения в условии
+     */
+    public enum Operator {
+        EQ("="), NE("!="), GE(">="), LE("<="), GT(">"), LT("<");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+    }
+
+    /**
+     * Условие фильтра: атрибут, операция и значение
+     */
+    public static final class Condition {
+        private final String attribute;
+        private final Operator operator;
+        private final Object value;
+
+        /**
+         * @param attribute имя атрибута
+         * @param operator операция
+         * @param value значение: Integer для числовых атрибутов, строка для остальных
+         */
+        public Condition(String attribute, Operator operator, Object value) {
+            this.attribute = Objects.requireNonNull(attribute, "Атрибут не может быть null");
+            this.operator = Objects.requireNonNull(operator, "Операция не может быть null");
+            this.value = value instanceof String ? normalize((String) value) : value;
+        }
+
+        public String getAttribute() {
+            return attribute;
+        }
+
+        public Operator getOperator() {
+            return operator;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return attribute + operator.getSymbol() + value;
+        }
+    }
+
+    private final Function<T, Integer> idOf;
+    // Извлечение значений по имени атрибута; значения-строки сравниваются без учета регистра
+    private final Map<String, Function<T, Object>> attributes = new LinkedHashMap<>();
+    private final Map<String, Boolean> numeric = new HashMap<>();
+    private final Map<String, Map<Object, BitSet>> bitmaps = new HashMap<>();
+    // Числовой атрибут → значение → строки со значением не больше него
+    private final Map<String, TreeMap<Integer, BitSet>> upTo = new HashMap<>();
+    private final Map<Integer, Integer> rowById = new HashMap<>();
+    private final List<Integer> idByRow = new ArrayList<>();
+    private final List<Object[]> valuesByRow = new ArrayList<>();
+    private final Deque<Integer> freeRows = new ArrayDeque<>();
+    private final BitSet alive = new BitSet();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * @param idOf ID записи
+     */
+    public BitmapIndex(Function<T, Integer> idOf) {
+        this.idOf = Objects.requireNonNull(idOf, "Функция ID не может быть null");
+    }
+
+    /**
+     * Добавляет числовой атрибут (значения сравниваются как числа, допускаются диапазоны)
+     * @param name имя атрибута
+     * @param extractor значение атрибута записи (null — значения нет)
+     * @return этот индекс
+     */
+    public BitmapIndex<T> numeric(String name, Function<T, Integer> extractor) {
+        return attribute(name, extractor::apply, true);
+    }
+
+    /**
+     * Добавляет атрибут-строку (только равенство и неравенство)
+     * @param name имя атрибута
+     * @param extractor значение атрибута записи (null — значения нет)
+     * @return этот индекс
+     */
+    public BitmapIndex<T> text(String name, Function<T, String> extractor) {
+        return attribute(name, record -> {
+            String value = extractor.apply(record);
+            return value == null ? null : normalize(value);
+        }, false);
+    }
+
+    private BitmapIndex<T> attribute(String name, Function<T, Object> extractor, boolean isNumeric) {
+        lock.writeLock().lock();
+        try {
+            if (!idByRow.isEmpty()) {
+                throw new IllegalStateException("Атрибуты задаются до индексирования записей");
+            }
+            attributes.put(name, extractor);
+            numeric.put(name, isNumeric);
+            bitmaps.put(name, new HashMap<>());
+            if (isNumeric) {
+                upTo.put(name, new TreeMap<>());
+            }
+            return this;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return true, если атрибут числовой
+     */
+    public boolean isNumeric(String attribute) {
+        return Boolean.TRUE.equals(numeric.get(attribute));
+    }
+
+    /**
+     * @return есть ли атрибут с таким именем
+     */
+    public boolean hasAttribute(String attribute) {
+        return attributes.containsKey(attribute);
+    }
+
+    /**
+     * Индексирует записи, заменяя прежнее содержимое
+     */
+    public void indexAll(Iterable<T> records) {
+        lock.writeLock().lock();
+        try {
+            bitmaps.values().forEach(Map::clear);
+            rowById.clear();
+            idByRow.clear();
+            valuesByRow.clear();
+            freeRows.clear();
+            alive.clear();
+            for (T record : records) {
+                add(record, false);
+            }
+            // Накопленные карты строятся один раз по картам значений, а не для каждой записи
+            upTo.forEach((attribute, cumulative) -> {
+                cumulative.clear();
+                BitSet running = new BitSet();
+                for (Map.Entry<Object, BitSet> entry : new TreeMap<>(bitmaps.get(attribute)).entrySet()) {
+                    running = (BitSet) running.clone();
+                    running.or(entry.getValue());
+                    cumulative.put((Integer) entry.getKey(), running);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет запись или обновляет ее значения
+     */
+    public void put(T record) {
+        lock.writeLock().lock();
+        try {
+            removeRow(idOf.apply(record));
+            add(record, true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удаляет запись из индекса
+     */
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removeRow(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Находит записи, удовлетворяющие всем условиям. ID первых записей берутся
+     * под блокировкой чтения, поэтому результат не копирует таблицу строк индекса
+     * @param conditions условия (пустой список — все записи)
+     * @param limit максимальное число ID в результате
+     * @return результат: число записей и ID первых из них
+     * @throws IllegalArgumentException если атрибут неизвестен или диапазон задан для строки
+     */
+    public Result find(List<Condition> conditions, int limit) {
+        lock.readLock().lock();
+        try {
+            BitSet rows = (BitSet) alive.clone();
+            for (Condition condition : conditions) {
+                if (rows.isEmpty()) {
+                    break;
+                }
+                restrict(rows, condition);
+            }
+            List<Integer> ids = new ArrayList<>(Math.min(limit, 64));
+            for (int row = rows.nextSetBit(0); row >= 0 && ids.size() < limit; row = rows.nextSetBit(row + 1)) {
+                ids.add(idByRow.get(row));
+            }
+            return new Result(rows.cardinality(), ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return число проиндексированных записей
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return alive.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Найденные записи
+     */
+    public static final class Result {
+        private final int count;
+        private final List<Integer> ids;
+
+        private Result(int count, List<Integer> ids) {
+            this.count = count;
+            this.ids = List.copyOf(ids);
+        }
+
+        /**
+         * @return число найденных записей
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * @return ID первых найденных записей (не больше лимита запроса) в порядке строк индекса
+         */
+        public List<Integer> ids() {
+            return ids;
+        }
+    }
+
+    /**
+     * Оставляет в rows только строки, удовлетворяющие условию
+     */
+    private void restrict(BitSet rows, Condition condition) {
+        Map<Object, BitSet> values = bitmaps.get(condition.getAttribute());
+        if (values == null) {
+            throw new IllegalArgumentException("Неизвестный атрибут: " + condition.getAttribute());
+        }
+        Operator operator = condition.getOperator();
+        if (operator == Operator.EQ) {
+            BitSet equal = values.get(condition.getValue());
+            if (equal != null) {
+                rows.and(equal);
+            } else {
+                rows.clear();
+            }
+            return;
+        }
+        if (operator == Operator.NE) {
+            BitSet equal = values.get(condition.getValue());
+            if (equal != null) {
+                rows.andNot(equal);
+            }
+            return;
+        }
+        if (!isNumeric(condition.getAttribute()) || !(condition.getValue() instanceof Integer)) {
+            throw new IllegalArgumentException("Сравнение " + operator.getSymbol()
+                    + " возможно только для чисел: " + condition.getAttribute());
+        }
+        TreeMap<Integer, BitSet> cumulative = upTo.get(condition.getAttribute());
+        int bound = (Integer) condition.getValue();
+        switch (operator) {
+            case LE:
+                keepUpTo(rows, cumulative.floorEntry(bound));
+                break;
+            case LT:
+                keepUpTo(rows, cumulative.lowerEntry(bound));
+                break;
+            case GE:
+                keepAbove(rows, cumulative, cumulative.lowerEntry(bound));
+                break;
+            default:
+                keepAbove(rows, cumulative, cumulative.floorEntry(bound));
+        }
+    }
+
+    // ≤, <: одно пересечение с накопленной картой последнего значения диапазона
+    private static void keepUpTo(BitSet rows, Map.Entry<Integer, BitSet> last) {
+        if (last != null) {
+            rows.and(last.getValue());
+        } else {
+            rows.clear();
+        }
+    }
+
+    // ≥, >: строки с любым значением без накопленной карты последнего значения ниже диапазона
+    private static void keepAbove(BitSet rows, TreeMap<Integer, BitSet> cumulative, Map.Entry<Integer, BitSet> below) {
+        if (cumulative.isEmpty()) {
+            rows.clear();
+            return;
+        }
+        rows.and(cumulative.lastEntry().getValue());
+        if (below != null) {
+            rows.andNot(below.getValue());
+        }
+    }
+
+    /**
+     * @param cumulative обновлять ли накопленные карты (при полном построении они строятся отдельно)
+     */
+    private void add(T record, boolean cumulative) {
+        int id = idOf.apply(record);
+        int row;
+        if (freeRows.isEmpty()) {
+            row = idByRow.size();
+            idByRow.add(id);
+            valuesByRow.add(null);
+        } else {
+            row = freeRows.pop();
+            idByRow.set(row, id);
+        }
+        Object[] values = new Object[attributes.size()];
+        int i = 0;
+        for (Map.Entry<String, Function<T, Object>> attribute : attributes.entrySet()) {
+            Object value = attribute.getValue().apply(record);
+            values[i++] = value;
+            if (value != null) {
+                bitmaps.get(attribute.getKey()).computeIfAbsent(value, v -> new BitSet()).set(row);
+                if (cumulative && upTo.containsKey(attribute.getKey())) {
+                    addUpTo(upTo.get(attribute.getKey()), (Integer) value, row);
+                }
+            }
+        }
+        valuesByRow.set(row, values);
+        rowById.put(id, row);
+        alive.set(row);
+    }
+
+    private void removeRow(int id) {
+        Integer row = rowById.remove(id);
+        if (row == null) {
+            return;
+        }
+        Object[] values = valuesByRow.get(row);
+        int i = 0;
+        for (String attribute : attributes.keySet()) {
+            Object value = values[i++];
+            if (value == null) {
+                continue;
+            }
+            Map<Object, BitSet> byValue = bitmaps.get(attribute);
+            BitSet rows = byValue.get(value);
+            rows.clear(row);
+            TreeMap<Integer, BitSet> cumulative = upTo.get(attribute);
+            if (cumulative != null) {
+                for (BitSet upToValue : cumulative.tailMap((Integer) value, true).values()) {
+                    upToValue.clear(row);
+                }
+            }
+            if (rows.isEmpty()) {
+                byValue.remove(value);
+                // Без строк с этим значением его накопленная карта совпадает с картой меньшего значения
+                if (cumulative != null) {
+                    cumulative.remove(value);
+                }
+            }
+        }
+        valuesByRow.set(row, null);
+        alive.clear(row);
+        freeRows.push(row);
+    }
+
+    private static void addUpTo(TreeMap<Integer, BitSet> cumulative, int value, int row) {
+        if (!cumulative.containsKey(value)) {
+            Map.Entry<Integer, BitSet> lower = cumulative.lowerEntry(value);
+            cumulative.put(value, lower == null ? new BitSet() : (BitSet) lower.getValue().clone());
+        }
+        for (BitSet upToValue : cumulative.tailMap(value, true).values()) {
+            upToValue.set(row);
+        }
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toLowerCase().replace('ё', 'е');
+    }
+}
@@ -0,0 +1,300 @@
+package org.example.Search;
+
+import org.example.DAO.CatalogListener;
+import org.example.DAO.Dish;
+import org.example.DAO.Wine;
+import org.example.Search.BitmapIndex.Condition;
+import org.example.Search.BitmapIndex.Operator;
+import org.example.Utils.Metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Фильтр вин и блюд по сочетанию характеристик для /find.
+ *
+ * Запрос — слова через пробел: тип вина или категория блюда («красное», «рыба»)
+ * и условия вида «атрибут операция значение»: «танины>=4», «регион=Тоскана»,
+ * «время<=30». Все условия должны выполняться одновременно и относиться
+ * либо к винам, либо к блюдам. Значения с пробелами берутся в кавычки:
+ * регион="Долина Луары".
+ *
+ * Условия проверяются по битовым индексам, которые строятся один раз
+ * и обновляются по уведомлениям хранилищ, поэтому запрос не обращается к БД.
+ */
+public class CatalogFilter implements CatalogListener {
+
+    /**
+     * Что ищется
+     */
+    public enum Target {
+        WINES, DISHES
+    }
+
+    // Атрибуты вин: тип, танины (1–5), кислотность (1–5), регион, год урожая
+    private static final Map<String, String> WINE_ATTRIBUTES = Map.of(
+            "тип", "тип", "танины", "танины", "кислотность", "кислотность",
+            "регион", "регион", "год", "год", "урожай", "год");
+    // Атрибуты блюд: категория, жирность (1–5), белок (1–5), время приготовления в минутах
+    private static final Map<String, String> DISH_ATTRIBUTES = Map.of(
+            "категория", "категория", "жирность", "жирность", "жир", "жирность",
+            "белок", "белок", "белки", "белок", "время", "время");
+
+    private static final Set<String> ADJECTIVE_ENDINGS = Set.of("ое", "ые", "ого", "ых", "ая", "ой");
+
+    private final BitmapIndex<Wine> wines = new BitmapIndex<Wine>(Wine::getId)
+            .text("тип", wine -> wine.getType() == null ? null : wine.getType().name())
+            .numeric("танины", Wine::getTannins)
+            .numeric("кислотность", Wine::getAcidity)
+            .text("регион", Wine::getRegion)
+            .numeric("год", wine -> wine.getVintage() == 0 ? null : wine.getVintage());
+    private final BitmapIndex<Dish> dishes = new BitmapIndex<Dish>(Dish::getId)
+            .text("категория", dish -> dish.getCategory() == null ? null : dish.getCategory().name())
+            .numeric("жирность", Dish::getFatContent)
+            .numeric("белок", Dish::getProteinContent)
+            .numeric("время", dish -> dish.getCookingTime() == 0 ? null : dish.getCookingTime());
+
+    /**
+     * Разобранный запрос
+     */
+    public static final class Query {
+        private final Target target;
+        private final List<Condition> conditions;
+
+        private Query(Target target, List<Condition> conditions) {
+            this.target = target;
+            this.conditions = List.copyOf(conditions);
+        }
+
+        public Target getTarget() {
+            return target;
+        }
+
+        public List<Condition> getConditions() {
+            return conditions;
+        }
+    }
+
+    /**
+     * Индексирует каталог, заменяя прежнее содержимое
+     * @param allWines все вина
+     * @param allDishes все блюда
+     */
+    public void indexAll(Collection<Wine> allWines, Collection<Dish> allDishes) {
+        wines.indexAll(allWines);
+        dishes.indexAll(allDishes);
+    }
+
+    /**
+     * Разбирает текст запроса
+     * @param text условия через пробел, например «красное танины>=4 регион=Тоскана»
+     * @return запрос
+     * @throws IllegalArgumentException с понятным пользователю сообщением, если запрос некорректен
+     */
+    public static Query parse(String text) {
+        Target target = null;
+        List<Condition> conditions = new ArrayList<>();
+        for (String token : tokenize(text)) {
+            Condition condition;
+            Target conditionTarget;
+            int operatorStart = indexOfOperator(token);
+            if (operatorStart < 0) {
+                String word = token.toLowerCase().replace('ё', 'е');
+                if (word.equals("вина") || word.equals("вино")) {
+                    target = merge(target, Target.WINES);
+                    continue;
+                }
+                if (word.equals("блюда")) {
+                    target = merge(target, Target.DISHES);
+                    continue;
+                }
+                Dish.DishCategory category = category(word);
+                Wine.WineType type = category == null ? wineType(word) : null;
+                if (category != null) {
+                    conditionTarget = Target.DISHES;
+                    condition = new Condition("категория", Operator.EQ, category.name());
+                } else if (type != null) {
+                    conditionTarget = Target.WINES;
+                    condition = new Condition("тип", Operator.EQ, type.name());
+                } else {
+                    throw new IllegalArgumentException("Непонятное условие: " + token);
+                }
+            } else {
+                String name = token.substring(0, operatorStart).toLowerCase();
+                Operator operator = operatorAt(token, operatorStart);
+                String value = token.substring(operatorStart + operator.getSymbol().length());
+                if (value.isEmpty()) {
+                    throw new IllegalArgumentException("Не указано значение: " + token);
+                }
+                String attribute;
+                if (WINE_ATTRIBUTES.containsKey(name)) {
+                    conditionTarget = Target.WINES;
+                    attribute = WINE_ATTRIBUTES.get(name);
+                } else if (DISH_ATTRIBUTES.containsKey(name)) {
+                    conditionTarget = Target.DISHES;
+                    attribute = DISH_ATTRIBUTES.get(name);
+                } else {
+                    throw new IllegalArgumentException("Неизвестная характеристика: " + name);
+                }
+                condition = condition(attribute, operator, value);
+            }
+            target = merge(target, conditionTarget);
+            conditions.add(condition);
+        }
+        if (target == null) {
+            throw new IllegalArgumentException("Не заданы условия поиска");
+        }
+        return new Query(target, conditions);
+    }
+
+    /**
+     * Находит вина или блюда по запросу
+     * @param query разобранный запрос
+     * @param limit максимальное число ID в результате
+     * @return число найденных записей и ID первых из них
+     */
+    public BitmapIndex.Result find(Query query, int limit) {
+        long start = System.nanoTime();
+        try {
+            return (query.getTarget() == Target.WINES ? wines : dishes).find(query.getConditions(), limit);
+        } finally {
+            Metrics.timer("find.query").recordSince(start);
+        }
+    }
+
+    @Override
+    public void wineChanged(Wine wine) {
+        wines.put(wine);
+    }
+
+    @Override
+    public void wineDeleted(int wineId) {
+        wines.remove(wineId);
+    }
+
+    @Override
+    public void dishChanged(Dish dish) {
+        dishes.put(dish);
+    }
+
+    @Override
+    public void dishDeleted(int dishId) {
+        dishes.remove(dishId);
+    }
+
+    private static Condition condition(String attribute, Operator operator, String value) {
+        switch (attribute) {
+            case "тип": {
+                Wine.WineType type = wineType(value.toLowerCase().replace('ё', 'е'));
+                requireEquality(attribute, operator);
+                if (type == null) {
+                    throw new IllegalArgumentException("Неизвестный тип вина: " + value);
+                }
+                return new Condition(attribute, operator, type.name());
+            }
+            case "категория": {
+                Dish.DishCategory category = category(value.toLowerCase().replace('ё', 'е'));
+                requireEquality(attribute, operator);
+                if (category == null) {
+                    throw new IllegalArgumentException("Неизвестная категория блюда: " + value);
+                }
+                return new Condition(attribute, operator, category.name());
+            }
+            case "регион":
+                requireEquality(attribute, operator);
+                return new Condition(attribute, operator, value);
+            default:
+                try {
+                    return new Condition(attribute, operator, Integer.parseInt(value));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Ожидается число: " + attribute + operator.getSymbol() + value);
+                }
+        }
+    }
+
+    private static void requireEquality(String attribute, Operator operator) {
+        if (operator != Operator.EQ && operator != Operator.NE) {
+            throw new IllegalArgumentException("Для «" + attribute + "» возможны только = и !=");
+        }
+    }
+
+    private static Target merge(Target current, Target next) {
+        if (current != null && current != next) {
+            throw new IllegalArgumentException("Условия для вин и для блюд нельзя сочетать в одном запросе");
+        }
+        return next;
+    }
+
+    // Категория по точному названию: «десерт» — блюдо, «десертное» — вино
+    private static Dish.DishCategory category(String word) {
+        for (Dish.DishCategory category : Dish.DishCategory.values()) {
+            if (category.name().toLowerCase().equals(word)) {
+                return category;
+            }
+        }
+        return null;
+    }
+
+    // Тип вина в любой форме: «красное», «красные», «красного»
+    private static Wine.WineType wineType(String word) {
+        for (Wine.WineType type : Wine.WineType.values()) {
+            String name = type.name().toLowerCase();
+            String stem = name.substring(0, name.length() - 2);
+            if (word.startsWith(stem) && ADJECTIVE_ENDINGS.contains(word.substring(stem.length()))) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static int indexOfOperator(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c == '=' || c == '<' || c == '>' || c == '!') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Operator operatorAt(String token, int start) {
+        Operator found = null;
+        for (Operator operator : Operator.values()) {
+            if (token.startsWith(operator.getSymbol(), start)
+                    && (found == null || operator.getSymbol().length() > found.getSymbol().length())) {
+                found = operator;
+            }
+        }
+        if (found == null) {
+            throw new IllegalArgumentException("Непонятное условие: " + token);
+        }
+        return found;
+    }
+
+    // Делит запрос на слова; текст в кавычках — часть одного слова
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '«' || c == '»') {
+                quoted = c == '"' ? !quoted : c == '«';
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (current.length() > 0) {
+                    tokens.add(current.toString());
+                    current.setLength(0);
+                }
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.length() > 0) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,301 @@
+package org.example.Search;
+
+import org.example.DAO.CatalogListener;
+import org.example.DAO.Dish;
+import org.example.DAO.Wine;
+
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Сводная статистика каталога для /stats.
+ *
+ * Агрегаты хранятся в памяти и обновляются по уведомлениям хранилищ: запись
+ * вычитается со старыми значениями и добавляется с новыми, поэтому полный просмотр
+ * каталога нужен только при построении. Для каждого сочетания «тип, регион»
+ * (и для «любой тип», «любой регион») хранится число вин и накопленная гистограмма
+ * годов урожая: число вин с годом не позже данного. Число вин за диапазон лет —
+ * разность двух элементов массива, то есть ответ не зависит от размера каталога.
+ */
+public class CatalogStatistics implements CatalogListener {
+    // Первый год урожая, допустимый для вина
+    private static final int FIRST_VINTAGE = 1900;
+    private static final String ANY = "*";
+
+    private final int vintageSlots;
+    // Доступ под монитором this; ключ — тип и регион через «|», ANY — любое значение
+    private final Map<String, Integer> wineCounts = new HashMap<>();
+    private final Map<String, int[]> vintagesUpTo = new HashMap<>();
+    // Регион без учета регистра → название, как оно записано в каталоге
+    private final Map<String, String> regionNames = new HashMap<>();
+    private final int[] tannins = new int[6];
+    private final int[] acidity = new int[6];
+    private final Map<Integer, Wine> wines = new HashMap<>();
+
+    private final Map<Dish.DishCategory, Integer> dishCounts = new EnumMap<>(Dish.DishCategory.class);
+    private final int[] fatContent = new int[6];
+    private final int[] proteinContent = new int[6];
+    private long cookingMinutes;
+    private int timedDishes;
+    private final Map<Integer, Dish> dishes = new HashMap<>();
+
+    public CatalogStatistics() {
+        // Запас на год: вина следующего урожая появляются в каталоге до его наступления
+        this.vintageSlots = Year.now().getValue() - FIRST_VINTAGE + 2;
+    }
+
+    /**
+     * Строит статистику, заменяя прежнее содержимое
+     * @param allWines все вина
+     * @param allDishes все блюда
+     */
+    public synchronized void indexAll(Collection<Wine> allWines, Collection<Dish> allDishes) {
+        wineCounts.clear();
+        vintagesUpTo.clear();
+        regionNames.clear();
+        Arrays.fill(tannins, 0);
+        Arrays.fill(acidity, 0);
+        wines.clear();
+        dishCounts.clear();
+        Arrays.fill(fatContent, 0);
+        Arrays.fill(proteinContent, 0);
+        cookingMinutes = 0;
+        timedDishes = 0;
+        dishes.clear();
+        for (Wine wine : allWines) {
+            addWine(wine, 1);
+        }
+        for (Dish dish : allDishes) {
+            addDish(dish, 1);
+        }
+    }
+
+    /**
+     * Число вин с заданными типом, регионом и годом урожая
+     * @param type тип вина (null — любой)
+     * @param region регион без учета регистра (null — любой)
+     * @param fromVintage первый год диапазона (0 — без ограничения)
+     * @param toVintage последний год диапазона (0 — без ограничения)
+     * @return число вин; если задан год, вина без года урожая не учитываются
+     */
+    public synchronized int countWines(Wine.WineType type, String region, int fromVintage, int toVintage) {
+        String key = key(type, region == null ? null : normalize(region));
+        if (fromVintage == 0 && toVintage == 0) {
+            return wineCounts.getOrDefault(key, 0);
+        }
+        int[] upTo = vintagesUpTo.get(key);
+        if (upTo == null) {
+            return 0;
+        }
+        int from = fromVintage == 0 ? 0 : Math.max(0, fromVintage - FIRST_VINTAGE);
+        int to = toVintage == 0 ? vintageSlots - 1 : Math.min(vintageSlots - 1, toVintage - FIRST_VINTAGE);
+        if (from > to) {
+            return 0;
+        }
+        return upTo[to] - (from == 0 ? 0 : upTo[from - 1]);
+    }
+
+    /**
+     * @return число вин каждого типа, в порядке типов (пустые — с нулем)
+     */
+    public synchronized Map<Wine.WineType, Integer> winesByType() {
+        Map<Wine.WineType, Integer> counts = new EnumMap<>(Wine.WineType.class);
+        for (Wine.WineType type : Wine.WineType.values()) {
+            counts.put(type, wineCounts.getOrDefault(key(type, null), 0));
+        }
+        return counts;
+    }
+
+    /**
+     * @param limit максимальное число регионов
+     * @return регионы с наибольшим числом вин, по убыванию
+     */
+    public synchronized List<Map.Entry<String, Integer>> topRegions(int limit) {
+        List<Map.Entry<String, Integer>> regions = new ArrayList<>(regionNames.size());
+        for (Map.Entry<String, String> region : regionNames.entrySet()) {
+            regions.add(Map.entry(region.getValue(), wineCounts.getOrDefault(key(null, region.getKey()), 0)));
+        }
+        regions.sort(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder())
+                .thenComparing(Map.Entry.comparingByKey()));
+        return regions.subList(0, Math.min(limit, regions.size()));
+    }
+
+    /**
+     * @return число вин по десятилетиям урожая по возрастанию; десятилетия без вин и вина без года не учитываются
+     */
+    public synchronized Map<Integer, Integer> winesByDecade() {
+        Map<Integer, Integer> decades = new LinkedHashMap<>();
+        for (int decade = FIRST_VINTAGE; decade - FIRST_VINTAGE < vintageSlots; decade += 10) {
+            int count = countWines(null, null, decade, decade + 9);
+            if (count > 0) {
+                decades.put(decade, count);
+            }
+        }
+        return decades;
+    }
+
+    /**
+     * @return число вин с уровнем танинов 1–5 (индекс — уровень, элемент 0 — уровень не указан)
+     */
+    public synchronized int[] tanninDistribution() {
+        return tannins.clone();
+    }
+
+    /**
+     * @return число вин с уровнем кислотности 1–5 (индекс — уровень)
+     */
+    public synchronized int[] acidityDistribution() {
+        return acidity.clone();
+    }
+
+    /**
+     * @return число блюд каждой категории, в порядке категорий (пустые — с нулем)
+     */
+    public synchronized Map<Dish.DishCategory, Integer> dishesByCategory() {
+        Map<Dish.DishCategory, Integer> counts = new EnumMap<>(Dish.DishCategory.class);
+        for (Dish.DishCategory category : Dish.DishCategory.values()) {
+            counts.put(category, dishCounts.getOrDefault(category, 0));
+        }
+        return counts;
+    }
+
+    /**
+     * @return число блюд с жирностью 1–5 (индекс — уровень)
+     */
+    public synchronized int[] fatDistribution() {
+        return fatContent.clone();
+    }
+
+    /**
+     * @return число блюд с содержанием белка 1–5 (индекс — уровень)
+     */
+    public synchronized int[] proteinDistribution() {
+        return proteinContent.clone();
+    }
+
+    /**
+     * @return среднее время приготовления в минутах среди блюд, где оно указано (0 — не указано ни у одного)
+     */
+    public synchronized int averageCookingMinutes() {
+        return timedDishes == 0 ? 0 : (int) Math.round((double) cookingMinutes / timedDishes);
+    }
+
+    /**
+     * @return число вин в каталоге
+     */
+    public synchronized int wineCount() {
+        return wines.size();
+    }
+
+    /**
+     * @return число блюд в каталоге
+     */
+    public synchronized int dishCount() {
+        return dishes.size();
+    }
+
+    @Override
+    public synchronized void wineChanged(Wine wine) {
+        Wine previous = wines.get(wine.getId());
+        if (previous != null) {
+            addWine(previous, -1);
+        }
+        addWine(wine, 1);
+    }
+
+    @Override
+    public synchronized void wineDeleted(int wineId) {
+        Wine previous = wines.get(wineId);
+        if (previous != null) {
+            addWine(previous, -1);
+        }
+    }
+
+    @Override
+    public synchronized void dishChanged(Dish dish) {
+        Dish previous = dishes.get(dish.getId());
+        if (previous != null) {
+            addDish(previous, -1);
+        }
+        addDish(dish, 1);
+    }
+
+    @Override
+    public synchronized void dishDeleted(int dishId) {
+        Dish previous = dishes.get(dishId);
+        if (previous != null) {
+            addDish(previous, -1);
+        }
+    }
+
+    // Добавляет (delta = 1) или вычитает (delta = -1) вино во всех агрегатах
+    private void addWine(Wine wine, int delta) {
+        String region = wine.getRegion() == null || wine.getRegion().isBlank() ? null : normalize(wine.getRegion());
+        if (region != null && delta > 0) {
+            regionNames.putIfAbsent(region, wine.getRegion().trim());
+        }
+        // Вино учитывается в своем сочетании «тип, регион» и в сводных «любой тип» / «любой регион»
+        Set<String> keys = new LinkedHashSet<>(List.of(key(wine.getType(), region), key(wine.getType(), null),
+                key(null, region), key(null, null)));
+        int slot = wine.getVintage() - FIRST_VINTAGE;
+        boolean hasVintage = wine.getVintage() != 0 && slot >= 0 && slot < vintageSlots;
+        for (String key : keys) {
+            wineCounts.merge(key, delta, Integer::sum);
+            if (hasVintage) {
+                int[] upTo = vintagesUpTo.computeIfAbsent(key, k -> new int[vintageSlots]);
+                for (int i = slot; i < vintageSlots; i++) {
+                    upTo[i] += delta;
+                }
+            }
+        }
+        if (region != null && wineCounts.getOrDefault(key(null, region), 0) == 0) {
+            regionNames.remove(region);
+        }
+        tannins[clampLevel(wine.getTannins())] += delta;
+        acidity[clampLevel(wine.getAcidity())] += delta;
+        if (delta > 0) {
+            wines.put(wine.getId(), new Wine(wine));
+        } else {
+            wines.remove(wine.getId());
+        }
+    }
+
+    private void addDish(Dish dish, int delta) {
+        if (dish.getCategory() != null) {
+            dishCounts.merge(dish.getCategory(), delta, Integer::sum);
+        }
+        fatContent[clampLevel(dish.getFatContent())] += delta;
+        proteinContent[clampLevel(dish.getProteinContent())] += delta;
+        if (dish.getCookingTime() > 0) {
+            cookingMinutes += (long) delta * dish.getCookingTime();
+            timedDishes += delta;
+        }
+        if (delta > 0) {
+            dishes.put(dish.getId(), new Dish(dish));
+        } else {
+            dishes.remove(dish.getId());
+        }
+    }
+
+    private static int clampLevel(int level) {
+        return level < 1 || level > 5 ? 0 : level;
+    }
+
+    private static String key(Wine.WineType type, String region) {
+        return (type == null ? ANY : type.name()) + "|" + (region == null ? ANY : region);
+    }
+
+    private static String normalize(String region) {
+        return region.trim().toLowerCase().replace('ё', 'е');
+    }
+}
@@ -0,0 +1,135 @@
+package org.example.Search;
+
+import org.example.DAO.CatalogListener;
+import org.example.DAO.Dish;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Индекс блюд по категориям для просмотра меню.
+ *
+ * Для каждой категории хранится отсортированный массив ID блюд, поэтому число блюд
+ * категории известно без обращения к БД, а ID блюд любой страницы берутся срезом массива
+ * по индексу, не перебирая предыдущие страницы; сами блюда страницы загружаются по ID. Индекс строится один раз по всем блюдам и затем обновляется
+ * по уведомлениям хранилища: блюдо, сменившее категорию, переносится в новый список.
+ */
+public class DishFacetIndex implements CatalogListener {
+    // Доступ под монитором this
+    private final Map<Dish.DishCategory, SortedIds> idsByCategory = new EnumMap<>(Dish.DishCategory.class);
+    private final Map<Integer, Dish.DishCategory> categoryById = new HashMap<>();
+
+    /**
+     * Индексирует блюда, заменяя прежнее содержимое
+     * @param dishes все блюда
+     */
+    public synchronized void indexAll(Collection<Dish> dishes) {
+        idsByCategory.clear();
+        categoryById.clear();
+        for (Dish dish : dishes) {
+            add(dish);
+        }
+    }
+
+    /**
+     * @return число блюд в каждой категории, в порядке категорий (пустые — с нулем)
+     */
+    public synchronized Map<Dish.DishCategory, Integer> counts() {
+        Map<Dish.DishCategory, Integer> counts = new EnumMap<>(Dish.DishCategory.class);
+        for (Dish.DishCategory category : Dish.DishCategory.values()) {
+            SortedIds ids = idsByCategory.get(category);
+            counts.put(category, ids == null ? 0 : ids.size);
+        }
+        return counts;
+    }
+
+    /**
+     * @return общее число проиндексированных блюд
+     */
+    public synchronized int size() {
+        return categoryById.size();
+    }
+
+    /**
+     * @param category категория блюд
+     * @param offset сколько ID пропустить
+     * @param limit максимальное число ID
+     * @return ID блюд категории по возрастанию
+     */
+    public synchronized List<Integer> page(Dish.DishCategory category, int offset, int limit) {
+        SortedIds ids = idsByCategory.get(category);
+        if (ids == null || offset >= ids.size) {
+            return new ArrayList<>(0);
+        }
+        int from = Math.max(offset, 0);
+        int to = (int) Math.min((long) from + limit, ids.size);
+        List<Integer> page = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            page.add(ids.ids[i]);
+        }
+        return page;
+    }
+
+    @Override
+    public synchronized void dishChanged(Dish dish) {
+        remove(dish.getId());
+        add(dish);
+    }
+
+    @Override
+    public synchronized void dishDeleted(int dishId) {
+        remove(dishId);
+    }
+
+    private void add(Dish dish) {
+        if (dish.getCategory() == null) {
+            return;
+        }
+        idsByCategory.computeIfAbsent(dish.getCategory(), category -> new SortedIds()).add(dish.getId());
+        categoryById.put(dish.getId(), dish.getCategory());
+    }
+
+    private void remove(int dishId) {
+        Dish.DishCategory previous = categoryById.remove(dishId);
+        if (previous != null) {
+            idsByCategory.get(previous).remove(dishId);
+        }
+    }
+
+    /**
+     * Отсортированный массив ID с запасом емкости. Вставка и удаление сдвигают хвост
+     * массива; блюда меняются редко, а страницы читаются при каждом просмотре меню
+     */
+    private static final class SortedIds {
+        private int[] ids = new int[16];
+        private int size;
+
+        void add(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+        }
+    }
+}
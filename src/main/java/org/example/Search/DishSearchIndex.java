@@ -0,0 +1,209 @@
+package org.example.Search;
+
+import org.example.DAO.CatalogListener;
+import org.example.DAO.Dish;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс для полнотекстового поиска блюд по названию,
+ * ингредиентам и рецепту с ранжированием по BM25.
+ * Обновляется инкрементально по уведомлениям об изменении блюд.
+ */
+public class DishSearchIndex implements CatalogListener {
+    // Параметры BM25: насыщение частоты терма и нормировка по длине документа
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // Совпадение в названии весит больше, чем в рецепте
+    private static final int NAME_WEIGHT = 3;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, PostingList> postings = new HashMap<>();
+    // Термы каждого документа, чтобы удалять его из списков вхождений при изменении
+    private final Map<Integer, String[]> documentTerms = new HashMap<>();
+    private final Map<Integer, Integer> documentLengths = new HashMap<>();
+    private long totalLength;
+
+    /**
+     * Результат поиска: ID блюда и его релевантность
+     */
+    public static final class Hit {
+        private final int dishId;
+        private final double score;
+
+        private Hit(int dishId, double score) {
+            this.dishId = dishId;
+            this.score = score;
+        }
+
+        public int getDishId() {
+            return dishId;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * Индексирует блюда, заменяя прежнее содержимое
+     * @param dishes все блюда
+     */
+    public void indexAll(Collection<Dish> dishes) {
+        List<Dish> sorted = new ArrayList<>(dishes);
+        // По возрастанию ID вхождения дописываются в конец списков без перезаписи
+        sorted.sort(Comparator.comparingInt(Dish::getId));
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documentTerms.clear();
+            documentLengths.clear();
+            totalLength = 0;
+            for (Dish dish : sorted) {
+                indexLocked(dish);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет блюдо в индекс или обновляет его
+     * @param dish блюдо
+     */
+    public void index(Dish dish) {
+        lock.writeLock().lock();
+        try {
+            indexLocked(dish);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удаляет блюдо из индекса
+     * @param dishId ID блюда
+     */
+    public void remove(int dishId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(dishId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return количество проиндексированных блюд
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documentLengths.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ищет блюда по запросу
+     * @param query поисковый запрос, например «грибы сливки»
+     * @param limit максимальное количество результатов
+     * @return найденные блюда в порядке убывания релевантности
+     */
+    public List<Hit> search(String query, int limit) {
+        LinkedHashSet<String> queryTerms = new LinkedHashSet<>(TextAnalyzer.terms(query));
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        Map<Integer, Double> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            int documents = documentLengths.size();
+            if (documents == 0) {
+                return List.of();
+            }
+            double averageLength = (double) totalLength / documents;
+
+            for (String term : queryTerms) {
+                PostingList list = postings.get(term);
+                if (list == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (documents - list.size() + 0.5) / (list.size() + 0.5));
+                PostingList.Cursor cursor = list.cursor();
+                while (cursor.next()) {
+                    int frequency = cursor.frequency();
+                    double norm = K1 * (1 - B + B * documentLengths.get(cursor.docId()) / averageLength);
+                    scores.merge(cursor.docId(), idf * frequency * (K1 + 1) / (frequency + norm), Double::sum);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Hit> hits = new ArrayList<>(scores.size());
+        scores.forEach((id, score) -> hits.add(new Hit(id, score)));
+        hits.sort(Comparator.comparingDouble(Hit::getScore).reversed().thenComparingInt(Hit::getDishId));
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    @Override
+    public void dishChanged(Dish dish) {
+        index(dish);
+    }
+
+    @Override
+    public void dishDeleted(int dishId) {
+        remove(dishId);
+    }
+
+    private void indexLocked(Dish dish) {
+        removeLocked(dish.getId());
+
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = 0;
+        for (String term : TextAnalyzer.terms(dish.getName())) {
+            frequencies.merge(term, NAME_WEIGHT, Integer::sum);
+            length += NAME_WEIGHT;
+        }
+        for (String term : TextAnalyzer.terms(dish.getIngredients())) {
+            frequencies.merge(term, 1, Integer::sum);
+            length++;
+        }
+        for (String term : TextAnalyzer.terms(dish.getRecipe())) {
+            frequencies.merge(term, 1, Integer::sum);
+            length++;
+        }
+
+        frequencies.forEach((term, frequency) ->
+                postings.computeIfAbsent(term, t -> new PostingList()).put(dish.getId(), frequency));
+        documentTerms.put(dish.getId(), frequencies.keySet().toArray(new String[0]));
+        documentLengths.put(dish.getId(), length);
+        totalLength += length;
+    }
+
+    private void removeLocked(int dishId) {
+        String[] terms = documentTerms.remove(dishId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            PostingList list = postings.get(term);
+            list.remove(dishId);
+            if (list.size() == 0) {
+                postings.remove(term);
+            }
+        }
+        totalLength -= documentLengths.remove(dishId);
+    }
+}
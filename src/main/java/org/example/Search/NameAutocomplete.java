@@ -0,0 +1,406 @@
+package org.example.Search;
+
+import org.example.DAO.CatalogListener;
+import org.example.DAO.Dish;
+import org.example.DAO.Pairing;
+import org.example.DAO.Wine;
+import org.example.Utils.Metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Индекс подсказок по названиям вин и блюд для inline-режима.
+ *
+ * Ключи — нормализованные названия, начиная с каждого слова («шато мерло» и «мерло»),
+ * отсортированы в массиве: совпадения с началом любого слова находятся бинарным поиском
+ * и лежат подряд. Из всех совпадений выбираются K самых популярных записей.
+ * Популярность растет при оценках сочетаний и выборе подсказки пользователем;
+ * счетчик хранится в самой подсказке, поэтому сравнение не обращается к картам.
+ *
+ * Запросы читают неизменяемый снимок массивов без блокировок. Изменение вина
+ * или блюда создает новый снимок за один проход копирования: ключи прежнего
+ * названия пропускаются, ключи нового вставляются на места, найденные бинарным
+ * поиском, — без сортировки и разбора остальных названий.
+ */
+public class NameAutocomplete implements CatalogListener {
+
+    /**
+     * Тип записи индекса
+     */
+    public enum Kind {
+        WINE, DISH
+    }
+
+    /**
+     * Подсказка: вино или блюдо
+     */
+    public static final class Suggestion {
+        private final Kind kind;
+        private final int id;
+        private final String name;
+        private final String details;
+        // Общий для всех версий записи: переименование не сбрасывает популярность
+        private final LongAdder popularity;
+
+        private Suggestion(Kind kind, int id, String name, String details, LongAdder popularity) {
+            this.kind = kind;
+            this.id = id;
+            this.name = name;
+            this.details = details;
+            this.popularity = popularity;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return краткое описание (тип и регион вина, категория блюда)
+         */
+        public String getDetails() {
+            return details;
+        }
+
+        /**
+         * @return ID подсказки, уникальный среди вин и блюд (w12, d7)
+         */
+        public String key() {
+            return key(kind, id);
+        }
+
+        static String key(Kind kind, int id) {
+            return (kind == Kind.WINE ? "w" : "d") + id;
+        }
+    }
+
+    /**
+     * Отобранная подсказка с популярностью на момент отбора, чтобы порядок в куче
+     * не менялся от одновременных оценок
+     */
+    private static final class Ranked {
+        static final Comparator<Ranked> ORDER = Comparator.<Ranked>comparingLong(ranked -> ranked.popularity)
+                .thenComparing(ranked -> ranked.suggestion.getName(), Comparator.reverseOrder());
+
+        final Suggestion suggestion;
+        final long popularity;
+
+        Ranked(Suggestion suggestion, long popularity) {
+            this.suggestion = suggestion;
+            this.popularity = popularity;
+        }
+    }
+
+    /**
+     * Неизменяемый снимок: отсортированные ключи и подсказки, к которым они относятся
+     */
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new String[0], new Suggestion[0]);
+
+        final String[] keys;
+        final Suggestion[] suggestions;
+
+        Snapshot(String[] keys, Suggestion[] suggestions) {
+            this.keys = keys;
+            this.suggestions = suggestions;
+        }
+    }
+
+    private final Map<String, Suggestion> entries = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> popularity = new ConcurrentHashMap<>();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * Индексирует каталог целиком, заменяя прежнее содержимое
+     * @param wines все вина
+     * @param dishes все блюда
+     * @param pairings все сочетания: начальная популярность — число сочетаний записи
+     */
+    public synchronized void indexAll(Collection<Wine> wines, Collection<Dish> dishes, Collection<Pairing> pairings) {
+        entries.clear();
+        popularity.clear();
+        for (Wine wine : wines) {
+            Suggestion suggestion = wineSuggestion(wine);
+            entries.put(suggestion.key(), suggestion);
+        }
+        for (Dish dish : dishes) {
+            Suggestion suggestion = dishSuggestion(dish);
+            entries.put(suggestion.key(), suggestion);
+        }
+        for (Pairing pairing : pairings) {
+            popularity(Kind.WINE, pairing.getWineId()).increment();
+            popularity(Kind.DISH, pairing.getDishId()).increment();
+        }
+        rebuild();
+    }
+
+    /**
+     * Находит подсказки, у которых с запроса начинается название или одно из его слов
+     * @param query введенный текст (пустой — самые популярные записи)
+     * @param limit максимальное число подсказок
+     * @return подсказки в порядке убывания популярности
+     */
+    public List<Suggestion> suggest(String query, int limit) {
+        long start = System.nanoTime();
+        String prefix = normalize(query);
+        // Минимальная куча из лучших limit подсказок: в вершине худшая из отобранных
+        PriorityQueue<Ranked> best = new PriorityQueue<>(limit + 1, Ranked.ORDER);
+        if (prefix.isEmpty()) {
+            // Каждая запись — один раз, без ключей отдельных слов
+            for (Suggestion suggestion : entries.values()) {
+                offer(best, suggestion, limit);
+            }
+        } else {
+            Snapshot current = snapshot;
+            for (int i = lowerBound(current.keys, prefix);
+                 i < current.keys.length && current.keys[i].startsWith(prefix); i++) {
+                offer(best, current.suggestions[i], limit);
+            }
+        }
+
+        List<Ranked> ranked = new ArrayList<>(best);
+        ranked.sort(Ranked.ORDER.reversed());
+        List<Suggestion> result = new ArrayList<>(ranked.size());
+        for (Ranked entry : ranked) {
+            result.add(entry.suggestion);
+        }
+        Metrics.timer("autocomplete.suggest").recordSince(start);
+        return result;
+    }
+
+    /**
+     * Добавляет подсказку в кучу лучших, если она популярнее худшей из отобранных.
+     * Запись с несколькими совпавшими словами встречается повторно с той же популярностью:
+     * повтор либо уже в куче, либо не лучше ее вершины
+     */
+    private static void offer(PriorityQueue<Ranked> best, Suggestion suggestion, int limit) {
+        if (limit <= 0) {
+            return;
+        }
+        long popularity = suggestion.popularity.sum();
+        if (best.size() == limit) {
+            Ranked worst = best.peek();
+            if (popularity < worst.popularity || popularity == worst.popularity
+                    && suggestion.getName().compareTo(worst.suggestion.getName()) >= 0) {
+                return;
+            }
+        }
+        for (Ranked entry : best) {
+            if (entry.suggestion == suggestion) {
+                return;
+            }
+        }
+        best.add(new Ranked(suggestion, popularity));
+        if (best.size() > limit) {
+            best.poll();
+        }
+    }
+
+    /**
+     * Учитывает выбор подсказки пользователем
+     * @param key ID подсказки ({@link Suggestion#key()})
+     */
+    public void recordChoice(String key) {
+        Suggestion suggestion = entries.get(key);
+        if (suggestion != null) {
+            suggestion.popularity.increment();
+        }
+    }
+
+    @Override
+    public synchronized void wineChanged(Wine wine) {
+        replace(wineSuggestion(wine));
+    }
+
+    @Override
+    public synchronized void wineDeleted(int wineId) {
+        remove(Suggestion.key(Kind.WINE, wineId));
+    }
+
+    @Override
+    public synchronized void dishChanged(Dish dish) {
+        replace(dishSuggestion(dish));
+    }
+
+    @Override
+    public synchronized void dishDeleted(int dishId) {
+        remove(Suggestion.key(Kind.DISH, dishId));
+    }
+
+    /**
+     * Оценка сочетания — признак интереса к вину и блюду
+     */
+    @Override
+    public void pairingChanged(Pairing pairing) {
+        popularity(Kind.WINE, pairing.getWineId()).increment();
+        popularity(Kind.DISH, pairing.getDishId()).increment();
+    }
+
+    /**
+     * @return число проиндексированных вин и блюд
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private void replace(Suggestion suggestion) {
+        Suggestion previous = entries.put(suggestion.key(), suggestion);
+        snapshot = splice(snapshot, previous, suggestion);
+    }
+
+    private void remove(String key) {
+        Suggestion previous = entries.remove(key);
+        if (previous != null) {
+            snapshot = splice(snapshot, previous, null);
+        }
+    }
+
+    private void rebuild() {
+        List<Object[]> keyed = new ArrayList<>();
+        for (Suggestion suggestion : entries.values()) {
+            for (String key : keysOf(suggestion)) {
+                keyed.add(new Object[]{key, suggestion});
+            }
+        }
+        keyed.sort(Comparator.comparing(entry -> (String) entry[0]));
+        String[] keys = new String[keyed.size()];
+        Suggestion[] suggestions = new Suggestion[keyed.size()];
+        for (int i = 0; i < keyed.size(); i++) {
+            keys[i] = (String) keyed.get(i)[0];
+            suggestions[i] = (Suggestion) keyed.get(i)[1];
+        }
+        snapshot = new Snapshot(keys, suggestions);
+    }
+
+    /**
+     * Новый снимок, в котором ключи removed убраны, а ключи added вставлены по порядку
+     * @param removed прежняя версия записи (null — записи не было)
+     * @param added новая версия записи (null — запись удалена)
+     */
+    private static Snapshot splice(Snapshot current, Suggestion removed, Suggestion added) {
+        int[] dropped = removed == null ? new int[0] : positionsOf(current, removed);
+        String[] inserted = added == null ? new String[0] : keysOf(added).toArray(new String[0]);
+        Arrays.sort(inserted);
+        int size = current.keys.length - dropped.length + inserted.length;
+        String[] keys = new String[size];
+        Suggestion[] suggestions = new Suggestion[size];
+        int from = 0;
+        int to = 0;
+        for (String key : inserted) {
+            int at = lowerBound(current.keys, key);
+            to = copy(current, from, at, dropped, keys, suggestions, to);
+            from = at;
+            keys[to] = key;
+            suggestions[to++] = added;
+        }
+        copy(current, from, current.keys.length, dropped, keys, suggestions, to);
+        return new Snapshot(keys, suggestions);
+    }
+
+    /**
+     * Копирует элементы снимка [start, end), кроме позиций dropped
+     * @return позиция в новых массивах после скопированных элементов
+     */
+    private static int copy(Snapshot from, int start, int end, int[] dropped,
+                            String[] keys, Suggestion[] suggestions, int to) {
+        int segment = start;
+        for (int index : dropped) {
+            if (index >= start && index < end) {
+                System.arraycopy(from.keys, segment, keys, to, index - segment);
+                System.arraycopy(from.suggestions, segment, suggestions, to, index - segment);
+                to += index - segment;
+                segment = index + 1;
+            }
+        }
+        System.arraycopy(from.keys, segment, keys, to, end - segment);
+        System.arraycopy(from.suggestions, segment, suggestions, to, end - segment);
+        return to + end - segment;
+    }
+
+    /**
+     * @return позиции ключей записи в снимке по возрастанию
+     */
+    private static int[] positionsOf(Snapshot current, Suggestion suggestion) {
+        List<String> keys = keysOf(suggestion);
+        int[] positions = new int[keys.size()];
+        int found = 0;
+        for (String key : new HashSet<>(keys)) {
+            for (int i = lowerBound(current.keys, key); i < current.keys.length && current.keys[i].equals(key); i++) {
+                if (current.suggestions[i] == suggestion) {
+                    positions[found++] = i;
+                }
+            }
+        }
+        positions = Arrays.copyOf(positions, found);
+        Arrays.sort(positions);
+        return positions;
+    }
+
+    /**
+     * Ключ начинается с каждого слова, чтобы «мерло» находило «Шато Мерло»
+     */
+    private static List<String> keysOf(Suggestion suggestion) {
+        String name = normalize(suggestion.getName());
+        List<String> keys = new ArrayList<>();
+        for (int start = 0; start < name.length(); start = name.indexOf(' ', start) + 1) {
+            keys.add(name.substring(start));
+            if (name.indexOf(' ', start) < 0) {
+                break;
+            }
+        }
+        return keys;
+    }
+
+    private LongAdder popularity(Kind kind, int id) {
+        return popularity.computeIfAbsent(Suggestion.key(kind, id), key -> new LongAdder());
+    }
+
+    private static int lowerBound(String[] keys, String prefix) {
+        int index = Arrays.binarySearch(keys, prefix);
+        if (index >= 0) {
+            // Первое из одинаковых значений
+            while (index > 0 && keys[index - 1].equals(prefix)) {
+                index--;
+            }
+            return index;
+        }
+        return -index - 1;
+    }
+
+    private Suggestion wineSuggestion(Wine wine) {
+        String details = wine.getType() + (wine.getRegion() != null ? ", " + wine.getRegion() : "");
+        return new Suggestion(Kind.WINE, wine.getId(), wine.getName(), details, popularity(Kind.WINE, wine.getId()));
+    }
+
+    private Suggestion dishSuggestion(Dish dish) {
+        return new Suggestion(Kind.DISH, dish.getId(), dish.getName(),
+                dish.getCategory() != null ? dish.getCategory().name() : "", popularity(Kind.DISH, dish.getId()));
+    }
+
+    /**
+     * Приводит текст к виду ключа: нижний регистр, ё → е, одиночные пробелы
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.toLowerCase(Locale.ROOT).replace('ё', 'е').trim().replaceAll("\\s+", " ");
+    }
+}
@@ -0,0 +1,158 @@
+package org.example.Search;
+
+import java.util.Arrays;
+
+/**
+ * Список вхождений терма: возрастающие ID документов и частоты терма в них.
+ * Хранится в сжатом виде — разности соседних ID и частоты записаны
+ * в массив байтов переменной длины (varint), по 1–2 байта на вхождение.
+ * Экземпляр не потокобезопасен, синхронизация выполняется индексом.
+ */
+final class PostingList {
+    private byte[] data = new byte[8];
+    private int length;
+    private int size;
+    private int lastDocId = -1;
+
+    /**
+     * @return количество документов, содержащих терм
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Добавляет или заменяет вхождение терма в документе
+     * @param docId ID документа
+     * @param frequency число вхождений терма в документ
+     */
+    void put(int docId, int frequency) {
+        if (docId > lastDocId) {
+            // Обычный случай при построении индекса: ID приходят по возрастанию
+            append(docId, frequency);
+            return;
+        }
+        rebuild(docId, frequency);
+    }
+
+    /**
+     * Удаляет вхождения терма в документе
+     * @param docId ID документа
+     */
+    void remove(int docId) {
+        rebuild(docId, 0);
+    }
+
+    /**
+     * @return курсор для последовательного чтения вхождений
+     */
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    private void append(int docId, int frequency) {
+        ensureCapacity(length + 10);
+        writeVarInt(docId - lastDocId - 1);
+        writeVarInt(frequency);
+        lastDocId = docId;
+        size++;
+    }
+
+    /**
+     * Перезаписывает список, заменяя вхождение docId (frequency = 0 — удаление)
+     */
+    private void rebuild(int docId, int frequency) {
+        byte[] old = data;
+        int oldLength = length;
+
+        Cursor cursor = new Cursor(old, oldLength);
+        data = new byte[Math.max(8, oldLength + 10)];
+        length = 0;
+        size = 0;
+        lastDocId = -1;
+
+        boolean written = false;
+        while (cursor.next()) {
+            if (!written && cursor.docId() >= docId) {
+                if (frequency > 0) {
+                    append(docId, frequency);
+                }
+                written = true;
+                if (cursor.docId() == docId) {
+                    continue;
+                }
+            }
+            append(cursor.docId(), cursor.frequency());
+        }
+        if (!written && frequency > 0) {
+            append(docId, frequency);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > data.length) {
+            data = Arrays.copyOf(data, Math.max(capacity, data.length * 2));
+        }
+    }
+
+    private void writeVarInt(int value) {
+        while ((value & ~0x7F) != 0) {
+            data[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+
+    /**
+     * Последовательное чтение вхождений без распаковки всего списка
+     */
+    final class Cursor {
+        private final byte[] bytes;
+        private final int limit;
+        private int position;
+        private int docId = -1;
+        private int frequency;
+
+        private Cursor() {
+            this(data, length);
+        }
+
+        private Cursor(byte[] bytes, int limit) {
+            this.bytes = bytes;
+            this.limit = limit;
+        }
+
+        /**
+         * Переходит к следующему вхождению
+         * @return false, если вхождения закончились
+         */
+        boolean next() {
+            if (position >= limit) {
+                return false;
+            }
+            docId += readVarInt() + 1;
+            frequency = readVarInt();
+            return true;
+        }
+
+        int docId() {
+            return docId;
+        }
+
+        int frequency() {
+            return frequency;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.example.Search;
+
+/**
+ * Стеммер для русского языка по алгоритму Snowball (Портера).
+ * Отсекает окончания и суффиксы, чтобы разные формы слова («грибы», «грибами»)
+ * приводились к общей основе («гриб»).
+ */
+public final class RussianStemmer {
+    private static final String VOWELS = "аеиоуыэюя";
+
+    private static final String[] PERFECTIVE_GERUND_1 = {"вшись", "вши", "в"};
+    private static final String[] PERFECTIVE_GERUND_2 = {"ившись", "ывшись", "ивши", "ывши", "ив", "ыв"};
+    private static final String[] REFLEXIVE = {"ся", "сь"};
+    private static final String[] ADJECTIVE = {
+            "ими", "ыми", "его", "ого", "ему", "ому",
+            "ее", "ие", "ые", "ое", "ей", "ий", "ый", "ой", "ем", "им", "ым", "ом",
+            "их", "ых", "ую", "юю", "ая", "яя", "ою", "ею"};
+    private static final String[] PARTICIPLE_1 = {"ем", "нн", "вш", "ющ", "щ"};
+    private static final String[] PARTICIPLE_2 = {"ивш", "ывш", "ующ"};
+    private static final String[] VERB_1 = {
+            "ете", "йте", "ешь", "нно", "ла", "на", "ли", "ем", "ло", "но", "ет", "ют", "ны", "ть", "й", "л", "н"};
+    private static final String[] VERB_2 = {
+            "ейте", "уйте", "ила", "ыла", "ена", "ите", "или", "ыли", "ило", "ыло", "ено", "ует", "уют",
+            "ены", "ить", "ыть", "ишь", "ей", "уй", "ил", "ыл", "им", "ым", "ен", "ят", "ит", "ыт", "ую", "ю"};
+    private static final String[] NOUN = {
+            "иями", "ями", "ами", "ией", "иям", "ием", "иях",
+            "ев", "ов", "ие", "ье", "еи", "ии", "ей", "ой", "ий", "ям", "ем", "ам", "ом", "ах", "ях", "ию", "ью",
+            "ия", "ья", "а", "е", "и", "й", "о", "у", "ы", "ь", "ю", "я"};
+    private static final String[] DERIVATIONAL = {"ость", "ост"};
+    private static final String[] SUPERLATIVE = {"ейше", "ейш"};
+
+    private RussianStemmer() {
+    }
+
+    /**
+     * Возвращает основу слова
+     * @param word слово в нижнем регистре, буква «ё» заменена на «е»
+     * @return основа слова
+     */
+    public static String stem(String word) {
+        int rv = regionAfterVowel(word, 0);
+        if (rv >= word.length()) {
+            return word;
+        }
+        int r2 = regionAfterConsonant(word, regionAfterConsonant(word, 0));
+
+        StringBuilder stem = new StringBuilder(word);
+
+        // Шаг 1: деепричастия совершенного вида, иначе возвратные частицы и окончания
+        if (!removeEnding(stem, rv, PERFECTIVE_GERUND_1, true) && !removeEnding(stem, rv, PERFECTIVE_GERUND_2, false)) {
+            removeEnding(stem, rv, REFLEXIVE, false);
+            if (removeEnding(stem, rv, ADJECTIVE, false)) {
+                if (!removeEnding(stem, rv, PARTICIPLE_1, true)) {
+                    removeEnding(stem, rv, PARTICIPLE_2, false);
+                }
+            } else if (!removeEnding(stem, rv, VERB_1, true) && !removeEnding(stem, rv, VERB_2, false)) {
+                removeEnding(stem, rv, NOUN, false);
+            }
+        }
+
+        // Шаг 2: конечная «и»
+        removeEnding(stem, rv, new String[]{"и"}, false);
+
+        // Шаг 3: словообразовательные суффиксы в области R2
+        removeEnding(stem, Math.max(rv, r2), DERIVATIONAL, false);
+
+        // Шаг 4: превосходная степень, двойная «н» и мягкий знак
+        if (removeEnding(stem, rv, SUPERLATIVE, false) || endsWith(stem, rv, "нн")) {
+            if (endsWith(stem, rv, "нн")) {
+                stem.setLength(stem.length() - 1);
+            }
+        } else {
+            removeEnding(stem, rv, new String[]{"ь"}, false);
+        }
+        return stem.toString();
+    }
+
+    /**
+     * Удаляет самое длинное подходящее окончание из списка
+     * @param stem изменяемая основа
+     * @param region начало области, в которой должно находиться окончание
+     * @param endings окончания, упорядоченные по убыванию длины
+     * @param afterAOrYa окончание должно следовать за «а» или «я»
+     * @return true, если окончание удалено
+     */
+    private static boolean removeEnding(StringBuilder stem, int region, String[] endings, boolean afterAOrYa) {
+        for (String ending : endings) {
+            if (!endsWith(stem, region, ending)) {
+                continue;
+            }
+            int start = stem.length() - ending.length();
+            if (afterAOrYa) {
+                if (start - 1 < region || (stem.charAt(start - 1) != 'а' && stem.charAt(start - 1) != 'я')) {
+                    continue;
+                }
+            }
+            stem.setLength(start);
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean endsWith(StringBuilder stem, int region, String ending) {
+        int start = stem.length() - ending.length();
+        return start >= region && stem.indexOf(ending, start) == start;
+    }
+
+    private static boolean isVowel(char c) {
+        return VOWELS.indexOf(c) >= 0;
+    }
+
+    /**
+     * @return позиция после первой гласной, начиная с from
+     */
+    private static int regionAfterVowel(String word, int from) {
+        for (int i = from; i < word.length(); i++) {
+            if (isVowel(word.charAt(i))) {
+                return i + 1;
+            }
+        }
+        return word.length();
+    }
+
+    /**
+     * @return позиция после первой согласной, следующей за гласной, начиная с from
+     */
+    private static int regionAfterConsonant(String word, int from) {
+        for (int i = from + 1; i < word.length(); i++) {
+            if (!isVowel(word.charAt(i)) && isVowel(word.charAt(i - 1))) {
+                return i + 1;
+            }
+        }
+        return word.length();
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.Search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Разбивает текст на термы для полнотекстового поиска:
+ * приводит к нижнему регистру, заменяет «ё» на «е», отбрасывает
+ * служебные слова и сводит слова к основе.
+ */
+public final class TextAnalyzer {
+    private static final Set<String> STOP_WORDS = Set.of(
+            "и", "в", "во", "не", "что", "на", "с", "со", "как", "а", "то", "все", "так", "но", "да",
+            "к", "у", "же", "за", "бы", "по", "только", "ее", "было", "вот", "от", "еще", "нет", "о",
+            "из", "для", "при", "до", "или", "без", "под", "над", "об", "это", "его", "их", "ли");
+
+    private TextAnalyzer() {
+    }
+
+    /**
+     * Разбивает текст на термы
+     * @param text исходный текст (может быть null)
+     * @return термы в порядке появления в тексте, с повторами
+     */
+    public static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letter = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                addTerm(terms, normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    private static void addTerm(List<String> terms, String word) {
+        if (STOP_WORDS.contains(word)) {
+            return;
+        }
+        terms.add(isCyrillic(word) ? RussianStemmer.stem(word) : word);
+    }
+
+    private static boolean isCyrillic(String word) {
+        return Character.UnicodeBlock.of(word.charAt(0)) == Character.UnicodeBlock.CYRILLIC;
+    }
+}
@@ -0,0 +1,347 @@
+package org.example.Sessions;
+
+import org.example.Coordination.JobCoordinator;
+import org.example.DAO.Session;
+import org.example.DAO.SessionRepository;
+import org.example.Tracing.TraceLog;
+import org.example.Utils.Metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongPredicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Сессии в общем хранилище с локальным кэшем и отложенной записью.
+ *
+ * Чтения обслуживаются из кэша, пока запись моложе cacheTtl; после этого сессия
+ * перечитывается, чтобы увидеть изменения других экземпляров бота. Изменения сразу
+ * применяются к сессии в кэше, а в хранилище уходят раз в flushInterval: все
+ * изменения одной сессии за интервал сливаются в одну запись, а все сессии —
+ * в один запрос. Если за это время сессию изменил другой экземпляр (версия
+ * не совпала), накопленные изменения повторно применяются к свежей сессии.
+ */
+public class CachedSessionStore implements SessionStore, AutoCloseable {
+    // Сколько раз повторяется запись сессии при конфликте версий
+    private static final int MAX_CONFLICT_RETRIES = 5;
+
+    private final SessionRepository repository;
+    private final long cacheTtlNanos;
+    private final ScheduledExecutorService scheduler;
+
+    // Все поля ниже защищены монитором this; обращения к хранилищу выполняются без блокировки
+    private final Map<Long, Entry> cache = new HashMap<>();
+    // Изменения, еще не записанные в хранилище, в порядке применения
+    private final Map<Long, List<UnaryOperator<Session>>> pending = new LinkedHashMap<>();
+    // Сессии, запись которых выполняется сейчас: их нельзя заменять прочитанными из хранилища
+    private final Set<Long> flushing = new HashSet<>();
+    private long lastSweepNanos = System.nanoTime();
+
+    /**
+     * Сессия в кэше и время, когда ее содержимое последний раз сверялось с хранилищем
+     */
+    private static final class Entry {
+        final Session session;
+        final long syncedNanos;
+
+        Entry(Session session, long syncedNanos) {
+            this.session = session;
+            this.syncedNanos = syncedNanos;
+        }
+    }
+
+    /**
+     * Создает хранилище и запускает периодическую запись изменений
+     * @param repository общее хранилище сессий
+     * @param cacheTtl сколько сессия обслуживается из кэша без перечитывания
+     * @param flushInterval интервал записи накопленных изменений
+     */
+    public CachedSessionStore(SessionRepository repository, Duration cacheTtl, Duration flushInterval) {
+        this(repository, cacheTtl);
+        scheduler.scheduleWithFixedDelay(this::flushQuietly,
+                flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Создает хранилище без периодической записи: изменения записываются через {@link #flush()}
+     */
+    public CachedSessionStore(SessionRepository repository, Duration cacheTtl) {
+        this.repository = Objects.requireNonNull(repository, "Хранилище сессий не может быть null");
+        this.cacheTtlNanos = cacheTtl.toNanos();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sessions-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public Session get(long chatId) {
+        synchronized (this) {
+            Entry entry = cache.get(chatId);
+            if (entry != null && (isLocal(chatId) || System.nanoTime() - entry.syncedNanos < cacheTtlNanos)) {
+                Metrics.counter("sessions.cache.hit").increment();
+                return entry.session;
+            }
+        }
+        Metrics.counter("sessions.cache.miss").increment();
+        Session loaded = load(chatId);
+        synchronized (this) {
+            // Пока сессия читалась, ее могли изменить в этом процессе: локальная версия новее
+            if (isLocal(chatId)) {
+                return cache.get(chatId).session;
+            }
+            cache.put(chatId, new Entry(loaded, System.nanoTime()));
+            return loaded;
+        }
+    }
+
+    @Override
+    public Session update(long chatId, UnaryOperator<Session> change) {
+        Session current = get(chatId);
+        synchronized (this) {
+            Entry entry = cache.get(chatId);
+            Session base = entry != null ? entry.session : current;
+            Session next = change.apply(base);
+            if (next.sameContent(base)) {
+                return base;
+            }
+            cache.put(chatId, new Entry(next, entry != null ? entry.syncedNanos : System.nanoTime()));
+            pending.computeIfAbsent(chatId, id -> new ArrayList<>()).add(change);
+            return next;
+        }
+    }
+
+    /**
+     * Читает сессии из общей таблицы, предварительно записав изменения этого узла
+     */
+    @Override
+    public List<Session> pairingSessions() {
+        flush();
+        return repository.findPairingSessions();
+    }
+
+    /**
+     * Записывает накопленные изменения всех сессий одним запросом
+     */
+    @Override
+    public void flush() {
+        Map<Long, List<UnaryOperator<Session>>> batch;
+        List<Session> targets = new ArrayList<>();
+        synchronized (this) {
+            sweep();
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new LinkedHashMap<>(pending);
+            pending.clear();
+            for (Long chatId : batch.keySet()) {
+                targets.add(cache.get(chatId).session);
+            }
+            flushing.addAll(batch.keySet());
+        }
+
+        try {
+            Set<Long> saved;
+            try {
+                saved = repository.saveSessions(targets);
+            } catch (RuntimeException e) {
+                restore(batch);
+                throw e;
+            }
+            Metrics.counter("sessions.flush.sessions").add(targets.size());
+            for (Session target : targets) {
+                long chatId = target.getChatId();
+                if (saved.contains(chatId)) {
+                    synced(chatId, target.getVersion() + 1);
+                    continue;
+                }
+                try {
+                    resolveConflict(chatId, batch.get(chatId));
+                } catch (RuntimeException e) {
+                    // Изменения повторятся при следующей записи
+                    restore(Map.of(chatId, batch.get(chatId)));
+                    TraceLog.error("Ошибка при записи сессии " + chatId, e);
+                }
+            }
+        } finally {
+            synchronized (this) {
+                flushing.removeAll(batch.keySet());
+            }
+        }
+    }
+
+    /**
+     * Записывает изменения и убирает из кэша сессии перешедших чатов: после записи
+     * общее хранилище актуально, а переданные копии прогревают кэш нового узла
+     */
+    @Override
+    public List<Session> release(LongPredicate moved) {
+        flush();
+        List<Session> released = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<Long, Entry>> iterator = cache.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Long, Entry> entry = iterator.next();
+                // Сессии с незаписанными изменениями остаются до следующей записи
+                if (moved.test(entry.getKey()) && !isLocal(entry.getKey())) {
+                    released.add(entry.getValue().session);
+                    iterator.remove();
+                }
+            }
+        }
+        return released;
+    }
+
+    @Override
+    public synchronized void adopt(Collection<Session> sessions) {
+        long now = System.nanoTime();
+        for (Session session : sessions) {
+            long chatId = session.getChatId();
+            Entry current = cache.get(chatId);
+            if (isLocal(chatId) || (current != null && current.session.getVersion() > session.getVersion())) {
+                continue;
+            }
+            cache.put(chatId, new Entry(session, now));
+        }
+    }
+
+    /**
+     * Запускает периодическое удаление давно не изменявшихся сессий из хранилища.
+     * Удаление выполняет только ведущий экземпляр задачи sessions.evict
+     * @param coordinator выбор ведущего экземпляра
+     * @param idle сколько сессия хранится без изменений
+     * @param interval интервал между удалениями
+     */
+    public void startEviction(JobCoordinator coordinator, Duration idle, Duration interval) {
+        scheduler.scheduleWithFixedDelay(coordinator.leaderOnly("sessions.evict", () -> {
+            try {
+                Metrics.counter("sessions.evicted").add(repository.deleteIdleSessions(idle));
+            } catch (RuntimeException e) {
+                TraceLog.error("Ошибка при удалении старых сессий", e);
+            }
+        }), interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Повторно применяет изменения к свежей сессии из хранилища и записывает результат
+     */
+    private void resolveConflict(long chatId, List<UnaryOperator<Session>> changes) {
+        for (int attempt = 0; attempt < MAX_CONFLICT_RETRIES; attempt++) {
+            Metrics.counter("sessions.conflicts").increment();
+            Session fresh = apply(load(chatId), changes);
+            if (repository.saveSessions(List.of(fresh)).contains(chatId)) {
+                synchronized (this) {
+                    // Изменения, сделанные во время записи, применяются поверх записанной сессии
+                    Session local = apply(fresh.withVersion(fresh.getVersion() + 1),
+                            pending.getOrDefault(chatId, List.of()));
+                    cache.put(chatId, new Entry(local, System.nanoTime()));
+                }
+                return;
+            }
+        }
+        Metrics.counter("sessions.conflicts.lost").increment();
+        TraceLog.error("Не удалось записать сессию " + chatId + " из-за конфликта версий", null);
+        synchronized (this) {
+            if (!pending.containsKey(chatId)) {
+                cache.remove(chatId);
+            }
+        }
+    }
+
+    /**
+     * Отмечает, что сессия записана с указанной версией; более поздние изменения остаются в кэше
+     */
+    private synchronized void synced(long chatId, long version) {
+        Entry entry = cache.get(chatId);
+        if (entry != null) {
+            cache.put(chatId, new Entry(entry.session.withVersion(version), System.nanoTime()));
+        }
+    }
+
+    /**
+     * Возвращает незаписанные изменения в очередь, сохраняя их порядок
+     */
+    private synchronized void restore(Map<Long, List<UnaryOperator<Session>>> batch) {
+        batch.forEach((chatId, changes) -> {
+            List<UnaryOperator<Session>> later = pending.remove(chatId);
+            List<UnaryOperator<Session>> merged = new ArrayList<>(changes);
+            if (later != null) {
+                merged.addAll(later);
+            }
+            pending.put(chatId, merged);
+        });
+    }
+
+    /**
+     * Удаляет из кэша устаревшие сессии без незаписанных изменений (не чаще раза в cacheTtl)
+     */
+    private void sweep() {
+        long now = System.nanoTime();
+        if (now - lastSweepNanos < cacheTtlNanos) {
+            return;
+        }
+        lastSweepNanos = now;
+        Iterator<Map.Entry<Long, Entry>> iterator = cache.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Entry> entry = iterator.next();
+            if (now - entry.getValue().syncedNanos >= cacheTtlNanos && !isLocal(entry.getKey())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return есть ли у сессии изменения, которых еще нет в хранилище
+     */
+    private boolean isLocal(long chatId) {
+        return pending.containsKey(chatId) || flushing.contains(chatId);
+    }
+
+    private Session load(long chatId) {
+        Session session = repository.findSession(chatId);
+        return session != null ? session : Session.empty(chatId);
+    }
+
+    private static Session apply(Session session, List<UnaryOperator<Session>> changes) {
+        Session result = session;
+        for (UnaryOperator<Session> change : changes) {
+            result = change.apply(result);
+        }
+        return result;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            TraceLog.error("Ошибка при записи сессий", e);
+        }
+    }
+
+    /**
+     * Останавливает периодическую запись и записывает оставшиеся изменения
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+}
@@ -0,0 +1,68 @@
+package org.example.Sessions;
+
+import org.example.DAO.Session;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongPredicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Сессии в памяти процесса: для одного экземпляра бота и тестов
+ */
+public class InMemorySessionStore implements SessionStore {
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+
+    @Override
+    public Session get(long chatId) {
+        Session session = sessions.get(chatId);
+        return session != null ? session : Session.empty(chatId);
+    }
+
+    @Override
+    public Session update(long chatId, UnaryOperator<Session> change) {
+        return sessions.compute(chatId, (id, current) -> {
+            Session base = current != null ? current : Session.empty(id);
+            Session next = change.apply(base);
+            return next.withVersion(base.getVersion() + 1);
+        });
+    }
+
+    @Override
+    public List<Session> pairingSessions() {
+        List<Session> found = new ArrayList<>();
+        for (Session session : sessions.values()) {
+            if (session.hasPairing()) {
+                found.add(session);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public List<Session> release(LongPredicate moved) {
+        List<Session> released = new ArrayList<>();
+        sessions.keySet().removeIf(chatId -> {
+            if (!moved.test(chatId)) {
+                return false;
+            }
+            Session session = sessions.get(chatId);
+            if (session != null) {
+                released.add(session);
+            }
+            return true;
+        });
+        return released;
+    }
+
+    @Override
+    public void adopt(Collection<Session> adopted) {
+        for (Session session : adopted) {
+            sessions.merge(session.getChatId(), session,
+                    (current, incoming) -> incoming.getVersion() >= current.getVersion() ? incoming : current);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.example.Sessions;
+
+import org.example.DAO.Session;
+
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Одно поле сессии с доступом по ID чата, чтобы команды не зависели от способа
+ * хранения сессий. Поддерживаются только операции по ключу: сессии могут храниться
+ * в общей БД, поэтому их перебор не предусмотрен. Запись и удаление не читают
+ * прежнее значение поля.
+ *
+ * @param <V> тип значения поля
+ */
+public class SessionField<V> {
+    private final Supplier<SessionStore> store;
+    private final Function<Session, V> getter;
+    private final BiFunction<Session, V, Session> setter;
+
+    /**
+     * @param store текущее хранилище сессий (может меняться при настройке бота)
+     * @param getter чтение поля; null означает отсутствие значения
+     * @param setter запись поля; вызывается с null при удалении
+     */
+    public SessionField(Supplier<SessionStore> store, Function<Session, V> getter,
+                        BiFunction<Session, V, Session> setter) {
+        this.store = store;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    /**
+     * @param chatId ID чата пользователя
+     * @return значение поля или null, если оно не задано
+     */
+    public V get(long chatId) {
+        return getter.apply(store.get().get(chatId));
+    }
+
+    /**
+     * @param chatId ID чата пользователя
+     * @return true, если поле задано
+     */
+    public boolean isSet(long chatId) {
+        return get(chatId) != null;
+    }
+
+    /**
+     * Записывает значение поля
+     * @param chatId ID чата пользователя
+     * @param value новое значение (null — удалить)
+     */
+    public void set(long chatId, V value) {
+        store.get().update(chatId, session -> setter.apply(session, value));
+    }
+
+    /**
+     * Удаляет значение поля
+     * @param chatId ID чата пользователя
+     */
+    public void clear(long chatId) {
+        set(chatId, null);
+    }
+}
@@ -0,0 +1,55 @@
+package org.example.Sessions;
+
+import org.example.DAO.Session;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.LongPredicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Хранилище сессий пользователей.
+ * Изменения передаются функцией, а не готовым объектом: при конфликте версий
+ * распределенное хранилище повторно применяет функцию к свежей сессии,
+ * поэтому одновременные изменения разных полей не теряются.
+ */
+public interface SessionStore {
+    /**
+     * @param chatId ID чата пользователя
+     * @return сессия пользователя (пустая, если ее еще нет)
+     */
+    Session get(long chatId);
+
+    /**
+     * Изменяет сессию пользователя
+     * @param chatId ID чата пользователя
+     * @param change изменение; должно быть без побочных эффектов, так как может применяться повторно
+     * @return сессия после изменения
+     */
+    Session update(long chatId, UnaryOperator<Session> change);
+
+    /**
+     * Сессии всех чатов, в которых сохранено подобранное сочетание
+     * @return сессии с {@link Session#hasPairing()}
+     */
+    List<Session> pairingSessions();
+
+    /**
+     * Записывает накопленные изменения (для хранилищ с отложенной записью)
+     */
+    default void flush() {
+    }
+
+    /**
+     * Передает сессии другому узлу: записывает их изменения и убирает их из этого узла
+     * @param moved проверка, перешел ли чат к другому узлу
+     * @return сессии перешедших чатов
+     */
+    List<Session> release(LongPredicate moved);
+
+    /**
+     * Принимает сессии, переданные другим узлом; более старые версии не заменяют имеющиеся
+     * @param sessions сессии чатов, перешедших к этому узлу
+     */
+    void adopt(Collection<Session> sessions);
+}
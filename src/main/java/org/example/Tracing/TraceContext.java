@@ -0,0 +1,248 @@
+package org.example.Tracing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Контекст трассировки одного обновления Telegram: update_id, ID чата, команда
+ * и список вложенных операций (спанов) с их длительностью.
+ * Контекст привязывается к потоку через {@link #attach()} и переносится в пулы
+ * через {@link #propagating(Executor)}; по завершении обработки {@link #finish()}
+ * записывает его одной JSON-строкой в {@link TraceLog}.
+ */
+public class TraceContext {
+    private static final ThreadLocal<TraceContext> CURRENT = new ThreadLocal<>();
+    // Ограничение на число спанов, чтобы зациклившаяся команда не раздувала запись
+    private static final int MAX_SPANS = 256;
+
+    private final String traceId;
+    private final long updateId;
+    private final long chatId;
+    private final String command;
+    private final long startMillis;
+    private final long startNanos;
+    private final List<Span> spans = new ArrayList<>();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private volatile String error;
+
+    private TraceContext(long updateId, long chatId, String command) {
+        this.traceId = UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+        this.updateId = updateId;
+        this.chatId = chatId;
+        this.command = command;
+        this.startMillis = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Создает контекст для обновления
+     * @param updateId update_id из Telegram
+     * @param chatId ID чата пользователя
+     * @param messageText текст сообщения; командой считается первое слово
+     * @return новый контекст (к потоку не привязан)
+     */
+    public static TraceContext start(long updateId, long chatId, String messageText) {
+        return new TraceContext(updateId, chatId, commandOf(messageText));
+    }
+
+    /**
+     * @return контекст, привязанный к текущему потоку, или null
+     */
+    public static TraceContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Открывает спан в текущем контексте; без контекста возвращает пустой спан
+     * @param name имя операции, например db.query или telegram.send
+     */
+    public static Span span(String name) {
+        TraceContext context = CURRENT.get();
+        return context != null ? context.newSpan(name) : Span.NOOP;
+    }
+
+    /**
+     * Оборачивает пул так, чтобы задачи выполнялись в контексте потока, который их отправил
+     */
+    public static Executor propagating(Executor executor) {
+        return task -> {
+            TraceContext context = CURRENT.get();
+            if (context == null) {
+                executor.execute(task);
+                return;
+            }
+            executor.execute(() -> {
+                try (Scope ignored = context.attach()) {
+                    task.run();
+                }
+            });
+        };
+    }
+
+    /**
+     * Привязывает контекст к текущему потоку до закрытия возвращенного Scope
+     */
+    public Scope attach() {
+        TraceContext previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Отмечает обработку обновления как завершившуюся ошибкой
+     */
+    public void recordError(Throwable e) {
+        error = e.toString();
+    }
+
+    /**
+     * Завершает трассировку и ставит запись в очередь журнала (повторные вызовы игнорируются)
+     */
+    public void finish() {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        TraceLog.Json json = new TraceLog.Json().field("level", "trace").field("ts", startMillis);
+        writeIdentity(json);
+        json.field("duration_ms", (System.nanoTime() - startNanos) / 1_000_000.0);
+        if (error != null) {
+            json.field("error", error);
+        }
+        StringBuilder spanJson = new StringBuilder("[");
+        synchronized (spans) {
+            for (Span span : spans) {
+                if (spanJson.length() > 1) {
+                    spanJson.append(',');
+                }
+                spanJson.append(span.toJson(startNanos));
+            }
+        }
+        json.raw("spans", spanJson.append(']').toString());
+        TraceLog.get().append(json.toString());
+    }
+
+    void writeIdentity(TraceLog.Json json) {
+        json.field("trace_id", traceId)
+                .field("update_id", updateId)
+                .field("chat_id", chatId)
+                .field("command", command);
+    }
+
+    private Span newSpan(String name) {
+        Span span = new Span(name);
+        synchronized (spans) {
+            if (spans.size() < MAX_SPANS) {
+                spans.add(span);
+            }
+        }
+        return span;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * Число записанных спанов (для тестов и отладки)
+     */
+    public int spanCount() {
+        synchronized (spans) {
+            return spans.size();
+        }
+    }
+
+    static String commandOf(String messageText) {
+        if (messageText == null || messageText.isBlank()) {
+            return "";
+        }
+        String trimmed = messageText.trim();
+        int space = trimmed.indexOf(' ');
+        String first = space < 0 ? trimmed : trimmed.substring(0, space);
+        // Свободный ввод (название вина, ответ) не пишется в журнал целиком
+        return first.startsWith("/") ? first.toLowerCase() : "text";
+    }
+
+    /**
+     * Привязка контекста к потоку
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * Операция внутри обработки обновления; длительность фиксируется при закрытии
+     */
+    public static class Span implements AutoCloseable {
+        static final Span NOOP = new Span(null);
+
+        private final String name;
+        private final long startNanos;
+        private final String thread;
+        private volatile long endNanos;
+        private volatile String detail;
+        private volatile String error;
+
+        private Span(String name) {
+            this.name = name;
+            this.startNanos = System.nanoTime();
+            this.thread = name == null ? null : Thread.currentThread().getName();
+        }
+
+        /**
+         * Добавляет к спану короткое описание (например, начало SQL-запроса)
+         */
+        public Span detail(String value) {
+            if (this != NOOP) {
+                detail = value;
+            }
+            return this;
+        }
+
+        /**
+         * Отмечает спан как завершившийся ошибкой
+         */
+        public void fail(Throwable e) {
+            if (this != NOOP) {
+                error = e.toString();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (this != NOOP && endNanos == 0) {
+                endNanos = System.nanoTime();
+            }
+        }
+
+        String toJson(long traceStartNanos) {
+            long end = endNanos != 0 ? endNanos : System.nanoTime();
+            TraceLog.Json json = new TraceLog.Json()
+                    .field("name", name)
+                    .field("thread", thread)
+                    .field("offset_ms", (startNanos - traceStartNanos) / 1_000_000.0)
+                    .field("duration_ms", (end - startNanos) / 1_000_000.0);
+            if (detail != null) {
+                json.field("detail", detail);
+            }
+            if (error != null) {
+                json.field("error", error);
+            }
+            return json.toString();
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package org.example.Tracing;
+
+import org.example.Utils.Metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Асинхронный журнал в формате JSON lines.
+ * Записи кладутся в ограниченную очередь и пишутся в файл отдельным
+ * потоком-демоном, поэтому потоки обработки обновлений никогда не ждут
+ * дискового или консольного вывода. Если очередь переполнена, запись
+ * отбрасывается и учитывается в счетчике trace.dropped.
+ */
+public class TraceLog implements AutoCloseable {
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final int DRAIN_BATCH = 256;
+    private static final String DEFAULT_PATH = "logs/trace.jsonl";
+
+    private static volatile TraceLog instance;
+
+    private final Path path;
+    private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * Создает журнал и запускает поток записи
+     * @param path файл журнала (дописывается)
+     */
+    public TraceLog(Path path) {
+        this.path = path;
+        this.writer = new Thread(this::writeLoop, "trace-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * @return общий журнал процесса; путь задается переменной TRACE_LOG_FILE
+     */
+    public static TraceLog get() {
+        TraceLog current = instance;
+        if (current == null) {
+            synchronized (TraceLog.class) {
+                current = instance;
+                if (current == null) {
+                    String configured = System.getenv("TRACE_LOG_FILE");
+                    current = new TraceLog(Path.of(configured != null ? configured : DEFAULT_PATH));
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Заменяет общий журнал процесса журналом в указанном файле
+     * @param path файл журнала
+     * @return новый журнал
+     */
+    public static synchronized TraceLog configure(Path path) {
+        TraceLog previous = instance;
+        instance = new TraceLog(path);
+        if (previous != null) {
+            previous.close();
+        }
+        return instance;
+    }
+
+    /**
+     * Записывает сообщение об ошибке вместе с текущим контекстом трассировки
+     * @param message описание ошибки
+     * @param e исключение (может быть null)
+     */
+    public static void error(String message, Throwable e) {
+        log("error", message, e);
+    }
+
+    /**
+     * Записывает ошибку и возвращает текст ответа пользователю: подробности ошибки
+     * остаются в журнале, а пользователь видит код трассировки, по которому ее можно найти
+     * @param userText что сообщить пользователю
+     * @param message описание ошибки для журнала
+     * @param e исключение
+     * @return текст для пользователя
+     */
+    public static String userError(String userText, String message, Throwable e) {
+        error(message, e);
+        return withTraceId(userText, TraceContext.current());
+    }
+
+    /**
+     * Записывает ошибку и возвращает то же описание для пользователя с кодом трассировки
+     * @param message описание ошибки
+     * @param e исключение
+     * @return текст для пользователя
+     */
+    public static String userError(String message, Throwable e) {
+        return userError(message, message, e);
+    }
+
+    /**
+     * @param userText текст сообщения об ошибке для пользователя
+     * @param trace трассировка обновления (может быть null)
+     * @return текст с кодом трассировки
+     */
+    public static String withTraceId(String userText, TraceContext trace) {
+        return trace == null ? userText : userText + "\nКод ошибки: " + trace.getTraceId();
+    }
+
+    /**
+     * Записывает предупреждение: ситуация исправлена или обойдена, но требует внимания
+     * @param message описание
+     */
+    public static void warn(String message) {
+        log("warn", message, null);
+    }
+
+    /**
+     * Записывает информационное сообщение о работе бота
+     * @param message описание
+     */
+    public static void info(String message) {
+        log("info", message, null);
+    }
+
+    private static void log(String level, String message, Throwable e) {
+        Json json = new Json().field("level", level).field("ts", System.currentTimeMillis());
+        TraceContext context = TraceContext.current();
+        if (context != null) {
+            context.writeIdentity(json);
+        }
+        json.field("message", message);
+        if (e != null) {
+            json.field("error", e.toString()).field("stack", stackTrace(e));
+        }
+        get().append(json.toString());
+    }
+
+    /**
+     * Ставит готовую JSON-строку в очередь на запись, не блокируя вызывающий поток
+     * @return false, если запись отброшена
+     */
+    public boolean append(String line) {
+        if (closed || !queue.offer(line)) {
+            Metrics.counter("trace.dropped").increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Дожидается записи всех поставленных в очередь строк
+     * @param timeoutMillis максимальное время ожидания
+     * @return true, если очередь опустела
+     */
+    public boolean drain(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!queue.isEmpty() || writer.getState() == Thread.State.RUNNABLE) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    private void writeLoop() {
+        List<String> batch = new ArrayList<>(DRAIN_BATCH);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                String first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, DRAIN_BATCH - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<String> lines) {
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (String line : lines) {
+                    out.write(line);
+                    out.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            Metrics.counter("trace.dropped").add(lines.size());
+        }
+    }
+
+    /**
+     * Останавливает запись, предварительно записав очередь. Если ожидание прервано,
+     * поток записи дописывает очередь сам, а флаг прерывания восстанавливается
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String stackTrace(Throwable e) {
+        StringWriter out = new StringWriter();
+        e.printStackTrace(new PrintWriter(out));
+        return out.toString();
+    }
+
+    /**
+     * Минимальный построитель JSON-объекта в одну строку
+     */
+    static class Json {
+        private final StringBuilder out = new StringBuilder("{");
+
+        Json field(String name, String value) {
+            key(name);
+            if (value == null) {
+                out.append("null");
+            } else {
+                quote(value);
+            }
+            return this;
+        }
+
+        Json field(String name, long value) {
+            key(name);
+            out.append(value);
+            return this;
+        }
+
+        Json field(String name, double value) {
+            key(name);
+            out.append(String.format(Locale.ROOT, "%.3f", value));
+            return this;
+        }
+
+        Json raw(String name, String json) {
+            key(name);
+            out.append(json);
+            return this;
+        }
+
+        private void key(String name) {
+            if (out.length() > 1) {
+                out.append(',');
+            }
+            quote(name);
+            out.append(':');
+        }
+
+        private void quote(String value) {
+            out.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"': out.append("\\\""); break;
+                    case '\\': out.append("\\\\"); break;
+                    case '\n': out.append("\\n"); break;
+                    case '\r': out.append("\\r"); break;
+                    case '\t': out.append("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            out.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            out.append(c);
+                        }
+                }
+            }
+            out.append('"');
+        }
+
+        @Override
+        public String toString() {
+            return out + "}";
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.Utils;
+
+import org.example.Coordination.JobCoordinator;
+import org.example.DAO.DishReadRepository;
+import org.example.DAO.MappedCatalog;
+import org.example.DAO.WineReadRepository;
+import org.example.Tracing.TraceLog;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Периодически записывает бинарный снимок каталога,
+ * из которого бот читает данные сразу после перезапуска.
+ */
+public class CatalogSnapshotWriter {
+    private final Path path;
+    private final WineReadRepository wines;
+    private final DishReadRepository dishes;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Конструктор
+     * @param path путь к файлу снимка
+     * @param wines хранилище вин и сочетаний
+     * @param dishes хранилище блюд
+     */
+    public CatalogSnapshotWriter(Path path, WineReadRepository wines, DishReadRepository dishes) {
+        this.path = path;
+        this.wines = wines;
+        this.dishes = dishes;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Запускает периодическую запись снимка
+     * @param interval интервал между записями
+     */
+    public void start(Duration interval) {
+        scheduler.scheduleWithFixedDelay(this::writeSnapshot,
+                interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Запускает периодическую запись снимка на ведущем экземпляре задачи catalog.snapshot.
+     * Используется, когда файл снимка общий для всех экземпляров бота
+     * @param interval интервал между записями
+     * @param coordinator выбор ведущего экземпляра
+     */
+    public void start(Duration interval, JobCoordinator coordinator) {
+        scheduler.scheduleWithFixedDelay(coordinator.leaderOnly("catalog.snapshot", this::writeSnapshot),
+                interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Записывает снимок немедленно
+     * @return true, если снимок записан
+     */
+    public boolean writeSnapshot() {
+        try {
+            MappedCatalog.write(path, wines, dishes);
+            return true;
+        } catch (Exception e) {
+            TraceLog.error("Не удалось записать снимок каталога " + path, e);
+            return false;
+        }
+    }
+
+    /**
+     * Останавливает периодическую запись
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+}
@@ -1,11 +1,14 @@
 package org.example.Utils;
 
 import io.github.cdimascio.dotenv.Dotenv;
+import org.example.DAO.Dish;
+import org.example.DAO.Pairing;
+import org.example.DAO.PairingTopKDAO;
 import java.sql.*;
 
 /**
  * Класс для инициализации структуры базы данных.
- * Создает необходимые таблицы (wines, dishes, pairings) при запуске приложения.
+ * Создает необходимые таблицы (wines, dishes, pairings, ratings, rating_votes, pairing_topk) при запуске приложения.
  */
 public class DatabaseInitializer {
 
@@ -16,6 +19,11 @@ public class DatabaseInitializer {
      * @throws RuntimeException если произошла ошибка при инициализации БД
      */
     public static void initialize(Dotenv dotenv) {
+        // Встроенному каталогу база данных не нужна
+        if (usesInMemoryCatalog(dotenv)) {
+            return;
+        }
+
         String url = dotenv.get("POSTGRES_URL");
         String user = dotenv.get("POSTGRES_USER");
         String password = dotenv.get("POSTGRES_PASSWORD");
@@ -30,12 +38,26 @@ public class DatabaseInitializer {
             createWinesTable(stmt);
             createDishesTable(stmt);
             createPairingsTable(stmt);
+            createRatingsTable(stmt);
+            // Строится после оценок: их перенос может изменить оценки сочетаний
+            createPairingTopKTable(stmt);
+            createSessionsTable(stmt);
+            createClusterNodesTable(stmt);
 
         } catch (SQLException e) {
             throw new RuntimeException("Database initialization failed", e);
         }
     }
 
+    /**
+     * Проверяет, настроен ли бот на встроенный каталог в памяти (CATALOG_BACKEND=memory)
+     * @param dotenv объект Dotenv с загруженными переменными окружения
+     * @return true, если PostgreSQL не используется
+     */
+    public static boolean usesInMemoryCatalog(Dotenv dotenv) {
+        return "memory".equalsIgnoreCase(dotenv.get("CATALOG_BACKEND", "postgres"));
+    }
+
     /**
      * Создает таблицу wines, если она не существует.
      * @param stmt Statement для выполнения SQL-запросов
@@ -51,6 +73,8 @@ public class DatabaseInitializer {
                 "region VARCHAR(100), " +
                 "vintage INT, " +
                 "description TEXT)");
+        // Версия записи увеличивается при каждом изменении: по ней кэши проверяют актуальность
+        stmt.execute("ALTER TABLE wines ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 0");
     }
 
     /**
@@ -68,6 +92,13 @@ public class DatabaseInitializer {
                 "cooking_time INT, " +
                 "ingredients TEXT, " +
                 "recipe TEXT)");
+        stmt.execute("ALTER TABLE dishes ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 0");
+        // Раньше категория записывалась в верхнем регистре («МЯСО») и не находилась по названию
+        for (Dish.DishCategory category : Dish.DishCategory.values()) {
+            stmt.execute("UPDATE dishes SET category = '" + category.name() + "' " +
+                    "WHERE category = '" + category.name().toUpperCase() + "'");
+        }
+        stmt.execute("CREATE INDEX IF NOT EXISTS dishes_category_idx ON dishes (category)");
     }
 
     /**
@@ -81,5 +112,124 @@ public class DatabaseInitializer {
                 "dish_id INT REFERENCES dishes(id), " +
                 "score INT, " +
                 "PRIMARY KEY (wine_id, dish_id))");
+        // Первичный ключ обслуживает поиск от вина к блюдам, этот индекс — обратный поиск от блюда к винам
+        stmt.execute("CREATE INDEX IF NOT EXISTS pairings_dish_score_idx ON pairings (dish_id, score DESC)");
+
+        // Счетчики отзывов; score хранит байесовскую оценку по base_score и голосам
+        stmt.execute("ALTER TABLE pairings " +
+                "ADD COLUMN IF NOT EXISTS base_score INT, " +
+                "ADD COLUMN IF NOT EXISTS votes_up INT NOT NULL DEFAULT 0, " +
+                "ADD COLUMN IF NOT EXISTS votes_down INT NOT NULL DEFAULT 0");
+        stmt.execute("UPDATE pairings SET base_score = score WHERE base_score IS NULL");
+    }
+
+    /**
+     * Создает таблицу pairing_topk с лучшими сочетаниями каждого вина, если она не существует,
+     * и приводит ее в соответствие с pairings (изменения могли быть сделаны, пока бот не работал).
+     * @param stmt Statement для выполнения SQL-запросов
+     * @throws SQLException если произошла ошибка при выполнении запроса
+     */
+    private static void createPairingTopKTable(Statement stmt) throws SQLException {
+        stmt.execute("CREATE TABLE IF NOT EXISTS pairing_topk (" +
+                "wine_id INT NOT NULL REFERENCES wines(id) ON DELETE CASCADE, " +
+                "rank SMALLINT NOT NULL, " +
+                "dish_id INT NOT NULL REFERENCES dishes(id) ON DELETE CASCADE, " +
+                "score INT, " +
+                "PRIMARY KEY (wine_id, rank))");
+        stmt.execute(PairingTopKDAO.REBUILD_SQL);
+        // Таблица, созданная без внешнего ключа на блюда, получает его после перестроения,
+        // когда строк удаленных блюд в ней уже нет
+        stmt.execute("DO $$ BEGIN " +
+                "IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'pairing_topk_dish_id_fkey') THEN " +
+                "ALTER TABLE pairing_topk ADD CONSTRAINT pairing_topk_dish_id_fkey " +
+                "FOREIGN KEY (dish_id) REFERENCES dishes(id) ON DELETE CASCADE; " +
+                "END IF; END $$");
+    }
+
+    /**
+     * Создает журнал оценок ratings и таблицу текущих оценок rating_votes, если они не существуют.
+     * В ratings оценки только добавляются; в rating_votes у чата одна оценка сочетания,
+     * повторная оценка заменяет прежнюю; итог по сочетанию хранится в pairings.
+     * @param stmt Statement для выполнения SQL-запросов
+     * @throws SQLException если произошла ошибка при выполнении запроса
+     */
+    private static void createRatingsTable(Statement stmt) throws SQLException {
+        stmt.execute("CREATE TABLE IF NOT EXISTS ratings (" +
+                "id BIGSERIAL PRIMARY KEY, " +
+                "chat_id BIGINT NOT NULL, " +
+                "wine_id INT NOT NULL REFERENCES wines(id) ON DELETE CASCADE, " +
+                "dish_id INT NOT NULL REFERENCES dishes(id) ON DELETE CASCADE, " +
+                "rating SMALLINT NOT NULL CHECK (rating IN (-1, 1)), " +
+                "created_at TIMESTAMP NOT NULL DEFAULT now())");
+
+        boolean hasVotes;
+        try (ResultSet rs = stmt.executeQuery("SELECT to_regclass('rating_votes') IS NOT NULL")) {
+            hasVotes = rs.next() && rs.getBoolean(1);
+        }
+        stmt.execute("CREATE TABLE IF NOT EXISTS rating_votes (" +
+                "chat_id BIGINT NOT NULL, " +
+                "wine_id INT NOT NULL REFERENCES wines(id) ON DELETE CASCADE, " +
+                "dish_id INT NOT NULL REFERENCES dishes(id) ON DELETE CASCADE, " +
+                "rating SMALLINT NOT NULL CHECK (rating IN (-1, 1)), " +
+                "created_at TIMESTAMP NOT NULL DEFAULT now(), " +
+                "updated_at TIMESTAMP NOT NULL DEFAULT now(), " +
+                "PRIMARY KEY (chat_id, wine_id, dish_id))");
+        if (hasVotes) {
+            return;
+        }
+        // Текущие оценки заполняются по журналу: последняя оценка каждого чата для сочетания.
+        // Журнал не изменяется; счетчики голосов — производные данные, они приводятся
+        // к текущим оценкам, чтобы дальнейшие замены оценок меняли их на верную разницу
+        stmt.execute("INSERT INTO rating_votes (chat_id, wine_id, dish_id, rating, created_at, updated_at) " +
+                "SELECT DISTINCT ON (chat_id, wine_id, dish_id) chat_id, wine_id, dish_id, rating, " +
+                "MIN(created_at) OVER (PARTITION BY chat_id, wine_id, dish_id), created_at " +
+                "FROM ratings ORDER BY chat_id, wine_id, dish_id, id DESC");
+        stmt.execute("UPDATE pairings p SET " +
+                "votes_up = v.up, " +
+                "votes_down = v.down, " +
+                "score = ROUND((" + Pairing.PRIOR_WEIGHT + " * COALESCE(p.base_score, p.score) + " +
+                Pairing.MAX_SCORE + " * v.up)::numeric / (" + Pairing.PRIOR_WEIGHT + " + v.up + v.down)) " +
+                "FROM (SELECT p2.wine_id, p2.dish_id, " +
+                "COUNT(r.rating) FILTER (WHERE r.rating > 0) AS up, " +
+                "COUNT(r.rating) FILTER (WHERE r.rating < 0) AS down " +
+                "FROM pairings p2 LEFT JOIN rating_votes r ON r.wine_id = p2.wine_id AND r.dish_id = p2.dish_id " +
+                "GROUP BY p2.wine_id, p2.dish_id) v " +
+                "WHERE p.wine_id = v.wine_id AND p.dish_id = v.dish_id " +
+                "AND (p.votes_up, p.votes_down) IS DISTINCT FROM (v.up, v.down)");
+        // Уникальный индекс предыдущей версии не дает журналу принимать повторные оценки
+        stmt.execute("DROP INDEX IF EXISTS ratings_vote_idx");
+    }
+
+    /**
+     * Создает таблицу sessions для общих сессий пользователей, если она не существует.
+     * Столбец version используется для оптимистической блокировки.
+     * @param stmt Statement для выполнения SQL-запросов
+     * @throws SQLException если произошла ошибка при выполнении запроса
+     */
+    private static void createSessionsTable(Statement stmt) throws SQLException {
+        stmt.execute("CREATE TABLE IF NOT EXISTS sessions (" +
+                "chat_id BIGINT PRIMARY KEY, " +
+                "version BIGINT NOT NULL, " +
+                "age_verified BOOLEAN NOT NULL DEFAULT FALSE, " +
+                "state VARCHAR(50), " +
+                "waiting_for_wine BOOLEAN NOT NULL DEFAULT FALSE, " +
+                "pairing_wine TEXT, " +
+                "pairing_dish_id INT, " +
+                "updated_at TIMESTAMP NOT NULL DEFAULT now())");
+        stmt.execute("ALTER TABLE sessions ADD COLUMN IF NOT EXISTS pairing_wine_id INT");
+        // Старые сессии периодически удаляются по времени последнего изменения
+        stmt.execute("CREATE INDEX IF NOT EXISTS sessions_updated_at_idx ON sessions (updated_at)");
+    }
+
+    /**
+     * Создает таблицу cluster_nodes с составом узлов кластера, если она не существует.
+     * @param stmt Statement для выполнения SQL-запросов
+     * @throws SQLException если произошла ошибка при выполнении запроса
+     */
+    private static void createClusterNodesTable(Statement stmt) throws SQLException {
+        stmt.execute("CREATE TABLE IF NOT EXISTS cluster_nodes (" +
+                "node_id VARCHAR(100) PRIMARY KEY, " +
+                "url TEXT NOT NULL, " +
+                "heartbeat_at TIMESTAMP NOT NULL DEFAULT now())");
     }
-}
\ No newline at end of file
+}
@@ -1,111 +1,431 @@
 package org.example.Utils;
 
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
 
 public class ExcelFavoritesManager {
-    private static final String FILE_NAME = "favorites.xlsx";
     private static final String SHEET_NAME = "Pairings";
+    /**
+     * Владелец строк, записанных до появления колонки Chat (и сохраненных без чата):
+     * тогда избранное было общим, поэтому такие строки видны в избранном и выгрузке
+     * каждого чата, а повторно сохранить то же сочетание нельзя
+     */
+    public static final long SHARED_CHAT_ID = 0L;
 
-    public static PairingAddResult addFavorite(String wineName, String dishDescription) throws IOException {
-        File file = new File(FILE_NAME);
-        List<Pairing> existingPairings = new ArrayList<>();
+    // Блокировка файла: запись пачки в файл не должна задерживать
+    // добавление и просмотр избранного, которые работают с памятью
+    private static final Object FILE_LOCK = new Object();
+    // Файл избранного; по умолчанию favorites.xlsx в рабочем каталоге
+    private static volatile String fileName = "favorites.xlsx";
 
-        // Если файл существует, загружаем все существующие сочетания
-        if (file.exists()) {
-            try (Workbook workbook = new XSSFWorkbook(new FileInputStream(file))) {
-                Sheet sheet = workbook.getSheet(SHEET_NAME);
-                if (sheet != null) {
-                    for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                        Row row = sheet.getRow(i);
-                        if (row != null) {
-                            String existingWine = row.getCell(0).getStringCellValue();
-                            String existingDish = row.getCell(1).getStringCellValue();
-                            existingPairings.add(new Pairing(existingWine, existingDish));
-                        }
-                    }
-                }
-            }
+    // Сколько чатов хранят избранное в памяти
+    private static final int CACHED_CHATS = 1000;
+    // Уже сохраненные и ожидающие записи сочетания недавно активных чатов (ключ сочетания —
+    // чат и названия в нижнем регистре); позволяют проверять дубликаты и показывать избранное
+    // без чтения файла. Чат, к которому дольше всего не обращались, вытесняется
+    private static final Map<Long, Map<String, Favorite>> chatFavorites = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Map<String, Favorite>> eldest) {
+            return size() > CACHED_CHATS;
         }
+    };
+    // Буфер отложенной записи; если не включен, сочетания записываются в файл сразу
+    private static volatile WriteBehindBuffer<Favorite> buffer;
+
+    /**
+     * Задает файл избранного вместо favorites.xlsx в рабочем каталоге (используется в тестах)
+     * @param path путь к файлу
+     */
+    public static synchronized void useFile(Path path) {
+        fileName = path.toString();
+        chatFavorites.clear();
+    }
+
+    /**
+     * Включает отложенную запись: сочетания подтверждаются сразу,
+     * а в файл дописываются пачками
+     * @param journalDirectory каталог журнала буфера
+     * @param batchSize размер пачки
+     * @param interval интервал между записями в файл
+     */
+    public static synchronized void enableWriteBehind(Path journalDirectory, int batchSize, Duration interval)
+            throws IOException {
+        if (buffer == null) {
+            buffer = new WriteBehindBuffer<>("favorites", journalDirectory, new FavoriteCodec(),
+                    ExcelFavoritesManager::appendFavorites, batchSize, interval);
+            Runtime.getRuntime().addShutdownHook(new Thread(buffer::close));
+        }
+    }
+
+    /**
+     * Отключает отложенную запись, предварительно записав накопленные сочетания в файл
+     */
+    public static synchronized void disableWriteBehind() {
+        if (buffer != null) {
+            buffer.close();
+            buffer = null;
+        }
+    }
+
+    /**
+     * Добавляет общее сочетание, видимое всем чатам (см. {@link #SHARED_CHAT_ID})
+     */
+    public static PairingAddResult addFavorite(String wineName, String dishDescription) throws IOException {
+        return addFavorite(SHARED_CHAT_ID, wineName, dishDescription);
+    }
+
+    /**
+     * Добавляет сочетание в избранное
+     * @param chatId ID чата пользователя
+     * @param wineName название вина
+     * @param dishDescription описание блюда
+     * @return результат добавления с текстом ответа
+     */
+    public static synchronized PairingAddResult addFavorite(long chatId, String wineName, String dishDescription)
+            throws IOException {
+        Map<String, Favorite> known = favoritesOf(chatId);
 
         // Проверяем, есть ли уже такое сочетание
-        for (Pairing pairing : existingPairings) {
-            if (pairing.wine.equalsIgnoreCase(wineName) &&
-                    pairing.dish.equalsIgnoreCase(dishDescription)) {
-                return new PairingAddResult(false,
-                        "⚠️ *Это сочетание уже есть в вашем избранном!*\n\n" +
-                                "🍷 *Вино:* " + pairing.wine + "\n" +
-                                "🍽 *Блюдо:* " + pairing.dish);
-            }
+        Favorite existing = known.get(key(chatId, wineName, dishDescription));
+        if (existing != null) {
+            return new PairingAddResult(false,
+                    "⚠️ *Это сочетание уже есть в вашем избранном!*\n\n" +
+                            "🍷 *Вино:* " + existing.wine + "\n" +
+                            "🍽 *Блюдо:* " + existing.dish);
         }
 
         // Если сочетания нет - добавляем
-        Workbook workbook;
-        if (file.exists()) {
-            workbook = new XSSFWorkbook(new FileInputStream(file));
+        Favorite favorite = new Favorite(chatId, wineName, dishDescription);
+        WriteBehindBuffer<Favorite> current = buffer;
+        if (current != null) {
+            current.submit(favorite);
         } else {
-            workbook = new XSSFWorkbook();
+            appendFavorites(List.of(favorite));
         }
+        known.put(key(chatId, wineName, dishDescription), favorite);
 
-        Sheet sheet = workbook.getSheet(SHEET_NAME);
-        if (sheet == null) {
-            sheet = workbook.createSheet(SHEET_NAME);
-            Row headerRow = sheet.createRow(0);
-            headerRow.createCell(0).setCellValue("Wine");
-            headerRow.createCell(1).setCellValue("Dish");
-        }
+        return new PairingAddResult(true, "✅ *Сочетание успешно добавлено в избранное!*");
+    }
 
-        Row newRow = sheet.createRow(sheet.getLastRowNum() + 1);
-        newRow.createCell(0).setCellValue(wineName);
-        newRow.createCell(1).setCellValue(dishDescription);
+    /**
+     * Дописывает пачку сочетаний в файл за одну запись. Сочетания, которые уже есть
+     * в файле (например, повторно восстановленные из журнала), пропускаются.
+     * Книга записывается во временный файл рядом и затем атомарно подменяет файл
+     * избранного, поэтому сбой во время записи не повреждает уже сохраненное избранное.
+     * @param favorites сочетания для записи
+     */
+    public static void appendFavorites(List<Favorite> favorites) throws IOException {
+        synchronized (FILE_LOCK) {
+            File file = new File(fileName);
+            Workbook workbook;
+            if (file.exists()) {
+                try (FileInputStream input = new FileInputStream(file)) {
+                    workbook = new XSSFWorkbook(input);
+                }
+            } else {
+                workbook = new XSSFWorkbook();
+            }
 
-        try (FileOutputStream outputStream = new FileOutputStream(FILE_NAME)) {
-            workbook.write(outputStream);
-        }
-        workbook.close();
+            try (workbook) {
+                Sheet sheet = workbook.getSheet(SHEET_NAME);
+                if (sheet == null) {
+                    sheet = workbook.createSheet(SHEET_NAME);
+                    Row headerRow = sheet.createRow(0);
+                    headerRow.createCell(0).setCellValue("Wine");
+                    headerRow.createCell(1).setCellValue("Dish");
+                    headerRow.createCell(2).setCellValue("Chat");
+                }
 
-        return new PairingAddResult(true, "✅ *Сочетание успешно добавлено в избранное!*");
+                Map<String, Favorite> stored = new HashMap<>();
+                for (Favorite favorite : readFavorites(sheet)) {
+                    stored.put(key(favorite.chatId, favorite.wine, favorite.dish), favorite);
+                }
+
+                for (Favorite favorite : favorites) {
+                    if (stored.putIfAbsent(key(favorite.chatId, favorite.wine, favorite.dish), favorite) != null) {
+                        continue;
+                    }
+                    Row newRow = sheet.createRow(sheet.getLastRowNum() + 1);
+                    newRow.createCell(0).setCellValue(favorite.wine);
+                    newRow.createCell(1).setCellValue(favorite.dish);
+                    // ID чата хранится строкой: числовая ячейка теряет точность при форматировании
+                    newRow.createCell(2).setCellValue(String.valueOf(favorite.chatId));
+                }
+
+                Path target = file.toPath().toAbsolutePath();
+                Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+                try {
+                    try (OutputStream outputStream = Files.newOutputStream(temp)) {
+                        workbook.write(outputStream);
+                    }
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        }
     }
 
-    // Вспомогательный класс для хранения пар вино-блюдо
-    private static class Pairing {
-        String wine;
-        String dish;
+    /**
+     * Избранное сочетание
+     */
+    public static class Favorite {
+        private final long chatId;
+        private final String wine;
+        private final String dish;
 
-        Pairing(String wine, String dish) {
+        public Favorite(long chatId, String wine, String dish) {
+            this.chatId = chatId;
             this.wine = wine;
             this.dish = dish;
         }
+
+        public long getChatId() {
+            return chatId;
+        }
+
+        public String getWine() {
+            return wine;
+        }
+
+        public String getDish() {
+            return dish;
+        }
+
+        /**
+         * @return видно ли сочетание чату: свое или общее (см. {@link #SHARED_CHAT_ID})
+         */
+        public boolean belongsTo(long chatId) {
+            return this.chatId == chatId || this.chatId == SHARED_CHAT_ID;
+        }
     }
 
-    public static List<String> getFavorites() throws IOException {
+    /**
+     * Возвращает избранные сочетания пользователя (в порядке добавления). Файл читается
+     * при первом обращении чата, дальше набор поддерживается при каждом добавлении
+     * @param chatId ID чата пользователя
+     */
+    public static synchronized List<String> getFavorites(long chatId) throws IOException {
         List<String> favorites = new ArrayList<>();
-        File file = new File(FILE_NAME);
+        for (Favorite favorite : favoritesOf(chatId).values()) {
+            favorites.add("🍷 " + favorite.wine + "\n🍽 " + favorite.dish);
+        }
+        return favorites;
+    }
 
-        if (!file.exists()) {
-            return favorites;
+    /**
+     * Перебирает все избранные сочетания, включая еще не записанные в файл.
+     * Файл читается потоково (SAX), без загрузки всей книги в память, из снимка:
+     * блокировка файла держится только на время создания снимка, поэтому долгая
+     * выгрузка не задерживает запись пачек.
+     * @param consumer обработчик сочетаний
+     */
+    public static void forEachFavorite(Consumer<Favorite> consumer) throws IOException {
+        Path snapshot = snapshotFile();
+        if (snapshot != null) {
+            try {
+                readFavorites(snapshot.toFile(), consumer);
+            } finally {
+                Files.deleteIfExists(snapshot);
+            }
+        }
+        // Сочетания, еще не записанные в файл, тоже учитываются
+        WriteBehindBuffer<Favorite> current = buffer;
+        if (current != null) {
+            current.pending().forEach(consumer);
         }
+    }
 
-        try (Workbook workbook = new XSSFWorkbook(new FileInputStream(file))) {
-            Sheet sheet = workbook.getSheet(SHEET_NAME);
-            if (sheet == null) {
-                return favorites;
+    /**
+     * Фиксирует текущую версию файла избранного. Запись пачки не меняет файл, а атомарно
+     * подменяет его новым, поэтому жесткая ссылка на текущий файл остается неизменной;
+     * если ссылки не поддерживаются, файл копируется
+     * @return снимок рядом с файлом (удаляется вызывающим) или null, если файла еще нет
+     */
+    private static Path snapshotFile() throws IOException {
+        synchronized (FILE_LOCK) {
+            Path target = Path.of(fileName).toAbsolutePath();
+            if (!Files.exists(target)) {
+                return null;
             }
+            Path snapshot = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".read");
+            try {
+                Files.createLink(snapshot, target);
+            } catch (UnsupportedOperationException | IOException e) {
+                Files.copy(target, snapshot, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return snapshot;
+        }
+    }
 
-            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row != null) {
-                    favorites.add("🍷 " + row.getCell(0).getStringCellValue() +
-                            "\n🍽 " + row.getCell(1).getStringCellValue());
+    /**
+     * Избранное чата из памяти; при первом обращении чата файл просматривается потоково
+     * и в памяти остаются только сочетания этого чата и общие сочетания
+     */
+    private static Map<String, Favorite> favoritesOf(long chatId) throws IOException {
+        Map<String, Favorite> known = chatFavorites.get(chatId);
+        if (known == null) {
+            Map<String, Favorite> loaded = new LinkedHashMap<>();
+            forEachFavorite(favorite -> {
+                if (favorite.belongsTo(chatId)) {
+                    // Общее сочетание учитывается под ключом чата: сохранить его повторно нельзя
+                    loaded.putIfAbsent(key(chatId, favorite.wine, favorite.dish), favorite);
                 }
+            });
+            chatFavorites.put(chatId, loaded);
+            known = loaded;
+        }
+        return known;
+    }
+
+    /**
+     * Потоково читает строки листа избранного через XSSFReader
+     */
+    private static void readFavorites(File file, Consumer<Favorite> consumer) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    if (!SHEET_NAME.equals(sheets.getSheetName())) {
+                        continue;
+                    }
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(reader.getStylesTable(), strings,
+                            new FavoriteRowHandler(consumer), new DataFormatter(), false));
+                    parser.parse(new InputSource(sheet));
+                }
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Не удалось прочитать файл избранного: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Собирает сочетание из ячеек строки; первая строка — заголовок
+     */
+    private static class FavoriteRowHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final Consumer<Favorite> consumer;
+        private final String[] values = new String[3];
+
+        FavoriteRowHandler(Consumer<Favorite> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            Arrays.fill(values, null);
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (rowNum > 0 && values[0] != null && values[1] != null) {
+                consumer.accept(new Favorite(parseChatId(values[2]), values[0], values[1]));
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = new CellReference(cellReference).getCol();
+            if (column < values.length) {
+                values[column] = formattedValue;
+            }
+        }
+    }
+
+    private static List<Favorite> readFavorites(Sheet sheet) {
+        List<Favorite> favorites = new ArrayList<>();
+        for (int i = 1; i <= sheet.getLastRowNum(); i++) {
+            Row row = sheet.getRow(i);
+            if (row != null) {
+                // В файлах, созданных до появления колонки Chat, ее нет
+                Cell chatCell = row.getCell(2);
+                long chatId = chatCell == null ? SHARED_CHAT_ID
+                        : chatCell.getCellType() == CellType.NUMERIC ? (long) chatCell.getNumericCellValue()
+                        : parseChatId(chatCell.getStringCellValue());
+                favorites.add(new Favorite(chatId,
+                        row.getCell(0).getStringCellValue(),
+                        row.getCell(1).getStringCellValue()));
             }
         }
         return favorites;
     }
 
+    private static long parseChatId(String value) {
+        if (value == null || value.isEmpty()) {
+            return SHARED_CHAT_ID;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return SHARED_CHAT_ID;
+        }
+    }
+
+    // Избранное у каждого пользователя свое: одно сочетание могут сохранить разные чаты
+    private static String key(long chatId, String wine, String dish) {
+        return chatId + "\n" + wine.toLowerCase() + '\n' + dish.toLowerCase();
+    }
+
+    /**
+     * Сериализация избранного в журнал буфера
+     */
+    private static class FavoriteCodec implements WriteBehindBuffer.Codec<Favorite> {
+        @Override
+        public void write(DataOutputStream out, Favorite favorite) throws IOException {
+            out.writeLong(favorite.chatId);
+            writeString(out, favorite.wine);
+            writeString(out, favorite.dish);
+        }
+
+        @Override
+        public Favorite read(DataInputStream in) throws IOException {
+            return new Favorite(in.readLong(), readString(in), readString(in));
+        }
+
+        // Описание блюда с рецептом может не уложиться в ограничение writeUTF (64 КБ)
+        private static void writeString(DataOutputStream out, String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private static String readString(DataInputStream in) throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
     public static class PairingAddResult {
         private final boolean success;
         private final String message;
@@ -123,4 +443,4 @@ public class ExcelFavoritesManager {
             return message;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,110 @@
+package org.example.Utils;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Выгрузка избранных сочетаний пользователя в XLSX.
+ * Книга пишется потоково (SXSSF): в памяти держится только окно из
+ * нескольких строк, остальные сбрасываются во временный файл,
+ * поэтому расход памяти не зависит от размера выгрузки.
+ */
+public class FavoritesExporter {
+    // Сколько строк SXSSF держит в памяти
+    private static final int ROW_WINDOW = 100;
+    private static final String SHEET_NAME = "Favorites";
+
+    /**
+     * Результат выгрузки
+     */
+    public static class Export {
+        private final Path file;
+        private final int rows;
+
+        Export(Path file, int rows) {
+            this.file = file;
+            this.rows = rows;
+        }
+
+        /**
+         * @return временный файл с выгрузкой; удаляется вызывающим кодом
+         */
+        public Path getFile() {
+            return file;
+        }
+
+        /**
+         * @return количество выгруженных сочетаний
+         */
+        public int getRows() {
+            return rows;
+        }
+    }
+
+    /**
+     * Источник сочетаний для выгрузки
+     */
+    @FunctionalInterface
+    public interface Source {
+        void forEach(Consumer<ExcelFavoritesManager.Favorite> consumer) throws IOException;
+    }
+
+    private FavoritesExporter() {
+    }
+
+    /**
+     * Выгружает избранные сочетания пользователя во временный файл
+     * @param chatId ID чата пользователя
+     * @return результат выгрузки
+     */
+    public static Export export(long chatId) throws IOException {
+        return export(chatId, ExcelFavoritesManager::forEachFavorite);
+    }
+
+    /**
+     * Выгружает сочетания пользователя из указанного источника во временный файл
+     * @param chatId ID чата пользователя
+     * @param source источник сочетаний
+     * @return результат выгрузки
+     */
+    public static Export export(long chatId, Source source) throws IOException {
+        Path file = Files.createTempFile("favorites-", ".xlsx");
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            Sheet sheet = workbook.createSheet(SHEET_NAME);
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Wine");
+            header.createCell(1).setCellValue("Dish");
+
+            int[] rows = {0};
+            source.forEach(favorite -> {
+                if (!favorite.belongsTo(chatId)) {
+                    return;
+                }
+                Row row = sheet.createRow(++rows[0]);
+                row.createCell(0).setCellValue(favorite.getWine());
+                row.createCell(1).setCellValue(favorite.getDish());
+            });
+
+            try (OutputStream out = Files.newOutputStream(file)) {
+                workbook.write(out);
+            }
+            return new Export(file, rows[0]);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        } finally {
+            // Удаляет временные файлы строк, сброшенных на диск
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package org.example.Utils;
+
+import org.example.Tracing.TraceLog;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Простой реестр метрик процесса: счетчики, вычисляемые показатели и таймеры задержек.
+ * Таймер хранит гистограмму с бакетами по степеням двойки (в микросекундах),
+ * поэтому запись значения не требует блокировок и выделения памяти.
+ */
+public final class Metrics {
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private static final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * @return счетчик с указанным именем (создается при первом обращении)
+     */
+    public static LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * @return таймер с указанным именем (создается при первом обращении)
+     */
+    public static Timer timer(String name) {
+        return timers.computeIfAbsent(name, n -> new Timer());
+    }
+
+    /**
+     * Регистрирует показатель, значение которого вычисляется при построении отчета
+     * (например, доля попаданий в кэш). Повторная регистрация заменяет прежний показатель.
+     * @param name имя показателя
+     * @param value источник значения
+     */
+    public static void gauge(String name, DoubleSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * @return текущее значение показателя или NaN, если он не зарегистрирован
+     */
+    public static double gaugeValue(String name) {
+        DoubleSupplier gauge = gauges.get(name);
+        return gauge != null ? gauge.getAsDouble() : Double.NaN;
+    }
+
+    /**
+     * @return текстовый отчет по всем метрикам, упорядоченный по имени
+     */
+    public static String report() {
+        StringBuilder report = new StringBuilder();
+        new TreeMap<>(counters).forEach((name, counter) ->
+                report.append(name).append(" = ").append(counter.sum()).append('\n'));
+        new TreeMap<>(gauges).forEach((name, gauge) ->
+                report.append(name).append(" = ").append(String.format(Locale.ROOT, "%.3f", gauge.getAsDouble())).append('\n'));
+        new TreeMap<>(timers).forEach((name, timer) ->
+                report.append(name).append(": ").append(timer).append('\n'));
+        return report.toString();
+    }
+
+    /**
+     * Запускает периодическую передачу отчета по всем метрикам; пустой отчет не передается
+     * @param interval интервал между отчетами
+     * @param sink получатель отчета, например журнал
+     * @return планировщик отчетов; shutdownNow останавливает передачу
+     */
+    public static ScheduledExecutorService startReporting(Duration interval, Consumer<String> sink) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-report");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                String report = report();
+                if (!report.isEmpty()) {
+                    sink.accept(report);
+                }
+            } catch (RuntimeException e) {
+                // Ошибка одного отчета не должна останавливать следующие
+                TraceLog.error("Не удалось передать отчет по метрикам", e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        return scheduler;
+    }
+
+    /**
+     * Таймер задержек
+     */
+    public static final class Timer {
+        private static final int BUCKETS = 40;
+
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        /**
+         * Записывает длительность операции
+         * @param nanos длительность в наносекундах
+         */
+        public void record(long nanos) {
+            long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            histogram.incrementAndGet(bucket);
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        /**
+         * Записывает длительность операции, начатой в момент startNanos (System.nanoTime())
+         */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        /**
+         * @return средняя длительность в миллисекундах
+         */
+        public double meanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / 1_000_000.0 / n;
+        }
+
+        /**
+         * @return максимальная длительность в миллисекундах
+         */
+        public double maxMillis() {
+            return maxNanos.get() / 1_000_000.0;
+        }
+
+        /**
+         * Оценивает процентиль по гистограмме (верхняя граница бакета)
+         * @param percentile процентиль от 0 до 100
+         * @return длительность в миллисекундах
+         */
+        public double percentileMillis(double percentile) {
+            long n = count.sum();
+            if (n == 0) {
+                return 0;
+            }
+            long threshold = (long) Math.ceil(n * percentile / 100.0);
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += histogram.get(bucket);
+                if (seen >= threshold) {
+                    return (bucket == 0 ? 1 : 1L << bucket) / 1000.0;
+                }
+            }
+            return maxMillis();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.2fms p99<=%.2fms max=%.2fms",
+                    count(), meanMillis(), percentileMillis(99), maxMillis());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.example.Utils;
+
+import org.example.DAO.Rating;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Сериализация оценок в журнал буфера отложенной записи
+ */
+public class RatingCodec implements WriteBehindBuffer.Codec<Rating> {
+
+    @Override
+    public void write(DataOutputStream out, Rating rating) throws IOException {
+        out.writeLong(rating.getChatId());
+        out.writeInt(rating.getWineId());
+        out.writeInt(rating.getDishId());
+        out.writeByte(rating.getValue());
+    }
+
+    @Override
+    public Rating read(DataInputStream in) throws IOException {
+        return new Rating(in.readLong(), in.readInt(), in.readInt(), in.readByte());
+    }
+}
@@ -0,0 +1,402 @@
+package org.example.Utils;
+
+import org.example.Tracing.TraceLog;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Буфер отложенной записи: принимает записи сразу, не дожидаясь хранилища,
+ * и сбрасывает их пачкой — по интервалу или при накоплении заданного числа записей.
+ *
+ * Каждая принятая запись сначала дописывается в журнал на диске и сбрасывается
+ * на носитель (force) до возврата из {@link #submit}, поэтому после аварийного
+ * завершения процесса или системы несброшенные записи восстанавливаются при запуске.
+ * Журнал состоит из сегментов: при сбросе текущий сегмент закрывается, а после
+ * успешной записи пачки удаляется. Сбросы выполняются по одному, поэтому сегмент
+ * удаляется только после записи всех его записей. Если процесс завершится между
+ * записью пачки и удалением сегмента, пачка будет записана повторно (гарантия
+ * «хотя бы один раз»).
+ *
+ * Если хранилище отклоняет пачку из-за ее содержимого (это определяет предикат
+ * rejects), записи пачки записываются по одной, а отклоненные переносятся в файл
+ * отклоненных записей (name.rejected), чтобы одна плохая запись не блокировала остальные.
+ *
+ * @param <T> тип записи
+ */
+public class WriteBehindBuffer<T> implements AutoCloseable {
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String REJECTED_SUFFIX = ".rejected";
+
+    /**
+     * Сериализация записей в журнал
+     */
+    public interface Codec<T> {
+        void write(DataOutputStream out, T item) throws IOException;
+
+        T read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * Запись пачки в хранилище (одна транзакция или одно дописывание в файл)
+     */
+    @FunctionalInterface
+    public interface BatchWriter<T> {
+        void write(List<T> batch) throws Exception;
+    }
+
+    private final String name;
+    private final Path directory;
+    private final Codec<T> codec;
+    private final BatchWriter<T> writer;
+    private final Predicate<Exception> rejects;
+    private final Path rejectedPath;
+    private final int batchSize;
+    private final ScheduledExecutorService scheduler;
+    private final Metrics.Timer flushLatency;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    // Сбросы выполняются по одному: сегменты, закрытые сбросом, удаляет только он сам
+    private final Object flushLock = new Object();
+
+    // Состояние ниже защищено монитором this
+    private final Deque<T> pending = new ArrayDeque<>();
+    private final List<Path> sealedSegments = new ArrayList<>();
+    private FileChannel segment;
+    private Path segmentPath;
+    private long segmentNumber;
+
+    /**
+     * Создает буфер и восстанавливает записи из журнала, оставшиеся после предыдущего запуска
+     * @param name имя буфера (используется в именах файлов журнала и метрик)
+     * @param directory каталог журнала
+     * @param codec сериализация записей
+     * @param writer запись пачки в хранилище
+     * @param batchSize размер пачки, при котором сброс запускается не дожидаясь интервала
+     * @param interval интервал между сбросами
+     */
+    public WriteBehindBuffer(String name, Path directory, Codec<T> codec, BatchWriter<T> writer,
+                             int batchSize, Duration interval) throws IOException {
+        this(name, directory, codec, writer, e -> false, batchSize, interval);
+    }
+
+    /**
+     * Создает буфер с переносом отклоненных записей
+     * @param name имя буфера (используется в именах файлов журнала и метрик)
+     * @param directory каталог журнала
+     * @param codec сериализация записей
+     * @param writer запись пачки в хранилище
+     * @param rejects отличает ошибку из-за содержимого записей (повтор не поможет) от недоступности хранилища
+     * @param batchSize размер пачки, при котором сброс запускается не дожидаясь интервала
+     * @param interval интервал между сбросами
+     */
+    public WriteBehindBuffer(String name, Path directory, Codec<T> codec, BatchWriter<T> writer,
+                             Predicate<Exception> rejects, int batchSize, Duration interval) throws IOException {
+        this.name = name;
+        this.directory = directory;
+        this.codec = codec;
+        this.writer = writer;
+        this.rejects = rejects;
+        this.rejectedPath = directory.resolve(name + REJECTED_SUFFIX);
+        this.batchSize = batchSize;
+        this.flushLatency = Metrics.timer("writebehind." + name + ".flush");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "write-behind-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Files.createDirectories(directory);
+        recover();
+        openSegment();
+        scheduler.scheduleWithFixedDelay(this::flushQuietly,
+                interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Принимает запись: дописывает ее в журнал, дожидается сброса журнала на носитель
+     * и ставит запись в очередь на сброс в хранилище
+     * @param item запись
+     * @throws IOException если запись не удалось сохранить в журнал
+     */
+    public void submit(T item) throws IOException {
+        ByteBuffer buffer = frame(encode(item));
+        FileChannel written;
+        int size;
+        synchronized (this) {
+            while (buffer.hasRemaining()) {
+                segment.write(buffer);
+            }
+            pending.addLast(item);
+            size = pending.size();
+            written = segment;
+        }
+        // Сброс на носитель выполняется вне монитора: одновременные submit не ждут друг друга
+        // и обычно сбрасываются одним вызовом force
+        try {
+            written.force(false);
+        } catch (ClosedChannelException e) {
+            // Сегмент закрыт сбросом буфера, который перед закрытием уже сбросил его на носитель
+        }
+        Metrics.counter("writebehind." + name + ".submitted").increment();
+
+        if (size >= batchSize && flushRequested.compareAndSet(false, true)) {
+            scheduler.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * @return записи, принятые, но еще не сброшенные в хранилище
+     */
+    public synchronized List<T> pending() {
+        return new ArrayList<>(pending);
+    }
+
+    /**
+     * @return записи, отклоненные хранилищем, в порядке отклонения
+     */
+    public List<T> rejected() throws IOException {
+        List<T> rejected = new ArrayList<>();
+        synchronized (rejectedPath) {
+            if (Files.exists(rejectedPath)) {
+                readRecords(rejectedPath, rejected::add);
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Сбрасывает накопленные записи в хранилище одной пачкой
+     * @return количество записанных записей (без отклоненных хранилищем)
+     * @throws Exception если хранилище недоступно (записи остаются в буфере)
+     */
+    public int flush() throws Exception {
+        synchronized (flushLock) {
+            return flushBatch();
+        }
+    }
+
+    private int flushBatch() throws Exception {
+        List<T> batch;
+        List<Path> segmentsToDelete;
+        synchronized (this) {
+            flushRequested.set(false);
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            batch = new ArrayList<>(pending);
+            pending.clear();
+            // Новые записи пойдут в новый сегмент, а этот удалится после записи пачки
+            sealSegment();
+            openSegment();
+            segmentsToDelete = new ArrayList<>(sealedSegments);
+        }
+
+        long start = System.nanoTime();
+        int rejectedCount = 0;
+        try {
+            writer.write(batch);
+        } catch (Exception e) {
+            if (!rejects.test(e)) {
+                requeue(batch);
+                throw e;
+            }
+            rejectedCount = writeOneByOne(batch);
+        } finally {
+            flushLatency.recordSince(start);
+        }
+
+        synchronized (this) {
+            sealedSegments.removeAll(segmentsToDelete);
+        }
+        for (Path sealed : segmentsToDelete) {
+            Files.deleteIfExists(sealed);
+        }
+        Metrics.counter("writebehind." + name + ".flushed").add(batch.size() - rejectedCount);
+        return batch.size() - rejectedCount;
+    }
+
+    /**
+     * Записывает пачку, отклоненную хранилищем, по одной записи; отклоненные записи
+     * переносятся в файл отклоненных записей
+     * @return число отклоненных записей
+     */
+    private int writeOneByOne(List<T> batch) throws Exception {
+        int rejectedCount = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            T item = batch.get(i);
+            try {
+                writer.write(List.of(item));
+            } catch (Exception e) {
+                if (!rejects.test(e)) {
+                    // Хранилище стало недоступно: оставшиеся записи ждут следующего сброса
+                    requeue(batch.subList(i, batch.size()));
+                    throw e;
+                }
+                reject(item, e);
+                rejectedCount++;
+            }
+        }
+        return rejectedCount;
+    }
+
+    private void reject(T item, Exception e) throws IOException {
+        ByteBuffer buffer = frame(encode(item));
+        synchronized (rejectedPath) {
+            try (FileChannel channel = FileChannel.open(rejectedPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+        }
+        Metrics.counter("writebehind." + name + ".rejected").increment();
+        TraceLog.error("Хранилище отклонило запись буфера " + name + ", она перенесена в " + rejectedPath, e);
+    }
+
+    // Возвращает записи в начало очереди; они остаются в закрытых сегментах до успешного сброса
+    private void requeue(List<T> items) {
+        synchronized (this) {
+            for (int i = items.size() - 1; i >= 0; i--) {
+                pending.addFirst(items.get(i));
+            }
+        }
+        Metrics.counter("writebehind." + name + ".failures").increment();
+    }
+
+    /**
+     * Сбрасывает оставшиеся записи и останавливает фоновый сброс
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+        synchronized (this) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                TraceLog.error("Не удалось закрыть журнал " + segmentPath, e);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            TraceLog.error("Не удалось сбросить буфер " + name, e);
+        }
+    }
+
+    /**
+     * Читает сегменты журнала, оставшиеся после предыдущего запуска.
+     * Оборванная или поврежденная последняя запись сегмента отбрасывается.
+     */
+    private void recover() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, name + "-*" + SEGMENT_SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        segments.sort((a, b) -> Long.compare(segmentNumber(a), segmentNumber(b)));
+
+        for (Path path : segments) {
+            readRecords(path, pending::addLast);
+            sealedSegments.add(path);
+            segmentNumber = Math.max(segmentNumber, segmentNumber(path) + 1);
+        }
+        if (!pending.isEmpty()) {
+            TraceLog.warn("Буфер " + name + ": восстановлено записей из журнала: " + pending.size());
+        }
+    }
+
+    /**
+     * Читает записи файла журнала; оборванная или поврежденная запись завершает чтение
+     */
+    private void readRecords(Path path, Consumer<T> consumer) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+        while (data.remaining() >= 8) {
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length < 0 || length > data.remaining()) {
+                break;
+            }
+            byte[] record = new byte[length];
+            data.get(record);
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            consumer.accept(codec.read(new DataInputStream(new ByteArrayInputStream(record))));
+        }
+    }
+
+    // Запись журнала: длина, контрольная сумма и сериализованная запись
+    private static ByteBuffer frame(byte[] record) {
+        ByteBuffer buffer = ByteBuffer.allocate(record.length + 8);
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        buffer.putInt(record.length).putInt((int) crc.getValue()).put(record).flip();
+        return buffer;
+    }
+
+    private void openSegment() throws IOException {
+        segmentPath = directory.resolve(name + "-" + segmentNumber++ + SEGMENT_SUFFIX);
+        segment = FileChannel.open(segmentPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private void sealSegment() {
+        try {
+            segment.force(true);
+            segment.close();
+        } catch (IOException e) {
+            TraceLog.error("Не удалось закрыть журнал " + segmentPath, e);
+        }
+        sealedSegments.add(segmentPath);
+    }
+
+    private byte[] encode(T item) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            codec.write(out, item);
+        }
+        return bytes.toByteArray();
+    }
+
+    private long segmentNumber(Path path) {
+        String fileName = path.getFileName().toString();
+        try {
+            return Long.parseLong(fileName.substring(name.length() + 1, fileName.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
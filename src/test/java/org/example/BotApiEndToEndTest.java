@@ -0,0 +1,84 @@
+package org.example;
+
+import org.example.Bot.Commands.Factories.CommandFactory;
+import org.example.Bot.WinePairingBot;
+import org.example.DAO.InMemoryCatalog;
+import org.example.DAO.Wine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.generics.BotSession;
+import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Сквозной тест через настоящий long polling и HTTP-клиент библиотеки
+ * против локального фиктивного Bot API
+ */
+class BotApiEndToEndTest {
+    private static final long CHAT_ID = 7L;
+
+    private FakeBotApiServer server;
+    private BotSession session;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        InMemoryCatalog catalog = new InMemoryCatalog();
+        catalog.addWine(new Wine("Мерло", Wine.WineType.Красное, 3, 3));
+        CommandFactory.initialize(catalog, catalog);
+
+        server = new FakeBotApiServer();
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setBaseUrl(server.baseUrl());
+        options.setGetUpdatesTimeout(1);
+        session = new TelegramBotsApi(DefaultBotSession.class)
+                .registerBot(new WinePairingBot("123:test", "test_bot", options));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (session != null && session.isRunning()) {
+            session.stop();
+        }
+        server.close();
+    }
+
+    @Test
+    void conversation_ShouldGoThroughGetUpdatesAndSendMessage() throws Exception {
+        server.enqueueText(CHAT_ID, "/start");
+        server.enqueueText(CHAT_ID, "01.01.1990");
+        server.enqueueText(CHAT_ID, "/wines");
+
+        List<FakeBotApiServer.Call> messages = server.awaitMessages(3, Duration.ofSeconds(10));
+
+        assertEquals(3, messages.size());
+        assertTrue(messages.get(0).getText().contains("Проверка возраста"));
+        assertTrue(messages.get(1).getText().contains("Добро пожаловать"));
+        assertTrue(messages.get(2).getText().contains("Мерло"));
+        assertEquals(CHAT_ID, messages.get(2).getChatId());
+    }
+
+    @Test
+    void tooManyRequests_ShouldBeReportedToUser_AndNotStopPolling() throws Exception {
+        server.rejectNext(1, 1);
+        server.enqueueText(CHAT_ID, "/start");
+
+        List<FakeBotApiServer.Call> messages = server.awaitMessages(1, Duration.ofSeconds(10));
+        assertEquals(1, server.rejectedCount());
+        assertTrue(server.calls().stream()
+                .anyMatch(call -> call.isRejected() && "sendmessage".equalsIgnoreCase(call.getMethod())));
+        assertEquals("Ошибка при отправке сообщения", messages.get(0).getText());
+
+        server.setLatency(Duration.ofMillis(50));
+        server.enqueueText(CHAT_ID, "01.01.1990");
+        messages = server.awaitMessages(2, Duration.ofSeconds(10));
+        assertEquals(2, messages.size(), "Бот должен продолжать получать обновления после ответа 429");
+        assertTrue(messages.get(1).getText().contains("Добро пожаловать"));
+    }
+}
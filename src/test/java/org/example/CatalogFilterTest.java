@@ -0,0 +1,186 @@
+package org.example;
+
+import org.example.Bot.Commands.Factories.CommandFactory;
+import org.example.DAO.Dish;
+import org.example.DAO.InMemoryCatalog;
+import org.example.DAO.Wine;
+import org.example.Search.BitmapIndex;
+import org.example.Search.CatalogFilter;
+import org.example.Sessions.InMemorySessionStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogFilterTest {
+    private static final long CHAT_ID = 48L;
+    private static final Pattern CONDITION = Pattern.compile("(год|танины)(>=|<=|>|<)(\\d+)");
+
+    @Test
+    void parse_ShouldBuildConditions_AndRejectMixedTargets() {
+        CatalogFilter.Query query = CatalogFilter.parse("красные танины>=4 кислотность<=2 регион=\"Долина Луары\"");
+
+        assertEquals(CatalogFilter.Target.WINES, query.getTarget());
+        assertEquals("[тип=красное, танины>=4, кислотность<=2, регион=долина луары]",
+                query.getConditions().toString());
+        assertEquals(CatalogFilter.Target.DISHES, CatalogFilter.parse("десерт время<=30").getTarget(),
+                "«десерт» — категория блюда, а не тип вина");
+
+        assertThrows(IllegalArgumentException.class, () -> CatalogFilter.parse("красное жирность<=2"));
+        assertThrows(IllegalArgumentException.class, () -> CatalogFilter.parse("регион>=Тоскана"));
+        assertThrows(IllegalArgumentException.class, () -> CatalogFilter.parse("танины>=много"));
+    }
+
+    @Test
+    void filter_ShouldIntersectBitmaps_AndFollowCatalogChanges() {
+        CatalogFilter filter = new CatalogFilter();
+        filter.indexAll(List.of(
+                wine(1, Wine.WineType.Красное, 5, 2, "Тоскана"),
+                wine(2, Wine.WineType.Красное, 4, 4, "Тоскана"),
+                wine(3, Wine.WineType.Белое, 2, 1, "Тоскана"),
+                wine(4, Wine.WineType.Красное, 3, 1, "Бордо")), List.of());
+
+        CatalogFilter.Query query = CatalogFilter.parse("красное танины>=4 кислотность<=2 регион=тоскана");
+        assertEquals(List.of(1), filter.find(query, 10).ids());
+
+        filter.wineChanged(wine(4, Wine.WineType.Красное, 4, 2, "Тоскана"));
+        filter.wineDeleted(1);
+        filter.wineChanged(wine(5, Wine.WineType.Красное, 5, 1, "Тоскана"));
+
+        BitmapIndex.Result result = filter.find(query, 10);
+        assertEquals(2, result.count());
+        assertEquals(List.of(5, 4), result.ids(), "Новое вино занимает освободившуюся строку");
+        assertEquals(List.of(3), filter.find(CatalogFilter.parse("тип!=красное"), 10).ids());
+        BitmapIndex.Result first = filter.find(query, 1);
+        assertEquals(2, first.count(), "Лимит ограничивает только список ID");
+        assertEquals(List.of(5), first.ids());
+    }
+
+    @Test
+    void filter_ShouldMatchRanges_AfterIncrementalChanges() {
+        CatalogFilter filter = new CatalogFilter();
+        List<Wine> wines = new ArrayList<>();
+        for (int i = 1; i <= 300; i++) {
+            wines.add(vintageWine(i, i % 5 + 1, 1990 + i % 30));
+        }
+        filter.indexAll(wines, List.of());
+        // Изменения года и танинов, удаления и новые вина, в том числе с новыми значениями атрибутов
+        for (int i = 1; i <= 300; i += 7) {
+            Wine changed = vintageWine(i, (i + 2) % 5 + 1, 1985 + i % 40);
+            filter.wineChanged(changed);
+            wines.set(i - 1, changed);
+        }
+        for (int i = 3; i <= 300; i += 11) {
+            filter.wineDeleted(i);
+        }
+        wines.removeIf(wine -> wine.getId() % 11 == 3);
+        for (int i = 301; i <= 320; i++) {
+            Wine added = vintageWine(i, 5, 1980);
+            filter.wineChanged(added);
+            wines.add(added);
+        }
+
+        for (String query : List.of("год>=2000", "год>2000", "год<=2000", "год<2000", "год<=1980", "год>1980",
+                "год<1985", "год<=1985", "танины>=3 год<2010", "танины<3 год>1995 год<=2020")) {
+            long expected = wines.stream().filter(wine -> matches(wine, query)).count();
+            assertEquals(expected, filter.find(CatalogFilter.parse(query), 0).count(), query);
+        }
+    }
+
+    @Test
+    void find_ShouldListMatchingWines() {
+        InMemoryCatalog catalog = new InMemoryCatalog();
+        catalog.addWine(wine(0, Wine.WineType.Красное, 5, 2, "Тоскана"));
+        catalog.addWine(wine(0, Wine.WineType.Красное, 2, 2, "Тоскана"));
+        CommandFactory.initialize(catalog, catalog);
+        CommandFactory.useSessionStore(new InMemorySessionStore());
+
+        String text = CommandFactory.getCommand("/find красное танины>=4", CHAT_ID).execute("48", "").getText();
+        assertTrue(text.contains("Найдено: 1"), text);
+
+        catalog.addWine(wine(0, Wine.WineType.Красное, 4, 3, "Бордо"));
+        text = CommandFactory.getCommand("/find красное танины>=4", CHAT_ID).execute("48", "").getText();
+        assertTrue(text.contains("Найдено: 2"), "Новое вино должно сразу попадать в результаты: " + text);
+
+        assertEquals("Неизвестная характеристика: цвет",
+                CommandFactory.getCommand("/find цвет=красный", CHAT_ID).execute("48", "").getText());
+    }
+
+    /**
+     * Задержка запроса на миллионе вин. Зависит от машины, поэтому в обычном прогоне
+     * пропускается: mvn test -Dtest=CatalogFilterTest -Dperf=true [-Dperf.wines=1000000 -Dperf.filterMaxMicros=1000]
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "perf", matches = "true")
+    void find_ShouldAnswerCombinedQueries_WithinMillisecond_OnMillionWines() {
+        int count = Integer.getInteger("perf.wines", 1_000_000);
+        List<Wine> wines = new ArrayList<>(count);
+        String[] regions = {"Тоскана", "Бордо", "Риоха", "Мозель", "Пьемонт"};
+        Wine.WineType[] types = Wine.WineType.values();
+        for (int i = 1; i <= count; i++) {
+            Wine wine = new Wine("Вино " + i, types[i % types.length], i % 5 + 1, i / 7 % 5 + 1);
+            wine.setId(i);
+            wine.setRegion(regions[i / 3 % regions.length]);
+            wine.setVintage(1990 + i % 30);
+            wines.add(wine);
+        }
+        CatalogFilter filter = new CatalogFilter();
+        filter.indexAll(wines, List.of());
+        CatalogFilter.Query query = CatalogFilter.parse("красное танины>=4 кислотность<=2 регион=Тоскана год>=2010");
+
+        long expected = wines.stream().filter(w -> w.getType() == Wine.WineType.Красное && w.getTannins() >= 4
+                && w.getAcidity() <= 2 && w.getRegion().equals("Тоскана") && w.getVintage() >= 2010).count();
+        assertEquals(expected, filter.find(query, 10).count());
+
+        for (int i = 0; i < 200; i++) {
+            filter.find(query, 10);
+        }
+        LatencyRecorder latencies = new LatencyRecorder();
+        for (int i = 0; i < 200; i++) {
+            long start = System.nanoTime();
+            filter.find(query, 10);
+            latencies.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+        System.out.printf(Locale.ROOT, "Фильтр по %d винам: p50 %d мкс, p99 %d мкс%n",
+                count, latencies.percentile(50), latencies.percentile(99));
+
+        long maxMicros = Long.getLong("perf.filterMaxMicros", 1000);
+        assertTrue(latencies.percentile(50) < maxMicros, "Медиана запроса: " + latencies.percentile(50) + " мкс");
+    }
+
+    private static Wine vintageWine(int id, int tannins, int vintage) {
+        Wine wine = wine(id, Wine.WineType.Красное, tannins, 3, "Тоскана");
+        wine.setVintage(vintage);
+        return wine;
+    }
+
+    // Проверка условий вида «атрибут операция число» перебором
+    private static boolean matches(Wine wine, String query) {
+        for (String condition : query.split(" ")) {
+            Matcher matcher = CONDITION.matcher(condition);
+            assertTrue(matcher.matches(), condition);
+            int value = matcher.group(1).equals("год") ? wine.getVintage() : wine.getTannins();
+            int bound = Integer.parseInt(matcher.group(3));
+            String operator = matcher.group(2);
+            if (operator.equals(">=") && value < bound || operator.equals(">") && value <= bound
+                    || operator.equals("<=") && value > bound || operator.equals("<") && value >= bound) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Wine wine(int id, Wine.WineType type, int tannins, int acidity, String region) {
+        Wine wine = new Wine("Вино " + id + " " + region, type, tannins, acidity);
+        wine.setId(id);
+        wine.setRegion(region);
+        return wine;
+    }
+}
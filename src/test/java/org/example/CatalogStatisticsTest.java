@@ -0,0 +1,95 @@
+package org.example;
+
+import org.example.Bot.Commands.Factories.CommandFactory;
+import org.example.DAO.Dish;
+import org.example.DAO.InMemoryCatalog;
+import org.example.DAO.Wine;
+import org.example.Search.CatalogStatistics;
+import org.example.Sessions.InMemorySessionStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogStatisticsTest {
+    private static final long CHAT_ID = 49L;
+
+    @Test
+    void statistics_ShouldCountVintageRanges_AndFollowWrites() {
+        CatalogStatistics statistics = new CatalogStatistics();
+        statistics.indexAll(List.of(
+                wine(1, Wine.WineType.Красное, "Тоскана", 2015),
+                wine(2, Wine.WineType.Красное, "Тоскана", 2019),
+                wine(3, Wine.WineType.Красное, "Тоскана", 2020),
+                wine(4, Wine.WineType.Белое, "Тоскана", 2016),
+                wine(5, Wine.WineType.Красное, "Бордо", 2017)), List.of());
+
+        assertEquals(2, statistics.countWines(Wine.WineType.Красное, "тоскана", 2015, 2019));
+        assertEquals(3, statistics.countWines(null, "Тоскана", 2015, 2019));
+        assertEquals(4, statistics.countWines(Wine.WineType.Красное, null, 0, 0));
+
+        statistics.wineChanged(wine(3, Wine.WineType.Красное, "Тоскана", 2018));
+        statistics.wineChanged(wine(5, Wine.WineType.Красное, "Тоскана", 2017));
+        statistics.wineDeleted(4);
+
+        assertEquals(4, statistics.countWines(Wine.WineType.Красное, "Тоскана", 2015, 2019),
+                "Изменение года и региона должно переносить вино между агрегатами");
+        assertEquals(0, statistics.countWines(null, "Бордо", 0, 0));
+        assertEquals(List.of(Map.entry("Тоскана", 4)), statistics.topRegions(5),
+                "Регион без вин не должен показываться");
+        assertEquals(Map.of(2010, 4), statistics.winesByDecade());
+        assertEquals(4, statistics.winesByType().get(Wine.WineType.Красное));
+        assertEquals(0, statistics.winesByType().get(Wine.WineType.Белое));
+    }
+
+    @Test
+    void statistics_ShouldKeepDishDistributions() {
+        CatalogStatistics statistics = new CatalogStatistics();
+        Dish steak = dish(1, Dish.DishCategory.Мясо, 5, 60);
+        statistics.indexAll(List.of(), List.of(steak, dish(2, Dish.DishCategory.Рыба, 2, 20)));
+
+        assertEquals(40, statistics.averageCookingMinutes());
+        statistics.dishChanged(dish(1, Dish.DishCategory.Рыба, 4, 30));
+
+        assertEquals(25, statistics.averageCookingMinutes());
+        assertEquals(2, statistics.dishesByCategory().get(Dish.DishCategory.Рыба));
+        assertEquals(0, statistics.dishesByCategory().get(Dish.DishCategory.Мясо));
+        assertArrayEquals(new int[]{0, 0, 1, 0, 1, 0}, statistics.fatDistribution());
+    }
+
+    @Test
+    void stats_ShouldAnswerSummaryAndRangeQueries() {
+        InMemoryCatalog catalog = new InMemoryCatalog();
+        catalog.addWine(wine(0, Wine.WineType.Красное, "Тоскана", 2015));
+        catalog.addWine(wine(0, Wine.WineType.Красное, "Тоскана", 2012));
+        CommandFactory.initialize(catalog, catalog);
+        CommandFactory.useSessionStore(new InMemorySessionStore());
+
+        String summary = CommandFactory.getCommand("/stats", CHAT_ID).execute("49", "").getText();
+        assertTrue(summary.contains("Вин: 2") && summary.contains("Тоскана 2"), summary);
+
+        catalog.addWine(wine(0, Wine.WineType.Красное, "Тоскана", 2019));
+        String range = CommandFactory.getCommand("/stats красное регион=Тоскана год>=2015 год<=2019", CHAT_ID)
+                .execute("49", "").getText();
+        assertTrue(range.endsWith(" 2"), "Новое вино должно сразу учитываться: " + range);
+        assertTrue(CommandFactory.getCommand("/stats танины>=4", CHAT_ID).execute("49", "").getText()
+                .contains("/find"));
+    }
+
+    private static Wine wine(int id, Wine.WineType type, String region, int vintage) {
+        Wine wine = new Wine("Вино " + region + " " + vintage, type, 3, 3);
+        wine.setId(id);
+        wine.setRegion(region);
+        wine.setVintage(vintage);
+        return wine;
+    }
+
+    private static Dish dish(int id, Dish.DishCategory category, int fat, int minutes) {
+        Dish dish = new Dish("Блюдо " + id, category, fat, 3);
+        dish.setId(id);
+        dish.setCookingTime(minutes);
+        return dish;
+    }
+}
@@ -0,0 +1,263 @@
+package org.example;
+
+import org.example.Cluster.ClusterRouter;
+import org.example.Cluster.ClusterServer;
+import org.example.Cluster.HashRing;
+import org.example.Cluster.PollingLeader;
+import org.example.Cluster.StaticMembership;
+import org.example.Coordination.JobCoordinator;
+import org.example.DAO.Session;
+import org.example.Sessions.InMemorySessionStore;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.generics.BotSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ClusterTest {
+
+    @Test
+    void hashRing_ShouldBalanceChats_AndMoveOnlyChatsOfNewNode() {
+        HashRing three = new HashRing(List.of("a", "b", "c"), 128);
+        HashRing four = new HashRing(List.of("a", "b", "c", "d"), 128);
+        int chats = 30_000;
+        Map<String, Integer> counts = new HashMap<>();
+        int moved = 0;
+        for (long chatId = 1; chatId <= chats; chatId++) {
+            String before = three.ownerOf(chatId);
+            String after = four.ownerOf(chatId);
+            counts.merge(before, 1, Integer::sum);
+            if (!before.equals(after)) {
+                moved++;
+                assertEquals("d", after, "Чаты должны переходить только к новому узлу");
+            }
+        }
+
+        for (int count : counts.values()) {
+            assertTrue(count > chats / 5 && count < chats / 2, "Неравномерное распределение: " + counts);
+        }
+        assertTrue(moved > chats / 8 && moved < chats * 3 / 8, "Перешло чатов: " + moved);
+        assertEquals(three.ownerOf(42), new HashRing(List.of("c", "a", "b"), 128).ownerOf(42),
+                "Кольцо не должно зависеть от порядка узлов");
+    }
+
+    @Test
+    void forwardIfRemote_ShouldDeliverUpdateToOwner() throws Exception {
+        List<Update> handledByA = new CopyOnWriteArrayList<>();
+        List<Update> handledByB = new CopyOnWriteArrayList<>();
+        try (Node a = new Node("a", handledByA::add); Node b = new Node("b", handledByB::add)) {
+            StaticMembership membership = new StaticMembership(Map.of("a", a.url(), "b", b.url()));
+            ClusterRouter router = a.router(membership);
+            router.refresh();
+
+            long remoteChat = chatOwnedBy(router, "b");
+            long localChat = chatOwnedBy(router, "a");
+            for (int i = 0; i < 5; i++) {
+                assertTrue(router.forwardIfRemote(textUpdate(remoteChat, "сообщение " + i)));
+            }
+            assertFalse(router.forwardIfRemote(textUpdate(localChat, "/wines")));
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (handledByB.size() < 5 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(5, handledByB.size());
+            for (int i = 0; i < 5; i++) {
+                assertEquals("сообщение " + i, handledByB.get(i).getMessage().getText(),
+                        "Сообщения одного чата должны приходить владельцу по порядку");
+                assertEquals(remoteChat, handledByB.get(i).getMessage().getChatId());
+            }
+            assertTrue(handledByA.isEmpty());
+            router.close();
+        }
+    }
+
+    @Test
+    void refresh_ShouldHandOffSessions_WhenNodeJoins() throws Exception {
+        try (Node a = new Node("a", update -> { }); Node b = new Node("b", update -> { })) {
+            StaticMembership membership = new StaticMembership(Map.of("a", a.url()));
+            ClusterRouter router = a.router(membership);
+            router.refresh();
+            for (long chatId = 1; chatId <= 100; chatId++) {
+                a.sessions.update(chatId, session -> session.withAgeVerified(true).withState("CONFIRM_FAVORITE"));
+            }
+
+            membership.setNodes(Map.of("a", a.url(), "b", b.url()));
+            router.refresh();
+
+            int movedToB = 0;
+            for (long chatId = 1; chatId <= 100; chatId++) {
+                Session atA = a.sessions.get(chatId);
+                Session atB = b.sessions.get(chatId);
+                if (router.isLocal(chatId)) {
+                    assertTrue(atA.isAgeVerified());
+                    assertFalse(atB.isAgeVerified());
+                } else {
+                    movedToB++;
+                    assertFalse(atA.isAgeVerified(), "Перешедшая сессия не должна оставаться на старом узле");
+                    assertTrue(atB.isAgeVerified());
+                    assertEquals("CONFIRM_FAVORITE", atB.getState());
+                }
+            }
+            assertTrue(movedToB > 0);
+            router.close();
+        }
+    }
+
+    @Test
+    void forward_ShouldHandleLocally_OnlyWhenOwnerUnreachable() throws Exception {
+        List<Update> handledByA = new CopyOnWriteArrayList<>();
+        try (Node a = new Node("a", handledByA::add);
+             Node b = new Node("b", update -> {
+                 throw new IllegalStateException("Ошибка обработки на владельце");
+             })) {
+            String closedUrl;
+            try (Node c = new Node("c", update -> { })) {
+                closedUrl = c.url();
+            }
+            StaticMembership membership = new StaticMembership(Map.of("a", a.url(), "b", b.url()));
+            ClusterRouter router = a.router(membership);
+            router.refresh();
+
+            assertTrue(router.forwardIfRemote(textUpdate(chatOwnedBy(router, "b"), "ошибка владельца")));
+            Thread.sleep(300);
+            assertTrue(handledByA.isEmpty(), "Обновление, дошедшее до владельца, не должно обрабатываться дважды");
+
+            membership.setNodes(Map.of("a", a.url(), "b", closedUrl));
+            router.refresh();
+            assertTrue(router.forwardIfRemote(textUpdate(chatOwnedBy(router, "b"), "владелец недоступен")));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (handledByA.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, handledByA.size(), "Недоставленное обновление должно обрабатываться на месте");
+            assertEquals("владелец недоступен", handledByA.get(0).getMessage().getText());
+            router.close();
+        }
+    }
+
+    @Test
+    void pollingLeader_ShouldPollOnlyWhileLeader() throws Exception {
+        AtomicBoolean leader = new AtomicBoolean(false);
+        JobCoordinator coordinator = mock(JobCoordinator.class);
+        when(coordinator.isLeader(PollingLeader.JOB)).thenAnswer(invocation -> leader.get());
+        when(coordinator.nodeId()).thenReturn("a");
+        AtomicBoolean running = new AtomicBoolean();
+        BotSession session = mock(BotSession.class);
+        when(session.isRunning()).thenAnswer(invocation -> running.get());
+        doAnswer(invocation -> {
+            running.set(true);
+            return null;
+        }).when(session).start();
+        doAnswer(invocation -> {
+            running.set(false);
+            return null;
+        }).when(session).stop();
+        AtomicInteger registrations = new AtomicInteger();
+        PollingLeader polling = new PollingLeader(coordinator, () -> {
+            registrations.incrementAndGet();
+            session.start();
+            return session;
+        });
+
+        polling.check();
+        assertFalse(polling.isPolling(), "Экземпляр, не ведущий задачу, не должен опрашивать Telegram");
+        assertEquals(0, registrations.get());
+
+        leader.set(true);
+        polling.check();
+        assertTrue(polling.isPolling());
+        leader.set(false);
+        polling.check();
+        assertFalse(polling.isPolling(), "Потерявший задачу экземпляр должен остановить опрос");
+        leader.set(true);
+        polling.check();
+        assertTrue(polling.isPolling());
+        assertEquals(1, registrations.get(), "Бот регистрируется один раз, затем опрос перезапускается");
+
+        polling.close();
+        assertFalse(polling.isPolling());
+    }
+
+    private static long chatOwnedBy(ClusterRouter router, String node) {
+        for (long chatId = 1; ; chatId++) {
+            if (router.ownerOf(chatId).equals(node)) {
+                return chatId;
+            }
+        }
+    }
+
+    @Test
+    void server_ShouldRejectRequests_WithoutMatchingSecret() throws Exception {
+        assertThrows(NullPointerException.class, () -> new ClusterServer(
+                new InetSocketAddress("127.0.0.1", 0), update -> { }, new InMemorySessionStore(), null));
+        assertThrows(IllegalArgumentException.class, () -> new ClusterServer(
+                new InetSocketAddress("127.0.0.1", 0), update -> { }, new InMemorySessionStore(), " "));
+
+        try (Node node = new Node("a", update -> { })) {
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest.Builder health = HttpRequest.newBuilder(URI.create(node.url() + "/health"));
+            assertEquals(403, client.send(health.build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+            assertEquals(403, client.send(health.header("X-Cluster-Secret", "secreT").build(),
+                    HttpResponse.BodyHandlers.discarding()).statusCode());
+            assertEquals(204, client.send(HttpRequest.newBuilder(URI.create(node.url() + "/health"))
+                    .header("X-Cluster-Secret", "secret").build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+        }
+    }
+
+    private static Update textUpdate(long chatId, String text) {
+        Update update = new Update();
+        update.setUpdateId((int) chatId);
+        Message message = new Message();
+        message.setMessageId(1);
+        message.setChat(new Chat(chatId, "private"));
+        message.setText(text);
+        update.setMessage(message);
+        return update;
+    }
+
+    /**
+     * Узел кластера на локальном порту со своим хранилищем сессий
+     */
+    private static final class Node implements AutoCloseable {
+        final String id;
+        final InMemorySessionStore sessions = new InMemorySessionStore();
+        final Consumer<Update> handler;
+        final ClusterServer server;
+
+        Node(String id, Consumer<Update> handler) throws Exception {
+            this.id = id;
+            this.handler = handler;
+            this.server = new ClusterServer(new InetSocketAddress("127.0.0.1", 0), handler, sessions, "secret");
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + server.port();
+        }
+
+        ClusterRouter router(StaticMembership membership) {
+            return new ClusterRouter(id, url(), membership, sessions, handler, "secret");
+        }
+
+        @Override
+        public void close() {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.example;
+
+import org.example.Bot.CommandDispatcher;
+import org.example.Bot.Commands.Command;
+import org.example.Tracing.TraceContext;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandDispatcherTest {
+
+    @Test
+    void dispatchInOrder_ShouldAnswerChatMessagesInOrder_WithoutBlockingOtherChats() throws Exception {
+        ExecutorService executor = CommandDispatcher.newExecutor("test-command", 4);
+        CommandDispatcher dispatcher = new CommandDispatcher(executor, Duration.ofSeconds(5));
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> replies = new CopyOnWriteArrayList<>();
+        List<String> created = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<Void> slow = dispatcher.dispatchInOrder("1", () -> {
+            created.add("первое");
+            return (chatId, input) -> {
+                await(release);
+                return new SendMessage(chatId, "первое");
+            };
+        }, "первое", response -> replies.add(response.getText()));
+        CompletableFuture<Void> fast = dispatcher.dispatchInOrder("1", () -> {
+            created.add("второе");
+            return echo();
+        }, "второе", response -> replies.add(response.getText()));
+        CompletableFuture<Void> other = dispatcher.dispatchInOrder("2", () -> echo(), "другой чат",
+                response -> replies.add(response.getText()));
+
+        other.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("другой чат"), replies, "Сообщение другого чата не должно ждать медленную команду");
+        assertEquals(List.of("первое"), created,
+                "Следующая команда чата создается только после ответа на предыдущую");
+
+        release.countDown();
+        CompletableFuture.allOf(slow, fast).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("другой чат", "первое", "второе"), replies);
+        executor.shutdown();
+    }
+
+    @Test
+    void dispatchInOrder_ShouldAnswerWithError_WhenCommandCannotBeCreated() throws Exception {
+        ExecutorService executor = CommandDispatcher.newExecutor("test-command", 1);
+        CommandDispatcher dispatcher = new CommandDispatcher(executor, Duration.ofSeconds(5));
+        List<String> replies = new CopyOnWriteArrayList<>();
+
+        dispatcher.dispatchInOrder("1", () -> {
+            throw new IllegalStateException("сессия недоступна");
+        }, "/wines", response -> replies.add(response.getText()));
+        dispatcher.dispatchInOrder("1", CommandDispatcherTest::echo, "дальше",
+                response -> replies.add(response.getText())).get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, replies.size(), "Ошибка одной команды не должна останавливать очередь чата");
+        assertEquals("дальше", replies.get(1));
+        executor.shutdown();
+    }
+
+    @Test
+    void dispatchInOrder_ShouldSkipReply_WhenNoCommandCreated() throws Exception {
+        ExecutorService executor = CommandDispatcher.newExecutor("test-command", 1);
+        CommandDispatcher dispatcher = new CommandDispatcher(executor, Duration.ofSeconds(5));
+        List<String> replies = new CopyOnWriteArrayList<>();
+
+        dispatcher.dispatchInOrder("1", () -> null, "устаревшая кнопка",
+                response -> replies.add(response.getText()));
+        dispatcher.dispatchInOrder("1", CommandDispatcherTest::echo, "дальше",
+                response -> replies.add(response.getText())).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("дальше"), replies);
+        executor.shutdown();
+    }
+
+    @Test
+    void dispatch_ShouldHideErrorDetails_AndShowTraceId() throws Exception {
+        ExecutorService executor = CommandDispatcher.newExecutor("test-command", 1);
+        CommandDispatcher dispatcher = new CommandDispatcher(executor, Duration.ofSeconds(5));
+        TraceContext trace = TraceContext.start(7L, 1L, "/wines");
+
+        String text;
+        try (TraceContext.Scope ignored = trace.attach()) {
+            text = dispatcher.dispatch((chatId, input) -> {
+                throw new IllegalStateException("password authentication failed for user \"bot\"");
+            }, "1", "/wines").get(5, TimeUnit.SECONDS).getText();
+        }
+
+        assertFalse(text.contains("password"), "Подробности ошибки не должны попадать в ответ: " + text);
+        assertTrue(text.contains(trace.getTraceId()), text);
+        executor.shutdown();
+    }
+
+    private static Command echo() {
+        return SendMessage::new;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.example;
+
+import org.example.Bot.Commands.Factories.CommandFactory;
+import org.example.DAO.Dish;
+import org.example.DAO.DishDAO;
+import org.example.DAO.InMemoryCatalog;
+import org.example.DAO.QueryRunner;
+import org.example.Search.DishFacetIndex;
+import org.example.Sessions.InMemorySessionStore;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DishFacetTest {
+    private static final long CHAT_ID = 31L;
+
+    @Test
+    void facetIndex_ShouldKeepCountsAndPages_OnDishWrites() {
+        DishFacetIndex index = new DishFacetIndex();
+        index.indexAll(List.of(
+                dish(1, "Стейк", Dish.DishCategory.Мясо),
+                dish(2, "Лосось", Dish.DishCategory.Рыба),
+                dish(3, "Утка", Dish.DishCategory.Мясо)));
+
+        assertEquals(2, index.counts().get(Dish.DishCategory.Мясо));
+        assertEquals(0, index.counts().get(Dish.DishCategory.Сыр));
+
+        index.dishChanged(dish(2, "Лосось", Dish.DishCategory.Мясо));
+        index.dishChanged(dish(4, "Бри", Dish.DishCategory.Сыр));
+        index.dishDeleted(1);
+
+        assertEquals(0, index.counts().get(Dish.DishCategory.Рыба), "Блюдо должно перейти в новую категорию");
+        assertEquals(List.of(2, 3), index.page(Dish.DishCategory.Мясо, 0, 10));
+        assertEquals(List.of(3), index.page(Dish.DishCategory.Мясо, 1, 10));
+        assertEquals(1, index.counts().get(Dish.DishCategory.Сыр));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void facetIndex_ShouldSliceDeepPages_InIdOrder() {
+        DishFacetIndex index = new DishFacetIndex();
+        List<Dish> dishes = new ArrayList<>();
+        // ID идут не по порядку, чтобы массив категории рос вставками в середину
+        for (int i = 0; i < 1000; i++) {
+            int id = (i * 7919) % 1000 + 1;
+            dishes.add(dish(id, "Блюдо " + id, id % 2 == 0 ? Dish.DishCategory.Мясо : Dish.DishCategory.Рыба));
+        }
+        index.indexAll(dishes);
+        index.dishDeleted(500);
+        index.dishChanged(dish(502, "Блюдо 502", Dish.DishCategory.Рыба));
+
+        assertEquals(498, index.counts().get(Dish.DishCategory.Мясо));
+        assertEquals(List.of(498, 504, 506), index.page(Dish.DishCategory.Мясо, 248, 3));
+        assertEquals(List.of(501, 502, 503), index.page(Dish.DishCategory.Рыба, 250, 3));
+        assertEquals(List.of(1000), index.page(Dish.DishCategory.Мясо, 497, 10));
+        assertEquals(List.of(), index.page(Dish.DishCategory.Мясо, 498, 10));
+    }
+
+    @Test
+    void dishes_ShouldOfferCategoriesWithCounts_AndPageWithinCategory() throws Exception {
+        InMemoryCatalog catalog = new InMemoryCatalog();
+        for (int i = 1; i <= 12; i++) {
+            catalog.addDish("Мясное блюдо " + i, "Мясо", 3, 4);
+        }
+        catalog.addDish("Лосось", "Рыба", 3, 4);
+        CommandFactory.initialize(catalog, catalog);
+        CommandFactory.useSessionStore(new InMemorySessionStore());
+
+        SendMessage categories = run(CommandFactory.getCommand("/dishes", CHAT_ID).execute("31", ""));
+        List<String> labels = buttons(categories).stream().map(InlineKeyboardButton::getText).toList();
+        assertEquals(List.of("Мясо (12)", "Рыба (1)", "Все блюда (13)"), labels);
+
+        String meat = buttons(categories).get(0).getCallbackData();
+        SendMessage firstPage = run(CommandFactory.getCallbackCommand(meat, CHAT_ID).execute("31", ""));
+        assertTrue(firstPage.getText().startsWith("Мясо (12), стр. 1 из 2"));
+        assertFalse(firstPage.getText().contains("Лосось"));
+
+        catalog.addDish("Утка", "мясо", 3, 4);
+        String next = buttons(firstPage).stream().filter(b -> b.getText().equals("▶")).findFirst()
+                .orElseThrow().getCallbackData();
+        SendMessage secondPage = run(CommandFactory.getCallbackCommand(next, CHAT_ID).execute("31", ""));
+        assertTrue(secondPage.getText().startsWith("Мясо (13), стр. 2 из 2"),
+                "Новое блюдо должно сразу учитываться в категории");
+        assertTrue(secondPage.getText().contains("Утка"));
+
+        assertTrue(CommandFactory.getCommand("/dishes рыба", CHAT_ID).execute("31", "").getText()
+                .contains("Лосось"));
+    }
+
+    @Test
+    void dishDao_ShouldStoreAndSearchCategoryByEnumName() throws Exception {
+        QueryRunner queries = mock(QueryRunner.class);
+        when(queries.insert(anyString(), any())).thenReturn(7);
+        when(queries.query(anyString(), any(), any())).thenReturn(List.of());
+        DishDAO dao = new DishDAO(queries);
+
+        assertTrue(dao.addDish("Стейк", "МЯСО", 4, 5));
+        dao.findDishesByCategory("мясо");
+
+        ArgumentCaptor<QueryRunner.Binder> binders = ArgumentCaptor.forClass(QueryRunner.Binder.class);
+        verify(queries).insert(anyString(), binders.capture());
+        verify(queries).query(anyString(), binders.capture(), any());
+        for (QueryRunner.Binder binder : binders.getAllValues()) {
+            PreparedStatement stmt = mock(PreparedStatement.class);
+            binder.bind(stmt);
+            verify(stmt).setString(anyInt(), eq("Мясо"));
+        }
+        assertTrue(dao.findDishesByCategory("Паста").isEmpty());
+    }
+
+    private static SendMessage run(SendMessage message) {
+        assertNotNull(message);
+        return message;
+    }
+
+    private static List<InlineKeyboardButton> buttons(SendMessage message) {
+        assertInstanceOf(InlineKeyboardMarkup.class, message.getReplyMarkup());
+        return ((InlineKeyboardMarkup) message.getReplyMarkup()).getKeyboard().stream()
+                .flatMap(List::stream)
+                .toList();
+    }
+
+    private static Dish dish(int id, String name, Dish.DishCategory category) {
+        Dish dish = new Dish(name, category, 3, 3);
+        dish.setId(id);
+        return dish;
+    }
+}
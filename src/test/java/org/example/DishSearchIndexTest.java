@@ -0,0 +1,64 @@
+package org.example;
+
+import org.example.DAO.Dish;
+import org.example.Search.DishSearchIndex;
+import org.example.Search.RussianStemmer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DishSearchIndexTest {
+
+    private DishSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new DishSearchIndex();
+        index.indexAll(List.of(
+                dish(1, "Паста с грибами", "Паста, шампиньоны, сливки, пармезан",
+                        "Обжарьте грибы, добавьте сливки и смешайте с пастой."),
+                dish(2, "Грибной суп", "Белые грибы, картофель, лук",
+                        "Отварите грибы с картофелем."),
+                dish(3, "Стейк", "Говядина, соль, перец",
+                        "Обжарьте мясо на сильном огне.")));
+    }
+
+    @Test
+    void stem_ShouldReduceWordFormsToCommonStem() {
+        assertEquals(RussianStemmer.stem("грибы"), RussianStemmer.stem("грибами"));
+        assertEquals(RussianStemmer.stem("сливки"), RussianStemmer.stem("сливками"));
+    }
+
+    @Test
+    void search_ShouldRankDishesMatchingAllTermsFirst() {
+        List<DishSearchIndex.Hit> hits = index.search("грибы сливки", 10);
+
+        assertEquals(2, hits.size());
+        assertEquals(1, hits.get(0).getDishId(), "Блюдо с грибами и сливками должно быть первым");
+        assertEquals(2, hits.get(1).getDishId());
+    }
+
+    @Test
+    void dishChanged_ShouldReindexDishIncrementally() {
+        Dish steak = dish(3, "Стейк с грибным соусом", "Говядина, лисички, сливки", null);
+        index.dishChanged(steak);
+        index.dishDeleted(1);
+
+        List<DishSearchIndex.Hit> hits = index.search("сливки", 10);
+
+        assertEquals(1, hits.size());
+        assertEquals(3, hits.get(0).getDishId());
+        assertEquals(2, index.size());
+    }
+
+    private static Dish dish(int id, String name, String ingredients, String recipe) {
+        Dish dish = new Dish(name, Dish.DishCategory.Мясо, 3, 3);
+        dish.setId(id);
+        dish.setIngredients(ingredients);
+        dish.setRecipe(recipe);
+        return dish;
+    }
+}
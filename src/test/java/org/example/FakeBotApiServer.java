@@ -0,0 +1,290 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Встраиваемый фиктивный сервер Telegram Bot API для интеграционных и нагрузочных тестов.
+ * Отдает подготовленные обновления через getUpdates (long polling), записывает
+ * вызовы sendMessage и остальных методов с временем получения, умеет добавлять
+ * задержку ответа и отвечать 429 Too Many Requests.
+ * Бот подключается к нему через DefaultBotOptions.setBaseUrl({@link #baseUrl()}).
+ */
+class FakeBotApiServer implements AutoCloseable {
+    // Дольше этого getUpdates не держится, чтобы сессия бота быстро останавливалась
+    private static final long MAX_POLL_MILLIS = 500;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final BlockingQueue<ObjectNode> updates = new LinkedBlockingQueue<>();
+    private final List<Call> calls = new CopyOnWriteArrayList<>();
+    private final AtomicInteger updateIds = new AtomicInteger();
+    private final AtomicInteger messageIds = new AtomicInteger();
+    private final AtomicInteger rejectRemaining = new AtomicInteger();
+    private final AtomicInteger rejected = new AtomicInteger();
+    private volatile int retryAfterSeconds;
+    private volatile long latencyMillis;
+
+    /**
+     * Вызов метода Bot API
+     */
+    static final class Call {
+        private final String method;
+        private final JsonNode body;
+        private final long receivedNanos;
+        private final boolean rejected;
+
+        Call(String method, JsonNode body, long receivedNanos, boolean rejected) {
+            this.method = method;
+            this.body = body;
+            this.receivedNanos = receivedNanos;
+            this.rejected = rejected;
+        }
+
+        String getMethod() {
+            return method;
+        }
+
+        long getChatId() {
+            JsonNode chatId = body.get("chat_id");
+            return chatId == null ? 0 : Long.parseLong(chatId.asText());
+        }
+
+        String getText() {
+            JsonNode text = body.get("text");
+            return text == null ? null : text.asText();
+        }
+
+        long getReceivedNanos() {
+            return receivedNanos;
+        }
+
+        /**
+         * @return true, если на вызов был отправлен ответ 429
+         */
+        boolean isRejected() {
+            return rejected;
+        }
+    }
+
+    /**
+     * Запускает сервер на свободном порту локального интерфейса
+     */
+    FakeBotApiServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fake-bot-api");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * @return адрес для DefaultBotOptions.setBaseUrl (токен дописывается клиентом)
+     */
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/bot";
+    }
+
+    /**
+     * Ставит в очередь текстовое сообщение пользователя
+     * @return update_id нового обновления
+     */
+    int enqueueText(long chatId, String text) {
+        int updateId = updateIds.incrementAndGet();
+        ObjectNode update = mapper.createObjectNode();
+        update.put("update_id", updateId);
+        ObjectNode message = update.putObject("message");
+        message.put("message_id", updateId);
+        message.put("date", System.currentTimeMillis() / 1000);
+        message.put("text", text);
+        ObjectNode chat = message.putObject("chat");
+        chat.put("id", chatId);
+        chat.put("type", "private");
+        ObjectNode from = message.putObject("from");
+        from.put("id", chatId);
+        from.put("is_bot", false);
+        from.put("first_name", "User " + chatId);
+        updates.add(update);
+        return updateId;
+    }
+
+    /**
+     * Следующие count вызовов (кроме getUpdates) получат 429 Too Many Requests
+     */
+    void rejectNext(int count, int retryAfter) {
+        retryAfterSeconds = retryAfter;
+        rejectRemaining.set(count);
+    }
+
+    /**
+     * Задержка перед ответом на вызовы, кроме getUpdates
+     */
+    void setLatency(Duration latency) {
+        latencyMillis = latency.toMillis();
+    }
+
+    /**
+     * @return число ответов 429
+     */
+    int rejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * @return все записанные вызовы, кроме getUpdates
+     */
+    List<Call> calls() {
+        return new ArrayList<>(calls);
+    }
+
+    /**
+     * @return принятые (не отклоненные) вызовы sendMessage
+     */
+    List<Call> sentMessages() {
+        List<Call> messages = new ArrayList<>();
+        for (Call call : calls) {
+            if ("sendMessage".equalsIgnoreCase(call.getMethod()) && !call.isRejected()) {
+                messages.add(call);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Ждет, пока бот отправит не меньше count сообщений
+     * @return отправленные сообщения
+     */
+    List<Call> awaitMessages(int count, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        List<Call> messages = sentMessages();
+        while (messages.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            messages = sentMessages();
+        }
+        return messages;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long received = System.nanoTime();
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            String method = path.substring(path.lastIndexOf('/') + 1);
+            JsonNode body = readBody(exchange);
+
+            if ("getUpdates".equalsIgnoreCase(method)) {
+                respond(exchange, 200, ok(pollUpdates(body)));
+                return;
+            }
+
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            boolean reject = rejectRemaining.getAndUpdate(n -> Math.max(0, n - 1)) > 0;
+            calls.add(new Call(method, body, received, reject));
+            if (reject) {
+                rejected.incrementAndGet();
+                ObjectNode error = mapper.createObjectNode();
+                error.put("ok", false);
+                error.put("error_code", 429);
+                error.put("description", "Too Many Requests: retry after " + retryAfterSeconds);
+                error.putObject("parameters").put("retry_after", retryAfterSeconds);
+                respond(exchange, 429, error);
+                return;
+            }
+            JsonNode result = "sendMessage".equalsIgnoreCase(method)
+                    ? message(body)
+                    : mapper.getNodeFactory().booleanNode(true);
+            respond(exchange, 200, ok(result));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ArrayNode pollUpdates(JsonNode body) throws InterruptedException {
+        ArrayNode result = mapper.createArrayNode();
+        long timeoutMillis = body.has("timeout") ? TimeUnit.SECONDS.toMillis(body.get("timeout").asLong()) : 0;
+        int limit = body.has("limit") && body.get("limit").asInt() > 0 ? body.get("limit").asInt() : 100;
+        ObjectNode first = updates.poll(Math.min(timeoutMillis, MAX_POLL_MILLIS), TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return result;
+        }
+        List<ObjectNode> batch = new ArrayList<>();
+        batch.add(first);
+        updates.drainTo(batch, limit - 1);
+        batch.forEach(result::add);
+        return result;
+    }
+
+    private ObjectNode message(JsonNode request) {
+        ObjectNode message = mapper.createObjectNode();
+        message.put("message_id", messageIds.incrementAndGet());
+        message.put("date", System.currentTimeMillis() / 1000);
+        JsonNode chatId = request.get("chat_id");
+        ObjectNode chat = message.putObject("chat");
+        chat.put("id", chatId == null ? 0 : Long.parseLong(chatId.asText()));
+        chat.put("type", "private");
+        if (request.has("text")) {
+            message.put("text", request.get("text").asText());
+        }
+        return message;
+    }
+
+    private ObjectNode ok(JsonNode result) {
+        ObjectNode response = mapper.createObjectNode();
+        response.put("ok", true);
+        response.set("result", result);
+        return response;
+    }
+
+    private JsonNode readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readAllBytes();
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (bytes.length == 0 || contentType == null || !contentType.startsWith("application/json")) {
+                // Документы отправляются multipart-формой: ее содержимое не разбирается
+                return mapper.createObjectNode();
+            }
+            return mapper.readTree(bytes);
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = mapper.writeValueAsString(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
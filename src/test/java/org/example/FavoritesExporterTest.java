@@ -0,0 +1,132 @@
+package org.example;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.example.Utils.ExcelFavoritesManager;
+import org.example.Utils.FavoritesExporter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FavoritesExporterTest {
+
+    @Test
+    void export_ShouldStreamOnlyUsersFavorites_BeyondRowWindow() throws Exception {
+        FavoritesExporter.Export export = FavoritesExporter.export(42L, consumer -> {
+            for (int i = 0; i < 5000; i++) {
+                consumer.accept(new ExcelFavoritesManager.Favorite(i % 2 == 0 ? 42L : 7L,
+                        "Вино " + i, "Блюдо " + i));
+            }
+        });
+
+        try (InputStream in = Files.newInputStream(export.getFile());
+             Workbook workbook = new XSSFWorkbook(in)) {
+            Sheet sheet = workbook.getSheetAt(0);
+            assertEquals(2500, export.getRows());
+            assertEquals(2500, sheet.getLastRowNum(), "Строки за пределами окна SXSSF не должны теряться");
+            assertEquals("Wine", sheet.getRow(0).getCell(0).getStringCellValue());
+            assertEquals("Вино 0", sheet.getRow(1).getCell(0).getStringCellValue());
+            assertEquals("Блюдо 4998", sheet.getRow(2500).getCell(1).getStringCellValue());
+        } finally {
+            Files.deleteIfExists(export.getFile());
+        }
+    }
+
+    @Test
+    void getFavorites_ShouldListOnlyChatsOwnFavorites(@TempDir Path dir) throws Exception {
+        ExcelFavoritesManager.useFile(dir.resolve("favorites.xlsx"));
+        try {
+            assertTrue(ExcelFavoritesManager.addFavorite(42L, "Мерло", "Стейк").isSuccess());
+            assertTrue(ExcelFavoritesManager.addFavorite(7L, "Шабли", "Устрицы").isSuccess());
+            assertTrue(ExcelFavoritesManager.addFavorite(7L, "Мерло", "Стейк").isSuccess(),
+                    "Одно сочетание могут сохранить разные пользователи");
+            assertFalse(ExcelFavoritesManager.addFavorite(42L, "мерло", "стейк").isSuccess());
+
+            assertEquals(List.of("🍷 Мерло\n🍽 Стейк"), ExcelFavoritesManager.getFavorites(42L));
+            // Файл перечитывается заново: избранное чата восстанавливается без чужих сочетаний
+            ExcelFavoritesManager.useFile(dir.resolve("favorites.xlsx"));
+            assertEquals(List.of("🍷 Шабли\n🍽 Устрицы", "🍷 Мерло\n🍽 Стейк"),
+                    ExcelFavoritesManager.getFavorites(7L));
+        } finally {
+            ExcelFavoritesManager.useFile(Path.of("favorites.xlsx"));
+        }
+    }
+
+    @Test
+    void legacyRowsWithoutChat_ShouldStayVisibleToEveryChat(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("favorites.xlsx");
+        // Файл в прежнем формате: колонки Chat еще нет
+        try (Workbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("Pairings");
+            sheet.createRow(0).createCell(0).setCellValue("Wine");
+            sheet.getRow(0).createCell(1).setCellValue("Dish");
+            sheet.createRow(1).createCell(0).setCellValue("Мерло");
+            sheet.getRow(1).createCell(1).setCellValue("Стейк");
+            workbook.write(out);
+        }
+        ExcelFavoritesManager.useFile(file);
+        try {
+            assertFalse(ExcelFavoritesManager.addFavorite(42L, "мерло", "стейк").isSuccess(),
+                    "Общее сочетание уже есть в избранном чата");
+            assertTrue(ExcelFavoritesManager.addFavorite(42L, "Шабли", "Устрицы").isSuccess());
+
+            assertEquals(List.of("🍷 Мерло\n🍽 Стейк", "🍷 Шабли\n🍽 Устрицы"),
+                    ExcelFavoritesManager.getFavorites(42L));
+            assertEquals(List.of("🍷 Мерло\n🍽 Стейк"), ExcelFavoritesManager.getFavorites(7L));
+
+            FavoritesExporter.Export export = FavoritesExporter.export(7L);
+            try {
+                assertEquals(1, export.getRows());
+            } finally {
+                Files.deleteIfExists(export.getFile());
+            }
+        } finally {
+            ExcelFavoritesManager.useFile(Path.of("favorites.xlsx"));
+        }
+    }
+
+    @Test
+    void forEachFavorite_ShouldNotBlockWrites_WhileStreaming(@TempDir Path dir) throws Exception {
+        ExcelFavoritesManager.useFile(dir.resolve("favorites.xlsx"));
+        try {
+            assertTrue(ExcelFavoritesManager.addFavorite(42L, "Мерло", "Стейк").isSuccess());
+
+            List<String> seen = new ArrayList<>();
+            ExcelFavoritesManager.forEachFavorite(favorite -> {
+                seen.add(favorite.getWine());
+                // Пачка записывается, пока выгрузка еще читает файл
+                CompletableFuture<Void> write = CompletableFuture.runAsync(() -> {
+                    try {
+                        ExcelFavoritesManager.appendFavorites(
+                                List.of(new ExcelFavoritesManager.Favorite(7L, "Шабли", "Устрицы")));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                assertDoesNotThrow(() -> write.get(5, TimeUnit.SECONDS));
+            });
+
+            assertEquals(List.of("Мерло"), seen, "Чтение идет по снимку файла");
+            assertEquals(List.of("🍷 Шабли\n🍽 Устрицы"), ExcelFavoritesManager.getFavorites(7L));
+            try (var files = Files.list(dir)) {
+                assertEquals(List.of("favorites.xlsx"),
+                        files.map(path -> path.getFileName().toString()).toList(), "Снимок удаляется");
+            }
+        } finally {
+            ExcelFavoritesManager.useFile(Path.of("favorites.xlsx"));
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.example;
+
+import org.example.Bot.Commands.Factories.CommandFactory;
+import org.example.Bot.Commands.PairCommand;
+import org.example.DAO.Dish;
+import org.example.DAO.InMemoryCatalog;
+import org.example.DAO.Pairing;
+import org.example.DAO.PairingTopKDAO;
+import org.example.DAO.Rating;
+import org.example.DAO.TopPairings;
+import org.example.DAO.Wine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryCatalogTest {
+
+    private InMemoryCatalog catalog;
+    private Wine merlot;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        catalog = new InMemoryCatalog();
+
+        merlot = catalog.addWine(new Wine("Мерло", Wine.WineType.Красное, 3, 3));
+        catalog.addDish("Стейк", "Мясо", 4, 5);
+        catalog.addDish("Лосось", "Рыба", 3, 4);
+        catalog.addDish("Сыр бри", "Сыр", 5, 3);
+
+        catalog.savePairing(new Pairing(merlot.getId(), 1, 7));
+        catalog.savePairing(new Pairing(merlot.getId(), 2, 3));
+        catalog.savePairing(new Pairing(merlot.getId(), 3, 9));
+    }
+
+    @Test
+    void findPairings_ShouldReturnDishesOrderedByScore() {
+        List<String> pairings = catalog.findPairings("Мерло");
+
+        assertEquals(List.of("Сыр бри", "Стейк", "Лосось"), pairings);
+    }
+
+    @Test
+    void findPairings_ShouldMatchPartOfName_LikeSqlLike() {
+        List<String> pairings = catalog.findPairings("ерл");
+
+        assertEquals(3, pairings.size(), "Поиск должен работать по подстроке названия");
+        assertTrue(catalog.findPairings("Шардоне").isEmpty());
+    }
+
+    @Test
+    void findTopPairings_ShouldBreakTiesByDishId_AndKeepOnlyTopK() throws Exception {
+        catalog.savePairing(new Pairing(merlot.getId(), 2, 9));
+        for (int i = 0; i < PairingTopKDAO.K; i++) {
+            catalog.addDish("Блюдо " + i, "Мясо", 1, 1);
+            catalog.savePairing(new Pairing(merlot.getId(), 4 + i, 1));
+        }
+
+        TopPairings top = catalog.findTopPairings("Мерло");
+
+        assertEquals(List.of(merlot.getId()), top.getWines().stream().map(Wine::getId).toList());
+        assertEquals(PairingTopKDAO.K, top.getDishes().size());
+        assertEquals(List.of("Лосось", "Сыр бри", "Стейк"),
+                top.getDishes().subList(0, 3).stream().map(Dish::getName).toList());
+        assertTrue(catalog.findTopPairings("Шардоне").getDishes().isEmpty());
+    }
+
+    @Test
+    void findTopPairings_ShouldUniteDishesOfAllMatchingWines() throws Exception {
+        Wine reserve = catalog.addWine(new Wine("Мерло Резерв", Wine.WineType.Красное, 4, 3));
+        Wine rose = catalog.addWine(new Wine("Розе", Wine.WineType.Розовое, 1, 4));
+        catalog.savePairing(new Pairing(reserve.getId(), 2, 10));
+        catalog.savePairing(new Pairing(reserve.getId(), 1, 2));
+        catalog.savePairing(new Pairing(rose.getId(), 1, 10));
+
+        TopPairings top = catalog.findTopPairings("ерло");
+
+        assertEquals(List.of(merlot.getId(), reserve.getId()),
+                top.getWines().stream().map(Wine::getId).sorted().toList());
+        assertEquals(List.of("Лосось", "Сыр бри", "Стейк"), top.getDishes().stream().map(Dish::getName).toList(),
+                "Блюдо нескольких вин показывается один раз с лучшей оценкой");
+    }
+
+    @Test
+    void getters_ShouldReturnCopies_AndFindShortNameParts() {
+        catalog.getWineById(merlot.getId()).setName("Изменено");
+        catalog.getAllDishes().get(0).setName("Изменено");
+
+        assertEquals("Мерло", catalog.getWineById(merlot.getId()).getName(),
+                "Изменение полученного вина не должно менять каталог");
+        assertEquals("Стейк", catalog.getDishById(1).getName());
+        assertEquals(1, catalog.findWinesByName("ер").size(), "Образец короче триграммы тоже должен находиться");
+        assertTrue(catalog.findWinesByName("Изменено").isEmpty());
+    }
+
+    @Test
+    void deleteDish_ShouldRemoveItsPairings() {
+        assertTrue(catalog.deleteDish(3));
+
+        assertEquals(List.of("Стейк", "Лосось"), catalog.findPairings("Мерло"));
+        assertNull(catalog.getDishById(3));
+    }
+
+    @Test
+    void findWinesForDish_ShouldUseReverseAdjacency_AndStayInSync() {
+        Wine cabernet = catalog.addWine(new Wine("Каберне", Wine.WineType.Красное, 5, 3));
+        catalog.savePairing(new Pairing(cabernet.getId(), 1, 9));
+
+        assertEquals(List.of("Каберне", "Мерло"), catalog.findWinesForDish("Стейк"));
+
+        catalog.savePairing(new Pairing(merlot.getId(), 1, 10));
+        assertEquals(List.of("Мерло", "Каберне"), catalog.findWinesForDish("Стейк"),
+                "Обновленная оценка должна учитываться в обратном списке");
+
+        assertTrue(catalog.deleteWine(merlot.getId()));
+        assertEquals(List.of("Каберне"), catalog.findWinesForDish("Стейк"));
+    }
+
+    @Test
+    void recordRating_ShouldUpdateScoreIncrementally_AndSurviveSnapshot(@TempDir Path dir) throws Exception {
+        for (long chat = 1; chat <= 10; chat++) {
+            catalog.recordRating(new Rating(chat, merlot.getId(), 2, Rating.GOOD));
+        }
+        catalog.recordRating(new Rating(11L, merlot.getId(), 3, Rating.BAD));
+        Pairing updated = catalog.recordRating(new Rating(12L, merlot.getId(), 3, Rating.BAD));
+
+        assertEquals(Pairing.bayesianScore(9, 0, 2), updated.getScore());
+        assertEquals(List.of("Лосось", "Стейк", "Сыр бри"), catalog.findPairings("Мерло"),
+                "Порядок сочетаний должен учитывать оценки пользователей");
+        assertEquals(12, catalog.getAllRatings().size());
+
+        Path snapshot = dir.resolve("catalog.snapshot");
+        catalog.save(snapshot);
+        InMemoryCatalog restored = InMemoryCatalog.load(snapshot);
+        assertEquals(catalog.findPairings("Мерло"), restored.findPairings("Мерло"));
+        assertEquals(12, restored.getAllRatings().size());
+    }
+
+    @Test
+    void recordRating_ShouldKeepEveryRatingInLog_AndOneVotePerChat(@TempDir Path dir) throws Exception {
+        catalog.recordRating(new Rating(1L, merlot.getId(), 2, Rating.GOOD));
+        catalog.recordRating(new Rating(1L, merlot.getId(), 2, Rating.BAD));
+        catalog.recordRating(new Rating(2L, merlot.getId(), 2, Rating.GOOD));
+
+        assertEquals(3, catalog.getRatingLog().size(), "Журнал хранит и замененные оценки");
+        assertEquals(List.of(Rating.BAD, Rating.GOOD),
+                catalog.getAllRatings().stream().map(Rating::getValue).toList());
+
+        Path snapshot = dir.resolve("catalog.snapshot");
+        catalog.save(snapshot);
+        InMemoryCatalog restored = InMemoryCatalog.load(snapshot);
+        assertEquals(catalog.getRatingLog().toString(), restored.getRatingLog().toString());
+        assertEquals(catalog.getAllRatings().toString(), restored.getAllRatings().toString());
+        assertEquals(catalog.getAllPairings(), restored.getAllPairings());
+
+        restored.deleteWine(merlot.getId());
+        assertTrue(restored.getRatingLog().isEmpty(), "Оценки удаленного вина удаляются и из журнала");
+    }
+
+    @Test
+    void saveAndLoad_ShouldRestoreWholeCatalog(@TempDir Path dir) throws Exception {
+        Path snapshot = dir.resolve("catalog.snapshot");
+        merlot.setRegion("Бордо");
+        catalog.updateWine(merlot);
+
+        catalog.save(snapshot);
+        InMemoryCatalog restored = InMemoryCatalog.load(snapshot);
+
+        assertEquals(catalog.getAllWines().size(), restored.getAllWines().size());
+        assertEquals(catalog.getAllDishes(), restored.getAllDishes());
+        assertEquals("Бордо", restored.getWineById(merlot.getId()).getRegion());
+        assertEquals(catalog.findPairings("Мерло"), restored.findPairings("Мерло"));
+    }
+
+    @Test
+    void pairCommand_ShouldWorkOnInMemoryCatalog() {
+        CommandFactory.initialize(catalog, catalog);
+        Map<Long, CommandFactory.PairingContext> contexts = new HashMap<>();
+        PairCommand command = new PairCommand(catalog, CommandFactory.pairingCache(), "Мерло", 1L, contexts::put);
+
+        SendMessage result = command.execute("1", "Мерло");
+
+        assertTrue(result.getText().contains("Сыр бри"));
+        assertEquals("Сыр бри", contexts.get(1L).getDish().getName(),
+                "В контекст должно попасть сочетание с наибольшей оценкой");
+    }
+}
@@ -0,0 +1,166 @@
+package org.example;
+
+import org.example.Bot.Commands.Command;
+import org.example.Bot.Commands.Factories.CommandFactory;
+import org.example.DAO.InMemoryCatalog;
+import org.example.DAO.Pairing;
+import org.example.DAO.Rating;
+import org.example.DAO.Session;
+import org.example.DAO.Wine;
+import org.example.Sessions.InMemorySessionStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InlineKeyboardTest {
+    private static final long CHAT_ID = 11L;
+
+    private InMemoryCatalog catalog;
+    private Wine merlot;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        catalog = new InMemoryCatalog();
+        for (int i = 1; i <= 25; i++) {
+            catalog.addWine(new Wine("Вино " + i, Wine.WineType.Белое, 2, 3));
+        }
+        merlot = catalog.addWine(new Wine("Мерло", Wine.WineType.Красное, 3, 3));
+        catalog.addDish("Стейк", "Мясо", 4, 5);
+        catalog.addDish("Лосось", "Рыба", 3, 4);
+        catalog.savePairing(new Pairing(merlot.getId(), 1, 9));
+        catalog.savePairing(new Pairing(merlot.getId(), 2, 5));
+        CommandFactory.initialize(catalog, catalog);
+        CommandFactory.useSessionStore(new InMemorySessionStore());
+    }
+
+    @Test
+    void wines_ShouldBePagedWithCallbackButtons() {
+        SendMessage first = run(CommandFactory.getCommand("/wines", CHAT_ID));
+        assertTrue(first.getText().contains("стр. 1 из 3"));
+        assertEquals(List.of("1/3", "▶"), labels(first));
+        String next = buttons(first).get(1).getCallbackData();
+
+        SendMessage second = run(CommandFactory.getCallbackCommand(next, CHAT_ID));
+        assertTrue(second.getText().contains("стр. 2 из 3"));
+        assertTrue(second.getText().contains("Вино 11"));
+        assertFalse(second.getText().contains("*Вино 10*"), "На второй странице не должно быть записей первой");
+        assertEquals(List.of("◀", "2/3", "▶"), labels(second));
+        for (InlineKeyboardButton button : buttons(second)) {
+            assertTrue(button.getCallbackData().getBytes(StandardCharsets.UTF_8).length <= 64);
+        }
+
+        assertNull(CommandFactory.getCallbackCommand(buttons(second).get(1).getCallbackData(), CHAT_ID),
+                "Номер страницы не должен ничего делать");
+        assertNull(CommandFactory.getCallbackCommand("устаревшая кнопка", CHAT_ID));
+    }
+
+    @Test
+    void pairButtons_ShouldSelectDishAndRateItWithoutTextInput() {
+        SendMessage pairings = run(CommandFactory.getCommand("/pair Мерло", CHAT_ID));
+        List<InlineKeyboardButton> dishes = buttons(pairings);
+        assertEquals(2, dishes.size());
+        assertTrue(dishes.get(1).getText().contains("Лосось"));
+
+        SendMessage prompt = run(CommandFactory.getCallbackCommand(dishes.get(1).getCallbackData(), CHAT_ID));
+        assertTrue(prompt.getText().contains("Блюдо: Лосось"));
+        assertEquals(2, CommandFactory.sessions().get(CHAT_ID).getPairingDishId());
+
+        String good = buttons(prompt).get(0).getCallbackData();
+        SendMessage confirm = run(CommandFactory.getCallbackCommand(good, CHAT_ID));
+        assertTrue(confirm.getText().contains("Добавить это сочетание в избранное?"));
+        assertEquals(1, catalog.getAllRatings().size());
+        assertEquals(2, catalog.getAllRatings().get(0).getDishId());
+        assertNull(CommandFactory.sessions().get(CHAT_ID).getState(),
+                "Ответ на вопрос об избранном ожидается кнопкой, а не текстом");
+
+        String no = buttons(confirm).get(1).getCallbackData();
+        SendMessage declined = run(CommandFactory.getCallbackCommand(no, CHAT_ID));
+        assertEquals("Хорошо, сочетание не было сохранено.", declined.getText());
+        Session session = CommandFactory.sessions().get(CHAT_ID);
+        assertFalse(session.hasPairing());
+    }
+
+    @Test
+    void rate_ShouldKeepOneVotePerChat_ForPairedWine() throws Exception {
+        catalog.addWine(new Wine("Мерло резерв", Wine.WineType.Красное, 4, 3));
+        SendMessage pairings = run(CommandFactory.getCommand("/pair Мерло", CHAT_ID));
+        assertEquals(merlot.getId(), CommandFactory.sessions().get(CHAT_ID).getPairingWineId(),
+                "Оценка должна относиться к вину, найденному при подборе");
+
+        SendMessage prompt = run(CommandFactory.getCallbackCommand(buttons(pairings).get(1).getCallbackData(), CHAT_ID));
+        run(CommandFactory.getCallbackCommand(buttons(prompt).get(0).getCallbackData(), CHAT_ID));
+        run(CommandFactory.getCallbackCommand(buttons(prompt).get(0).getCallbackData(), CHAT_ID));
+        run(CommandFactory.getCallbackCommand(buttons(prompt).get(1).getCallbackData(), CHAT_ID));
+
+        assertEquals(1, catalog.getAllRatings().size(), "Повторная оценка должна заменять прежнюю");
+        assertEquals(merlot.getId(), catalog.getAllRatings().get(0).getWineId());
+        assertFalse(catalog.getAllRatings().get(0).isGood());
+        assertEquals(List.of("Стейк", "Лосось"), catalog.findPairings("Мерло"));
+        assertEquals(Pairing.bayesianScore(5, 0, 1), catalog.getAllPairings().stream()
+                .filter(p -> p.getDishId() == 2).findFirst().orElseThrow().getScore());
+    }
+
+    @Test
+    void rateDishButton_ShouldRateThePairingOfTheWineItCameFrom() throws Exception {
+        Wine reserve = catalog.addWine(new Wine("Мерло резерв", Wine.WineType.Красное, 4, 3));
+        catalog.addDish("Утка", "Мясо", 4, 4);
+        catalog.savePairing(new Pairing(reserve.getId(), 3, 10));
+
+        SendMessage pairings = run(CommandFactory.getCommand("/pair Мерло", CHAT_ID));
+        assertTrue(buttons(pairings).get(0).getText().contains("Утка"));
+        assertTrue(buttons(pairings).get(1).getText().contains("Стейк"));
+
+        SendMessage prompt = run(CommandFactory.getCallbackCommand(buttons(pairings).get(1).getCallbackData(), CHAT_ID));
+        assertEquals(merlot.getId(), CommandFactory.sessions().get(CHAT_ID).getPairingWineId(),
+                "Стейк подобран к «Мерло», а не к лучшему вину списка");
+        run(CommandFactory.getCallbackCommand(buttons(prompt).get(0).getCallbackData(), CHAT_ID));
+
+        Rating rating = catalog.getAllRatings().get(0);
+        assertEquals(merlot.getId(), rating.getWineId());
+        assertEquals(1, rating.getDishId());
+        assertEquals(Pairing.bayesianScore(9, 1, 0), catalog.getAllPairings().stream()
+                .filter(p -> p.getWineId() == merlot.getId() && p.getDishId() == 1)
+                .findFirst().orElseThrow().getScore(), "Голос должен попасть в существующее сочетание");
+    }
+
+    @Test
+    void favoriteButton_ShouldTouchSessionOnlyWhenExecuted() {
+        SendMessage pairings = run(CommandFactory.getCommand("/pair Мерло", CHAT_ID));
+        SendMessage prompt = run(CommandFactory.getCallbackCommand(buttons(pairings).get(0).getCallbackData(), CHAT_ID));
+        SendMessage confirm = run(CommandFactory.getCallbackCommand(buttons(prompt).get(0).getCallbackData(), CHAT_ID));
+        CommandFactory.sessions().update(CHAT_ID, session -> session.withState("CONFIRM_FAVORITE"));
+
+        Command no = CommandFactory.getCallbackCommand(buttons(confirm).get(1).getCallbackData(), CHAT_ID);
+        Session created = CommandFactory.sessions().get(CHAT_ID);
+        assertEquals("CONFIRM_FAVORITE", created.getState(), "Создание команды не должно менять состояние");
+        assertEquals(merlot.getId(), (int) created.getPairingWineId());
+
+        assertTrue(run(no).getText().contains("не было сохранено"));
+        Session executed = CommandFactory.sessions().get(CHAT_ID);
+        assertNull(executed.getState());
+        assertNull(executed.getPairingWineId());
+    }
+
+    private static SendMessage run(Command command) {
+        assertNotNull(command);
+        return command.execute(String.valueOf(CHAT_ID), "");
+    }
+
+    private static List<InlineKeyboardButton> buttons(SendMessage message) {
+        assertInstanceOf(InlineKeyboardMarkup.class, message.getReplyMarkup());
+        return ((InlineKeyboardMarkup) message.getReplyMarkup()).getKeyboard().stream()
+                .flatMap(List::stream)
+                .toList();
+    }
+
+    private static List<String> labels(SendMessage message) {
+        return buttons(message).stream().map(InlineKeyboardButton::getText).toList();
+    }
+}
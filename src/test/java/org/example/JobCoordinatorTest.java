@@ -0,0 +1,167 @@
+package org.example;
+
+import org.example.Coordination.AdvisoryLockCoordinator;
+import org.example.Coordination.JobCoordinator;
+import org.example.Coordination.LocalJobCoordinator;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobCoordinatorTest {
+
+    /**
+     * Рекомендательные блокировки PostgreSQL в памяти: блокировка принадлежит соединению
+     * и снимается при его закрытии или обрыве
+     */
+    private static class FakeLockServer {
+        private final Map<Long, FakeSession> locks = new HashMap<>();
+
+        private class FakeSession {
+            String applicationName;
+            boolean dropped;
+        }
+
+        synchronized Connection connect() {
+            FakeSession session = new FakeSession();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "prepareStatement":
+                                return statement(session, (String) args[0]);
+                            case "isValid":
+                                return !session.dropped;
+                            case "close":
+                                drop(session);
+                                return null;
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+
+        /**
+         * Имитирует обрыв соединения: сервер снимает блокировки сессии
+         */
+        synchronized void dropAll() {
+            new ArrayList<>(locks.values()).forEach(this::drop);
+        }
+
+        private synchronized void drop(FakeSession session) {
+            session.dropped = true;
+            locks.values().removeIf(owner -> owner == session);
+        }
+
+        private PreparedStatement statement(FakeSession session, String sql) {
+            Map<Integer, Object> params = new HashMap<>();
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "setLong":
+                            case "setString":
+                                params.put((Integer) args[0], args[1]);
+                                return null;
+                            case "executeQuery":
+                                return execute(session, sql, params);
+                            case "close":
+                                return null;
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+
+        private synchronized ResultSet execute(FakeSession session, String sql, Map<Integer, Object> params) {
+            List<Object[]> rows = new ArrayList<>();
+            if (sql.contains("set_config")) {
+                session.applicationName = (String) params.get(1);
+            } else if (sql.contains("pg_try_advisory_lock")) {
+                FakeSession owner = locks.putIfAbsent((Long) params.get(1), session);
+                rows.add(new Object[]{owner == null || owner == session});
+            } else if (sql.contains("pg_advisory_unlock")) {
+                rows.add(new Object[]{locks.remove((Long) params.get(1), session)});
+            } else if (sql.contains("pg_locks")) {
+                locks.forEach((key, owner) -> rows.add(new Object[]{key >>> 32, key & 0xffffffffL, owner.applicationName}));
+            }
+            AtomicInteger row = new AtomicInteger(-1);
+            return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSet.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "next":
+                                return row.incrementAndGet() < rows.size();
+                            case "getBoolean":
+                            case "getLong":
+                            case "getString":
+                                return rows.get(row.get())[(Integer) args[0] - 1];
+                            case "close":
+                                return null;
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+    }
+
+    @Test
+    void isLeader_ShouldElectOneLeaderPerJob() {
+        FakeLockServer server = new FakeLockServer();
+        AdvisoryLockCoordinator first = new AdvisoryLockCoordinator(server::connect, "node-a");
+        AdvisoryLockCoordinator second = new AdvisoryLockCoordinator(server::connect, "node-b");
+
+        assertTrue(first.isLeader("sessions.evict"));
+        assertFalse(second.isLeader("sessions.evict"));
+        assertTrue(second.isLeader("catalog.snapshot"), "Разные задачи могут вести разные экземпляры");
+        assertTrue(first.isLeader("sessions.evict"), "Ведущий остается ведущим при повторных проверках");
+
+        assertEquals(Map.of("sessions.evict", "node-a", "catalog.snapshot", "node-b"), second.owners());
+    }
+
+    @Test
+    void isLeader_ShouldFailOver_WhenLeaderConnectionDrops() {
+        FakeLockServer server = new FakeLockServer();
+        AdvisoryLockCoordinator first = new AdvisoryLockCoordinator(server::connect, "node-a");
+        AdvisoryLockCoordinator second = new AdvisoryLockCoordinator(server::connect, "node-b");
+        assertTrue(first.isLeader("sessions.evict"));
+
+        server.dropAll();
+
+        assertTrue(second.isLeader("sessions.evict"), "После обрыва задачу должен подхватить другой экземпляр");
+        assertFalse(first.isLeader("sessions.evict"), "Бывший ведущий должен заметить потерю блокировки");
+        assertEquals(Map.of("sessions.evict", "node-b"), first.owners());
+    }
+
+    @Test
+    void release_ShouldHandOverJob() {
+        FakeLockServer server = new FakeLockServer();
+        AdvisoryLockCoordinator first = new AdvisoryLockCoordinator(server::connect, "node-a");
+        AdvisoryLockCoordinator second = new AdvisoryLockCoordinator(server::connect, "node-b");
+        assertTrue(first.isLeader("sessions.evict"));
+
+        first.release("sessions.evict");
+
+        assertTrue(second.isLeader("sessions.evict"));
+    }
+
+    @Test
+    void leaderOnly_ShouldRunTaskOnlyOnLeader() {
+        FakeLockServer server = new FakeLockServer();
+        JobCoordinator first = new AdvisoryLockCoordinator(server::connect, "node-a");
+        JobCoordinator second = new AdvisoryLockCoordinator(server::connect, "node-b");
+        AtomicInteger runs = new AtomicInteger();
+
+        first.leaderOnly("sessions.evict", runs::incrementAndGet).run();
+        second.leaderOnly("sessions.evict", runs::incrementAndGet).run();
+        new LocalJobCoordinator("single").leaderOnly("sessions.evict", runs::incrementAndGet).run();
+
+        assertEquals(2, runs.get());
+    }
+}
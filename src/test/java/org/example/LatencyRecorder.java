@@ -0,0 +1,107 @@
+package org.example;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Накопитель задержек для нагрузочного теста.
+ * Хранит все значения (в микросекундах), поэтому перцентили точные,
+ * а распределение печатается в формате outputPercentileDistribution из HdrHistogram,
+ * чтобы результаты можно было строить теми же инструментами (HistogramPlotter).
+ */
+class LatencyRecorder {
+    private static final int TICKS_PER_HALF_DISTANCE = 5;
+
+    private long[] values = new long[1024];
+    private int count;
+
+    synchronized void record(long micros) {
+        if (count == values.length) {
+            values = Arrays.copyOf(values, count * 2);
+        }
+        values[count++] = Math.max(0, micros);
+    }
+
+    synchronized int count() {
+        return count;
+    }
+
+    /**
+     * @param percentile перцентиль от 0 до 100
+     * @return значение в микросекундах
+     */
+    long percentile(double percentile) {
+        long[] sorted = sorted();
+        return sorted.length == 0 ? 0 : valueAt(sorted, percentile);
+    }
+
+    /**
+     * Печатает распределение в формате HdrHistogram
+     * @param out поток вывода
+     * @param scale делитель значений (1000.0 — миллисекунды)
+     */
+    void outputPercentileDistribution(PrintStream out, double scale) {
+        long[] sorted = sorted();
+        out.println("       Value     Percentile TotalCount 1/(1-Percentile)");
+        out.println();
+        if (sorted.length == 0) {
+            return;
+        }
+        double percentile = 0;
+        while (true) {
+            long value = valueAt(sorted, percentile);
+            int totalCount = countAtOrBelow(sorted, value);
+            double reached = 100.0 * totalCount / sorted.length;
+            if (reached >= 100.0) {
+                out.println(String.format(Locale.ROOT, "%12.3f %14.12f %10d", value / scale, 1.0, totalCount));
+                break;
+            }
+            out.println(String.format(Locale.ROOT, "%12.3f %14.12f %10d %14.2f",
+                    value / scale, reached / 100.0, totalCount, 1.0 / (1.0 - reached / 100.0)));
+            // Как в HdrHistogram: каждое уменьшение оставшегося хвоста вдвое делится на равные шаги
+            double halfDistance = Math.pow(2, Math.floor(Math.log(100.0 / (100.0 - reached)) / Math.log(2)) + 1);
+            percentile = Math.max(reached, percentile) + 100.0 / (halfDistance * TICKS_PER_HALF_DISTANCE);
+        }
+
+        double mean = 0;
+        for (long value : sorted) {
+            mean += value;
+        }
+        mean /= sorted.length;
+        double variance = 0;
+        for (long value : sorted) {
+            variance += (value - mean) * (value - mean);
+        }
+        double deviation = Math.sqrt(variance / sorted.length);
+        out.println(String.format(Locale.ROOT, "#[Mean    = %12.3f, StdDeviation   = %12.3f]",
+                mean / scale, deviation / scale));
+        out.println(String.format(Locale.ROOT, "#[Max     = %12.3f, Total count    = %12d]",
+                sorted[sorted.length - 1] / scale, sorted.length));
+    }
+
+    private synchronized long[] sorted() {
+        long[] copy = Arrays.copyOf(values, count);
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    private static long valueAt(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static int countAtOrBelow(long[] sorted, long value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,287 @@
+package org.example;
+
+import org.example.Bot.WinePairingBot;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный генератор: имитирует пользователей, которые проходят типичный диалог
+ * с ботом (/start, дата рождения, /pair, название вина, «хорошо», «да», /wines, /favorites).
+ * Пользователи появляются с заданной интенсивностью (открытая модель), а внутри диалога
+ * каждое следующее сообщение отправляется только после ответа на предыдущее.
+ * Обновления подаются в WinePairingBot.onUpdateReceived из одного потока, как при long polling;
+ * отправка в Telegram подменена записью ответа, поэтому сеть не используется.
+ */
+class LoadGenerator {
+    private static final String BIRTH_DATE = "01.01.1990";
+    // Шаги сценария; «дата» и «вино» заменяются датой рождения и названием вина
+    private static final List<String> STEPS =
+            List.of("/start", "дата", "/pair", "вино", "хорошо", "да", "/wines", "/favorites");
+    // Ответы, которые считаются ошибкой сценария («уже есть в избранном» — не ошибка)
+    private static final List<String> ERROR_PREFIXES = List.of(
+            "Ошибка", "Произошла ошибка", "Превышено время", "❌", "⚠️ Пожалуйста", "Не найдено");
+
+    private final int users;
+    private final double arrivalsPerSecond;
+    private final Duration thinkTime;
+    private final Duration timeout;
+    private final List<String> wineNames;
+
+    private final Map<Long, Conversation> conversations = new ConcurrentHashMap<>();
+    private final Map<String, LatencyRecorder> stepLatencies = new LinkedHashMap<>();
+    private final LatencyRecorder allLatencies = new LatencyRecorder();
+    private final AtomicInteger errors = new AtomicInteger();
+    // Первый ошибочный ответ на каждом шаге — для диагностики
+    private final Map<String, String> firstErrors = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> stepErrors = new ConcurrentHashMap<>();
+    private final AtomicLong replies = new AtomicLong();
+    private final BlockingQueue<Update> updates = new LinkedBlockingQueue<>();
+    private final AtomicInteger updateIds = new AtomicInteger();
+    private CountDownLatch finished;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param users число пользователей
+     * @param arrivalsPerSecond сколько новых пользователей появляется в секунду
+     * @param thinkTime пауза пользователя между ответом бота и следующим сообщением
+     * @param timeout максимальная длительность прогона
+     * @param wineNames названия вин, из которых пользователи выбирают вино для /pair
+     */
+    LoadGenerator(int users, double arrivalsPerSecond, Duration thinkTime, Duration timeout, List<String> wineNames) {
+        this.users = users;
+        this.arrivalsPerSecond = arrivalsPerSecond;
+        this.thinkTime = thinkTime;
+        this.timeout = timeout;
+        this.wineNames = wineNames;
+        for (String step : STEPS) {
+            stepLatencies.put(step, new LatencyRecorder());
+        }
+    }
+
+    /**
+     * Выполняет прогон и возвращает отчет
+     */
+    Report run() throws InterruptedException {
+        finished = new CountDownLatch(users);
+        LoadBot bot = new LoadBot();
+        scheduler = Executors.newScheduledThreadPool(2, daemon("load-users"));
+        Thread poller = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    bot.onUpdateReceived(updates.take());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "load-updates");
+        poller.setDaemon(true);
+        poller.start();
+
+        long start = System.nanoTime();
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / arrivalsPerSecond);
+        for (int i = 0; i < users; i++) {
+            long chatId = 1_000_000L + i;
+            String wine = wineNames.get(ThreadLocalRandom.current().nextInt(wineNames.size()));
+            List<String> texts = new ArrayList<>(STEPS);
+            texts.set(STEPS.indexOf("дата"), BIRTH_DATE);
+            texts.set(STEPS.indexOf("вино"), wine);
+            Conversation conversation = new Conversation(chatId, texts);
+            conversations.put(chatId, conversation);
+            scheduler.schedule(() -> send(conversation), i * intervalNanos, TimeUnit.NANOSECONDS);
+        }
+
+        boolean completed = finished.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        long elapsedNanos = System.nanoTime() - start;
+        scheduler.shutdownNow();
+        poller.interrupt();
+
+        int unfinished = 0;
+        if (!completed) {
+            for (Conversation conversation : conversations.values()) {
+                if (!conversation.isDone()) {
+                    unfinished++;
+                }
+            }
+        }
+        return new Report(elapsedNanos, unfinished);
+    }
+
+    private void send(Conversation conversation) {
+        Update update = new Update();
+        update.setUpdateId(updateIds.incrementAndGet());
+        Message message = new Message();
+        message.setChat(new Chat(conversation.chatId, "private"));
+        message.setText(conversation.currentText());
+        update.setMessage(message);
+        conversation.sentNanos = System.nanoTime();
+        updates.add(update);
+    }
+
+    private void onReply(long chatId, String text) {
+        Conversation conversation = conversations.get(chatId);
+        if (conversation == null || conversation.isDone()) {
+            return;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - conversation.sentNanos);
+        stepLatencies.get(conversation.currentStep()).record(micros);
+        allLatencies.record(micros);
+        replies.incrementAndGet();
+        if (text != null && ERROR_PREFIXES.stream().anyMatch(text::startsWith)) {
+            errors.incrementAndGet();
+            stepErrors.computeIfAbsent(conversation.currentStep(), step -> new AtomicInteger()).incrementAndGet();
+            firstErrors.putIfAbsent(conversation.currentStep(), text);
+        }
+
+        if (conversation.advance()) {
+            finished.countDown();
+        } else if (thinkTime.isZero()) {
+            send(conversation);
+        } else {
+            // Пауза между сообщениями случайна, чтобы пользователи не шли в ногу
+            long pause = ThreadLocalRandom.current().nextLong(thinkTime.toMillis() + 1);
+            scheduler.schedule(() -> send(conversation), pause, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Диалог одного пользователя
+     */
+    private static final class Conversation {
+        final long chatId;
+        private final List<String> texts;
+        private volatile int index;
+        volatile long sentNanos;
+
+        Conversation(long chatId, List<String> texts) {
+            this.chatId = chatId;
+            this.texts = texts;
+        }
+
+        String currentText() {
+            return texts.get(index);
+        }
+
+        String currentStep() {
+            return STEPS.get(index);
+        }
+
+        /**
+         * @return true, если диалог завершен
+         */
+        synchronized boolean advance() {
+            index++;
+            return index >= texts.size();
+        }
+
+        boolean isDone() {
+            return index >= texts.size();
+        }
+    }
+
+    /**
+     * Бот, у которого отправка в Telegram заменена записью ответа
+     */
+    private final class LoadBot extends WinePairingBot {
+        LoadBot() {
+            super("load-test-token", "load_test_bot");
+        }
+
+        @Override
+        public <T extends Serializable, Method extends BotApiMethod<T>> T execute(Method method) {
+            if (method instanceof SendMessage) {
+                SendMessage message = (SendMessage) method;
+                onReply(Long.parseLong(message.getChatId()), message.getText());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Результаты прогона
+     */
+    final class Report {
+        private final long elapsedNanos;
+        private final int unfinished;
+
+        Report(long elapsedNanos, int unfinished) {
+            this.elapsedNanos = elapsedNanos;
+            this.unfinished = unfinished;
+        }
+
+        int getUsers() {
+            return users;
+        }
+
+        int getUnfinished() {
+            return unfinished;
+        }
+
+        int getErrors() {
+            return errors.get();
+        }
+
+        long getReplies() {
+            return replies.get();
+        }
+
+        double getThroughput() {
+            return replies.get() / (elapsedNanos / 1e9);
+        }
+
+        LatencyRecorder getLatencies() {
+            return allLatencies;
+        }
+
+        void print(PrintStream out) {
+            out.println(String.format(Locale.ROOT,
+                    "Пользователей: %d (не завершили: %d), ответов: %d, ошибок: %d (%.2f%%)",
+                    users, unfinished, replies.get(), errors.get(),
+                    replies.get() == 0 ? 0.0 : 100.0 * errors.get() / replies.get()));
+            out.println(String.format(Locale.ROOT, "Длительность: %.2f с, пропускная способность: %.1f ответов/с",
+                    elapsedNanos / 1e9, getThroughput()));
+            out.println();
+            out.println(String.format(Locale.ROOT, "%-12s %8s %8s %10s %10s %10s %10s",
+                    "шаг", "count", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+            stepLatencies.forEach((step, recorder) -> out.println(String.format(Locale.ROOT,
+                    "%-12s %8d %8d %10.3f %10.3f %10.3f %10.3f", step, recorder.count(),
+                    stepErrors.getOrDefault(step, new AtomicInteger()).get(),
+                    recorder.percentile(50) / 1000.0, recorder.percentile(99) / 1000.0,
+                    recorder.percentile(99.9) / 1000.0, recorder.percentile(100) / 1000.0)));
+            firstErrors.forEach((step, text) -> out.println("Пример ошибки на шаге " + step + ": " + text));
+            out.println();
+            allLatencies.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+}
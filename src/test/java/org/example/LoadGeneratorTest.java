@@ -0,0 +1,70 @@
+package org.example;
+
+import org.example.Bot.Commands.Factories.CommandFactory;
+import org.example.DAO.InMemoryCatalog;
+import org.example.DAO.Pairing;
+import org.example.DAO.Wine;
+import org.example.Tracing.TraceLog;
+import org.example.Utils.ExcelFavoritesManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Нагрузочный прогон на встроенном каталоге. В обычном прогоне тестов пропускается
+ * и запускается, только если задано число пользователей:
+ * mvn test -Dtest=LoadGeneratorTest -Dload.users=5000 -Dload.rate=500 -Dload.thinkMillis=200
+ *
+ * Задержки печатаются в отчет.
+ */
+class LoadGeneratorTest {
+
+    @AfterEach
+    void tearDown() {
+        ExcelFavoritesManager.disableWriteBehind();
+        ExcelFavoritesManager.useFile(Path.of("favorites.xlsx"));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "load.users", matches = "\\d+")
+    void run_ShouldCompleteEveryConversation_WithoutErrors(@TempDir Path dir) throws Exception {
+        InMemoryCatalog catalog = new InMemoryCatalog();
+        String[] dishes = {"Стейк", "Лосось", "Сыр бри", "Паста с грибами", "Тирамису"};
+        String[] categories = {"Мясо", "Рыба", "Сыр", "Овощи", "Десерт"};
+        for (int i = 0; i < dishes.length; i++) {
+            catalog.addDish(dishes[i], categories[i], 3, 3);
+        }
+        List<String> wineNames = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Wine wine = catalog.addWine(new Wine("Вино " + i, Wine.WineType.Красное, 3, 3));
+            wineNames.add(wine.getName());
+            for (int dish = 1; dish <= dishes.length; dish++) {
+                catalog.savePairing(new Pairing(wine.getId(), dish, (i + dish) % 10 + 1));
+            }
+        }
+        CommandFactory.initialize(catalog, catalog);
+        ExcelFavoritesManager.useFile(dir.resolve("favorites.xlsx"));
+        ExcelFavoritesManager.enableWriteBehind(dir.resolve("journal"), 100, Duration.ofMillis(200));
+        TraceLog.configure(dir.resolve("trace.jsonl"));
+
+        int users = Integer.getInteger("load.users");
+        LoadGenerator generator = new LoadGenerator(users, Integer.getInteger("load.rate", 400),
+                Duration.ofMillis(Integer.getInteger("load.thinkMillis", 0)),
+                Duration.ofSeconds(Integer.getInteger("load.timeoutSeconds", 60)), wineNames);
+        LoadGenerator.Report report = generator.run();
+        report.print(System.out);
+
+        assertEquals(0, report.getUnfinished(), "Все диалоги должны завершиться");
+        assertEquals(0, report.getErrors());
+        assertEquals(users * 8L, report.getReplies());
+        assertEquals(users * 8, report.getLatencies().count());
+    }
+}
@@ -0,0 +1,88 @@
+package org.example;
+
+import org.example.DAO.DishRepository;
+import org.example.DAO.InMemoryCatalog;
+import org.example.DAO.MappedCatalog;
+import org.example.DAO.Pairing;
+import org.example.DAO.WarmStartCatalog;
+import org.example.DAO.Wine;
+import org.example.DAO.WineRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedCatalogTest {
+
+    @Test
+    void writeAndOpen_ShouldServeSameDataAsSource(@TempDir Path dir) throws Exception {
+        // Arrange
+        InMemoryCatalog source = new InMemoryCatalog();
+        Wine chianti = new Wine("Кьянти", Wine.WineType.Красное, 4, 4);
+        chianti.setRegion("Тоскана");
+        chianti.setVintage(2018);
+        source.addWine(chianti);
+        source.addWine(new Wine("Шардоне", Wine.WineType.Белое, 1, 3));
+        source.addDish("Паста болоньезе", "Мясо", 3, 4);
+        source.addDish("Устрицы", "Рыба", 1, 3);
+        source.savePairing(new Pairing(1, 1, 8));
+        source.savePairing(new Pairing(2, 2, 9));
+        source.savePairing(new Pairing(1, 2, 2));
+        Path file = dir.resolve("catalog.bin");
+
+        // Act
+        MappedCatalog.write(file, source, source);
+        MappedCatalog mapped = MappedCatalog.open(file);
+
+        // Assert
+        assertEquals(List.of("Паста болоньезе", "Устрицы"), mapped.findPairings("Кьянти"));
+        assertEquals(source.getAllDishes(), mapped.getAllDishes());
+        Wine restored = mapped.getWineById(1);
+        assertEquals("Тоскана", restored.getRegion());
+        assertEquals(2018, restored.getVintage());
+        assertNull(mapped.getWineById(42));
+        assertEquals(1, mapped.findDishesByCategory("Рыба").size());
+    }
+
+    @Test
+    void snapshot_ShouldOfferOnlyReadInterfaces(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("catalog.bin");
+        InMemoryCatalog empty = new InMemoryCatalog();
+        MappedCatalog.write(file, empty, empty);
+
+        MappedCatalog mapped = MappedCatalog.open(file);
+
+        assertTrue(mapped.getAllWines().isEmpty());
+        assertFalse(mapped instanceof WineRepository, "Снимок не должен предлагать методы записи");
+        assertFalse(DishRepository.class.isAssignableFrom(MappedCatalog.class));
+    }
+
+    @Test
+    void warmStart_ShouldRunWarmupEndActions_OnFirstWriteOrDeadline(@TempDir Path dir) throws Exception {
+        InMemoryCatalog live = new InMemoryCatalog();
+        live.addWine(new Wine("Кьянти", Wine.WineType.Красное, 4, 4));
+        Path file = dir.resolve("catalog.bin");
+        MappedCatalog.write(file, live, live);
+        live.addWine(new Wine("Шардоне", Wine.WineType.Белое, 1, 3));
+
+        WarmStartCatalog onWrite = new WarmStartCatalog(file, live, live, Duration.ofHours(1));
+        CountDownLatch written = new CountDownLatch(1);
+        onWrite.whenWarmupEnds(written::countDown);
+        assertEquals(1, onWrite.getAllWines().size(), "Во время прогрева чтения идут из снимка");
+        onWrite.addDish("Устрицы", "Рыба", 1, 3);
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        assertEquals(2, onWrite.getAllWines().size());
+
+        WarmStartCatalog onDeadline = new WarmStartCatalog(file, live, live, Duration.ofMillis(50));
+        CountDownLatch expired = new CountDownLatch(1);
+        onDeadline.whenWarmupEnds(expired::countDown);
+        assertTrue(expired.await(5, TimeUnit.SECONDS), "Прогрев должен завершиться к сроку и без чтений");
+        assertFalse(onDeadline.isServingFromSnapshot());
+    }
+}
@@ -0,0 +1,137 @@
+package org.example;
+
+import org.example.DAO.Dish;
+import org.example.DAO.Pairing;
+import org.example.DAO.Wine;
+import org.example.Search.NameAutocomplete;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NameAutocompleteTest {
+
+    private NameAutocomplete autocomplete;
+
+    @BeforeEach
+    void setUp() {
+        autocomplete = new NameAutocomplete();
+        autocomplete.indexAll(
+                List.of(wine(1, "Шато Мерло"), wine(2, "Мерло Резерв"), wine(3, "Совиньон Блан")),
+                List.of(dish(1, "Мясо по-французски"), dish(2, "Ёжики из говядины")),
+                List.of(new Pairing(2, 1, 5), new Pairing(2, 2, 4), new Pairing(3, 1, 3)));
+    }
+
+    @Test
+    void suggest_ShouldMatchStartOfAnyWord_RankedByPopularity() {
+        List<NameAutocomplete.Suggestion> suggestions = autocomplete.suggest("МЕР", 10);
+
+        assertEquals(List.of("Мерло Резерв", "Шато Мерло"), names(suggestions),
+                "Вино с большим числом сочетаний должно быть первым");
+        assertEquals("w2", suggestions.get(0).key());
+        assertEquals(List.of("Ёжики из говядины"), names(autocomplete.suggest("ежик", 10)));
+        assertTrue(autocomplete.suggest("ерло", 10).isEmpty(), "Совпадение должно начинаться с начала слова");
+    }
+
+    @Test
+    void indexAll_ShouldReplacePreviousCatalog() {
+        autocomplete.indexAll(List.of(wine(1, "Шато Мерло"), wine(2, "Мерло Резерв")), List.of(),
+                List.of(new Pairing(1, 1, 5)));
+
+        assertEquals(List.of("Шато Мерло", "Мерло Резерв"), names(autocomplete.suggest("", 10)),
+                "Прежние записи и популярность не должны сохраняться");
+    }
+
+    @Test
+    void suggest_ShouldReturnTopK_AndFollowCatalogChanges() {
+        assertEquals(2, autocomplete.suggest("", 2).size());
+
+        autocomplete.recordChoice("w1");
+        autocomplete.recordChoice("w1");
+        autocomplete.recordChoice("w1");
+        assertEquals("Шато Мерло", autocomplete.suggest("мерло", 1).get(0).getName());
+
+        autocomplete.wineDeleted(1);
+        autocomplete.dishChanged(dish(3, "Мерлуза на гриле"));
+        assertEquals(List.of("Мерло Резерв", "Мерлуза на гриле"), names(autocomplete.suggest("мерл", 10)));
+    }
+
+    @Test
+    void suggest_ShouldStayFast_OnLargeCatalog() {
+        List<Wine> wines = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            wines.add(wine(i + 10, "Вино номер " + i));
+        }
+        autocomplete.indexAll(wines, List.of(), List.of());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(10, autocomplete.suggest("вино номер " + (i % 90 + 10), 10).size());
+        }
+        double millisPerQuery = (System.nanoTime() - start) / 1_000_000.0 / 1000;
+        assertTrue(millisPerQuery < 50, "Подсказка заняла " + millisPerQuery + " мс");
+    }
+
+    @Test
+    void suggest_ShouldFindMostPopular_AmongAllMatchesOfShortPrefix() {
+        List<Wine> wines = new ArrayList<>();
+        for (int i = 0; i < 30_000; i++) {
+            wines.add(wine(i + 10, "Вино номер " + i));
+        }
+        // Последнее по алфавиту совпадение с «в»
+        int popular = 9999 + 10;
+        autocomplete.indexAll(wines, List.of(),
+                List.of(new Pairing(popular, 1, 5), new Pairing(popular, 2, 5), new Pairing(popular, 3, 5)));
+
+        assertEquals(List.of("Вино номер 9999"), names(autocomplete.suggest("в", 1)),
+                "Короткий запрос должен учитывать все совпадения, а не первые по алфавиту");
+    }
+
+    @Test
+    void wineChanged_ShouldReplaceKeysOfOldName_AndKeepPopularity() {
+        autocomplete.recordChoice("w2");
+        autocomplete.wineChanged(wine(2, "Пино Нуар Резерв"));
+
+        assertEquals(List.of("Шато Мерло"), names(autocomplete.suggest("мерло", 10)));
+        assertEquals(List.of("Пино Нуар Резерв"), names(autocomplete.suggest("нуар", 10)));
+        assertEquals(List.of("Пино Нуар Резерв"), names(autocomplete.suggest("", 1)),
+                "Переименование не должно сбрасывать популярность");
+
+        List<Wine> wines = new ArrayList<>(List.of(wine(1, "Шато Мерло"), wine(3, "Совиньон Блан"),
+                wine(2, "Пино Нуар Резерв")));
+        for (int i = 0; i < 200; i++) {
+            Wine wine = wine(100 + i % 50, "Вино " + (i * 7919 % 1000) + " Мерло");
+            autocomplete.wineChanged(wine);
+            wines.removeIf(w -> w.getId() == wine.getId());
+            wines.add(wine);
+        }
+        autocomplete.wineDeleted(120);
+        wines.removeIf(w -> w.getId() == 120);
+        NameAutocomplete rebuilt = new NameAutocomplete();
+        rebuilt.indexAll(wines, List.of(dish(1, "Мясо по-французски"), dish(2, "Ёжики из говядины")), List.of());
+        for (String prefix : List.of("в", "вино 1", "мерло", "м", "пино", "ш")) {
+            assertEquals(names(rebuilt.suggest(prefix, 100)).stream().sorted().toList(),
+                    names(autocomplete.suggest(prefix, 100)).stream().sorted().toList(),
+                    "Изменения по одному должны давать тот же индекс, что и полное построение: " + prefix);
+        }
+    }
+
+    private static List<String> names(List<NameAutocomplete.Suggestion> suggestions) {
+        return suggestions.stream().map(NameAutocomplete.Suggestion::getName).toList();
+    }
+
+    private static Wine wine(int id, String name) {
+        Wine wine = new Wine(name, Wine.WineType.Красное, 3, 3);
+        wine.setId(id);
+        return wine;
+    }
+
+    private static Dish dish(int id, String name) {
+        Dish dish = new Dish(name, Dish.DishCategory.Мясо, 3, 3);
+        dish.setId(id);
+        return dish;
+    }
+}
@@ -2,93 +2,97 @@ package org.example;
 
 import org.example.Bot.Commands.Factories.CommandFactory;
 import org.example.Bot.Commands.PairCommand;
-import org.example.DAO.Dish;
-import org.example.DAO.DishDAO;
-import org.example.DAO.WineDAO;
+import org.example.Cache.PairingCache;
+import org.example.DAO.InMemoryCatalog;
+import org.example.DAO.Pairing;
+import org.example.DAO.Wine;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.Mock;
-import org.mockito.junit.jupiter.MockitoExtension;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 
-import java.sql.SQLException;
-import java.util.List;
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.*;
-import static org.mockito.Mockito.*;
 
-@ExtendWith(MockitoExtension.class)
 class PairCommandTest {
 
-    @Mock
-    private WineDAO wineDAO;
+    private InMemoryCatalog catalog;
 
-    @Mock
-    private DishDAO dishDAO;
-
-    @Mock
     private Map<Long, CommandFactory.PairingContext> pairingContexts;
 
-    private PairCommand pairCommand;
+    private PairingCache cache;
 
     private final long testChatId = 12345L;
     private final String testStringParam = "test-string";
-    private final long testLongParam = 0L;
 
     @BeforeEach
-    void setUp() {
-        pairCommand = new PairCommand(
-                wineDAO,
-                dishDAO,
-                testStringParam,
-                testLongParam,
-                pairingContexts
-        );
+    void setUp() throws Exception {
+        catalog = new InMemoryCatalog();
+        // Фрагменты ответа и рекомендации берутся из CommandFactory
+        CommandFactory.initialize(catalog, catalog);
+        pairingContexts = new HashMap<>();
+        cache = new PairingCache(100, Duration.ofMinutes(5), Duration.ofSeconds(30));
+
+        Wine wine = catalog.addWine(new Wine(testStringParam, Wine.WineType.Белое, 2, 4));
+        catalog.addDish("Рыба", "Рыба", 3, 4);
+        catalog.addDish("Мороженое", "Десерт", 2, 3);
+        catalog.addDish("Чизкейк", "Десерт", 5, 5);
+        catalog.savePairing(new Pairing(wine.getId(), 1, 9));
+        catalog.savePairing(new Pairing(wine.getId(), 2, 7));
+        catalog.savePairing(new Pairing(wine.getId(), 3, 5));
     }
 
-   @Test
-    void execute_ShouldReturnEmptyResponse_WhenWineNotExists() throws SQLException {
-
+    @Test
+    void execute_ShouldReturnEmptyResponse_WhenWineNotExists() {
         String wineName = "Несуществующее вино";
-        when(wineDAO.findPairings(wineName)).thenReturn(List.of());
+        PairCommand pairCommand = new PairCommand(catalog, cache, wineName, testChatId, pairingContexts::put);
 
         SendMessage result = pairCommand.execute(String.valueOf(testChatId), wineName);
 
         assertNotNull(result, "Ответ не должен быть null");
-        assertFalse(result.getText().isEmpty(), "Ответ не должен быть пустым");
-        verify(pairingContexts, never()).put(anyLong(), any());
+        assertTrue(result.getText().contains("Не найдено"), result.getText());
+        assertTrue(pairingContexts.isEmpty(), "Контекст сочетания не должен сохраняться без результатов");
     }
 
     @Test
-    void execute_ShouldHandleMultiplePairingsCorrectly() throws SQLException {
+    void execute_ShouldHandleMultiplePairingsCorrectly() {
+        PairCommand pairCommand = new PairCommand(catalog, cache, testStringParam, testChatId, pairingContexts::put);
 
-        String wineName = "test-string"; // Используем то же имя, что и в PairCommand
-        List<String> pairingNames = List.of("Рыба", "Мороженое", "Чизкейк");
-
-        Dish fishDish = new Dish("Рыба", Dish.DishCategory.Рыба, 3, 4);
-        Dish iceCreamDish = new Dish("Мороженое", Dish.DishCategory.Десерт, 2, 3);
-        Dish cheesecakeDish = new Dish("Чизкейк", Dish.DishCategory.Десерт, 5, 5);
-
-        when(wineDAO.findPairings("test-string")).thenReturn(pairingNames);
-        when(dishDAO.getAllDishes()).thenReturn(List.of(fishDish, iceCreamDish, cheesecakeDish));
-
-        SendMessage result = pairCommand.execute(String.valueOf(testChatId), wineName);
-
-        System.out.println("=== REAL RESPONSE ===");
-        System.out.println(result.getText());
-        System.out.println("====================");
+        SendMessage result = pairCommand.execute(String.valueOf(testChatId), testStringParam);
 
         assertNotNull(result, "Ответ не должен быть null");
-
         String responseText = result.getText().toLowerCase();
-        assertTrue(responseText.contains(wineName.toLowerCase()),
-                "Ответ должен содержать название вина");
+        assertTrue(responseText.contains(testStringParam), "Ответ должен содержать название вина");
+        assertTrue(responseText.indexOf("рыба") < responseText.indexOf("мороженое")
+                        && responseText.indexOf("мороженое") < responseText.indexOf("чизкейк"),
+                "Блюда должны идти по убыванию оценки: " + responseText);
+        assertEquals("Рыба", pairingContexts.get(testChatId).getDish().getName(),
+                "Для оценки запоминается лучшее сочетание");
+        assertEquals(1, cache.size(), "Результат должен сохраняться в переданный кэш");
+        assertEquals(result.getText(), pairCommand.execute(String.valueOf(testChatId), testStringParam).getText());
+    }
 
-        assertTrue(responseText.contains("рыба"), "Должна быть Рыба");
-        assertTrue(responseText.contains("мороженое"), "Должно быть Мороженое");
-        assertTrue(responseText.contains("чизкейк"), "Должен быть Чизкейк");
+    @Test
+    void execute_ShouldUniteDishesOfAllWinesMatchingName() throws Exception {
+        Wine reserve = catalog.addWine(new Wine(testStringParam + " резерв", Wine.WineType.Белое, 3, 4));
+        catalog.addDish("Устрицы", "Рыба", 2, 4);
+        catalog.savePairing(new Pairing(reserve.getId(), 4, 10));
+        PairCommand pairCommand = new PairCommand(catalog, cache, testStringParam, testChatId, pairingContexts::put);
+
+        String text = pairCommand.execute(String.valueOf(testChatId), testStringParam).getText().toLowerCase();
+
+        assertTrue(text.indexOf("устрицы") >= 0 && text.indexOf("устрицы") < text.indexOf("рыба"),
+                "Показываются лучшие блюда всех вин, подходящих под название: " + text);
+        CommandFactory.PairingContext context = pairingContexts.get(testChatId);
+        assertEquals(4, context.getDishId());
+        assertEquals(reserve.getId(), context.getWineId(), "Оценка относится к вину, с которым сочетается блюдо");
+        assertTrue(catalog.getAllPairings().stream()
+                        .anyMatch(p -> p.getWineId() == context.getWineId() && p.getDishId() == context.getDishId()),
+                "Сохраненный контекст должен указывать на существующее сочетание");
+
+        cache.pairingChanged(new Pairing(reserve.getId(), 4, 1));
+        assertEquals(0, cache.size(), "Изменение сочетаний любого найденного вина сбрасывает кэш");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,83 @@
+package org.example;
+
+import org.example.Bot.Commands.Factories.CommandFactory;
+import org.example.Cache.PairingCache;
+import org.example.DAO.Dish;
+import org.example.DAO.InMemoryCatalog;
+import org.example.DAO.Pairing;
+import org.example.DAO.Wine;
+import org.example.Sessions.InMemorySessionStore;
+import org.example.Utils.Metrics;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PairingCacheTest {
+
+    @Test
+    void cache_ShouldEvictLeastRecentlyUsed_AndExpireNegativeEntriesFirst() {
+        AtomicLong now = new AtomicLong();
+        PairingCache cache = new PairingCache(2, Duration.ofMinutes(5), Duration.ofSeconds(30), now::get);
+        Dish steak = dish(1, "Стейк");
+
+        cache.put("Мерло", List.of(steak), Set.of(1), List.of(1), cache.generation());
+        cache.put("Мрело", List.of(), Set.of(), List.of(), cache.generation());
+        assertNotNull(cache.get("Мерло"));
+        cache.put("Шардоне", List.of(steak), Set.of(2), List.of(2), cache.generation());
+        assertNull(cache.get("Мрело"), "Должна вытесняться давно не использованная запись");
+        assertNotNull(cache.get("Мерло"));
+
+        cache.put("Мрело", List.of(), Set.of(), List.of(), cache.generation());
+        now.addAndGet(Duration.ofSeconds(31).toNanos());
+        assertNull(cache.get("Мрело"), "Пустой результат хранится недолго");
+        assertNotNull(cache.get("Мерло"));
+
+        long before = cache.generation();
+        cache.pairingChanged(new Pairing(2, 5, 7));
+        cache.put("Шардоне", List.of(steak), Set.of(2), List.of(2), before);
+        assertNull(cache.get("Шардоне"), "Результат, вычисленный до изменения каталога, не должен сохраняться");
+        assertTrue(Metrics.gaugeValue("pair.cache.hit_ratio") > 0);
+    }
+
+    @Test
+    void pair_ShouldAnswerFromCache_UntilPairingsOrWinesChange() throws Exception {
+        InMemoryCatalog catalog = new InMemoryCatalog();
+        Wine merlot = catalog.addWine(new Wine("Мерло", Wine.WineType.Красное, 3, 3));
+        catalog.addDish("Стейк", "Мясо", 4, 5);
+        catalog.addDish("Лосось", "Рыба", 3, 4);
+        catalog.savePairing(new Pairing(merlot.getId(), 1, 7));
+        CommandFactory.initialize(catalog, catalog);
+        CommandFactory.useSessionStore(new InMemorySessionStore());
+        PairingCache cache = CommandFactory.pairingCache();
+
+        long hits = Metrics.counter("pair.cache.hit").sum();
+        assertFalse(pair("Мерло").contains("Лосось"));
+        assertTrue(pair("  Мерло ").contains("Стейк"));
+        assertEquals(hits + 1, Metrics.counter("pair.cache.hit").sum(), "Повторный запрос должен обслуживаться кэшем");
+
+        catalog.savePairing(new Pairing(merlot.getId(), 2, 9));
+        assertTrue(pair("Мерло").contains("Лосось"), "Новое сочетание должно сбросить запись");
+
+        assertTrue(pair("Каберне").startsWith("Не найдено"));
+        assertEquals(2, cache.size());
+        catalog.addWine(new Wine("Каберне", Wine.WineType.Красное, 4, 3));
+        assertEquals(0, cache.size(), "Новое вино может подойти под любое название");
+    }
+
+    private static String pair(String wineName) {
+        SendMessage message = CommandFactory.getCommand("/pair " + wineName, 21L).execute("21", "");
+        return message.getText();
+    }
+
+    private static Dish dish(int id, String name) {
+        Dish dish = new Dish(name, Dish.DishCategory.Мясо, 3, 3);
+        dish.setId(id);
+        return dish;
+    }
+}
@@ -0,0 +1,92 @@
+package org.example;
+
+import org.example.DAO.Dish;
+import org.example.DAO.Rating;
+import org.example.DAO.Session;
+import org.example.DAO.Wine;
+import org.example.Recommendations.InteractionMatrix;
+import org.example.Recommendations.PairingRecommender;
+import org.example.Utils.ExcelFavoritesManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PairingRecommenderTest {
+
+    @Test
+    void alsoLiked_ShouldSuggestPairingsLikedByTheSameUsers() {
+        List<Rating> ratings = new ArrayList<>();
+        // Пользователи 1–3 любят Мерло + Стейк и Каберне + Сыр, пользователь 4 — Мерло + Стейк и Рислинг + Лосось
+        for (long chat = 1; chat <= 3; chat++) {
+            ratings.add(new Rating(chat, 1, 1, Rating.GOOD));
+            ratings.add(new Rating(chat, 2, 3, Rating.GOOD));
+        }
+        ratings.add(new Rating(4L, 1, 1, Rating.GOOD));
+        ratings.add(new Rating(4L, 3, 2, Rating.GOOD));
+        // Отрицательная оценка не считается взаимодействием
+        ratings.add(new Rating(5L, 1, 1, Rating.BAD));
+        ratings.add(new Rating(5L, 3, 3, Rating.GOOD));
+
+        PairingRecommender recommender = new PairingRecommender(new ForkJoinPool(2));
+        recommender.rebuild(InteractionMatrix.fromRatings(ratings), wines(), dishes());
+
+        List<PairingRecommender.Suggestion> suggestions = recommender.alsoLiked("Мерло", 1, 5);
+
+        assertEquals(2, suggestions.size());
+        assertEquals("Каберне", suggestions.get(0).getWineName());
+        assertEquals("Сыр бри", suggestions.get(0).getDishName());
+        assertEquals("Рислинг", suggestions.get(1).getWineName());
+        assertTrue(recommender.alsoLiked("Шардоне", 1, 5).isEmpty());
+    }
+
+    @Test
+    void interactions_ShouldCountFavoritesAndPairingSessions_UnlessRatedBad() {
+        // Чаты 1 и 2 добавили Мерло + Стейк в избранное и подбирали Каберне + Сыр бри
+        List<Session> sessions = List.of(
+                Session.empty(1L).withPairing(2, "Каберне", 3),
+                Session.empty(2L).withPairing(2, "Каберне", 3));
+        List<ExcelFavoritesManager.Favorite> favorites = List.of(
+                new ExcelFavoritesManager.Favorite(1L, "мерло", "Стейк - Мясо, жирность 3"),
+                new ExcelFavoritesManager.Favorite(2L, "Мерло", "Стейк"),
+                // Чат 3 потом оценил Мерло + Стейк как «плохо»
+                new ExcelFavoritesManager.Favorite(3L, "Мерло", "Стейк - Мясо"),
+                new ExcelFavoritesManager.Favorite(3L, "Рислинг", "Лосось - Мясо"),
+                new ExcelFavoritesManager.Favorite(3L, "Неизвестное вино", "Лосось"));
+        List<Rating> ratings = List.of(new Rating(3L, 1, 1, Rating.BAD));
+
+        InteractionMatrix matrix = PairingRecommender.interactions(ratings, sessions, favorites, wines(), dishes());
+        PairingRecommender recommender = new PairingRecommender(new ForkJoinPool(2));
+        recommender.rebuild(matrix, wines(), dishes());
+
+        List<PairingRecommender.Suggestion> suggestions = recommender.alsoLiked("Мерло", 1, 5);
+        assertEquals(1, suggestions.size(), "Избранное, отмененное оценкой «плохо», не учитывается");
+        assertEquals("Каберне", suggestions.get(0).getWineName());
+        assertEquals("Сыр бри", suggestions.get(0).getDishName());
+    }
+
+    private static List<Wine> wines() {
+        List<Wine> wines = new ArrayList<>();
+        String[] names = {"Мерло", "Каберне", "Рислинг"};
+        for (int i = 0; i < names.length; i++) {
+            Wine wine = new Wine(names[i], Wine.WineType.Красное, 3, 3);
+            wine.setId(i + 1);
+            wines.add(wine);
+        }
+        return wines;
+    }
+
+    private static List<Dish> dishes() {
+        List<Dish> dishes = new ArrayList<>();
+        String[] names = {"Стейк", "Лосось", "Сыр бри"};
+        for (int i = 0; i < names.length; i++) {
+            Dish dish = new Dish(names[i], Dish.DishCategory.Мясо, 3, 3);
+            dish.setId(i + 1);
+            dishes.add(dish);
+        }
+        return dishes;
+    }
+}
@@ -0,0 +1,122 @@
+package org.example;
+
+import org.example.DAO.Dish;
+import org.example.DAO.Pairing;
+import org.example.DAO.PairingTopKDAO;
+import org.example.DAO.QueryRunner;
+import org.example.DAO.ReplicaRouter;
+import org.example.DAO.RowMapper;
+import org.example.DAO.TopPairings;
+import org.example.DAO.Wine;
+import org.example.DAO.WineDAO;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PairingTopKTest {
+
+    @Test
+    void pairingChanged_ShouldRefreshOnlyThatWine() throws Exception {
+        QueryRunner queries = mock(QueryRunner.class);
+        PairingTopKDAO topK = new PairingTopKDAO(new ReplicaRouter(queries));
+
+        topK.pairingChanged(new Pairing(12, 5, 90));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<QueryRunner.Binder> binder = ArgumentCaptor.forClass(QueryRunner.Binder.class);
+        verify(queries).update(sql.capture(), binder.capture());
+        assertTrue(sql.getValue().contains("INSERT INTO pairing_topk"));
+        assertTrue(sql.getValue().contains("DELETE FROM pairing_topk"),
+                "Места сверх числа сочетаний вина должны удаляться тем же запросом");
+        assertEquals(List.of(12), boundWineIds(binder.getValue()));
+    }
+
+    @Test
+    void checkAndRepair_ShouldRefreshOnlyMismatchedWines() throws Exception {
+        QueryRunner queries = mock(QueryRunner.class);
+        when(queries.<Integer>query(contains("FULL OUTER JOIN pairing_topk"), any(), any()))
+                .thenReturn(List.of(3, 7))
+                .thenReturn(List.of());
+        PairingTopKDAO topK = new PairingTopKDAO(new ReplicaRouter(queries));
+
+        assertEquals(2, topK.checkAndRepair());
+        ArgumentCaptor<QueryRunner.Binder> binder = ArgumentCaptor.forClass(QueryRunner.Binder.class);
+        verify(queries).update(contains("pairing_topk"), binder.capture());
+        assertEquals(List.of(3, 7), boundWineIds(binder.getValue()));
+
+        assertEquals(0, topK.checkAndRepair());
+        verify(queries, times(1)).update(anyString(), any());
+        assertFalse(PairingTopKDAO.REBUILD_SQL.contains("?"), "Полное построение выполняется без параметров");
+    }
+
+    @Test
+    void findTopPairings_ShouldJoinNameAndTopKInOneQuery() throws Exception {
+        QueryRunner queries = mock(QueryRunner.class);
+        // Строки идут по убыванию оценки: Стейк подходит обоим винам, у Розе сочетаний нет
+        List<ResultSet> rows = List.of(row(1, "Мерло", 7, "Стейк"), row(2, "Мерло Резерв", 8, "Утка"),
+                row(2, "Мерло Резерв", 7, "Стейк"), row(3, "Мерло Розе", null, null));
+        when(queries.query(anyString(), any(), any())).thenAnswer(invocation -> {
+            RowMapper<?> mapper = invocation.getArgument(2);
+            List<Object> mapped = new ArrayList<>();
+            for (ResultSet rs : rows) {
+                mapped.add(mapper.mapRow(rs));
+            }
+            return mapped;
+        });
+
+        TopPairings top = new WineDAO(queries).findTopPairings("Мерло");
+
+        assertEquals(List.of(1, 2, 3), top.getWines().stream().map(Wine::getId).toList(),
+                "Вина без сочетаний тоже нужны для сброса кэша");
+        assertEquals(List.of("Стейк", "Утка"), top.getDishes().stream().map(Dish::getName).toList());
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<QueryRunner.Binder> binder = ArgumentCaptor.forClass(QueryRunner.Binder.class);
+        verify(queries, times(1)).query(sql.capture(), binder.capture(), any());
+        assertTrue(sql.getValue().contains("pairing_topk"));
+        assertTrue(sql.getValue().contains("w.name LIKE ?"), "Вина ищутся тем же запросом");
+        assertFalse(sql.getValue().contains("JOIN pairings"), "Таблица pairings не должна сортироваться при поиске");
+        PreparedStatement stmt = mock(PreparedStatement.class);
+        binder.getValue().bind(stmt);
+        verify(stmt).setString(1, "%Мерло%");
+    }
+
+    // Строка результата: колонки вина, затем колонки блюда (NULL, если сочетаний нет)
+    private static ResultSet row(int wineId, String wineName, Integer dishId, String dishName) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getInt(1)).thenReturn(wineId);
+        when(rs.getString(2)).thenReturn(wineName);
+        when(rs.getString(3)).thenReturn("Красное");
+        when(rs.getInt(4)).thenReturn(3);
+        when(rs.getInt(5)).thenReturn(3);
+        when(rs.getInt(7)).thenReturn(2015);
+        when(rs.getInt(10)).thenReturn(dishId == null ? 0 : dishId);
+        when(rs.wasNull()).thenReturn(dishId == null);
+        when(rs.getString(11)).thenReturn(dishName);
+        when(rs.getString(12)).thenReturn("Мясо");
+        when(rs.getInt(13)).thenReturn(3);
+        when(rs.getInt(14)).thenReturn(3);
+        when(rs.getInt(15)).thenReturn(30);
+        return rs;
+    }
+
+    private static List<Integer> boundWineIds(QueryRunner.Binder binder) throws Exception {
+        PreparedStatement stmt = mock(PreparedStatement.class);
+        Connection connection = mock(Connection.class);
+        when(stmt.getConnection()).thenReturn(connection);
+        binder.bind(stmt);
+        ArgumentCaptor<Object[]> ids = ArgumentCaptor.forClass(Object[].class);
+        verify(connection, times(2)).createArrayOf(eq("int4"), ids.capture());
+        assertArrayEquals(ids.getAllValues().get(0), ids.getAllValues().get(1));
+        return List.of((Integer[]) ids.getValue());
+    }
+}
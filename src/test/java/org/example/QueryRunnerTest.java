@@ -0,0 +1,116 @@
+package org.example;
+
+import org.example.DAO.QueryRunner;
+import org.example.DAO.RowMappers;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class QueryRunnerTest {
+    private static final String SQL = "SELECT name FROM wines WHERE id = ?";
+
+    @Test
+    void query_ShouldPrepareStatementOnce_AndReuseItFromCache() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement stmt = statementReturning(connection, "Мерло");
+        QueryRunner queries = new QueryRunner(connection);
+
+        assertEquals("Мерло", queries.queryOne(SQL, s -> s.setInt(1, 1), RowMappers.FIRST_STRING));
+        assertEquals(List.of("Мерло"), queries.query(SQL, s -> s.setInt(1, 2), RowMappers.FIRST_STRING));
+
+        verify(connection, times(1)).prepareStatement(SQL);
+        verify(stmt, times(1)).clearParameters();
+        verify(stmt).setInt(1, 2);
+
+        queries.clearStatements();
+        verify(stmt).close();
+        when(stmt.isClosed()).thenReturn(true);
+        queries.queryOne(SQL, s -> s.setInt(1, 3), RowMappers.FIRST_STRING);
+        verify(connection, times(2)).prepareStatement(SQL);
+    }
+
+    @Test
+    void pool_ShouldRunQueriesConcurrently_OnSeparateConnections() throws Exception {
+        CountDownLatch bothExecuting = new CountDownLatch(2);
+        AtomicInteger opened = new AtomicInteger();
+        QueryRunner queries = new QueryRunner(() -> {
+            opened.incrementAndGet();
+            Connection connection = mock(Connection.class);
+            PreparedStatement stmt = statementReturning(connection, "Мерло");
+            when(stmt.executeQuery()).thenAnswer(invocation -> {
+                bothExecuting.countDown();
+                assertTrue(bothExecuting.await(2, TimeUnit.SECONDS));
+                return resultSet("Мерло");
+            });
+            return connection;
+        }, 2);
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> lookup(queries));
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> lookup(queries));
+
+        assertEquals("Мерло", first.get(5, TimeUnit.SECONDS),
+                "Второй запрос должен выполняться, пока первый занимает свое соединение");
+        assertEquals("Мерло", second.get(5, TimeUnit.SECONDS));
+        assertEquals(2, opened.get());
+
+        lookup(queries);
+        assertEquals(2, opened.get(), "Соединения пула должны переиспользоваться");
+    }
+
+    @Test
+    void pool_ShouldReopenConnection_AfterConnectionFailure() throws Exception {
+        List<Connection> opened = new ArrayList<>();
+        QueryRunner queries = new QueryRunner(() -> {
+            Connection connection = mock(Connection.class);
+            PreparedStatement stmt = statementReturning(connection, "Мерло");
+            if (opened.isEmpty()) {
+                when(stmt.executeQuery()).thenThrow(new SQLException("Соединение разорвано", "08006"));
+            }
+            opened.add(connection);
+            return connection;
+        }, 1);
+
+        assertThrows(SQLException.class, () -> queries.queryOne(SQL, s -> s.setInt(1, 1), RowMappers.FIRST_STRING));
+        verify(opened.get(0)).close();
+
+        assertEquals("Мерло", lookup(queries), "После разрыва запрос должен выполняться на новом соединении");
+        assertEquals(2, opened.size());
+        lookup(queries);
+        assertEquals(2, opened.size(), "Ошибка соединения не должна закрывать исправное соединение");
+    }
+
+    private static String lookup(QueryRunner queries) {
+        try {
+            return queries.queryOne(SQL, s -> s.setInt(1, 1), RowMappers.FIRST_STRING);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static PreparedStatement statementReturning(Connection connection, String value) throws SQLException {
+        PreparedStatement stmt = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(stmt);
+        when(stmt.executeQuery()).thenAnswer(invocation -> resultSet(value));
+        return stmt;
+    }
+
+    private static ResultSet resultSet(String value) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getString(1)).thenReturn(value);
+        return rs;
+    }
+}
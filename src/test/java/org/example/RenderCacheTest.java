@@ -0,0 +1,69 @@
+package org.example;
+
+import org.example.Cache.RenderCache;
+import org.example.DAO.InMemoryCatalog;
+import org.example.DAO.Wine;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderCacheTest {
+
+    @Test
+    void wine_ShouldReuseFragment_UntilWineIsUpdated() {
+        InMemoryCatalog catalog = new InMemoryCatalog();
+        RenderCache cache = new RenderCache();
+        catalog.addListener(cache);
+        Wine wine = catalog.addWine(new Wine("Пино_нуар", Wine.WineType.Красное, 2, 4));
+
+        RenderCache.Fragment first = cache.wine(wine);
+        assertSame(first, cache.wine(catalog.getWineById(wine.getId())));
+        assertTrue(first.getText().contains("Пино\\_нуар"), "Разметка в названии должна экранироваться");
+
+        wine.setRegion("Бургундия");
+        catalog.updateWine(wine);
+
+        RenderCache.Fragment updated = cache.wine(catalog.getWineById(wine.getId()));
+        assertNotSame(first, updated);
+        assertTrue(updated.getText().contains("Бургундия"));
+    }
+
+    @Test
+    void wine_ShouldRenderAgain_WhenVersionChangesWithoutNotification() {
+        RenderCache cache = new RenderCache();
+        Wine wine = new Wine("Мерло", Wine.WineType.Красное, 3, 3);
+        wine.setId(7);
+        RenderCache.Fragment first = cache.wine(wine);
+
+        // Запись изменена другим экземпляром бота: уведомления не было, но версия из БД выросла
+        Wine changed = new Wine(wine);
+        changed.setRegion("Бордо");
+        changed.setVersion(1);
+        RenderCache.Fragment updated = cache.wine(changed);
+
+        assertNotSame(first, updated);
+        assertTrue(updated.getText().contains("Бордо"));
+        assertSame(updated, cache.wine(new Wine(changed)), "Та же версия записи должна браться из кэша");
+        cache.wine(wine);
+        assertSame(updated, cache.wine(changed), "Устаревшая версия не должна вытеснять новый фрагмент");
+    }
+
+    @Test
+    void join_ShouldStayWithinLimit_AndCountHiddenFragments() {
+        RenderCache cache = new RenderCache();
+        List<RenderCache.Fragment> fragments = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            Wine wine = new Wine("Вино " + i, Wine.WineType.Белое, 1, 1);
+            wine.setId(i);
+            fragments.add(cache.wine(wine));
+        }
+
+        String text = RenderCache.join("Список вин:\n", fragments, RenderCache.MESSAGE_LIMIT);
+
+        assertTrue(text.length() <= RenderCache.MESSAGE_LIMIT);
+        assertTrue(text.contains("…и еще "));
+    }
+}
@@ -0,0 +1,105 @@
+package org.example;
+
+import org.example.DAO.QueryRunner;
+import org.example.DAO.ReplicaRouter;
+import org.example.DAO.RowMappers;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReplicaRouterTest {
+    private static final String SQL = "SELECT name FROM wines WHERE id = ?";
+
+    @Test
+    void read_ShouldSwitchToPrimary_OnlyAfterConnectionFailure() throws Exception {
+        QueryRunner primary = mock(QueryRunner.class);
+        when(primary.queryOne(eq(SQL), any(), any())).thenReturn("с основной БД");
+        AtomicInteger opened = new AtomicInteger();
+        ReplicaRouter router = new ReplicaRouter(primary, () -> {
+            opened.incrementAndGet();
+            return replicaConnection();
+        }, 1, Duration.ofSeconds(5));
+        router.checkReplica();
+        assertTrue(router.isReplicaInUse());
+
+        // Ошибка в запросе не отключает реплику и не повторяется на основной БД
+        assertThrows(SQLException.class, () -> router.read(queries -> {
+            throw new SQLException("column does not exist", "42703");
+        }));
+        assertTrue(router.isReplicaInUse());
+        verify(primary, never()).queryOne(anyString(), any(), any());
+
+        assertEquals("с основной БД", router.read(queries -> {
+            if (queries != primary) {
+                throw new SQLNonTransientConnectionException("connection reset", "08006");
+            }
+            return queries.queryOne(SQL, QueryRunner.Binder.NONE, RowMappers.FIRST_STRING);
+        }));
+        assertFalse(router.isReplicaInUse(), "После потери соединения чтения идут на основную БД");
+
+        router.checkReplica();
+        assertFalse(router.isReplicaInUse(), "Реплика не проверяется повторно до конца паузы");
+        assertEquals(1, opened.get());
+    }
+
+    @Test
+    void read_ShouldFailOverWithoutWaiting_ForHangingReplicaCheck() throws Exception {
+        QueryRunner primary = mock(QueryRunner.class);
+        when(primary.queryOne(eq(SQL), any(), any())).thenReturn("с основной БД");
+        CountDownLatch checkStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger checks = new AtomicInteger();
+        Connection connection = replicaConnection();
+        ResultSet rs = connection.prepareStatement(SQL).executeQuery();
+        when(rs.getDouble(1)).thenAnswer(invocation -> {
+            if (checks.incrementAndGet() > 1) {
+                // Вторая проверка зависает, как запрос к недоступной реплике
+                checkStarted.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+            return 0.0;
+        });
+        ReplicaRouter router = new ReplicaRouter(primary, () -> connection, 1, Duration.ofSeconds(5));
+        router.checkReplica();
+        assertTrue(router.isReplicaInUse());
+
+        Thread check = new Thread(router::checkReplica);
+        check.start();
+        assertTrue(checkStarted.await(5, TimeUnit.SECONDS));
+
+        String result = assertTimeoutPreemptively(Duration.ofSeconds(2), () -> router.read(queries -> {
+            if (queries != primary) {
+                throw new SQLNonTransientConnectionException("connection reset", "08006");
+            }
+            return queries.queryOne(SQL, QueryRunner.Binder.NONE, RowMappers.FIRST_STRING);
+        }), "Чтение не должно ждать зависшую проверку реплики");
+        assertEquals("с основной БД", result);
+
+        release.countDown();
+        check.join(5_000);
+        assertFalse(router.isReplicaInUse(), "Завершившаяся проверка не возвращает отключенную реплику");
+    }
+
+    private static Connection replicaConnection() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement stmt = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(stmt);
+        when(stmt.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getDouble(1)).thenReturn(0.0);
+        return connection;
+    }
+}
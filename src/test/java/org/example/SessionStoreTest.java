@@ -0,0 +1,136 @@
+package org.example;
+
+import org.example.DAO.Session;
+import org.example.DAO.SessionRepository;
+import org.example.Sessions.CachedSessionStore;
+import org.example.Sessions.InMemorySessionStore;
+import org.example.Sessions.SessionField;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionStoreTest {
+
+    /**
+     * Таблица sessions в памяти с той же проверкой версий, что и в SessionDAO
+     */
+    private static class FakeSessionTable implements SessionRepository {
+        final Map<Long, Session> rows = new ConcurrentHashMap<>();
+        final List<Integer> batches = new ArrayList<>();
+        int reads;
+
+        @Override
+        public synchronized Session findSession(long chatId) {
+            reads++;
+            return rows.get(chatId);
+        }
+
+        @Override
+        public List<Session> findPairingSessions() {
+            List<Session> found = new ArrayList<>();
+            for (Session session : rows.values()) {
+                if (session.hasPairing()) {
+                    found.add(session);
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public synchronized Set<Long> saveSessions(List<Session> sessions) {
+            batches.add(sessions.size());
+            Set<Long> saved = new HashSet<>();
+            for (Session session : sessions) {
+                Session stored = rows.get(session.getChatId());
+                long storedVersion = stored != null ? stored.getVersion() : 0;
+                if (storedVersion == session.getVersion()) {
+                    rows.put(session.getChatId(), session.withVersion(session.getVersion() + 1));
+                    saved.add(session.getChatId());
+                }
+            }
+            return saved;
+        }
+
+        @Override
+        public int deleteIdleSessions(Duration idle) {
+            return 0;
+        }
+    }
+
+    @Test
+    void flush_ShouldCoalesceChangesIntoOneBatch() {
+        FakeSessionTable table = new FakeSessionTable();
+        CachedSessionStore store = new CachedSessionStore(table, Duration.ofMinutes(1));
+
+        store.update(1, session -> session.withAgeVerified(true));
+        store.update(1, session -> session.withState("CONFIRM_FAVORITE"));
+        store.update(2, session -> session.withWaitingForWine(true));
+        assertTrue(table.batches.isEmpty(), "До сброса изменения не должны уходить в хранилище");
+
+        store.flush();
+
+        assertEquals(List.of(2), table.batches, "Все сессии должны записываться одним запросом");
+        Session stored = table.rows.get(1L);
+        assertTrue(stored.isAgeVerified());
+        assertEquals("CONFIRM_FAVORITE", stored.getState());
+        assertEquals(1, stored.getVersion());
+        assertEquals(1, store.get(1).getVersion());
+    }
+
+    @Test
+    void get_ShouldServeFromCache_UntilTtlExpires() {
+        FakeSessionTable table = new FakeSessionTable();
+        CachedSessionStore cached = new CachedSessionStore(table, Duration.ofMinutes(1));
+        cached.get(1);
+        cached.get(1);
+        assertEquals(1, table.reads);
+
+        CachedSessionStore uncached = new CachedSessionStore(table, Duration.ZERO);
+        uncached.get(1);
+        uncached.get(1);
+        assertEquals(3, table.reads);
+    }
+
+    @Test
+    void flush_ShouldReapplyChanges_WhenAnotherInstanceWroteFirst() {
+        FakeSessionTable table = new FakeSessionTable();
+        CachedSessionStore first = new CachedSessionStore(table, Duration.ofMinutes(1));
+        CachedSessionStore second = new CachedSessionStore(table, Duration.ofMinutes(1));
+
+        // Оба экземпляра прочитали сессию до изменений
+        first.get(7);
+        second.get(7);
+        first.update(7, session -> session.withAgeVerified(true));
+        second.update(7, session -> session.withPairing(2, "Шабли", 3));
+        first.flush();
+        second.flush();
+
+        Session stored = table.rows.get(7L);
+        assertTrue(stored.isAgeVerified(), "Изменение первого экземпляра не должно потеряться");
+        assertEquals("Шабли", stored.getPairingWine());
+        assertEquals(2, stored.getVersion());
+        assertEquals(stored.getVersion(), second.get(7).getVersion());
+    }
+
+    @Test
+    void sessionField_ShouldReadAndWriteOneFieldOfSession() {
+        InMemorySessionStore store = new InMemorySessionStore();
+        SessionField<String> states = new SessionField<>(() -> store, Session::getState, Session::withState);
+
+        assertFalse(states.isSet(5L));
+        states.set(5L, "CONFIRM_FAVORITE");
+        assertEquals("CONFIRM_FAVORITE", states.get(5L));
+        assertEquals("CONFIRM_FAVORITE", store.get(5L).getState());
+        states.clear(5L);
+        assertNull(states.get(5L));
+        assertFalse(states.isSet(5L));
+    }
+}
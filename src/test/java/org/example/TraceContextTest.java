@@ -0,0 +1,65 @@
+package org.example;
+
+import org.example.Bot.CommandDispatcher;
+import org.example.Tracing.TraceContext;
+import org.example.Tracing.TraceLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceContextTest {
+
+    @Test
+    void finish_ShouldWriteSpansFromCommandThreads_AsOneJsonLine(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("trace.jsonl");
+        TraceLog log = TraceLog.configure(file);
+        CommandDispatcher dispatcher = new CommandDispatcher(Executors.newSingleThreadExecutor(), Duration.ofSeconds(5));
+
+        TraceContext trace = TraceContext.start(101L, 42L, "/pair Мерло");
+        SendMessage response;
+        try (TraceContext.Scope ignored = trace.attach()) {
+            response = dispatcher.dispatch((chatId, input) -> {
+                try (TraceContext.Span span = TraceContext.span("db.query").detail("SELECT 1")) {
+                    return new SendMessage(chatId, "ok");
+                }
+            }, "42", "/pair Мерло").get();
+        }
+        trace.finish();
+        trace.finish();
+
+        assertEquals("ok", response.getText());
+        assertNull(TraceContext.current(), "Контекст не должен оставаться привязанным к потоку");
+        assertTrue(log.drain(5000));
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(1, lines.size(), "Повторное завершение не должно дублировать запись");
+        String line = lines.get(0);
+        assertTrue(line.contains("\"update_id\":101"));
+        assertTrue(line.contains("\"chat_id\":42"));
+        assertTrue(line.contains("\"command\":\"/pair\""), "В журнал попадает только команда, без ввода");
+        assertTrue(line.contains("\"name\":\"command\""));
+        assertTrue(line.contains("\"name\":\"db.query\""), "Спан из пула команд должен попасть в контекст обновления");
+    }
+
+    @Test
+    void close_ShouldKeepInterruptFlag_WhenInterrupted(@TempDir Path dir) {
+        TraceLog log = new TraceLog(dir.resolve("trace.jsonl"));
+        log.append("{\"level\":\"info\"}");
+
+        Thread.currentThread().interrupt();
+        try {
+            log.close();
+            assertTrue(Thread.currentThread().isInterrupted(), "Прерывание не должно теряться");
+        } finally {
+            Thread.interrupted();
+        }
+        assertFalse(log.append("{}"), "Закрытый журнал не принимает записи");
+    }
+}
@@ -0,0 +1,111 @@
+package org.example;
+
+import org.example.DAO.Rating;
+import org.example.Utils.Metrics;
+import org.example.Utils.RatingCodec;
+import org.example.Utils.WriteBehindBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindBufferTest {
+
+    @Test
+    void flush_ShouldWriteAllPendingItemsAsOneBatch(@TempDir Path dir) throws Exception {
+        List<List<Rating>> batches = new ArrayList<>();
+        try (WriteBehindBuffer<Rating> buffer = new WriteBehindBuffer<>("ratings", dir, new RatingCodec(),
+                batch -> batches.add(new ArrayList<>(batch)), 1000, Duration.ofHours(1))) {
+            for (long chat = 1; chat <= 3; chat++) {
+                buffer.submit(new Rating(chat, 1, 2, Rating.GOOD));
+            }
+            assertEquals(3, buffer.pending().size());
+
+            assertEquals(3, buffer.flush());
+        }
+
+        assertEquals(1, batches.size(), "Записи разных пользователей должны попасть в одну пачку");
+        assertEquals(3, batches.get(0).size());
+        assertTrue(Metrics.timer("writebehind.ratings.flush").count() > 0);
+    }
+
+    @Test
+    void startReporting_ShouldEmitFlushTimersPeriodically(@TempDir Path dir) throws Exception {
+        try (WriteBehindBuffer<Rating> buffer = new WriteBehindBuffer<>("ratings", dir, new RatingCodec(),
+                batch -> { }, 1000, Duration.ofHours(1))) {
+            buffer.submit(new Rating(1L, 1, 2, Rating.GOOD));
+            buffer.flush();
+        }
+
+        BlockingQueue<String> reports = new LinkedBlockingQueue<>();
+        ScheduledExecutorService reporting = Metrics.startReporting(Duration.ofMillis(10), reports::add);
+        try {
+            String report = reports.poll(5, TimeUnit.SECONDS);
+            assertNotNull(report, "Отчет должен передаваться без явного вызова");
+            assertTrue(report.contains("writebehind.ratings.flush: count="), report);
+            assertNotNull(reports.poll(5, TimeUnit.SECONDS), "Отчеты должны повторяться");
+        } finally {
+            reporting.shutdownNow();
+        }
+    }
+
+    @Test
+    void constructor_ShouldRecoverItemsFromJournal_AfterFailedFlush(@TempDir Path dir) throws Exception {
+        WriteBehindBuffer<Rating> crashed = new WriteBehindBuffer<>("ratings", dir, new RatingCodec(),
+                batch -> {
+                    throw new IllegalStateException("База данных недоступна");
+                }, 1000, Duration.ofHours(1));
+        crashed.submit(new Rating(1L, 1, 2, Rating.GOOD));
+        crashed.submit(new Rating(2L, 1, 2, Rating.BAD));
+        assertThrows(IllegalStateException.class, crashed::flush);
+        crashed.submit(new Rating(3L, 1, 3, Rating.GOOD));
+        // Процесс «падает»: буфер не закрывается и не сбрасывается
+
+        List<Rating> written = new ArrayList<>();
+        try (WriteBehindBuffer<Rating> restarted = new WriteBehindBuffer<>("ratings", dir, new RatingCodec(),
+                written::addAll, 1000, Duration.ofHours(1))) {
+            assertEquals(3, restarted.pending().size());
+            restarted.flush();
+        }
+
+        assertEquals(List.of(1L, 2L, 3L), written.stream().map(Rating::getChatId).toList());
+        assertEquals(Rating.BAD, written.get(1).getValue());
+    }
+
+    @Test
+    void flush_ShouldWriteRestOfBatch_AndMoveRejectedItemsAside(@TempDir Path dir) throws Exception {
+        List<Rating> written = new ArrayList<>();
+        WriteBehindBuffer.BatchWriter<Rating> writer = batch -> {
+            if (batch.stream().anyMatch(r -> r.getWineId() == 99)) {
+                throw new IllegalArgumentException("Вино удалено");
+            }
+            written.addAll(batch);
+        };
+        try (WriteBehindBuffer<Rating> buffer = new WriteBehindBuffer<>("ratings", dir, new RatingCodec(),
+                writer, e -> e instanceof IllegalArgumentException, 1000, Duration.ofHours(1))) {
+            buffer.submit(new Rating(1L, 1, 2, Rating.GOOD));
+            buffer.submit(new Rating(2L, 99, 2, Rating.GOOD));
+            buffer.submit(new Rating(3L, 1, 3, Rating.BAD));
+
+            assertEquals(2, buffer.flush());
+            assertTrue(buffer.pending().isEmpty(), "Отклоненная запись не должна задерживать буфер");
+            assertEquals(List.of(2L), buffer.rejected().stream().map(Rating::getChatId).toList());
+        }
+
+        assertEquals(List.of(1L, 3L), written.stream().map(Rating::getChatId).toList());
+        try (WriteBehindBuffer<Rating> restarted = new WriteBehindBuffer<>("ratings", dir, new RatingCodec(),
+                batch -> fail("Отклоненные записи не должны восстанавливаться как несброшенные"),
+                1000, Duration.ofHours(1))) {
+            assertTrue(restarted.pending().isEmpty());
+        }
+    }
+}